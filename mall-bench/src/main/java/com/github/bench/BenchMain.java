@@ -0,0 +1,78 @@
+package com.github.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 基准测试入口: java -jar benchmarks.jar [profile] [include]
+ *
+ * profile:
+ *   throughput : 吞吐量(ops/ms), 默认
+ *   latency    : 采样每次调用的耗时(us), 结果里有 p50 p90 p99 p999
+ *   alloc      : 平均耗时(ns) + gc 分析, 看 gc.alloc.rate.norm(每次调用分配的字节数)
+ * include: 类名或方法名的正则, 如 JsonBench 或 JsonBench.convert, 不传则运行所有
+ *
+ * 结果以 json 格式写到 target/jmh/{profile}-{yyyyMMddHHmmss}.json, 也可以用 -Dbench.result=xxx.json 指定.
+ * 预热和测量可以用 -Dbench.fork=1 -Dbench.warmup=3 -Dbench.measure=5 -Dbench.seconds=1 调整
+ * </pre>
+ */
+public class BenchMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String profile = (args.length > 0) ? args[0] : "throughput";
+        String include = (args.length > 1) ? args[1] : "com.github.bench.*";
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().include(include)
+                .forks(Integer.getInteger("bench.fork", 1))
+                .warmupIterations(Integer.getInteger("bench.warmup", 3))
+                .measurementIterations(Integer.getInteger("bench.measure", 5))
+                .warmupTime(TimeValue.seconds(Integer.getInteger("bench.seconds", 1)))
+                .measurementTime(TimeValue.seconds(Integer.getInteger("bench.seconds", 1)))
+                .jvmArgsAppend("-Xms1g", "-Xmx1g")
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile(profile));
+        switch (profile) {
+            case "throughput": {
+                builder.mode(Mode.Throughput).timeUnit(TimeUnit.MILLISECONDS);
+                break;
+            }
+            case "latency": {
+                builder.mode(Mode.SampleTime).timeUnit(TimeUnit.MICROSECONDS);
+                break;
+            }
+            case "alloc": {
+                builder.mode(Mode.AverageTime).timeUnit(TimeUnit.NANOSECONDS).addProfiler(GCProfiler.class);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("profile(" + profile + ") must be one of [throughput, latency, alloc]");
+            }
+        }
+        new Runner(builder.build()).run();
+    }
+
+    private static String resultFile(String profile) {
+        String file = System.getProperty("bench.result");
+        if (file == null || file.trim().isEmpty()) {
+            String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+            file = "target/jmh/" + profile + "-" + time + ".json";
+        }
+        File parent = new File(file).getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IllegalStateException("can't create directory " + parent);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.bench;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/** 30 列的数据, 跟订单、商品导出时的宽度差不多 */
+@Data
+public class BenchRow {
+
+    private Long id;
+    private String orderNo;
+    private Long userId;
+    private String userName;
+    private String nickName;
+    private String phone;
+    private String email;
+    private String idCard;
+    private Integer status;
+    private Integer type;
+
+    private BigDecimal price;
+    private BigDecimal discount;
+    private BigDecimal freight;
+    private BigDecimal payAmount;
+    private Integer num;
+    private Long productId;
+    private String productName;
+    private String productSku;
+    private String productImage;
+    private String remark;
+
+    private String province;
+    private String city;
+    private String area;
+    private String address;
+    private String receiver;
+    private String receiverPhone;
+    private Boolean paid;
+    private Date payTime;
+    private Date createTime;
+    private Date updateTime;
+
+    public static BenchRow of(long i) {
+        BenchRow row = new BenchRow();
+        row.setId(i);
+        row.setOrderNo("D23101812304501" + (10000000 + i));
+        row.setUserId(100000 + i);
+        row.setUserName("user_" + i);
+        row.setNickName("昵称 " + i);
+        row.setPhone("1380013" + (1000 + i % 9000));
+        row.setEmail("user" + i + "@example.com");
+        row.setIdCard("11010119900307" + (1000 + i % 9000));
+        row.setStatus((int) (i % 5));
+        row.setType((int) (i % 3));
+
+        row.setPrice(new BigDecimal("199.90"));
+        row.setDiscount(new BigDecimal("10.00"));
+        row.setFreight(BigDecimal.ZERO);
+        row.setPayAmount(new BigDecimal("189.90"));
+        row.setNum((int) (i % 10) + 1);
+        row.setProductId(5000 + i % 100);
+        row.setProductName("商品, 名称 \"" + i + "\"");
+        row.setProductSku("SKU-" + i % 100);
+        row.setProductImage("https://img.example.com/product/" + i % 100 + ".jpg");
+        row.setRemark((i % 7 == 0) ? "请尽快发货\n谢谢" : null);
+
+        row.setProvince("广东省");
+        row.setCity("深圳市");
+        row.setArea("南山区");
+        row.setAddress("科技园 " + i + " 号");
+        row.setReceiver("收货人 " + i);
+        row.setReceiverPhone("1390013" + (1000 + i % 9000));
+        row.setPaid(i % 2 == 0);
+        row.setPayTime(new Date(1697603445000L + i * 1000));
+        row.setCreateTime(new Date(1697603445000L + i * 1000));
+        row.setUpdateTime(new Date(1697603445000L + i * 1000));
+        return row;
+    }
+}
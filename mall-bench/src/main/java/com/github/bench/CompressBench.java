@@ -0,0 +1,54 @@
+package com.github.bench;
+
+import com.github.common.json.JsonUtil;
+import com.github.common.util.Compressor;
+import com.github.common.util.U;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** U.compress(gzip + base64) 和 Compressor.html(页面压缩成一行) */
+@State(Scope.Benchmark)
+public class CompressBench {
+
+    private String json;
+    private String compressed;
+    private String html;
+
+    @Setup
+    public void setup() {
+        List<BenchRow> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(BenchRow.of(i));
+        }
+        json = JsonUtil.toJson(rows);
+        compressed = U.compress(json);
+
+        StringBuilder sbd = new StringBuilder();
+        sbd.append("<!DOCTYPE html>\n<html>\n<head>\n  <!-- head -->\n  <title>bench</title>\n")
+                .append("  <script>\n    // comment\n    var url = 'http://example.com/a'; /* block */\n  </script>\n")
+                .append("</head>\n<body>\n");
+        for (int i = 0; i < 50; i++) {
+            sbd.append("  <div class=\"row\">\n    <!-- row ").append(i).append(" -->\n")
+                    .append("    <span>").append(i).append("</span>    <span>  商品 ").append(i).append("  </span>\n  </div>\n");
+        }
+        sbd.append("  <pre>\n  keep   this\n  </pre>\n  <textarea>\n a  b \n</textarea>\n</body>\n</html>\n");
+        html = sbd.toString();
+    }
+
+    @Benchmark
+    public String compress() {
+        return U.compress(json);
+    }
+
+    @Benchmark
+    public String decompress() {
+        return U.decompress(compressed);
+    }
+
+    @Benchmark
+    public String html() {
+        return Compressor.html(html);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.bench;
+
+import com.github.common.date.DateFormatType;
+import com.github.common.date.DateUtil;
+import org.joda.time.format.DateTimeFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 日期的格式化和解析. parse(String) 按字符串的形状直接找格式, 每种格式的耗时应该差不多,
+ * tryEach 是原来按 DateFormatType 一个一个试的方式, 越靠后的格式越慢
+ */
+@State(Scope.Benchmark)
+public class DateBench {
+
+    private Date date;
+    private LocalDateTime time;
+
+    @Setup
+    public void setup() {
+        date = new Date(1697603445123L);
+        time = DateUtil.toLocalDateTime(date);
+    }
+
+    /** 每种格式的字符串, 不写值时 jmh 会用所有的枚举 */
+    @State(Scope.Benchmark)
+    public static class Source {
+        @Param
+        public DateFormatType type;
+
+        public String text;
+
+        @Setup
+        public void setup() {
+            text = DateUtil.format(new Date(1697603445123L), type);
+        }
+    }
+
+    @Benchmark
+    public String formatDateTime() {
+        return DateUtil.formatDateTime(date);
+    }
+
+    @Benchmark
+    public String formatPattern() {
+        return DateUtil.format(date, DateFormatType.YYYYMMDDHHMMSSSSS);
+    }
+
+    @Benchmark
+    public String formatLocalDateTime() {
+        return DateUtil.format(time, DateFormatType.YYYY_MM_DD_HH_MM_SS);
+    }
+
+    @Benchmark
+    public Date parseWithType() {
+        return DateUtil.parse("2023-10-18 12:30:45", DateFormatType.YYYY_MM_DD_HH_MM_SS);
+    }
+
+    @Benchmark
+    public Date parse(Source source) {
+        return DateUtil.parse(source.text);
+    }
+
+    @Benchmark
+    public LocalDateTime parseLocalDateTime(Source source) {
+        return DateUtil.parseLocalDateTime(source.text);
+    }
+
+    @Benchmark
+    public Date tryEach(Source source) {
+        for (DateFormatType type : DateFormatType.values()) {
+            try {
+                if (type.isCst()) {
+                    return new SimpleDateFormat(type.getValue(), Locale.ENGLISH).parse(source.text);
+                }
+                return DateTimeFormat.forPattern(type.getValue()).parseDateTime(source.text).toDate();
+            } catch (ParseException | IllegalArgumentException ignore) {
+            }
+        }
+        return null;
+    }
+}
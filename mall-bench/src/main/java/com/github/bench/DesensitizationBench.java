@@ -0,0 +1,28 @@
+package com.github.bench;
+
+import com.github.common.util.DesensitizationUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** 脱敏, 打日志和返回数据时每个敏感字段都会调用 */
+public class DesensitizationBench {
+
+    @Benchmark
+    public String phone() {
+        return DesensitizationUtil.desKey("phone", "13800138000");
+    }
+
+    @Benchmark
+    public String idCard() {
+        return DesensitizationUtil.desKey("idCard", "110101199003071234");
+    }
+
+    @Benchmark
+    public String password() {
+        return DesensitizationUtil.desKey("password", "123456");
+    }
+
+    @Benchmark
+    public String string() {
+        return DesensitizationUtil.desString("广东省深圳市南山区科技园", 3, 3);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.bench;
+
+import com.github.common.encrypt.Encrypt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** 每次请求都会用到的 jwt(登录信息), 以及 aes 和摘要 */
+@State(Scope.Benchmark)
+public class EncryptBench {
+
+    private Map<String, Object> session;
+    private String token;
+    private String text;
+    private String aes;
+
+    @Setup
+    public void setup() {
+        session = new HashMap<>();
+        session.put("id", 123456L);
+        session.put("userName", "user_123456");
+        session.put("permissions", "order:list,order:export,product:*");
+        token = Encrypt.jwtEncode(new HashMap<>(session), 1, TimeUnit.DAYS);
+        text = "{\"id\":123456,\"userName\":\"user_123456\",\"phone\":\"13800138000\"}";
+        aes = Encrypt.aesEncode(text);
+    }
+
+    @Benchmark
+    public String jwtEncode() {
+        return Encrypt.jwtEncode(new HashMap<>(session), 1, TimeUnit.DAYS);
+    }
+
+    @Benchmark
+    public Map<String, Object> jwtDecode() {
+        return Encrypt.jwtDecode(token);
+    }
+
+    @Benchmark
+    public String aesEncode() {
+        return Encrypt.aesEncode(text);
+    }
+
+    @Benchmark
+    public String aesDecode() {
+        return Encrypt.aesDecode(aes);
+    }
+
+    @Benchmark
+    public String md5() {
+        return Encrypt.toMd5(text);
+    }
+
+    @Benchmark
+    public String sha256() {
+        return Encrypt.toSha256(text);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.bench;
+
+import com.github.common.export.csv.ExportCsv;
+import com.github.common.util.BeanAccessor;
+import com.github.common.util.U;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/** 30 列的数据导出 csv, 以及每一格取值(U.getFieldMethod)和直接用 BeanAccessor 取值的对比 */
+@State(Scope.Benchmark)
+public class ExportBench {
+
+    @Param({ "1000" })
+    private int size;
+
+    private LinkedHashMap<String, String> titleMap;
+    private List<BenchRow> rows;
+
+    @Setup
+    public void setup() {
+        titleMap = new LinkedHashMap<>();
+        for (String property : BeanAccessor.of(BenchRow.class).properties()) {
+            titleMap.put(property, property);
+        }
+        rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            rows.add(BenchRow.of(i));
+        }
+    }
+
+    @Benchmark
+    public String csvContent() {
+        return ExportCsv.getContent(titleMap, rows);
+    }
+
+    @Benchmark
+    public void csvStream(Blackhole blackhole) throws IOException {
+        ExportCsv.write(titleMap, rows.iterator(), new BlackholeStream(blackhole));
+    }
+
+    @Benchmark
+    public void getFieldMethod(Blackhole blackhole) {
+        for (BenchRow row : rows) {
+            for (String title : titleMap.keySet()) {
+                blackhole.consume(U.getFieldMethod(row, title));
+            }
+        }
+    }
+
+    @Benchmark
+    public void beanAccessor(Blackhole blackhole) {
+        BeanAccessor accessor = BeanAccessor.of(BenchRow.class);
+        for (BenchRow row : rows) {
+            for (String title : titleMap.keySet()) {
+                blackhole.consume(accessor.get(row, title));
+            }
+        }
+    }
+
+    private static class BlackholeStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        private BlackholeStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.bench;
+
+import com.github.global.config.FeignTransport;
+import feign.Feign;
+import feign.Param;
+import feign.RequestLine;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.http2.Http2Protocol;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.Collections;
+
+/** 本地的 tomcat(支持 h2c)上 16 个线程并发调用, 对比 feign 不同的底层连接, 配置项见 FeignTransport */
+@State(Scope.Benchmark)
+@Threads(16)
+public class FeignTransportBench {
+
+    @org.openjdk.jmh.annotations.Param({ "jdk", "httpclient", "okhttp", "okhttp-h2c" })
+    private String type;
+
+    private Tomcat tomcat;
+    private FeignTransport transport;
+    private EchoClient echo;
+
+    public interface EchoClient {
+        @RequestLine("GET /echo?n={n}")
+        String echo(@Param("n") int n);
+    }
+
+    private static class EchoServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentType("text/plain");
+            response.getWriter().write(request.getParameter("n") + "," + request.getProtocol());
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("feign-bench").toString());
+        tomcat.setPort(0);
+        // 不走 tls 的 http/2(h2c), 跟 server.http2.enabled = true 一样
+        tomcat.getConnector().addUpgradeProtocol(new Http2Protocol());
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "echo", new EchoServlet());
+        context.addServletMappingDecoded("/echo", "echo");
+        tomcat.start();
+        String url = "http://127.0.0.1:" + tomcat.getConnector().getLocalPort();
+
+        // 不启动 spring, 直接设置 FeignTransport 上 @Value 的字段, 值是配置的默认值
+        transport = new FeignTransport();
+        set("type", type.replace("-h2c", ""));
+        set("h2c", type.endsWith("-h2c"));
+        set("maxConnections", 200);
+        set("maxConnectionsPerRoute", 50);
+        set("serviceMaxConnections", Collections.emptyMap());
+        set("keepAliveMs", 60000L);
+        set("connectionTtlMs", -1L);
+        echo = Feign.builder().client(transport.client()).target(EchoClient.class, url);
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = FeignTransport.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(transport, value);
+    }
+
+    @TearDown
+    public void tearDown() throws LifecycleException {
+        System.out.println(transport.stats());
+        transport.close();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @Benchmark
+    public String echo() {
+        return echo.echo(1);
+    }
+}
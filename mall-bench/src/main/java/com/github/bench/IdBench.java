@@ -0,0 +1,31 @@
+package com.github.bench;
+
+import com.github.common.util.NoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Threads;
+
+/** 单号和 id 的生成, 单线程和多线程争用同一个生成器 */
+public class IdBench {
+
+    @Benchmark
+    public long nextId() {
+        return NoUtil.nextId();
+    }
+
+    @Benchmark
+    public String orderNo() {
+        return NoUtil.getOrderNo();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdContended() {
+        return NoUtil.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String orderNoContended() {
+        return NoUtil.getOrderNo();
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.bench;
+
+import com.github.common.json.JsonUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** json 序列化、反序列化, 以及 convert 系列经过 json 字符串和不经过(buffer)的对比 */
+@State(Scope.Benchmark)
+public class JsonBench {
+
+    private BenchRow row;
+    private List<BenchRow> rows;
+    private String json;
+    private String listJson;
+
+    @Setup
+    public void setup() {
+        row = BenchRow.of(1);
+        rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(BenchRow.of(i));
+        }
+        json = JsonUtil.toJson(row);
+        listJson = JsonUtil.toJson(rows);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtil.toJson(row);
+    }
+
+    @Benchmark
+    public BenchRow toObject() {
+        return JsonUtil.toObject(json, BenchRow.class);
+    }
+
+    @Benchmark
+    public List<BenchRow> toList() {
+        return JsonUtil.toList(listJson, BenchRow.class);
+    }
+
+    @Benchmark
+    public BenchRow convert(ConvertMode mode) {
+        return JsonUtil.convert(row, BenchRow.class);
+    }
+
+    @Benchmark
+    public List<BenchRow> convertList(ConvertMode mode) {
+        return JsonUtil.convertList(rows, BenchRow.class);
+    }
+
+    /** 只有 convert 系列的方法需要对比两种方式 */
+    @State(Scope.Benchmark)
+    public static class ConvertMode {
+        @Param({ "true", "false" })
+        private boolean convertWithBuffer;
+
+        @Setup
+        public void setup() {
+            JsonUtil.setConvertWithBuffer(convertWithBuffer);
+        }
+        @TearDown
+        public void tearDown() {
+            JsonUtil.setConvertWithBuffer(false);
+        }
+    }
+}
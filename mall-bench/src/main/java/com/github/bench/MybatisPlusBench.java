@@ -0,0 +1,21 @@
+package com.github.bench;
+
+import com.github.common.sql.MybatisPlusUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+
+/** lambda 字段转列名, 每个 lambda 查询都会调用 */
+public class MybatisPlusBench {
+
+    @Benchmark
+    public String fieldToColumn() {
+        return MybatisPlusUtil.fieldToColumn(BenchRow::getUserName);
+    }
+
+    @Benchmark
+    public List<String> fieldsToColumnList() {
+        return MybatisPlusUtil.fieldsToColumnList(BenchRow::getId, BenchRow::getOrderNo, BenchRow::getUserId,
+                BenchRow::getStatus, BenchRow::getCreateTime);
+    }
+}
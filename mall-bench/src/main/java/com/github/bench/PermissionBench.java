@@ -0,0 +1,79 @@
+package com.github.bench;
+
+import com.github.common.mvc.PermissionMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** 每个角色有几千个权限时, 原来的逐个比较跟编译好的前缀树比较, 要找的权限在最后面或者没有权限时最慢 */
+@State(Scope.Benchmark)
+public class PermissionBench {
+
+    @Param({ "100", "2000", "10000" })
+    public int size;
+
+    private final List<String[]> permissions = new ArrayList<>();
+    private PermissionMatcher matcher;
+    private String last;
+
+    @Setup
+    public void setup() {
+        permissions.clear();
+        matcher = new PermissionMatcher();
+        for (int i = 0; i < size; i++) {
+            String url;
+            String method;
+            if (i % 10 == 0) {
+                url = "/module" + (i % 50) + "/resource" + i + "/*";
+                method = "*";
+            } else {
+                url = "/module" + (i % 50) + "/resource" + i + "/detail";
+                method = "GET,POST";
+            }
+            permissions.add(new String[] { url, method });
+            matcher.add(url, method);
+        }
+        last = "/module" + ((size - 1) % 50) + "/resource" + (size - 1) + "/detail";
+    }
+
+    /** 原来 ManagerSessionModel.wasPermission 的方式 */
+    private boolean linear(String url, String method) {
+        for (String[] permission : permissions) {
+            String permissionUrl = permission[0];
+            String permissionMethod = permission[1];
+            boolean matchUrl = permissionUrl.endsWith("/*") && url.startsWith(permissionUrl.replace("*", ""));
+            boolean urlCheck = matchUrl || url.equals(permissionUrl);
+            boolean methodCheck = (("*").equals(permissionMethod) || permissionMethod.contains(method));
+            if (urlCheck && methodCheck) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean linearLast() {
+        return linear(last, "GET");
+    }
+
+    @Benchmark
+    public boolean linearMiss() {
+        return linear("/module1/none/detail", "GET");
+    }
+
+    @Benchmark
+    public boolean trieLast() {
+        return matcher.matches(last, "GET");
+    }
+
+    @Benchmark
+    public boolean trieMiss() {
+        return matcher.matches("/module1/none/detail", "GET");
+    }
+
+    @Benchmark
+    public boolean trieWildcard() {
+        return matcher.matches("/module0/resource0/a/b", "DELETE");
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.bench;
+
+import com.github.common.page.Pages;
+import com.github.common.page.Seek;
+import com.github.common.sql.SeekInterceptor;
+import lombok.Data;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.*;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+
+/** 两百万行的表翻到最后几页: LIMIT offset 要扫过前面所有的行, 游标分页直接从索引上定位 */
+@State(Scope.Benchmark)
+public class SeekBench {
+
+    private static final int LIMIT = 20;
+
+    @org.openjdk.jmh.annotations.Param({ "2000000" })
+    private int rows;
+
+    private Connection keepAlive;
+    private SqlSessionFactory factory;
+    private long offset;
+    private String cursor;
+
+    @Data
+    public static class Row {
+        private Long id;
+        private Long userId;
+        private BigDecimal amount;
+        private Date createTime;
+    }
+
+    public interface OrderMapper {
+        String COLUMNS = "SELECT id, user_id, amount, create_time FROM t_order";
+
+        @Select(COLUMNS + " WHERE user_id < #{maxUser}")
+        List<Row> seek(@Param("maxUser") long maxUser, @Param("seek") Seek<Row> seek);
+
+        @Select(COLUMNS + " WHERE user_id < #{maxUser} ORDER BY create_time DESC, id DESC LIMIT #{limit} OFFSET #{offset}")
+        List<Row> offsetByTime(@Param("maxUser") long maxUser, @Param("limit") int limit, @Param("offset") long offset);
+    }
+
+    private static Seek<Row> byTime() {
+        return Seek.byDesc("create_time", Row::getCreateTime).desc("id", Row::getId);
+    }
+
+    @Setup
+    public void setup() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // 关掉 h2 的查询缓存, 每次都真正去查
+        dataSource.setURL("jdbc:h2:mem:seek-bench;MODE=MySQL;QUERY_CACHE_SIZE=0");
+        keepAlive = dataSource.getConnection();
+        try (java.sql.Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE t_order(id BIGINT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                    + "amount DECIMAL(12,2) NOT NULL, create_time TIMESTAMP NOT NULL)");
+            statement.execute("INSERT INTO t_order SELECT X, MOD(X, 100), X / 100.0, "
+                    + "DATEADD('SECOND', X / 3, TIMESTAMP '2023-01-01 00:00:00') FROM SYSTEM_RANGE(1, " + rows + ")");
+            statement.execute("CREATE INDEX idx_time_id ON t_order(create_time, id)");
+        }
+
+        Configuration configuration = new Configuration(new Environment("bench", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.addInterceptor(new SeekInterceptor());
+        configuration.addMapper(OrderMapper.class);
+        factory = new SqlSessionFactoryBuilder().build(configuration);
+
+        // 倒数第 10 万行开始的一页, 游标是前一行
+        offset = rows - 100_000;
+        try (SqlSession session = factory.openSession()) {
+            Row last = session.getMapper(OrderMapper.class).offsetByTime(100, 1, offset - 1).get(0);
+            cursor = byTime().nextCursor(last);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public List<Row> offset() {
+        try (SqlSession session = factory.openSession()) {
+            return session.getMapper(OrderMapper.class).offsetByTime(100, LIMIT, offset);
+        }
+    }
+
+    @Benchmark
+    public List<Row> seek() {
+        try (SqlSession session = factory.openSession()) {
+            Seek<Row> seek = byTime().limit(LIMIT).cursor(cursor);
+            return Pages.returnSeek(seek, session.getMapper(OrderMapper.class).seek(100, seek)).getList();
+        }
+    }
+}
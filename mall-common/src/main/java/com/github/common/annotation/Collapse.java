@@ -0,0 +1,33 @@
+package com.github.common.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * <pre>
+ * 标在 FeignClient 只有一个参数(key)的查询方法上, 短时间内多个线程的调用合并成一次批量调用, 如
+ *
+ * &#064;Collapse(batch = "listByIds")
+ * &#064;GetMapping("/user/info")
+ * User info(&#064;RequestParam("id") Long id);
+ *
+ * &#064;GetMapping("/user/list-by-ids")
+ * Map&lt;Long, User&gt; listByIds(&#064;RequestParam("ids") List&lt;Long&gt; ids);
+ *
+ * 批量方法的参数是 key 的集合(List、Set 或 Collection), 返回 key ==&gt; 值 的 Map, 没有的 key 返回 null.
+ * 批量调用出错时各个调用方用原来的方法单独调用, 一个 key 的错误不会影响到其他的 key
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Collapse {
+
+    /** 同一个接口中批量方法的名字 */
+    String batch();
+
+    /** 第一个调用进来后等待合并的毫秒数, 小于 0 时用 feign.collapse.windowMs 的值 */
+    long windowMs() default -1;
+
+    /** 一次批量调用最多的 key 数, 到了之后不再等待, 小于等于 0 时用 feign.collapse.maxSize 的值 */
+    int maxSize() default -1;
+}
@@ -0,0 +1,25 @@
+package com.github.common.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * <pre>
+ * 标在 FeignClient 的 GET 方法上, 调用方在内存中缓存响应(只缓存 2xx 的响应):
+ *   响应头有 Cache-Control 时以它为准(no-store、private 不缓存, no-cache 每次都验证, max-age 是缓存的秒数),
+ *   没有时缓存 {@link #maxAgeSeconds()} 秒. 过期后有 ETag 的用 If-None-Match 去验证, 服务端返回 304 时继续使用缓存
+ *
+ * 缓存的 key 是 url 加上 feign.cache.headers 和 {@link #headers()} 中的请求头, 所以只用在跟当前用户无关的数据上,
+ * 如 枚举、类目树、商品详情等
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface HttpCache {
+
+    /** 响应头中没有 Cache-Control 时缓存的秒数, 0 表示每次都要验证 */
+    long maxAgeSeconds() default 60;
+
+    /** 除了 feign.cache.headers 之外, 还要放进缓存 key 的请求头 */
+    String[] headers() default {};
+}
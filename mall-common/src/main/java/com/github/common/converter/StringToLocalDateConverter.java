@@ -0,0 +1,20 @@
+package com.github.common.converter;
+
+import com.github.common.date.DateFormatType;
+import com.github.common.date.DateUtil;
+import org.springframework.core.convert.converter.Converter;
+
+import java.time.LocalDate;
+
+/**
+ * 字符串转换为 java.time 的日期, 支持的格式同 {@link StringToDateConverter}, 有时间时只取日期部分
+ *
+ * @see DateFormatType
+ */
+public class StringToLocalDateConverter implements Converter<String, LocalDate> {
+
+    @Override
+    public LocalDate convert(String source) {
+        return DateUtil.parseLocalDate(source);
+    }
+}
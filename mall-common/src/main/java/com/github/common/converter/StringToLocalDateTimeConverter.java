@@ -0,0 +1,20 @@
+package com.github.common.converter;
+
+import com.github.common.date.DateFormatType;
+import com.github.common.date.DateUtil;
+import org.springframework.core.convert.converter.Converter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 字符串转换为 java.time 的时间, 支持的格式同 {@link StringToDateConverter}, 当没有匹配时返回 null 而不是抛出异常
+ *
+ * @see DateFormatType
+ */
+public class StringToLocalDateTimeConverter implements Converter<String, LocalDateTime> {
+
+    @Override
+    public LocalDateTime convert(String source) {
+        return DateUtil.parseLocalDateTime(source);
+    }
+}
@@ -1,5 +1,14 @@
 package com.github.common.date;
 
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.TextStyle;
+import java.util.Collections;
+import java.util.Locale;
+
 /** 日期的格式化类型 */
 public enum DateFormatType {
 
@@ -74,10 +83,30 @@ public enum DateFormatType {
     CST("EEE MMM dd HH:mm:ss zzz yyyy");
 
     private final String value;
-    DateFormatType(String value) { this.value = value; }
+    /** 预先编译好的格式, 不用每次格式化或解析时再去生成 */
+    private final DateTimeFormatter formatter;
+    /** java.time 用的格式 */
+    private final java.time.format.DateTimeFormatter timeFormatter;
+
+    DateFormatType(String value) {
+        this.value = value;
+        this.formatter = DateTimeFormat.forPattern(value);
+        this.timeFormatter = value.contains("zzz") ? cstFormatter() : java.time.format.DateTimeFormatter.ofPattern(value);
+    }
     public String getValue() { return value; }
+    public DateTimeFormatter getFormatter() { return formatter; }
+    public java.time.format.DateTimeFormatter getTimeFormatter() { return timeFormatter; }
 
     public boolean isCst() {
         return this == CST;
     }
+
+    /** 跟 SimpleDateFormat 一样, CST 这种有多个时区的简称优先用当前时区来解析, 生成的格式是线程安全的 */
+    private static java.time.format.DateTimeFormatter cstFormatter() {
+        return new DateTimeFormatterBuilder()
+                .appendPattern("EEE MMM dd HH:mm:ss ")
+                .appendZoneText(TextStyle.SHORT, Collections.singleton(ZoneId.systemDefault()))
+                .appendPattern(" yyyy")
+                .toFormatter(Locale.ENGLISH);
+    }
 }
@@ -0,0 +1,259 @@
+package com.github.common.date;
+
+import org.joda.time.DateTime;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 按字符串的形状解析日期, 不用把 DateFormatType 一个一个拿来试, 也不用异常来判断格式对不对:
+ *   数字段换成 N 之后找对应的格式, 如 2023-10-18 12:30:45 ==&gt; N-N-N N:N:N ==&gt; yyyy-MM-dd HH:mm:ss
+ *   纯数字的按长度找, 如 20231018 ==&gt; yyyyMMdd
+ * 再按位置取出年月日时分秒并校验范围. 跟 joda 的 parse 一致: 有分隔符时月日时分秒是 1 ~ 2 位, 毫秒是 1 ~ 3 位的秒的小数部分
+ *
+ * 同一个形状有多个格式时(如 yyMMddHHmmss 和 yyyyMMddHHmm)按 DateFormatType 中的顺序取第一个合法的
+ * </pre>
+ */
+final class DateParser {
+
+    /** 跟 joda 的 yy 一样, 两位的年份落在 (当前年 - 80, 当前年 + 20] 里 */
+    private static final int TWO_DIGIT_PIVOT = new DateTime().getYear() - 30;
+
+    /** 有分隔符的: 形状 ==&gt; 每个数字段对应的字段(y M d H m s S) */
+    private static final Map<String, String[]> SHAPES = new HashMap<>();
+    /** 纯数字的: 长度 ==&gt; 每一位对应的字段 */
+    private static final Map<Integer, String[]> DIGITS = new HashMap<>();
+    static {
+        SHAPES.put("N-N-N N:N:N", new String[] { "yMdHms" });
+        SHAPES.put("N-N-N N:N", new String[] { "yMdHm" });
+        SHAPES.put("N-N-N", new String[] { "yMd" });
+        SHAPES.put("N-N", new String[] { "yM" });
+        SHAPES.put("N-N-N N:N:N.N", new String[] { "yMdHmsS" });
+        SHAPES.put("N-N-N N:N:N N", new String[] { "yMdHmsS" });
+        SHAPES.put("N:N:N", new String[] { "Hms" });
+        SHAPES.put("N:N", new String[] { "Hm" });
+        SHAPES.put("N-N-NTN:N:N.NZ", new String[] { "yMdHmsS" });
+        SHAPES.put("N-N-NTN:N:N.N", new String[] { "yMdHmsS" });
+        SHAPES.put("N-N-NTN:N:NZ", new String[] { "yMdHms" });
+        SHAPES.put("N-N-NTN:N:N", new String[] { "yMdHms" });
+        SHAPES.put("N/N/N", new String[] { "yMd" });
+        SHAPES.put("N/N/N N:N", new String[] { "yMdHm", "MdyHm" });
+        SHAPES.put("N/N/N N:N:N", new String[] { "yMdHms", "MdyHms" });
+        SHAPES.put("N年N月N日 N时N分N秒", new String[] { "yMdHms" });
+        SHAPES.put("N年N月N日 N点", new String[] { "yMdH" });
+        SHAPES.put("N年N月N日 N点N分", new String[] { "yMdHm" });
+        SHAPES.put("N年N月N日", new String[] { "yMd" });
+
+        DIGITS.put(17, new String[] { "yyyyMMddHHmmssSSS" });
+        DIGITS.put(14, new String[] { "yyyyMMddHHmmss" });
+        DIGITS.put(12, new String[] { "yyMMddHHmmss", "yyyyMMddHHmm" });
+        DIGITS.put(10, new String[] { "yyMMddHHmm" });
+        DIGITS.put(8, new String[] { "yyyyMMdd" });
+        DIGITS.put(6, new String[] { "yyMMdd", "yyyyMM" });
+    }
+    private static final int MAX_GROUP = 8;
+
+    private DateParser() {}
+
+    /** 解析成当前时区的时间, 无法解析时返回 null */
+    static LocalDateTime parse(String source) {
+        int len = source.length();
+        if (len == 0) {
+            return null;
+        }
+        if (allDigit(source)) {
+            String[] layouts = DIGITS.get(len);
+            if (layouts != null) {
+                for (String layout : layouts) {
+                    LocalDateTime time = fixed(source, layout);
+                    if (time != null) {
+                        return time;
+                    }
+                }
+            }
+            return null;
+        }
+
+        int[] starts = new int[MAX_GROUP];
+        int[] lengths = new int[MAX_GROUP];
+        int count = 0;
+        StringBuilder shape = new StringBuilder(len);
+        for (int i = 0; i < len; ) {
+            char c = source.charAt(i);
+            if (isDigit(c)) {
+                if (count == MAX_GROUP) {
+                    return null;
+                }
+                int start = i;
+                while (i < len && isDigit(source.charAt(i))) {
+                    i++;
+                }
+                starts[count] = start;
+                lengths[count++] = i - start;
+                shape.append('N');
+            } else if (isLetter(c)) {
+                int start = i;
+                while (i < len && isLetter(source.charAt(i))) {
+                    i++;
+                }
+                // 单个字母(T Z)跟 joda 一样不区分大小写, 多个字母(星期、月份、时区、AM/PM)的只看形状
+                shape.append(i - start == 1 ? Character.toUpperCase(c) : 'A');
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+
+        String key = shape.toString();
+        String[] layouts = SHAPES.get(key);
+        if (layouts != null) {
+            for (String layout : layouts) {
+                LocalDateTime time = grouped(source, starts, lengths, count, layout);
+                if (time != null) {
+                    return time;
+                }
+            }
+            return null;
+        }
+        // 下面两种跟语言和时区有关, 形状对上了才用格式去解析
+        if (key.startsWith("A A N N:N:N ")) {
+            return cst(source);
+        }
+        if (key.startsWith("N-N-N ") && count == 3) {
+            return halfDay(source);
+        }
+        return null;
+    }
+
+    /** 纯数字, 每个字段的位数是固定的 */
+    private static LocalDateTime fixed(String source, String layout) {
+        int[] fields = defaultFields();
+        int i = 0;
+        while (i < layout.length()) {
+            char field = layout.charAt(i);
+            int start = i;
+            while (i < layout.length() && layout.charAt(i) == field) {
+                i++;
+            }
+            int value = number(source, start, i - start);
+            if (field == 'y' && i - start == 2) {
+                value = twoDigitYear(value);
+            }
+            fields[index(field)] = value;
+        }
+        return build(fields);
+    }
+
+    /** 有分隔符, 每个数字段是一个字段 */
+    private static LocalDateTime grouped(String source, int[] starts, int[] lengths, int count, String layout) {
+        if (layout.length() != count) {
+            return null;
+        }
+        int[] fields = defaultFields();
+        for (int i = 0; i < count; i++) {
+            char field = layout.charAt(i);
+            int length = lengths[i];
+            if (length > maxDigits(field)) {
+                return null;
+            }
+            if (field == 'S') {
+                // 秒的小数部分: .1 是 100 毫秒, .12 是 120 毫秒
+                int ms = number(source, starts[i], length);
+                for (int j = length; j < 3; j++) {
+                    ms *= 10;
+                }
+                fields[index(field)] = ms;
+            } else {
+                fields[index(field)] = number(source, starts[i], length);
+            }
+        }
+        return build(fields);
+    }
+
+    private static LocalDateTime cst(String source) {
+        try {
+            ZonedDateTime time = ZonedDateTime.parse(source, DateFormatType.CST.getTimeFormatter());
+            return time.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime halfDay(String source) {
+        try {
+            DateTime time = DateFormatType.YYYY_MM_DD_AP.getFormatter().parseDateTime(source);
+            return LocalDateTime.ofInstant(time.toDate().toInstant(), ZoneId.systemDefault());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int[] defaultFields() {
+        // 没有的字段跟 joda 一样从 1970-01-01 00:00:00 000 开始
+        return new int[] { 1970, 1, 1, 0, 0, 0, 0 };
+    }
+    private static int index(char field) {
+        switch (field) {
+            case 'y': return 0;
+            case 'M': return 1;
+            case 'd': return 2;
+            case 'H': return 3;
+            case 'm': return 4;
+            case 's': return 5;
+            default: return 6;
+        }
+    }
+
+    private static int maxDigits(char field) {
+        switch (field) {
+            case 'y': return 9;
+            case 'S': return 3;
+            default: return 2;
+        }
+    }
+
+    private static LocalDateTime build(int[] fields) {
+        int year = fields[0], month = fields[1], day = fields[2];
+        int hour = fields[3], minute = fields[4], second = fields[5], ms = fields[6];
+        if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, ms * 1_000_000);
+    }
+
+    private static int twoDigitYear(int year) {
+        int low = TWO_DIGIT_PIVOT - 50;
+        int t = (low >= 0) ? (low % 100) : (99 + ((low + 1) % 100));
+        return year + low + ((year < t) ? 100 : 0) - t;
+    }
+
+    private static int number(String source, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = value * 10 + (source.charAt(i) - '0');
+        }
+        return value;
+    }
+    private static boolean allDigit(String source) {
+        for (int i = 0; i < source.length(); i++) {
+            if (!isDigit(source.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
@@ -5,11 +5,13 @@ import org.joda.time.DateTime;
 import org.joda.time.Days;
 import org.joda.time.Seconds;
 import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.*;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DateUtil {
 
@@ -19,6 +21,9 @@ public class DateUtil {
     private static final long DAY = 24 * HOUR;
     private static final long YEAR = 365 * DAY;
 
+    /** 不在 DateFormatType 中的格式, 生成一次之后缓存起来 */
+    private static final Map<String, DateTimeFormatter> PATTERN_FORMATTERS = new ConcurrentHashMap<>();
+
     /** 当前时间 */
     public static Date now() {
         return new Date();
@@ -59,61 +64,90 @@ public class DateUtil {
 
     /** 格式化日期对象成字符串 */
     public static String format(Date date, DateFormatType type) {
-        return (U.isNull(date) || U.isNull(type)) ? U.EMPTY : format(date, type.getValue());
+        return (U.isNull(date) || U.isNull(type)) ? U.EMPTY : type.getFormatter().print(date.getTime());
     }
 
     public static String format(Date date, String type) {
-        return (U.isNull(date) || U.isNull(type)) ? U.EMPTY : DateTimeFormat.forPattern(type).print(date.getTime());
+        return (U.isNull(date) || U.isNull(type)) ? U.EMPTY : formatter(type).print(date.getTime());
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return PATTERN_FORMATTERS.computeIfAbsent(pattern, DateTimeFormat::forPattern);
+    }
+
+    /** 格式化 java.time 的日期和时间 */
+    public static String format(LocalDateTime time, DateFormatType type) {
+        if (U.isNull(time) || U.isNull(type)) {
+            return U.EMPTY;
+        }
+        // 格式里有时区时用当前时区
+        return type.isCst() ? type.getTimeFormatter().format(time.atZone(ZoneId.systemDefault()))
+                : type.getTimeFormatter().format(time);
+    }
+    /** 格式化 java.time 的日期, 格式里有时间时当成 00:00:00 */
+    public static String format(LocalDate date, DateFormatType type) {
+        return U.isNull(date) ? U.EMPTY : format(date.atStartOfDay(), type);
     }
 
     /**
-     * 将字符串转换成 Date 对象. 类型基于 DateFormatType 一个一个试. cst 格式麻烦一点
+     * 将字符串转换成 Date 对象. 按字符串的形状(长度和分隔符)直接找到对应的格式, 不用一个一个试, 无法解析时返回 null
      *
      * @see DateFormatType
+     * @see DateParser
      */
     public static Date parse(String source) {
-        if (U.isNotNull(source)) {
-            for (DateFormatType type : DateFormatType.values()) {
-                Date date = parse(source, type);
-                if (U.isNotNull(date)) {
-                    return date;
-                }
-            }
+        return toDate(parseLocalDateTime(source));
+    }
+    /** 同 {@link #parse(String)}, 返回 java.time 的时间(当前时区) */
+    public static LocalDateTime parseLocalDateTime(String source) {
+        if (U.isNull(source)) {
+            return null;
         }
-        return null;
+        return DateParser.parse(source.trim());
     }
+    /** 同 {@link #parse(String)}, 只返回日期部分 */
+    public static LocalDate parseLocalDate(String source) {
+        LocalDateTime time = parseLocalDateTime(source);
+        return U.isNull(time) ? null : time.toLocalDate();
+    }
+
     public static Date parse(String source, DateFormatType type) {
-        if (U.isNotNull(source)) {
+        if (U.isNotNull(source) && U.isNotNull(type)) {
             source = source.trim();
-            try {
-                Date date;
-                if (type.isCst()) {
-                    // cst 单独处理
-                    date = new SimpleDateFormat(type.getValue(), Locale.ENGLISH).parse(source);
-                } else {
-                    date = parse(source, type.getValue());
-                }
-                if (date != null) {
-                    return date;
+            if (type.isCst()) {
+                // cst 单独处理
+                try {
+                    return Date.from(ZonedDateTime.parse(source, type.getTimeFormatter()).toInstant());
+                } catch (DateTimeParseException ignore) {
+                    return null;
                 }
-            } catch (ParseException | IllegalArgumentException ignore) {
             }
+            return parse(source, type.getFormatter());
         }
         return null;
     }
     public static Date parse(String source, String type) {
-        if (U.isNotNull(source)) {
-            source = source.trim();
-            try {
-                Date date = DateTimeFormat.forPattern(type).parseDateTime(source).toDate();
-                if (date != null) {
-                    return date;
-                }
-            } catch (IllegalArgumentException ignore) {
-            }
+        if (U.isNotNull(source) && U.isNotNull(type)) {
+            return parse(source.trim(), formatter(type));
         }
         return null;
     }
+    private static Date parse(String source, DateTimeFormatter formatter) {
+        try {
+            return formatter.parseDateTime(source).toDate();
+        } catch (IllegalArgumentException ignore) {
+            return null;
+        }
+    }
+
+    /** 当前时区的 java.time 时间 转换成 Date */
+    public static Date toDate(LocalDateTime time) {
+        return U.isNull(time) ? null : Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    /** Date 转换成当前时区的 java.time 时间 */
+    public static LocalDateTime toLocalDateTime(Date date) {
+        return U.isNull(date) ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
 
     /**
      * <pre>
@@ -49,6 +49,9 @@ import java.util.zip.ZipOutputStream;
  *
  * // 如果不想在实体中使用 ExportColumn 注解, 可以自己构建一个 {"字段名": "标题"} 的 map,
  * // 调用 {@link #save(String, String, LinkedHashMap, List, boolean, String)} 即可
+ *
+ * // 数据量很大时, 用 {@link #saveStream(String, String, Iterator, Class, String)} 边查边写,
+ * // 数据来源可以是 mybatis 的 Cursor 或者 {@link PageIterator}
  * </pre>
  */
 public final class FileExport {
@@ -89,6 +92,54 @@ public final class FileExport {
         }
     }
 
+    /**
+     * 流式保存文件, 数据边读边写到文件, 不需要一次查出所有数据
+     *
+     * @param type 文件类型, csv 保存成 csv, 其他都是 xlsx(xls 在写的时候整个 sheet 都在内存中, 流式保存时不支持)
+     * @param name 导出时的文件名
+     * @param dataIterator 导出的数据(mybatis 的 Cursor 或 {@link PageIterator}), 每个字段上有使用 &#064;ExportColumn 注解来说明导出的列名
+     * @param clazz 导出的实体类. 主要用来获取标题头
+     * @param directory 文件保存的目录
+     */
+    public static <T> void saveStream(String type, String name, Iterator<T> dataIterator, Class<T> clazz, String directory) {
+        saveStream(type, name, ExportColumnHandler.collectTitle(clazz), dataIterator, false, directory);
+    }
+
+    /**
+     * 流式保存文件, 数据边读边写到文件, 不需要一次查出所有数据
+     *
+     * @param type 文件类型, csv 保存成 csv, 其他都是 xlsx(xls 在写的时候整个 sheet 都在内存中, 流式保存时不支持)
+     * @param name 导出时的文件名
+     * @param titleMap 标题(key 为英文, value 为标题内容)
+     * @param dataIterator 导出的数据(mybatis 的 Cursor 或 {@link PageIterator}), object 中的属性名与标题中的 key 相对
+     * @param primitivePoi 是否使用原生的 poi 操作(只支持 xlsx), false 则使用 easyExcel 操作
+     * @param directory 文件保存的目录
+     * @return 保存的文件
+     */
+    public static File saveStream(String type, String name, LinkedHashMap<String, String> titleMap,
+                                  Iterator<?> dataIterator, boolean primitivePoi, String directory) {
+        ExportType exportType = ExportType.to(type);
+        String suffix = exportType.isCsv() ? "csv" : "xlsx";
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            // noinspection ResultOfMethodCallIgnored
+            dir.mkdirs();
+        }
+        File file = new File(dir, encodeName(name) + "." + suffix);
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+            if (exportType.isCsv()) {
+                ExportCsv.write(titleMap, dataIterator, output);
+            } else if (primitivePoi) {
+                ExportExcel.write(name, titleMap, dataIterator, output);
+            } else {
+                ExportEasyExcel.write(name, titleMap, dataIterator, output);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("保存文件(%s)到(%s)时异常", file.getName(), directory), e);
+        }
+        return file;
+    }
+
     /**
      * 保存 csv 格式文件, 文件将保存到指定目录
      *
@@ -0,0 +1,58 @@
+package com.github.common.export;
+
+import com.github.common.util.A;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * <pre>
+ * 分页查询的迭代器, 导出时一页一页地查, 内存中只有当前页的数据. 如下示例
+ *
+ * Iterator&lt;XX&gt; iterator = new PageIterator&lt;&gt;(page -&gt; xxService.pageList(..., page, 1000));
+ * WebExport.exportStream(type, "文件名", iterator, XX.class, response);
+ *
+ * 也可以直接用 mybatis 的 Cursor(需要在事务中并且在导出完成后关闭)
+ * try (Cursor&lt;XX&gt; cursor = xxMapper.selectCursor(...)) {
+ *     WebExport.exportStream(type, "文件名", cursor.iterator(), XX.class, response);
+ * }
+ * </pre>
+ */
+public class PageIterator<T> implements Iterator<T> {
+
+    /** 参数是页码(从 1 开始), 返回空则表示没有数据了 */
+    private final IntFunction<List<T>> pageQuery;
+
+    private int page;
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean end;
+
+    public PageIterator(IntFunction<List<T>> pageQuery) {
+        this.pageQuery = pageQuery;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && !end) {
+            page++;
+            List<T> list = pageQuery.apply(page);
+            if (A.isEmpty(list)) {
+                end = true;
+            } else {
+                current = list.iterator();
+            }
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+}
@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -54,6 +55,9 @@ import java.util.List;
  *     // 如果不想在实体中使用 ExportColumn 注解, 可以自己构建一个 {"字段名": "标题"} 的 map,
  *     // 调用 {@link #export(String, String, LinkedHashMap, List, boolean, HttpServletResponse)} 即可
  * }
+ *
+ * 数据量很大时, 用 {@link #exportStream(String, String, Iterator, Class, HttpServletResponse)} 边查边写,
+ * 数据来源可以是 mybatis 的 Cursor 或者 {@link PageIterator}
  * </pre>
  */
 public final class WebExport {
@@ -94,6 +98,46 @@ public final class WebExport {
         }
     }
 
+    /**
+     * 流式导出单 sheet 文件, 数据边读边写到 response, 不需要一次查出所有数据. 在 Controller 中调用!
+     *
+     * @param type csv 表示 csv 格式的文件, 其他都是 xlsx(xls 在写的时候整个 sheet 都在内存中, 流式导出时不支持)
+     * @param name 导出时的文件名
+     * @param dataIterator 导出的数据(mybatis 的 Cursor 或 {@link PageIterator}), 每个字段上有使用 &#064;ExportColumn 注解来说明导出的列名
+     * @param clazz 导出的实体类. 主要用来获取标题头
+     */
+    public static <T> void exportStream(String type, String name, Iterator<T> dataIterator, Class<T> clazz,
+                                        HttpServletResponse response) throws IOException {
+        exportStream(type, name, ExportColumnHandler.collectTitle(clazz), dataIterator, false, response);
+    }
+
+    /**
+     * 流式导出单 sheet 文件, 数据边读边写到 response, 不需要一次查出所有数据. 在 Controller 中调用!
+     *
+     * @param type csv 表示 csv 格式的文件, 其他都是 xlsx(xls 在写的时候整个 sheet 都在内存中, 流式导出时不支持)
+     * @param name 导出时的文件名
+     * @param titleMap 标题(key 为英文, value 为标题内容)
+     * @param dataIterator 导出的数据(mybatis 的 Cursor 或 {@link PageIterator}), object 中的属性名与标题中的 key 相对
+     * @param primitivePoi 是否使用原生的 poi 操作(只支持 xlsx), false 则使用 easyExcel 操作
+     */
+    public static void exportStream(String type, String name, LinkedHashMap<String, String> titleMap, Iterator<?> dataIterator,
+                                    boolean primitivePoi, HttpServletResponse response) throws IOException {
+        ExportType exportType = ExportType.to(type);
+        if (exportType.isCsv()) {
+            String fileName = encodeName(name) + ".csv";
+            typeAndHeader(response, "text/csv", fileName);
+            ExportCsv.write(titleMap, dataIterator, response.getOutputStream());
+        } else {
+            String fileName = encodeName(name) + ".xlsx";
+            typeAndHeader(response, "application/vnd.ms-excel", fileName);
+            if (primitivePoi) {
+                ExportExcel.write(name, titleMap, dataIterator, response.getOutputStream());
+            } else {
+                ExportEasyExcel.write(name, titleMap, dataIterator, response.getOutputStream());
+            }
+        }
+    }
+
     /**
      * 导出 csv 格式文件
      *
@@ -3,10 +3,9 @@ package com.github.common.export.csv;
 import com.github.common.util.A;
 import com.github.common.util.U;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Set;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 public class ExportCsv {
 
@@ -23,6 +22,8 @@ public class ExportCsv {
     private static final String QUOTE = "\"";
     private static final String REPLACE_QUOTE = "\"\"";
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     public static String getContent(LinkedHashMap<String, String> titleMap, List<?> dataList) {
         StringBuilder sbd = new StringBuilder();
         if (A.isNotEmpty(titleMap)) {
@@ -54,6 +55,36 @@ public class ExportCsv {
         return sbd.toString();
     }
 
+    /**
+     * 把标题和数据逐行写到输出流(不会关闭输出流), 写完一行就丢掉一行, 数据再多内存也只有缓冲区的大小
+     *
+     * @param titleMap 标题(key 为英文, value 为标题内容)
+     * @param dataIterator 数据, 可以是 mybatis 的 Cursor 或者分页查询的迭代器
+     */
+    public static void write(LinkedHashMap<String, String> titleMap, Iterator<?> dataIterator,
+                             OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (A.isNotEmpty(titleMap)) {
+            writer.write(writeCsvHead(titleMap));
+            if (U.isNotNull(dataIterator)) {
+                Set<String> titles = titleMap.keySet();
+                while (dataIterator.hasNext()) {
+                    Object data = dataIterator.next();
+                    writer.write(WRAP);
+                    int i = 0;
+                    for (String title : titles) {
+                        writer.write(handleCsvContent(U.getFieldMethod(data, title)));
+                        i++;
+                        if (i != titles.size()) {
+                            writer.write(SPLIT);
+                        }
+                    }
+                }
+            }
+        }
+        writer.flush();
+    }
+
     public static String writeCsvHead(LinkedHashMap<String, String> titleMap) {
         StringBuilder sbd = new StringBuilder();
         if (titleMap != null && titleMap.size() > 0) {
@@ -5,6 +5,7 @@ import com.alibaba.excel.ExcelWriter;
 import com.alibaba.excel.support.ExcelTypeEnum;
 import com.alibaba.excel.write.builder.ExcelWriterSheetBuilder;
 import com.alibaba.excel.write.handler.WriteHandler;
+import com.alibaba.excel.write.metadata.WriteSheet;
 import com.github.common.util.A;
 import com.github.common.util.U;
 
@@ -21,6 +22,9 @@ public class ExportEasyExcel {
     /** 总条数超出这个值后 cell 就不再设置样式 */
     private static final int CELL_STYLE_CROSSOVER = 5_000;
 
+    /** 流式写入时每次交给 easy excel 的行数 */
+    private static final int WRITE_BATCH = 1_000;
+
     private static final WriteHandler FREEZE_TITLE_HANDLER = new FreezeTitleSheetHandler();
 
     private static int getMaxColumn(boolean excel07) {
@@ -191,6 +195,73 @@ public class ExportEasyExcel {
         }
     }
 
+    /**
+     * 流式导出: 从迭代器中每次取 {@link #WRITE_BATCH} 条写入, 只写 xlsx(easy excel 写 xlsx 时底层是 sxssf, 内存中只保留少量的行,
+     * 写 xls 用的 hssf 会把整个 sheet 放在内存里). 一个 sheet 写满后新建一个继续写, 因为事先不知道总条数, 除了第一个 sheet 之外的名字会带上序号
+     *
+     * @param sheetName sheet 名
+     * @param titleMap 标题映射, 跟数据的字段名一一对应
+     * @param dataIterator 数据, 可以是 mybatis 的 Cursor 或者分页查询的迭代器
+     */
+    public static void write(String sheetName, LinkedHashMap<String, String> titleMap,
+                             Iterator<?> dataIterator, OutputStream outputStream) {
+        int maxColumn = getMaxColumn(true);
+        if (A.isNotEmpty(titleMap) && titleMap.size() > maxColumn) {
+            throw new RuntimeException("Invalid column number " + titleMap.size() + ", max: " + maxColumn);
+        }
+        Set<String> fields = A.isEmpty(titleMap) ? Collections.emptySet() : titleMap.keySet();
+        List<List<String>> titles = new ArrayList<>();
+        if (A.isNotEmpty(titleMap)) {
+            for (String value : titleMap.values()) {
+                if (U.isNotBlank(value)) {
+                    titles.add(Collections.singletonList(value));
+                }
+            }
+        }
+        // 总条数未知, 不设置单元格的样式
+        List<WriteHandler> handlerList = Arrays.asList(FREEZE_TITLE_HANDLER, new StyleCellHandler(false));
+
+        int sheetMaxRow = getMaxRow(true) - 1;
+        try (ExcelWriter excelWriter = EasyExcel.write(outputStream).excelType(ExcelTypeEnum.XLSX).build()) {
+            int sheetIndex = 0, sheetRow = 0;
+            WriteSheet sheet = buildSheet(handleSheetName(sheetName, 1, 0), fields, titles, handlerList);
+            List<Object> batch = new ArrayList<>(WRITE_BATCH);
+            boolean written = false;
+            while (U.isNotNull(dataIterator) && dataIterator.hasNext()) {
+                if (sheetRow == sheetMaxRow) {
+                    excelWriter.write(batch, sheet);
+                    batch.clear();
+                    written = true;
+                    sheetIndex++;
+                    sheet = buildSheet(handleSheetName(sheetName, 2, sheetIndex), fields, titles, handlerList);
+                    sheetRow = 0;
+                }
+                batch.add(dataIterator.next());
+                sheetRow++;
+                if (batch.size() == WRITE_BATCH) {
+                    excelWriter.write(batch, sheet);
+                    batch.clear();
+                    written = true;
+                }
+            }
+            if (!batch.isEmpty() || !written) {
+                // 如果没有记录也至少写一次(确保导出的文件有标题头)
+                excelWriter.write(batch, sheet);
+            }
+        }
+    }
+    private static WriteSheet buildSheet(String sheetName, Set<String> fields, List<List<String>> titles,
+                                         List<WriteHandler> handlerList) {
+        ExcelWriterSheetBuilder sheetBuilder = EasyExcel.writerSheet(sheetName).useDefaultStyle(false).includeColumnFieldNames(fields);
+        if (A.isNotEmpty(titles)) {
+            sheetBuilder.head(titles);
+        }
+        for (WriteHandler handler : handlerList) {
+            sheetBuilder.registerWriteHandler(handler);
+        }
+        return sheetBuilder.build();
+    }
+
     /**
      * 将特殊字符替换成空格, 最开始及最结尾是单引号则去掉, 多个空格替换成一个, 如果有多个 sheet 就拼在名字后面, 长度超过 31 则截取
      *
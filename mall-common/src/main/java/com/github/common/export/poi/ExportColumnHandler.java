@@ -5,27 +5,37 @@ import com.github.common.util.U;
 
 import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExportColumnHandler {
 
-    /** 从类上收集导出的标题(在字段上标的 &#064;ExportColumn 注解) */
+    /** 类 -> 导出的标题, 每个类只解析一次注解 */
+    private static final Map<Class<?>, LinkedHashMap<String, String>> TITLE_CACHE = new ConcurrentHashMap<>();
+
+    /** 从类上收集导出的标题(在字段上标的 &#064;ExportColumn 注解), 返回的是副本, 调用方可以修改 */
     public static LinkedHashMap<String, String> collectTitle(Class clazz) {
+        if (U.isNull(clazz)) {
+            return new LinkedHashMap<>();
+        }
+        return new LinkedHashMap<>(TITLE_CACHE.computeIfAbsent(clazz, ExportColumnHandler::parseTitle));
+    }
+
+    private static LinkedHashMap<String, String> parseTitle(Class<?> clazz) {
         LinkedHashMap<String, String> titleMap = new LinkedHashMap<>();
-        if (U.isNotNull(clazz)) {
-            Field[] fields = clazz.getDeclaredFields();
-            if (A.isNotEmpty(fields)) {
-                for (Field field : fields) {
-                    String name = field.getName();
-                    String value = field.getName();
-                    ExportColumn column = field.getAnnotation(ExportColumn.class);
-                    if (U.isNotNull(column)) {
-                        String columnValue = column.value();
-                        if (U.isNotNull(columnValue)) {
-                            value = columnValue;
-                        }
+        Field[] fields = clazz.getDeclaredFields();
+        if (A.isNotEmpty(fields)) {
+            for (Field field : fields) {
+                String name = field.getName();
+                String value = field.getName();
+                ExportColumn column = field.getAnnotation(ExportColumn.class);
+                if (U.isNotNull(column)) {
+                    String columnValue = column.value();
+                    if (U.isNotNull(columnValue)) {
+                        value = columnValue;
                     }
-                    titleMap.put(name, value);
                 }
+                titleMap.put(name, value);
             }
         }
         return titleMap;
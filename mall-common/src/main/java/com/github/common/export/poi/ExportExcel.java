@@ -6,10 +6,9 @@ import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
 
 /**
  * 如果想要将数据导成文件保持, 使用 {@link com.github.common.export.FileExport} 类
@@ -18,6 +17,9 @@ import java.util.Set;
 @SuppressWarnings("DuplicatedCode")
 public class ExportExcel {
 
+    /** 流式写入时内存中保留的行数, 超出的行会写到临时文件 */
+    private static final int ROW_ACCESS_WINDOW = 100;
+
     /** 标题行字体大小 */
     private static final short TITLE_FONT_SIZE = 14;
     /** 行字体大小 */
@@ -210,6 +212,91 @@ public class ExportExcel {
         }
         return workbook;
     }
+    /**
+     * 流式导出 xlsx: 边读数据边写, 内存中只保留 {@link #ROW_ACCESS_WINDOW} 行, 数据再多也不会撑满内存.
+     * 一个 sheet 写满后新建一个继续写(第一个 sheet 的名字在这时补上序号), 03 格式不支持流式写入, 只输出 xlsx
+     *
+     * @param sheetName sheet 名
+     * @param titleMap 标题(key 为英文, value 为标题内容)
+     * @param dataIterator 数据, 可以是 mybatis 的 Cursor 或者分页查询的迭代器
+     */
+    public static void write(String sheetName, LinkedHashMap<String, String> titleMap, Iterator<?> dataIterator,
+                             OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            if (A.isNotEmpty(titleMap)) {
+                int maxColumn = getMaxColumn(true);
+                if (titleMap.size() > maxColumn) {
+                    throw new RuntimeException("Invalid column number " + titleMap.size() + ", max " + maxColumn);
+                }
+
+                CellStyle headStyle = headStyle(workbook);
+                CellStyle contentStyle = contentStyle(workbook);
+                CellStyle numberStyle = numberStyle(workbook);
+                Set<Map.Entry<String, String>> titleEntry = titleMap.entrySet();
+                int sheetMaxRow = getMaxRow(true) - 1;
+
+                int sheetIndex = 0;
+                Sheet sheet = createSheetWithTitle(workbook, handleSheetName(sheetName, 1, 0), titleEntry, headStyle);
+                int rowIndex = 0;
+                while (U.isNotNull(dataIterator) && dataIterator.hasNext()) {
+                    Object data = dataIterator.next();
+                    if (data == null) {
+                        continue;
+                    }
+                    if (rowIndex == sheetMaxRow) {
+                        sheetIndex++;
+                        if (sheetIndex == 1) {
+                            // 有第二个 sheet 了, 第一个也带上序号, sheetCount 只用来判断是否加序号
+                            workbook.setSheetName(0, handleSheetName(sheetName, 2, 0));
+                        }
+                        sheet = createSheetWithTitle(workbook, handleSheetName(sheetName, 2, sheetIndex), titleEntry, headStyle);
+                        rowIndex = 0;
+                    }
+                    rowIndex++;
+                    Row row = sheet.createRow(rowIndex);
+                    int cellIndex = 0;
+                    for (Map.Entry<String, String> titleMapEntry : titleEntry) {
+                        Cell cell = row.createCell(cellIndex);
+                        String cellData = U.getFieldMethod(data, titleMapEntry.getKey());
+                        if (U.isNumber(cellData)) {
+                            cell.setCellStyle(numberStyle);
+                            cell.setCellValue(U.toDouble(cellData));
+                        } else {
+                            cell.setCellStyle(contentStyle);
+                            cell.setCellValue(cellData);
+                        }
+                        setWidthAndHeight(cell, cellData);
+                        cellIndex++;
+                    }
+                }
+            }
+            workbook.write(outputStream);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+    private static Sheet createSheetWithTitle(Workbook workbook, String sheetName,
+                                              Set<Map.Entry<String, String>> titleEntry, CellStyle headStyle) {
+        Sheet sheet = workbook.createSheet(sheetName);
+        Row row = sheet.createRow(0);
+        int cellIndex = 0;
+        for (Map.Entry<String, String> titleMapEntry : titleEntry) {
+            Cell cell = row.createCell(cellIndex);
+            cell.setCellStyle(headStyle);
+
+            String title = U.toStr(titleMapEntry.getValue().split("\\|")[0]);
+            cell.setCellValue(title);
+            setWidthAndHeight(cell, title);
+            cellIndex++;
+        }
+        // 冻结标题
+        sheet.createFreezePane(0, 1, 0, 1);
+        return sheet;
+    }
+
     private static Workbook create(boolean excel07) {
         // 声明一个工作薄. HSSFWorkbook 是 Office 2003 的版本, XSSFWorkbook 是 2007
         //Workbook workbook = excel07 ? new XSSFWorkbook() : new HSSFWorkbook();
@@ -0,0 +1,85 @@
+package com.github.common.id;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * <pre>
+ * 基于 {@link SnowflakeId} 的字符串单号: 标识 + 年月日时分秒(yyMMddHHmmss) + 10 位数字, 如 D2310181230450123456789
+ *
+ * 10 位数字是 id 在这一秒中的毫秒数(10 位) + 机器号 + 序号, 跟 id 一一对应, 所以跟 id 一样不会重复.
+ * 同一秒的前缀只格式化一次, 之后每次只写后面的数字
+ * </pre>
+ */
+public final class OrderNo {
+
+    private static final int DATE_LEN = 12;
+    private static final int NUM_LEN = 10;
+
+    private final char[] behavior;
+    private final SnowflakeId snowflake;
+    private final ZoneId zone;
+
+    /** 最近一秒的前缀(标识 + 时间), 多个线程同时换秒时各自算一次也没关系 */
+    private volatile Prefix prefix;
+
+    public OrderNo(String behavior, SnowflakeId snowflake) {
+        this(behavior, snowflake, ZoneId.systemDefault());
+    }
+    public OrderNo(String behavior, SnowflakeId snowflake, ZoneId zone) {
+        this.behavior = behavior.toCharArray();
+        this.snowflake = snowflake;
+        this.zone = zone;
+    }
+
+    public String next() {
+        long id = snowflake.nextId();
+        long millis = SnowflakeId.timeMillis(id);
+        long second = Math.floorDiv(millis, 1000);
+
+        Prefix p = prefix;
+        if (p == null || p.second != second) {
+            p = new Prefix(second, format(second));
+            prefix = p;
+        }
+
+        char[] chars = new char[p.chars.length + NUM_LEN];
+        System.arraycopy(p.chars, 0, chars, 0, p.chars.length);
+        long num = ((millis - second * 1000) << 22) | SnowflakeId.tail(id);
+        for (int i = chars.length - 1; i >= p.chars.length; i--) {
+            chars[i] = (char) ('0' + num % 10);
+            num /= 10;
+        }
+        return new String(chars);
+    }
+
+    private char[] format(long second) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone);
+        char[] chars = new char[behavior.length + DATE_LEN];
+        System.arraycopy(behavior, 0, chars, 0, behavior.length);
+        int i = behavior.length;
+        i = two(chars, i, time.getYear() % 100);
+        i = two(chars, i, time.getMonthValue());
+        i = two(chars, i, time.getDayOfMonth());
+        i = two(chars, i, time.getHour());
+        i = two(chars, i, time.getMinute());
+        two(chars, i, time.getSecond());
+        return chars;
+    }
+    private static int two(char[] chars, int i, int value) {
+        chars[i] = (char) ('0' + value / 10);
+        chars[i + 1] = (char) ('0' + value % 10);
+        return i + 2;
+    }
+
+    private static class Prefix {
+        private final long second;
+        private final char[] chars;
+
+        private Prefix(long second, char[] chars) {
+            this.second = second;
+            this.chars = chars;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.common.id;
+
+import com.github.common.util.LogUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 号段方式的连续 id(从数据库一次取一段, 用完再取下一段), 适合需要连续且较短的编号, 如 会员号、流水号
+ *
+ * 数据库中每个业务一行, 取号段时在事务中执行:
+ *   UPDATE t_id_segment SET max_id = max_id + #{step} WHERE biz_tag = #{bizTag};
+ *   SELECT max_id FROM t_id_segment WHERE biz_tag = #{bizTag};
+ * 返回的 max_id 就是这一段的最大值, 这一段是 (max_id - step, max_id]
+ *
+ * 当前号段用掉 80% 时在后台取下一段, 用完时直接切换, 取号只有一次 getAndIncrement.
+ * 多个实例各自取号段, 编号不会重复但是跟时间的顺序不是严格一致的, 实例重启时没用完的号段会被跳过
+ * </pre>
+ */
+public final class SegmentId {
+
+    /** 取号段, 返回这一段的最大值 */
+    @FunctionalInterface
+    public interface Allocator {
+        long allocate(String bizTag, int step);
+    }
+
+    private final String bizTag;
+    private final int step;
+    private final Allocator allocator;
+    private final Executor executor;
+
+    private volatile Segment current;
+
+    public SegmentId(String bizTag, int step, Allocator allocator) {
+        this(bizTag, step, allocator, ForkJoinPool.commonPool());
+    }
+    public SegmentId(String bizTag, int step, Allocator allocator, Executor executor) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be greater than 0");
+        }
+        this.bizTag = bizTag;
+        this.step = step;
+        this.allocator = allocator;
+        this.executor = executor;
+    }
+
+    public long nextId() {
+        for (;;) {
+            Segment segment = current;
+            if (segment != null) {
+                long id = segment.cursor.getAndIncrement();
+                if (id <= segment.max) {
+                    if (id >= segment.prefetchAt && segment.prefetched.compareAndSet(false, true)) {
+                        segment.next = CompletableFuture.supplyAsync(this::load, executor);
+                    }
+                    return id;
+                }
+            }
+            switchSegment(segment);
+        }
+    }
+
+    private synchronized void switchSegment(Segment used) {
+        if (current != used) {
+            return;
+        }
+        CompletableFuture<Segment> future = null;
+        if (used != null && used.prefetched.get()) {
+            // 预取的线程刚拿到标记还没来得及把 future 放进去, 等它一下, 不然那一段就浪费了
+            while ((future = used.next) == null) {
+                Thread.onSpinWait();
+            }
+        }
+        Segment segment = null;
+        if (future != null) {
+            try {
+                segment = future.join();
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("prefetch segment({}) exception, load again", bizTag, e);
+                }
+            }
+        }
+        current = (segment != null) ? segment : load();
+    }
+
+    private Segment load() {
+        long max = allocator.allocate(bizTag, step);
+        return new Segment(max - step + 1, max, step);
+    }
+
+    private static class Segment {
+        private final AtomicLong cursor;
+        private final long max;
+        private final long prefetchAt;
+        private final AtomicBoolean prefetched = new AtomicBoolean();
+        private volatile CompletableFuture<Segment> next;
+
+        private Segment(long min, long max, int step) {
+            this.cursor = new AtomicLong(min);
+            this.max = max;
+            this.prefetchAt = min + step * 4L / 5;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.common.id;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * <pre>
+ * 64 位的 id: 1 位符号(0) + 41 位时间(相对 2020-01-01 的毫秒) + 10 位机器号 + 12 位序号, 每个机器号每毫秒 4096 个.
+ *
+ * 时间和序号放在一个 AtomicLong 里用 cas 更新, 不加锁也不分配对象:
+ *   当前时间比上次用的时间大, 从新的毫秒开始;
+ *   否则(同一毫秒、序号用完、时钟回拨)在上次用的时间上继续递增, 序号用完时借用下一毫秒.
+ * 借用的时间超过 maxBorrowMs 时等待时钟追上来, 超过 maxWaitMs 说明时钟回拨得太多, 抛出异常
+ *
+ * 同一个机器号只能在一个地方使用, 进程重启时如果时钟回拨到了上次运行的时间之前也会重复
+ * </pre>
+ */
+public final class SnowflakeId {
+
+    /** 2020-01-01 00:00:00 +0800 */
+    public static final long EPOCH = 1577808000000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIME_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_WORKER = (1 << WORKER_BITS) - 1;
+
+    private final long workerId;
+    private final long maxBorrowMs;
+    private final long maxWaitMs;
+    private final LongSupplier clock;
+
+    /** 时间(相对 EPOCH 的毫秒) << SEQUENCE_BITS | 序号 */
+    private final AtomicLong state = new AtomicLong();
+    private final LongAdder backwardCount = new LongAdder();
+
+    public SnowflakeId(int workerId) {
+        this(workerId, 1000, 5000);
+    }
+    /**
+     * @param maxBorrowMs 最多可以领先时钟的毫秒数
+     * @param maxWaitMs 领先时钟超过这个毫秒数时抛出异常, 在这之内则等待
+     */
+    public SnowflakeId(int workerId, long maxBorrowMs, long maxWaitMs) {
+        this(workerId, maxBorrowMs, maxWaitMs, System::currentTimeMillis);
+    }
+    SnowflakeId(int workerId, long maxBorrowMs, long maxWaitMs, LongSupplier clock) {
+        if (workerId < 0 || workerId > MAX_WORKER) {
+            throw new IllegalArgumentException(String.format("workerId(%s) must be in [0, %s]", workerId, MAX_WORKER));
+        }
+        this.workerId = workerId;
+        this.maxBorrowMs = maxBorrowMs;
+        this.maxWaitMs = Math.max(maxWaitMs, maxBorrowMs);
+        this.clock = clock;
+    }
+
+    public int getWorkerId() {
+        return (int) workerId;
+    }
+
+    /** 发现时钟比上次用的时间小的次数 */
+    public long backwardCount() {
+        return backwardCount.sum();
+    }
+
+    public long nextId() {
+        long next;
+        for (;;) {
+            long current = state.get();
+            long now = clock.getAsLong() - EPOCH;
+            long last = current >>> SEQUENCE_BITS;
+            if (now > last) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (now < last - 1) {
+                    backwardCount.increment();
+                }
+                next = current + 1;
+                long lead = (next >>> SEQUENCE_BITS) - now;
+                if (lead > maxBorrowMs) {
+                    if (lead > maxWaitMs) {
+                        throw new IllegalStateException(String.format("clock moved backwards, id time is %sms ahead", lead));
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+            }
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIME_SHIFT) | (workerId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /** id 中的时间(毫秒) */
+    public static long timeMillis(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
+    }
+    /** id 中除了时间以外的部分(机器号 + 序号), 共 22 位 */
+    static long tail(long id) {
+        return id & ((1L << TIME_SHIFT) - 1);
+    }
+    public static int workerId(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_WORKER);
+    }
+    public static int sequence(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+}
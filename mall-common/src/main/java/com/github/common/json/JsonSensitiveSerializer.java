@@ -5,6 +5,7 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.github.common.util.BeanAccessor;
 import com.github.common.util.DesensitizationUtil;
 import com.github.common.util.U;
 
@@ -98,6 +99,12 @@ public class JsonSensitiveSerializer extends JsonSerializer<Object> {
         return U.isNull(field) ? null : field.getAnnotation(JsonSensitive.class);
     }
     private Field getAnnotationField(JsonGenerator gen) {
-        return U.getField(gen.getCurrentValue(), gen.getOutputContext().getCurrentName());
+        Object bean = gen.getCurrentValue();
+        String name = gen.getOutputContext().getCurrentName();
+        if (U.isNull(bean) || U.isBlank(name)) {
+            return null;
+        }
+        // 字段表每个类只解析一次, 不用每次都拼 key 去查
+        return BeanAccessor.of(bean.getClass()).field(name);
     }
 }
@@ -1,14 +1,21 @@
 package com.github.common.json;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.common.date.DateFormatType;
 import com.github.common.util.A;
 import com.github.common.util.LogUtil;
 import com.github.common.util.U;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -42,6 +49,13 @@ public class JsonUtil {
         IGNORE_OBJECT_MAPPER.configure(MapperFeature.USE_ANNOTATIONS, false);
     }
 
+    /**
+     * true 表示 convert 系列的方法不生成中间的 json 字符串: 源对象序列化成 TokenBuffer, 目标对象直接从 TokenBuffer 反序列化.
+     * 跟字符串的方式结果一样(包括数值的类型、null 和失败时的返回).
+     * 默认是 false(字符串的方式), 启动时用 -Djson.convert.buffer=true 或者调用 setConvertWithBuffer(true) 开启
+     */
+    private static volatile boolean CONVERT_WITH_BUFFER = "true".equalsIgnoreCase(System.getProperty("json.convert.buffer"));
+
     private static class RenderObjectMapper extends ObjectMapper {
         private RenderObjectMapper() {
             super();
@@ -79,6 +93,14 @@ public class JsonUtil {
     }
 
 
+    /** 设置 convert 系列的方法是否不经过中间的 json 字符串 */
+    public static void setConvertWithBuffer(boolean convertWithBuffer) {
+        CONVERT_WITH_BUFFER = convertWithBuffer;
+    }
+    public static boolean isConvertWithBuffer() {
+        return CONVERT_WITH_BUFFER;
+    }
+
     /** 对象转换, 失败将会返回 null */
     public static <S,T> T convert(S source, Class<T> clazz) {
         return convert(source, clazz, false, false);
@@ -107,6 +129,16 @@ public class JsonUtil {
         if (U.isNull(source)) {
             return null;
         }
+        if (CONVERT_WITH_BUFFER && !(source instanceof String)) {
+            try {
+                return bufferConvert(source, EMPTY_OBJECT_MAPPER.constructType(clazz), ignoreSourceAnnotation, ignoreTargetAnnotation);
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("obj({}) to Class({}) exception", U.compress(source.toString()), clazz.getName(), e);
+                }
+                return null;
+            }
+        }
 
         String json;
         if (source instanceof String) {
@@ -145,6 +177,20 @@ public class JsonUtil {
         if (A.isEmpty(sourceList)) {
             return Collections.emptyList();
         }
+        if (CONVERT_WITH_BUFFER) {
+            String key = clazz.getName();
+            try {
+                List<T> list = bufferConvert(sourceList, TYPE_CACHE.computeIfAbsent(key,
+                        fun -> EMPTY_OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, clazz)),
+                        ignoreSourceAnnotation, ignoreTargetAnnotation);
+                return U.isNull(list) ? Collections.emptyList() : list;
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("List({}) to List<{}> exception", U.compress(sourceList.toString()), key, e);
+                }
+                return Collections.emptyList();
+            }
+        }
 
         String json;
         try {
@@ -182,6 +228,20 @@ public class JsonUtil {
         if (A.isEmpty(sourceMap)) {
             return Collections.emptyMap();
         }
+        if (CONVERT_WITH_BUFFER) {
+            String key = keyClass.getName() + ", " + valueClass.getName();
+            try {
+                Map<K, V> map = bufferConvert(sourceMap, TYPE_CACHE.computeIfAbsent(key,
+                        fun -> EMPTY_OBJECT_MAPPER.getTypeFactory().constructMapType(LinkedHashMap.class, keyClass, valueClass)),
+                        ignoreSourceAnnotation, ignoreTargetAnnotation);
+                return U.isNull(map) ? Collections.emptyMap() : map;
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("Map({}) to Map<{}> exception", U.compress(sourceMap.toString()), key, e);
+                }
+                return Collections.emptyMap();
+            }
+        }
 
         String json;
         try {
@@ -237,6 +297,16 @@ public class JsonUtil {
         if (U.isNull(source)) {
             return null;
         }
+        if (CONVERT_WITH_BUFFER && !(source instanceof String)) {
+            try {
+                return bufferConvert(source, EMPTY_OBJECT_MAPPER.constructType(type), ignoreSourceAnnotation, ignoreTargetAnnotation);
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("obj({}) to Class({}) exception", U.compress(source.toString()), type.getType(), e);
+                }
+                return null;
+            }
+        }
 
         String json;
         if (source instanceof String) {
@@ -265,6 +335,89 @@ public class JsonUtil {
         }
     }
 
+    /**
+     * 源对象用 source 的 mapper 写进 TokenBuffer, 再用 target 的 mapper 从中读出目标类型.
+     * 不用 ObjectMapper#convertValue 是因为它在源对象已经是目标类型时直接返回源对象, 而这里需要跟字符串的方式一样返回新的对象
+     */
+    private static <T> T bufferConvert(Object source, JavaType type,
+                                       boolean ignoreSourceAnnotation, boolean ignoreTargetAnnotation) throws IOException {
+        ObjectMapper sourceMapper = ignoreSourceAnnotation ? IGNORE_OBJECT_MAPPER : EMPTY_OBJECT_MAPPER;
+        ObjectMapper targetMapper = ignoreTargetAnnotation ? IGNORE_OBJECT_MAPPER : EMPTY_OBJECT_MAPPER;
+        ConvertBuffer buffer = new ConvertBuffer(sourceMapper);
+        sourceMapper.writeValue(buffer, source);
+        try (JsonParser parser = new ConvertParser(buffer.asParser(targetMapper))) {
+            return targetMapper.readValue(parser, type);
+        }
+    }
+
+    /**
+     * 写进去的值跟从 json 字符串中解析出来的值保持一样的类型, 目标是 Object 或 Map 时才能跟字符串的方式得到一样的结果:
+     * 整数按大小存成 int、long 或 BigInteger, float 按十进制字符串转成 double, 没有小数的 BigDecimal 存成整数, 二进制存成 base64 字符串
+     */
+    private static class ConvertBuffer extends TokenBuffer {
+        private ConvertBuffer(ObjectCodec codec) {
+            super(codec, false);
+        }
+
+        @Override
+        public void writeNumber(short s) throws IOException {
+            super.writeNumber((int) s);
+        }
+        @Override
+        public void writeNumber(long l) throws IOException {
+            if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                super.writeNumber((int) l);
+            } else {
+                super.writeNumber(l);
+            }
+        }
+        @Override
+        public void writeNumber(BigInteger v) throws IOException {
+            if (U.isNull(v)) {
+                writeNull();
+            } else if (v.bitLength() < 64) {
+                writeNumber(v.longValue());
+            } else {
+                super.writeNumber(v);
+            }
+        }
+        @Override
+        public void writeNumber(float f) throws IOException {
+            super.writeNumber(Double.parseDouble(Float.toString(f)));
+        }
+        @Override
+        public void writeNumber(BigDecimal dec) throws IOException {
+            if (U.isNotNull(dec) && dec.scale() == 0) {
+                writeNumber(dec.unscaledValue());
+            } else {
+                super.writeNumber(dec);
+            }
+        }
+        @Override
+        public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+            byte[] bytes = (offset == 0 && len == data.length) ? data : Arrays.copyOfRange(data, offset, offset + len);
+            writeString(b64variant.encode(bytes));
+        }
+    }
+
+    /** 字符串里的小数解析出来是 Double(需要时才是 BigDecimal), TokenBuffer 中的 BigDecimal 也这样返回 */
+    private static class ConvertParser extends JsonParserDelegate {
+        private ConvertParser(JsonParser parser) {
+            super(parser);
+        }
+
+        @Override
+        public NumberType getNumberType() throws IOException {
+            NumberType type = super.getNumberType();
+            return type == NumberType.BIG_DECIMAL ? NumberType.DOUBLE : type;
+        }
+        @Override
+        public Number getNumberValue() throws IOException {
+            Number number = super.getNumberValue();
+            return (number instanceof BigDecimal) ? number.doubleValue() : number;
+        }
+    }
+
     /** 对象转换成 json 字符串 */
     public static String toJson(Object obj) {
         if (U.isNull(obj)) {
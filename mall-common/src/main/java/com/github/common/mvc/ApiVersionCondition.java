@@ -8,6 +8,11 @@ import javax.servlet.http.HttpServletRequest;
 
 public class ApiVersionCondition implements RequestCondition<ApiVersionCondition> {
 
+    /** 请求中解析出来的版本放在 request 的这个属性里, 每个候选的映射都要匹配一次, 只解析一次 */
+    private static final String VERSION_ATTRIBUTE = ApiVersionCondition.class.getName() + ".VERSION";
+    /** 请求中没有版本或版本无法识别 */
+    private static final Object NO_VERSION = new Object();
+
     private AppVersion version;
 
     /** 参数 version 表示: 标注在 controller 方法上的注解 ApiVersion 里面的值 */
@@ -22,14 +27,25 @@ public class ApiVersionCondition implements RequestCondition<ApiVersionCondition
 
     @Override
     public ApiVersionCondition getMatchingCondition(HttpServletRequest request) {
-        // 从请求中获取版本信息
+        AppVersion appVersion = requestVersion(request);
+        // 如果前台过来的参数是 v3, 版本里面有 v1 v2 v4 v5, 最后 v1 v2 会被匹配上
+        return (appVersion != null && appVersion.greaterOrEqual(this.version)) ? this : null;
+    }
+
+    /** 从请求中获取版本信息, 解析后放在 request 的属性中, 同一个请求只解析一次 */
+    public static AppVersion requestVersion(HttpServletRequest request) {
+        Object cached = request.getAttribute(VERSION_ATTRIBUTE);
+        if (cached != null) {
+            return (cached == NO_VERSION) ? null : (AppVersion) cached;
+        }
+
         String version = request.getHeader(Const.VERSION);
         if (U.isNull(version)) {
             version = request.getParameter(Const.VERSION);
         }
-        AppVersion appVersion = U.toEnum(AppVersion.class, version);
-        // 如果前台过来的参数是 v3, 版本里面有 v1 v2 v4 v5, 最后 v1 v2 会被匹配上
-        return (appVersion != null && appVersion.greaterOrEqual(this.version)) ? this : null;
+        AppVersion appVersion = AppVersion.from(version);
+        request.setAttribute(VERSION_ATTRIBUTE, (appVersion == null) ? NO_VERSION : appVersion);
+        return appVersion;
     }
 
     /**
@@ -2,16 +2,32 @@ package com.github.common.mvc;
 
 import com.github.common.Const;
 import com.github.common.encrypt.Encrypt;
+import com.github.common.encrypt.jwt.JWTVerifier;
+import com.github.common.exception.ForbiddenException;
 import com.github.common.exception.NotLoginException;
 import com.github.common.json.JsonUtil;
 import com.github.common.util.A;
 import com.github.common.util.RequestUtil;
 import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-/** 专门针对 app 操作的 token 处理器, 登录时生成 token, 每次请求都刷新过期时间, 删除由客户端处理 */
+/**
+ * <pre>
+ * 专门针对 app 操作的 token 处理器, 登录时生成 token, 每次请求都刷新过期时间, 删除由客户端处理
+ *
+ * 验证 token(aes 解密 + jwt 验签)和转换成 session 对象的结果按 token 的摘要缓存起来, 同一个 token 只完整验证一次.
+ * 只有验证通过的 token 才会放进缓存, token 过期后缓存也就不再使用, 退出登录时调用 {@link #revokeToken()}
+ * </pre>
+ */
 public final class AppTokenHandler {
 
     /** 生成 token 的过期时间 */
@@ -19,6 +35,25 @@ public final class AppTokenHandler {
     /** 生成 token 的过期时间单位 */
     private static final TimeUnit TOKEN_EXPIRE_TIME_UNIT = TimeUnit.DAYS;
 
+    /** 验证过的 token 最多缓存的分钟数, token 本身更早过期时以 token 的为准 */
+    private static final long VERIFIED_MINUTES = 10;
+    /** 验证过的 token: 摘要 ==> 解出来的数据 */
+    private static final Cache<String, Verified> VERIFIED = CacheBuilder.newBuilder()
+            .maximumSize(10000).expireAfterWrite(VERIFIED_MINUTES, TimeUnit.MINUTES).build();
+    /**
+     * 退出登录的 token: 摘要 ==> token 的过期时间, 每条都保留到 token 自己过期, 不按数量淘汰(淘汰了退出的 token 就又能用了).
+     * 只在当前实例中有效, 多实例时还需要客户端删掉 token
+     */
+    private static final Map<String, Long> REVOKED = new ConcurrentHashMap<>();
+    /** 清理过期的退出记录的间隔毫秒数 */
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final AtomicLong LAST_PURGE = new AtomicLong();
+
+    private static final LongAdder HIT = new LongAdder();
+    private static final LongAdder MISS = new LongAdder();
+    private static final LongAdder VERIFY_COUNT = new LongAdder();
+    private static final LongAdder VERIFY_NANOS = new LongAdder();
+
     /** 基于存进 session 的数据(7 天后过期)生成 token 返回, 登录后调用返回给 app 由其保存下来 */
     public static <T> String generateToken(T session) {
         return generateToken(session, TOKEN_EXPIRE_TIME);
@@ -43,14 +78,14 @@ public final class AppTokenHandler {
     public static String resetTokenExpireTime(long expireDay) {
         String token = getToken();
         if (U.isNotNull(token)) {
-            Map<String, Object> session;
+            Verified verified;
             try {
-                session = Encrypt.jwtDecode(token);
+                verified = verify(token);
             } catch (Exception e) {
                 throw new NotLoginException(e.getMessage());
             }
-            if (A.isNotEmpty(session)) {
-                return Encrypt.jwtEncode(session, expireDay, TOKEN_EXPIRE_TIME_UNIT);
+            if (A.isNotEmpty(verified.claims)) {
+                return Encrypt.jwtEncode(new LinkedHashMap<>(verified.claims), expireDay, TOKEN_EXPIRE_TIME_UNIT);
             }
         }
         return U.EMPTY;
@@ -63,17 +98,123 @@ public final class AppTokenHandler {
 
     /** 从 token 中读 session 信息, 如果登录已过期或解密失败将返回 null */
     public static <T> T getSessionInfoWithToken(Class<T> clazz) {
-        String token = getToken();
+        return getSessionInfoWithToken(getToken(), clazz);
+    }
+    /**
+     * 从 token 中读 session 信息, 如果登录已过期、解密失败或已退出登录将返回 null.
+     * 同一个 token 返回的是缓存的同一个对象, 不要修改它
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getSessionInfoWithToken(String token, Class<T> clazz) {
         if (U.isNotNull(token)) {
-            Map<String, Object> session = null;
+            Verified verified;
             try {
-                session = Encrypt.jwtDecode(token);
+                verified = verify(token);
             } catch (Exception ignore) {
+                return null;
             }
-            if (A.isNotEmpty(session)) {
-                return JsonUtil.convert(session, clazz);
+            if (A.isNotEmpty(verified.claims)) {
+                return (T) verified.models.computeIfAbsent(clazz, c -> JsonUtil.convert(verified.session(), c));
             }
         }
         return null;
     }
+
+    /** 退出登录时调用: 当前请求中的 token 不再有效 */
+    public static void revokeToken() {
+        revokeToken(getToken());
+    }
+    public static void revokeToken(String token) {
+        if (U.isNotBlank(token)) {
+            String key = Encrypt.toSha256(token);
+            Verified verified = VERIFIED.getIfPresent(key);
+            if (U.isNull(verified)) {
+                try {
+                    verified = new Verified(Encrypt.jwtDecode(token));
+                } catch (Exception e) {
+                    // 验证不通过或已过期的 token 本来就不能用
+                    return;
+                }
+            }
+            REVOKED.put(key, verified.expireTime);
+            VERIFIED.invalidate(key);
+            purgeRevoked();
+        }
+    }
+
+    /** 每隔一段时间清理一次已经过期的 token 的退出记录 */
+    private static void purgeRevoked() {
+        long now = System.currentTimeMillis();
+        long last = LAST_PURGE.get();
+        if (now - last >= PURGE_INTERVAL_MS && LAST_PURGE.compareAndSet(last, now)) {
+            REVOKED.values().removeIf(expireTime -> expireTime <= now);
+        }
+    }
+
+    /** 验证 token, 缓存中有且没有过期时直接返回. 验证失败、已过期或已退出登录将抛出 ForbiddenException */
+    private static Verified verify(String token) {
+        String key = Encrypt.toSha256(token);
+        Long revokeExpireTime = REVOKED.get(key);
+        if (U.isNotNull(revokeExpireTime)) {
+            if (revokeExpireTime > System.currentTimeMillis()) {
+                throw new ForbiddenException("登录已退出, 请重新登录");
+            }
+            // token 已经过期, 下面的验证不会通过
+            REVOKED.remove(key, revokeExpireTime);
+        }
+
+        Verified verified = VERIFIED.getIfPresent(key);
+        if (U.isNotNull(verified)) {
+            if (verified.expireTime > System.currentTimeMillis()) {
+                HIT.increment();
+                return verified;
+            }
+            VERIFIED.invalidate(key);
+        }
+
+        MISS.increment();
+        long start = System.nanoTime();
+        Map<String, Object> claims = Encrypt.jwtDecode(token);
+        VERIFY_NANOS.add(System.nanoTime() - start);
+        VERIFY_COUNT.increment();
+
+        verified = new Verified(claims);
+        VERIFIED.put(key, verified);
+        return verified;
+    }
+
+    /** 缓存的命中情况, savedMs 是按平均的验证耗时估算的命中缓存省下来的时间 */
+    public static Map<String, Object> stats() {
+        long hit = HIT.sum(), verifyCount = VERIFY_COUNT.sum();
+        long avgNanos = (verifyCount == 0) ? 0 : (VERIFY_NANOS.sum() / verifyCount);
+        return A.linkedMaps(
+                "size", VERIFIED.size(),
+                "revoked", REVOKED.size(),
+                "hit", hit,
+                "miss", MISS.sum(),
+                "avgVerifyUs", avgNanos / 1000,
+                "savedMs", hit * avgNanos / 1000000
+        );
+    }
+
+    private static final class Verified {
+        private final Map<String, Object> claims;
+        /** token 的过期时间, 没有过期时间时只受缓存时长的限制 */
+        private final long expireTime;
+        /** 转换过的 session 对象: 类型 ==> 对象 */
+        private final Map<Class<?>, Object> models = new ConcurrentHashMap<>();
+
+        private Verified(Map<String, Object> claims) {
+            this.claims = U.isNull(claims) ? Collections.emptyMap() : Collections.unmodifiableMap(claims);
+            Object exp = this.claims.get(JWTVerifier.EXP);
+            this.expireTime = U.isNull(exp) ? Long.MAX_VALUE : U.toLong(exp);
+        }
+
+        /** 存进 session 的数据, 去掉生成 token 时加上的过期时间, 不然转换成对象时会因为多出的属性而失败 */
+        private Map<String, Object> session() {
+            Map<String, Object> session = new LinkedHashMap<>(claims);
+            session.remove(JWTVerifier.EXP);
+            return session;
+        }
+    }
 }
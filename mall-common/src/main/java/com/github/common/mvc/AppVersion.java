@@ -1,5 +1,9 @@
 package com.github.common.mvc;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /** 版本 */
 public enum AppVersion {
 
@@ -21,6 +25,21 @@ public enum AppVersion {
         this.code = code;
         this.value = value;
     }
+
+    /** 名字、code、value(小写) ==> 版本 */
+    private static final Map<String, AppVersion> MAPPING = new HashMap<>();
+    static {
+        for (AppVersion version : values()) {
+            MAPPING.putIfAbsent(version.name().toLowerCase(Locale.ENGLISH), version);
+            MAPPING.putIfAbsent(String.valueOf(version.code), version);
+            MAPPING.putIfAbsent(version.value.toLowerCase(Locale.ENGLISH), version);
+        }
+    }
+
+    /** 跟 U.toEnum 一样可以是 名字、code 或 value(不区分大小写), 但不用每次都反射, 没有对应的版本时返回 null */
+    public static AppVersion from(String version) {
+        return (version == null) ? null : MAPPING.get(version.trim().toLowerCase(Locale.ENGLISH));
+    }
     public int getCode() {
         return code;
     }
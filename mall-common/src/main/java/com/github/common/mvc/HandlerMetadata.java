@@ -0,0 +1,75 @@
+package com.github.common.mvc;
+
+import com.github.common.annotation.NeedLogin;
+import com.github.common.annotation.NotNeedLogin;
+import com.github.common.annotation.NotNeedPermission;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * 处理方法(controller 里的方法)上的登录、权限注解, 启动时由 {@link VersionRequestMappingHandlerMapping} 解析好,
+ * 拦截器里只需要查一次 map, 不用每个请求都去方法和类上找注解. 注解都是先找方法上的, 没有再找类上的.
+ *
+ * HandlerMetadata metadata = HandlerMetadata.of(handlerMethod);
+ * if (metadata.isNeedLogin()) { ... }
+ * </pre>
+ */
+public final class HandlerMetadata {
+
+    private static final Map<Method, HandlerMetadata> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> beanType;
+    /** 标注了 @NeedLogin 且值为 true */
+    private final boolean needLogin;
+    /** 标注了 @NotNeedLogin 且值为 true */
+    private final boolean notNeedLogin;
+    /** 标注了 @NotNeedPermission 且值为 true */
+    private final boolean notNeedPermission;
+
+    private HandlerMetadata(HandlerMethod handlerMethod) {
+        beanType = handlerMethod.getBeanType();
+
+        NeedLogin need = getAnnotation(handlerMethod, NeedLogin.class);
+        needLogin = need != null && need.value();
+        NotNeedLogin notNeed = getAnnotation(handlerMethod, NotNeedLogin.class);
+        notNeedLogin = notNeed != null && notNeed.value();
+        NotNeedPermission notPermission = getAnnotation(handlerMethod, NotNeedPermission.class);
+        notNeedPermission = notPermission != null && notPermission.value();
+    }
+    private static <T extends Annotation> T getAnnotation(HandlerMethod handlerMethod, Class<T> clazz) {
+        // 先找方法上的注解, 没有再找类上的注解
+        T annotation = handlerMethod.getMethodAnnotation(clazz);
+        return annotation == null ? AnnotationUtils.findAnnotation(handlerMethod.getBeanType(), clazz) : annotation;
+    }
+
+    /** 启动时注册所有的处理方法 */
+    static void register(Collection<HandlerMethod> handlerMethods) {
+        for (HandlerMethod handlerMethod : handlerMethods) {
+            CACHE.putIfAbsent(handlerMethod.getMethod(), new HandlerMetadata(handlerMethod));
+        }
+    }
+
+    /** 获取处理方法上的元数据, 没有注册过的(比如没有用 VersionRequestMappingHandlerMapping)第一次用时解析 */
+    public static HandlerMetadata of(HandlerMethod handlerMethod) {
+        HandlerMetadata metadata = CACHE.computeIfAbsent(handlerMethod.getMethod(), m -> new HandlerMetadata(handlerMethod));
+        // 父类中的同一个方法被多个 controller 继承时, 类上的注解可能不一样, 这时不用缓存
+        return (metadata.beanType == handlerMethod.getBeanType()) ? metadata : new HandlerMetadata(handlerMethod);
+    }
+
+    public boolean isNeedLogin() {
+        return needLogin;
+    }
+    public boolean isNotNeedLogin() {
+        return notNeedLogin;
+    }
+    public boolean isNotNeedPermission() {
+        return notNeedPermission;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.common.mvc;
+
+import com.github.common.util.U;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 编译好的 url 权限: 按 / 分段的前缀树, 每个节点上用位标记可以访问的 http 方法, 匹配时只走 url 的段数, 跟权限的个数无关.
+ *
+ * url 的写法:
+ *   /user/info        全字匹配
+ *   /user/*           以 /user/ 开头的都可以(不管后面有几段)
+ *   /user/{id}/info   {xxx} 或中间的 * 匹配任意的一段, 如 /user/123/info
+ * method 的写法: * 表示全部, 否则是 get,head,post,put,delete 等, 多个用逗号隔开, 不区分大小写
+ *
+ * 添加完之后只读, 可以在多个线程中同时使用
+ * </pre>
+ */
+public final class PermissionMatcher {
+
+    private static final String[] METHODS = { "GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE" };
+    /** 上面之外的方法 */
+    private static final int OTHER_METHOD = 1 << METHODS.length;
+    private static final int ALL_METHOD = -1;
+
+    private final Node root = new Node();
+
+    /** 添加一个权限, url 为空时忽略 */
+    public PermissionMatcher add(String url, String method) {
+        if (U.isBlank(url)) {
+            return this;
+        }
+        int methods = methodMask(method);
+        String[] segments = segments(url.trim());
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if ("*".equals(segment) && i == segments.length - 1) {
+                node.tailMethods |= methods;
+                return this;
+            }
+            if ("*".equals(segment) || (segment.startsWith("{") && segment.endsWith("}"))) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+        node.methods |= methods;
+        return this;
+    }
+
+    /** url 的所有方法都可以访问 */
+    public PermissionMatcher add(String url) {
+        return add(url, "*");
+    }
+
+    /** 是否能用 method 访问 url */
+    public boolean matches(String url, String method) {
+        if (U.isBlank(url)) {
+            return false;
+        }
+        return match(root, segments(url), 0, methodBit(method));
+    }
+
+    /** 是否能访问 url, 不管方法 */
+    public boolean matches(String url) {
+        if (U.isBlank(url)) {
+            return false;
+        }
+        return match(root, segments(url), 0, ALL_METHOD);
+    }
+
+    private static boolean match(Node node, String[] segments, int index, int method) {
+        if (index == segments.length) {
+            return (node.methods & method) != 0;
+        }
+        // 末尾的 * 至少要有一段(可以是空的), 跟 startsWith("/user/") 一致
+        if ((node.tailMethods & method) != 0) {
+            return true;
+        }
+        Node child = node.children.get(segments[index]);
+        if (child != null && match(child, segments, index + 1, method)) {
+            return true;
+        }
+        return node.variable != null && match(node.variable, segments, index + 1, method);
+    }
+
+    private static String[] segments(String url) {
+        // 开头的 / 不算一段, 末尾的 / 算一个空段: /user/ ==> [user, ""]
+        return (url.startsWith("/") ? url.substring(1) : url).split("/", -1);
+    }
+
+    private static int methodMask(String method) {
+        if (U.isBlank(method)) {
+            return 0;
+        }
+        if ("*".equals(method.trim())) {
+            return ALL_METHOD;
+        }
+        int mask = 0;
+        for (String m : method.split(",")) {
+            if (U.isNotBlank(m)) {
+                mask |= methodBit(m.trim());
+            }
+        }
+        return mask;
+    }
+    private static int methodBit(String method) {
+        if (U.isBlank(method)) {
+            return OTHER_METHOD;
+        }
+        String upper = method.toUpperCase(Locale.ENGLISH);
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(upper)) {
+                return 1 << i;
+            }
+        }
+        return OTHER_METHOD;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        /** 一段任意值: {xxx} 或 中间的 * */
+        private Node variable;
+        /** url 到这个节点结束时可以访问的方法 */
+        private int methods;
+        /** 这个节点后面还有任意段(末尾的 *)时可以访问的方法 */
+        private int tailMethods;
+    }
+}
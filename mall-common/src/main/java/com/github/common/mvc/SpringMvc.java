@@ -1,7 +1,9 @@
 package com.github.common.mvc;
 
 import com.github.common.converter.*;
+import com.github.common.page.CountMode;
 import com.github.common.page.PageParam;
+import com.github.common.util.U;
 import org.springframework.core.MethodParameter;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.http.converter.HttpMessageConverter;
@@ -21,6 +23,8 @@ public final class SpringMvc {
         registry.addConverterFactory(new StringToNumberConverter());
         registry.addConverterFactory(new StringToEnumConverter());
         registry.addConverter(new StringToDateConverter());
+        registry.addConverter(new StringToLocalDateTimeConverter());
+        registry.addConverter(new StringToLocalDateConverter());
         registry.addConverter(new StringToMoneyConverter());
     }
 
@@ -53,7 +57,10 @@ public final class SpringMvc {
                                           NativeWebRequest request, WebDataBinderFactory factory) throws Exception {
                 // PageParam page = new PageParam(request.getParameter(PageParam.GLOBAL_PAGE), request.getParameter(PageParam.GLOBAL_LIMIT));
                 // page.setWasMobile(RequestUtils.isMobileRequest());
-                return new PageParam(request.getParameter(PageParam.GLOBAL_PAGE), request.getParameter(PageParam.GLOBAL_LIMIT));
+                PageParam page = new PageParam(request.getParameter(PageParam.GLOBAL_PAGE), request.getParameter(PageParam.GLOBAL_LIMIT));
+                page.setCursor(request.getParameter(PageParam.GLOBAL_CURSOR));
+                page.setCount(U.toEnum(CountMode.class, request.getParameter(PageParam.GLOBAL_COUNT)));
+                return page;
             }
         });
         // 参数是 page 名称时
@@ -8,6 +8,13 @@ import java.lang.reflect.Method;
 
 public class VersionRequestMappingHandlerMapping extends RequestMappingHandlerMapping {
 
+    /** 映射都注册完之后, 把每个处理方法上的注解解析好放进 HandlerMetadata */
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        HandlerMetadata.register(getHandlerMethods().values());
+    }
+
     /** 在类上标注了 ApiVersion 时 */
     @Override
     protected RequestCondition<?> getCustomTypeCondition(Class<?> handlerType) {
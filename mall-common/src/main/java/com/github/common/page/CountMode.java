@@ -0,0 +1,21 @@
+package com.github.common.page;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** 分页时总条数的查询方式 */
+@Getter
+@AllArgsConstructor
+public enum CountMode {
+
+    /** 不查总条数, 多查一条来判断有没有下一页, 适合移动端一直往下刷的场景 */
+    NO_COUNT(0, "不查总条数"),
+    /** 总条数按 sql + 参数 缓存一段时间, 适合数据量大、总数不需要很准的列表 */
+    ESTIMATED(1, "缓存的总条数"),
+    /** 每次都 SELECT COUNT(*) */
+    EXACT(2, "准确的总条数");
+
+    private final int code;
+
+    private final String value;
+}
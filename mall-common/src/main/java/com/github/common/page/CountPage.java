@@ -0,0 +1,44 @@
+package com.github.common.page;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+/**
+ * 带总条数查询方式的分页参数, 由 {@link Pages#param(PageParam)} 生成.
+ * NO_COUNT 和 ESTIMATED 会多查一条来判断有没有下一页, 所以 size 比 limit 大 1, offset 和总页数依然按 limit 算
+ *
+ * @see com.github.common.sql.CountPaginationInterceptor
+ */
+public class CountPage<T> extends Page<T> {
+    private static final long serialVersionUID = 0L;
+
+    private final CountMode mode;
+    private final long limit;
+
+    public CountPage(long current, long limit, CountMode mode) {
+        super(current, (mode == CountMode.EXACT) ? limit : (limit + 1), mode != CountMode.NO_COUNT);
+        this.mode = mode;
+        this.limit = limit;
+    }
+
+    public CountMode getMode() {
+        return mode;
+    }
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public long offset() {
+        long current = getCurrent();
+        return (current > 1) ? (current - 1) * limit : 0;
+    }
+
+    @Override
+    public long getPages() {
+        if (limit <= 0) {
+            return 0L;
+        }
+        long pages = getTotal() / limit;
+        return (getTotal() % limit == 0) ? pages : (pages + 1);
+    }
+}
@@ -17,6 +17,10 @@ public class PageParam implements Serializable {
     public static final String GLOBAL_PAGE = "page";
     /** 前台传递过来的每页条数名 */
     public static final String GLOBAL_LIMIT = "limit";
+    /** 前台传递过来的游标名 */
+    public static final String GLOBAL_CURSOR = "cursor";
+    /** 前台传递过来的总条数查询方式名 */
+    public static final String GLOBAL_COUNT = "count";
 
     /** 分页默认页 */
     private static final int DEFAULT_PAGE_NO = 1;
@@ -31,6 +35,13 @@ public class PageParam implements Serializable {
     @ApiParam("每页条数. 不传 或 传入负数 或 传入非数字 或 传入大于 " + MAX_LIMIT + " 的数则默认是 " + DEFAULT_LIMIT)
     private int limit;
 
+    @ApiParam("游标分页时上一页返回的 cursor, 第一页不传. 传了游标时 page 无效")
+    private String cursor;
+
+    @ApiParam("总条数的查询方式: NO_COUNT(不查总条数, 只返回是否有下一页) ESTIMATED(使用缓存的总条数) EXACT(每次都查). "
+            + "不传时移动端是 NO_COUNT, 否则是 EXACT")
+    private CountMode count;
+
     /** 是否是移动端 */
     @ApiParamIgnore
     private boolean wasMobile = false;
@@ -50,6 +61,14 @@ public class PageParam implements Serializable {
         this.limit = handlerLimit(limit);
     }
 
+    /** 实际使用的总条数查询方式 */
+    public CountMode countMode() {
+        if (U.isNotNull(count)) {
+            return count;
+        }
+        return wasMobile ? CountMode.NO_COUNT : CountMode.EXACT;
+    }
+
     /** 分页语句  LIMIT x, xx  中  x  的值 */
     public int pageStart() {
         return (page - 1) * limit;
@@ -30,9 +30,22 @@ public class PageReturn<T> implements Serializable {
     @ApiReturn("SELECT ... FROM ... LIMIT 0, 10 的结果")
     private List<T> list;
 
+    @ApiReturn("游标分页时下一页的游标, 原样放到下一次请求的 cursor 参数中, 为空表示没有下一页了")
+    private String cursor;
+
+    @ApiReturn("总条数的查询方式: NO_COUNT(没有总条数) ESTIMATED(总条数是缓存的, 可能不准) EXACT(准确的总条数)")
+    private CountMode countMode;
+
+    @ApiReturn("是否还有下一页")
+    private Boolean hasNext;
+
     public PageReturn(long total) {
         this.total = total;
     }
+    public PageReturn(long total, List<T> list) {
+        this.total = total;
+        this.list = list;
+    }
 
     public static <T> PageReturn<T> emptyReturn() {
         return EMPTY;
@@ -43,6 +56,21 @@ public class PageReturn<T> implements Serializable {
     public static <T> PageReturn<T> returnPage(long total, List<T> list) {
         return new PageReturn<>(total, list);
     }
+    /** 游标分页时没有总条数 */
+    public static <T> PageReturn<T> returnCursor(List<T> list, String cursor) {
+        PageReturn<T> pageReturn = new PageReturn<>(0, list);
+        pageReturn.setCursor(cursor);
+        pageReturn.setCountMode(CountMode.NO_COUNT);
+        pageReturn.setHasNext(U.isNotNull(cursor));
+        return pageReturn;
+    }
+    /** 分页时返回总条数的查询方式和是否有下一页 */
+    public static <T> PageReturn<T> returnPage(long total, List<T> list, CountMode countMode, boolean hasNext) {
+        PageReturn<T> pageReturn = new PageReturn<>(total, list);
+        pageReturn.setCountMode(countMode);
+        pageReturn.setHasNext(hasNext);
+        return pageReturn;
+    }
 
     /** 在 Controller 中调用 --> 组装不同的 res 时使用此方法 */
     public static <S,T> PageReturn<T> convertJustTotal(PageReturn<S> pageInfo) {
@@ -58,7 +86,8 @@ public class PageReturn<T> implements Serializable {
         if (U.isNull(pageInfo)) {
             return EMPTY;
         } else {
-            return new PageReturn<>(pageInfo.getTotal(), JsonUtil.convertList(pageInfo.getList(), clazz));
+            return new PageReturn<>(pageInfo.getTotal(), JsonUtil.convertList(pageInfo.getList(), clazz),
+                    pageInfo.getCursor(), pageInfo.getCountMode(), pageInfo.getHasNext());
         }
     }
 }
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.github.common.util.A;
 import com.github.common.util.U;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -16,7 +17,19 @@ public final class Pages {
     }
 
     public static <T> List<T> returnList(Page<T> pageInfo) {
-        return U.isNull(pageInfo) ? Collections.emptyList() : pageInfo.getRecords();
+        return U.isNull(pageInfo) ? Collections.emptyList() : records(pageInfo);
+    }
+
+    /** CountPage 多查的那一条不返回 */
+    private static <T> List<T> records(Page<T> pageInfo) {
+        List<T> list = pageInfo.getRecords();
+        if (pageInfo instanceof CountPage && U.isNotNull(list)) {
+            long limit = ((CountPage<T>) pageInfo).getLimit();
+            if (list.size() > limit) {
+                return new ArrayList<>(list.subList(0, (int) limit));
+            }
+        }
+        return list;
     }
 
     public static <T> T returnOne(Page<T> pageInfo) {
@@ -35,15 +48,42 @@ public final class Pages {
     public static <T> Page<T> param(PageParam page) {
         // 移动端与 pc 端的分页不同, 前者的用户习惯是一直刷, 一边刷一边加载, 它是不需要查询 select count(*) 的
         // 移动端也不需要有当前页的概念, 如果数据是按时间倒序(时间越后越排在前), 从下往上刷时, 它只需要加载比最下面的时间小的数据即可
-        return page.isWasMobile()
-                ? paramOnlyLimit(page.getLimit())
-                : new Page<>(page.getPage(), page.getLimit());
+        // 总条数的查询方式由前台传过来, 不传时移动端不查, 见 PageParam#countMode
+        return new CountPage<>(page.isWasMobile() ? 1 : page.getPage(), page.getLimit(), page.countMode());
+    }
+
+    /**
+     * 在 service 的实现类中调用 --> 游标分页时, 把 mapper 的返回转换成 PageReturn.
+     * SeekInterceptor 会多查一条, 查到了说明还有下一页, 用这一页的最后一条生成下一页的游标
+     */
+    public static <T> PageReturn<T> returnSeek(Seek<T> seek, List<T> list) {
+        if (A.isEmpty(list)) {
+            return PageReturn.returnCursor(Collections.emptyList(), null);
+        }
+        int limit = seek.getLimit();
+        if (list.size() > limit) {
+            List<T> pageList = new ArrayList<>(list.subList(0, limit));
+            return PageReturn.returnCursor(pageList, seek.nextCursor(pageList.get(limit - 1)));
+        } else {
+            return PageReturn.returnCursor(list, null);
+        }
     }
 
     /** 在 service 的实现类中调用 --> 在 repository 方法上的返回类型是 mbp 的 Page 对象, service 上的返回类型是 PageReturn, 使用此方法进行转换 */
     public static <T> PageReturn<T> returnPage(Page<T> pageInfo) {
         if (U.isNull(pageInfo)) {
             return PageReturn.emptyReturn();
+        } else if (pageInfo instanceof CountPage) {
+            CountPage<T> countPage = (CountPage<T>) pageInfo;
+            CountMode mode = countPage.getMode();
+            List<T> records = U.isNull(pageInfo.getRecords()) ? Collections.emptyList() : pageInfo.getRecords();
+            List<T> list = records(pageInfo);
+            // 准确的总数直接算, 否则看有没有多查出来的那一条
+            boolean hasNext = (mode == CountMode.EXACT)
+                    ? (countPage.offset() + list.size() < countPage.getTotal())
+                    : (records.size() > countPage.getLimit());
+            long total = (mode == CountMode.NO_COUNT) ? 0 : pageInfo.getTotal();
+            return PageReturn.returnPage(total, list, mode, hasNext);
         } else {
             return PageReturn.returnPage(pageInfo.getTotal(), pageInfo.getRecords());
         }
@@ -0,0 +1,214 @@
+package com.github.common.page;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.common.exception.ParamException;
+import com.github.common.json.JsonUtil;
+import com.github.common.util.A;
+import com.github.common.util.U;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * 游标分页(keyset / seek): 用上一页最后一条数据的排序值做条件, 不用 LIMIT offset, 翻到多深都只扫 limit 条
+ *   SELECT ... WHERE ... AND (create_time, id) &lt; (?, ?) ORDER BY create_time DESC, id DESC LIMIT 11
+ *
+ * 排序字段的组合必须是唯一的(最后一般带上主键), 最好有对应的联合索引. 在 service 中这样用:
+ *
+ * Seek&lt;Order&gt; seek = Seek.byDesc("create_time", Order::getCreateTime).desc("id", Order::getId).param(page);
+ * List&lt;Order&gt; list = orderMapper.selectByUser(userId, seek);  // mapper 的参数里带上 seek 即可
+ * return Pages.returnSeek(seek, list);
+ *
+ * mapper 里的 sql 不要写 ORDER BY 和 LIMIT, 由 {@link com.github.common.sql.SeekInterceptor} 生成.
+ * 返回给前端的 cursor 是不透明的, 前端下次原样传回来就行, 没有 cursor 说明没有下一页了
+ * </pre>
+ */
+public final class Seek<T> {
+
+    private final List<Key<T>> keys = new ArrayList<>();
+    private int limit = PageParam.handlerLimit(0);
+    /** 上一页最后一条数据的排序值, 第一页时为 null */
+    private Object[] after;
+
+    private Seek() {}
+
+    public static <T> Seek<T> byAsc(String column, Function<T, ?> getter) {
+        return new Seek<T>().asc(column, getter);
+    }
+    public static <T> Seek<T> byDesc(String column, Function<T, ?> getter) {
+        return new Seek<T>().desc(column, getter);
+    }
+
+    public Seek<T> asc(String column, Function<T, ?> getter) {
+        keys.add(new Key<>(column, getter, true));
+        return this;
+    }
+    public Seek<T> desc(String column, Function<T, ?> getter) {
+        keys.add(new Key<>(column, getter, false));
+        return this;
+    }
+
+    /** 使用前台传过来的每页条数和游标 */
+    public Seek<T> param(PageParam page) {
+        limit = page.getLimit();
+        after = decode(page.getCursor());
+        return this;
+    }
+    public Seek<T> limit(int limit) {
+        this.limit = PageParam.handlerLimit(limit);
+        return this;
+    }
+    public Seek<T> cursor(String cursor) {
+        after = decode(cursor);
+        return this;
+    }
+
+    public List<Key<T>> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+    public int getLimit() {
+        return limit;
+    }
+    public Object[] getAfter() {
+        return after;
+    }
+    public boolean hasAfter() {
+        return after != null;
+    }
+    /** 排序方向都一样时可以用 (a, b) &gt; (?, ?) 的写法, 否则要展开成 a &gt; ? OR (a = ? AND b &lt; ?) */
+    public boolean sameDirection() {
+        for (Key<T> key : keys) {
+            if (key.asc != keys.get(0).asc) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /** 排序列和方向, 游标里也会带上, 换了排序的游标不能用 */
+    public String signature() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (Key<T> key : keys) {
+            joiner.add(key.column + (key.asc ? " ASC" : " DESC"));
+        }
+        return joiner.toString();
+    }
+
+    /** 用这一页的最后一条数据生成下一页的游标 */
+    public String nextCursor(T last) {
+        if (U.isNull(last) || A.isEmpty(keys)) {
+            return null;
+        }
+        List<Object> values = new ArrayList<>();
+        values.add(signature().hashCode());
+        for (Key<T> key : keys) {
+            Object value = key.getter.apply(last);
+            if (U.isNull(value)) {
+                throw new IllegalStateException(String.format("seek column(%s) can't be null", key.column));
+            }
+            values.add(Arrays.asList(type(value), text(value)));
+        }
+        byte[] json = JsonUtil.toJson(values).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    private Object[] decode(String cursor) {
+        if (U.isBlank(cursor)) {
+            return null;
+        }
+        List<Object> values;
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            values = JsonUtil.toObjectType(json, new TypeReference<List<Object>>() {});
+        } catch (IllegalArgumentException e) {
+            values = null;
+        }
+        if (A.isEmpty(values) || values.size() != keys.size() + 1
+                || !String.valueOf(signature().hashCode()).equals(String.valueOf(values.get(0)))) {
+            throw new ParamException("分页游标有误, 请从第一页开始");
+        }
+        Object[] after = new Object[keys.size()];
+        for (int i = 0; i < after.length; i++) {
+            Object value = values.get(i + 1);
+            if (!(value instanceof List) || ((List<?>) value).size() != 2) {
+                throw new ParamException("分页游标有误, 请从第一页开始");
+            }
+            List<?> pair = (List<?>) value;
+            after[i] = value(String.valueOf(pair.get(0)), String.valueOf(pair.get(1)));
+        }
+        return after;
+    }
+
+    // 游标里的值带上类型, 还原回来时绑定到 sql 上的类型跟列一致
+
+    private static String type(Object value) {
+        if (value instanceof Date) {
+            return "d";
+        } else if (value instanceof LocalDateTime) {
+            return "t";
+        } else if (value instanceof LocalDate) {
+            return "D";
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return "l";
+        } else if (value instanceof BigDecimal) {
+            return "n";
+        } else if (value instanceof Boolean) {
+            return "b";
+        } else {
+            return "s";
+        }
+    }
+    private static String text(Object value) {
+        if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        } else {
+            return value.toString();
+        }
+    }
+    private static Object value(String type, String text) {
+        try {
+            switch (type) {
+                case "d": return new Date(Long.parseLong(text));
+                case "t": return LocalDateTime.parse(text);
+                case "D": return LocalDate.parse(text);
+                case "l": return Long.parseLong(text);
+                case "n": return new BigDecimal(text);
+                case "b": return Boolean.parseBoolean(text);
+                case "s": return text;
+                default: throw new ParamException("分页游标有误, 请从第一页开始");
+            }
+        } catch (RuntimeException e) {
+            throw new ParamException("分页游标有误, 请从第一页开始");
+        }
+    }
+
+    public static final class Key<T> {
+        private final String column;
+        private final Function<T, ?> getter;
+        private final boolean asc;
+
+        private Key(String column, Function<T, ?> getter, boolean asc) {
+            if (U.isBlank(column) || U.isNull(getter)) {
+                throw new IllegalArgumentException("seek column and getter can't be empty");
+            }
+            this.column = column.trim();
+            this.getter = getter;
+            this.asc = asc;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+        public boolean isAsc() {
+            return asc;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.common.sql;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.github.common.page.CountMode;
+import com.github.common.page.CountPage;
+import com.github.common.util.A;
+import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ * 按 {@link CountPage} 的查询方式处理总条数的分页插件:
+ *   NO_COUNT  : 不查总条数(CountPage 会多查一条来判断有没有下一页)
+ *   ESTIMATED : 总条数按 sql + 参数 缓存 ttl 时长, 缓存中有就不再 SELECT COUNT(*)
+ *   EXACT     : 跟 PaginationInnerInterceptor 一样, 每次都查
+ * 不是 CountPage 的分页参数也跟 PaginationInnerInterceptor 一样处理
+ *
+ * MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+ * interceptor.addInnerInterceptor(new CountPaginationInterceptor(DbType.MYSQL));
+ * </pre>
+ */
+public class CountPaginationInterceptor extends PaginationInnerInterceptor {
+
+    private static final Pattern BLANK_REGEX = Pattern.compile("\\s+");
+
+    private final Cache<String, Long> countCache;
+
+    public CountPaginationInterceptor(DbType dbType) {
+        this(dbType, 60, 10000);
+    }
+    /**
+     * @param ttlSeconds 总条数缓存的秒数
+     * @param maxSize 最多缓存多少个查询的总条数
+     */
+    public CountPaginationInterceptor(DbType dbType, long ttlSeconds, long maxSize) {
+        super(dbType);
+        this.countCache = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxSize).recordStats().build();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                               ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        IPage<?> page = ParameterUtils.findPage(parameter).orElse(null);
+        if (!(page instanceof CountPage) || ((CountPage<?>) page).getMode() != CountMode.ESTIMATED) {
+            return super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+
+        String key = countKey(executor, ms, parameter, boundSql);
+        Long total = countCache.getIfPresent(key);
+        if (U.isNotNull(total)) {
+            page.setTotal(total);
+            // 缓存的总条数可能已经不准了, 不根据它跳过查询
+            return true;
+        }
+        boolean doQuery = super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        countCache.put(key, page.getTotal());
+        return doQuery;
+    }
+
+    /** 同一个 statement 的 sql(去掉多余的空白) + 参数值, 页数不同也是同一个 */
+    private static String countKey(Executor executor, MappedStatement ms, Object parameter, BoundSql boundSql) {
+        String sql = BLANK_REGEX.matcher(boundSql.getSql().trim()).replaceAll(" ");
+        BoundSql normalized = new BoundSql(ms.getConfiguration(), sql, boundSql.getParameterMappings(), parameter);
+        return executor.createCacheKey(ms, parameter, RowBounds.DEFAULT, copyAdditional(boundSql, normalized)).toString();
+    }
+    @SuppressWarnings("unchecked")
+    private static BoundSql copyAdditional(BoundSql from, BoundSql to) {
+        // foreach 等动态 sql 生成的参数
+        Map<String, Object> additional = (Map<String, Object>) SystemMetaObject.forObject(from).getValue("additionalParameters");
+        if (U.isNotNull(additional)) {
+            for (Map.Entry<String, Object> entry : additional.entrySet()) {
+                to.setAdditionalParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        return to;
+    }
+
+    /** 数据有大的变动(比如批量导入、删除)时清掉缓存的总条数 */
+    public void clearCount() {
+        countCache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = countCache.stats();
+        return A.linkedMaps(
+                "size", countCache.size(),
+                "hit", stats.hitCount(),
+                "miss", stats.missCount(),
+                "hitRate", stats.hitRate()
+        );
+    }
+}
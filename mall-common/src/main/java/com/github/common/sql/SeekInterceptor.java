@@ -0,0 +1,216 @@
+package com.github.common.sql;
+
+import com.github.common.page.Seek;
+import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.*;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * <pre>
+ * 游标分页的 mybatis 插件: mapper 的参数里有 {@link Seek} 时, 把查询改写成
+ *   SELECT ... WHERE (原来的条件) AND k1 &gt;= ? AND (k1, k2) &gt; (?, ?) ORDER BY k1, k2 LIMIT n + 1
+ * 排序方向不一致时条件展开成 k1 &gt;= ? AND (k1 &gt; ? OR (k1 = ? AND k2 &lt; ?)). 第一页(没有游标)时只加 ORDER BY 和 LIMIT.
+ *
+ * 原来的 ORDER BY 和 LIMIT 会被替换掉(里面不能有参数), 不支持 GROUP BY、HAVING 和 UNION.
+ * 改写后的 sql 按 原 sql + 排序 + 是否有游标 缓存, 同一个查询只解析一次
+ *
+ * 解析 sql 用的是 jsqlparser, mall-common 里是 provided 的, 运行时要在服务自己的依赖中:
+ *   用了 mybatis-plus 的服务(如 queue-server)已经带上了, 声明成 bean 即可, 见 queue-server 的 MybatisConfig.
+ *   只用 mybatis 的服务(user、product、order、search、common 这些)要先在 pom 中加上(版本在根 pom 中)
+ *     &lt;dependency&gt;
+ *       &lt;groupId&gt;com.github.jsqlparser&lt;/groupId&gt;
+ *       &lt;artifactId&gt;jsqlparser&lt;/artifactId&gt;
+ *     &lt;/dependency&gt;
+ *   再 sessionFactory.setPlugins(new Interceptor[] { new PageInterceptor("mysql"), new SeekInterceptor() });
+ *   没有这个包时加载这个类会抛 NoClassDefFoundError
+ * </pre>
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class }),
+        @Signature(type = Executor.class, method = "query",
+                args = { MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class })
+})
+public class SeekInterceptor implements Interceptor {
+
+    private static final String PARAM_PREFIX = "__seek_";
+
+    private static final Cache<String, String> SQL_CACHE = CacheBuilder.newBuilder().maximumSize(2000).build();
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        Object param = args[1];
+        Seek<?> seek = findSeek(param);
+        if (U.isNull(seek)) {
+            return invocation.proceed();
+        }
+
+        MappedStatement ms = (MappedStatement) args[0];
+        RowBounds rowBounds = (RowBounds) args[2];
+        ResultHandler resultHandler = (ResultHandler) args[3];
+        Executor executor = (Executor) invocation.getTarget();
+        BoundSql boundSql = (args.length == 6) ? (BoundSql) args[5] : ms.getBoundSql(param);
+
+        BoundSql seekSql = seekBoundSql(ms.getConfiguration(), boundSql, param, seek);
+        CacheKey cacheKey = executor.createCacheKey(ms, param, rowBounds, seekSql);
+        return executor.query(ms, param, rowBounds, resultHandler, cacheKey, seekSql);
+    }
+
+    private static Seek<?> findSeek(Object param) {
+        if (param instanceof Seek) {
+            return (Seek<?>) param;
+        }
+        if (param instanceof Map) {
+            for (Object value : ((Map<?, ?>) param).values()) {
+                if (value instanceof Seek) {
+                    return (Seek<?>) value;
+                }
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BoundSql seekBoundSql(Configuration configuration, BoundSql boundSql, Object param, Seek<?> seek) {
+        String sql = rewrite(boundSql.getSql(), seek);
+
+        List<ParameterMapping> mappings = new ArrayList<>(boundSql.getParameterMappings());
+        Object[] after = seek.getAfter();
+        List<Object> values = new ArrayList<>();
+        if (U.isNotNull(after)) {
+            // 条件里参数的顺序跟 condition 方法里的一致
+            values.add(after[0]);
+            if (seek.sameDirection()) {
+                values.addAll(Arrays.asList(after));
+            } else {
+                for (int i = 0; i < after.length; i++) {
+                    values.addAll(Arrays.asList(after).subList(0, i + 1));
+                }
+            }
+        }
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            mappings.add(new ParameterMapping.Builder(configuration, PARAM_PREFIX + i, value.getClass()).build());
+        }
+
+        BoundSql seekSql = new BoundSql(configuration, sql, mappings, param);
+        // foreach 等动态 sql 生成的参数也要带过去
+        Map<String, Object> additional = (Map<String, Object>) SystemMetaObject.forObject(boundSql).getValue("additionalParameters");
+        if (U.isNotNull(additional)) {
+            for (Map.Entry<String, Object> entry : additional.entrySet()) {
+                seekSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+            }
+        }
+        for (int i = 0; i < values.size(); i++) {
+            seekSql.setAdditionalParameter(PARAM_PREFIX + i, values.get(i));
+        }
+        return seekSql;
+    }
+
+    private static String rewrite(String sql, Seek<?> seek) {
+        String key = sql + "\n" + seek.signature() + "\n" + seek.getLimit() + "\n" + seek.hasAfter();
+        try {
+            return SQL_CACHE.get(key, () -> parse(sql, seek));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("seek sql(%s) rewrite exception", sql), e.getCause());
+        }
+    }
+
+    private static String parse(String sql, Seek<?> seek) throws JSQLParserException {
+        Statement statement = CCJSqlParserUtil.parse(sql);
+        if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+            throw new IllegalArgumentException("seek only support simple select");
+        }
+        PlainSelect select = (PlainSelect) ((Select) statement).getSelectBody();
+        if (U.isNotNull(select.getGroupBy()) || U.isNotNull(select.getHaving())) {
+            throw new IllegalArgumentException("seek not support GROUP BY or HAVING");
+        }
+        // 新加的参数放在最后, 所以 WHERE 之后不能有原来的参数
+        if (hasParam(select.getOrderByElements()) || hasParam(select.getLimit())
+                || hasParam(select.getOffset()) || hasParam(select.getFetch())) {
+            throw new IllegalArgumentException("seek will replace ORDER BY and LIMIT, they can't have parameter");
+        }
+
+        if (seek.hasAfter()) {
+            Expression condition = CCJSqlParserUtil.parseCondExpression(condition(seek));
+            Expression where = select.getWhere();
+            select.setWhere(U.isNull(where) ? condition : new AndExpression(new Parenthesis(where), condition));
+        }
+
+        List<OrderByElement> orders = new ArrayList<>();
+        for (Seek.Key<?> key : seek.getKeys()) {
+            OrderByElement order = new OrderByElement();
+            order.setExpression(new Column(key.getColumn()));
+            order.setAsc(key.isAsc());
+            order.setAscDescPresent(true);
+            orders.add(order);
+        }
+        select.setOrderByElements(orders);
+        select.setOffset(null);
+        select.setFetch(null);
+        Limit limit = new Limit();
+        limit.setRowCount(new LongValue(seek.getLimit() + 1L));
+        select.setLimit(limit);
+        return statement.toString();
+    }
+
+    private static String condition(Seek<?> seek) {
+        List<? extends Seek.Key<?>> keys = seek.getKeys();
+        // 先给第一列一个范围, 不管数据库能不能把后面的条件用上索引, 都能从索引上直接定位到开始的地方
+        Seek.Key<?> first = keys.get(0);
+        String range = first.getColumn() + (first.isAsc() ? " >= ?" : " <= ?") + " AND ";
+        if (seek.sameDirection()) {
+            StringJoiner columns = new StringJoiner(", ", "(", ")");
+            StringJoiner params = new StringJoiner(", ", "(", ")");
+            for (Seek.Key<?> key : keys) {
+                columns.add(key.getColumn());
+                params.add("?");
+            }
+            return range + columns + (first.isAsc() ? " > " : " < ") + params;
+        }
+
+        // a >= ? AND (a > ? OR (a = ? AND b < ?) OR (a = ? AND b = ? AND c > ?))
+        StringJoiner or = new StringJoiner(" OR ", range + "(", ")");
+        for (int i = 0; i < keys.size(); i++) {
+            StringJoiner and = new StringJoiner(" AND ", "(", ")");
+            for (int j = 0; j < i; j++) {
+                and.add(keys.get(j).getColumn() + " = ?");
+            }
+            Seek.Key<?> key = keys.get(i);
+            and.add(key.getColumn() + (key.isAsc() ? " > ?" : " < ?"));
+            or.add(and.toString());
+        }
+        return or.toString();
+    }
+
+    private static boolean hasParam(Object obj) {
+        return U.isNotNull(obj) && obj.toString().contains("?");
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.common.util;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * 类的属性访问表, 每个类只在第一次使用时解析一次, 之后直接从表里取.
+ *
+ * get 方法用 LambdaMetafactory 生成成 Function(跟直接调用 getter 的开销差不多),
+ * 生成失败(比如类对当前的类加载器不可见)时退回到 MethodHandle, 再不行就用反射
+ *
+ * BeanAccessor.of(XX.class).get(xx, "name");
+ * </pre>
+ */
+public final class BeanAccessor {
+
+    private static final Map<Class<?>, BeanAccessor> CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> clazz;
+    /** 属性名 -> get 方法 */
+    private final Map<String, Function<Object, Object>> getterMap;
+    /** 属性名 -> 字段(包括父类的) */
+    private final Map<String, Field> fieldMap;
+
+    private BeanAccessor(Class<?> clazz) {
+        this.clazz = clazz;
+        this.getterMap = collectGetter(clazz);
+        this.fieldMap = collectField(clazz);
+    }
+
+    public static BeanAccessor of(Class<?> clazz) {
+        return CACHE.computeIfAbsent(clazz, BeanAccessor::new);
+    }
+
+    public Class<?> getType() {
+        return clazz;
+    }
+
+    /** 所有有 get 方法的属性名 */
+    public Set<String> properties() {
+        return getterMap.keySet();
+    }
+
+    public boolean hasProperty(String property) {
+        return getterMap.containsKey(property);
+    }
+
+    /** 调用属性的 get 方法, 没有这个属性返回 null */
+    public Object get(Object bean, String property) {
+        Function<Object, Object> getter = getterMap.get(property);
+        return (getter == null || bean == null) ? null : getter.apply(bean);
+    }
+
+    /** 属性对应的字段(先找当前类再找父类), 没有返回 null */
+    public Field field(String property) {
+        return fieldMap.get(property);
+    }
+
+    private static Map<String, Function<Object, Object>> collectGetter(Class<?> clazz) {
+        Map<String, Function<Object, Object>> returnMap = new HashMap<>();
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(clazz, Object.class);
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("introspect class({}) exception", clazz.getName(), e);
+            }
+            return returnMap;
+        }
+        for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+            Method method = descriptor.getReadMethod();
+            if (method != null) {
+                returnMap.put(descriptor.getName(), compile(clazz, method));
+            }
+        }
+        return returnMap;
+    }
+
+    private static Map<String, Field> collectField(Class<?> clazz) {
+        Map<String, Field> returnMap = new HashMap<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    returnMap.putIfAbsent(field.getName(), field);
+                }
+            }
+        }
+        return returnMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compile(Class<?> clazz, Method method) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(method);
+            Class<?> returnType = method.getReturnType();
+            Class<?> boxType = returnType.isPrimitive() ? MethodType.methodType(returnType).wrap().returnType() : returnType;
+            CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                    GETTER_TYPE, handle, MethodType.methodType(boxType, method.getDeclaringClass()));
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            if (LogUtil.ROOT_LOG.isDebugEnabled()) {
+                LogUtil.ROOT_LOG.debug("compile getter({}.{}) exception, use method handle", clazz.getName(), method.getName(), e);
+            }
+        }
+        try {
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+            return bean -> {
+                try {
+                    return handle.invokeExact(bean);
+                } catch (Throwable t) {
+                    throw new RuntimeException(String.format("call(%s) method(%s) exception", clazz.getName(), method.getName()), t);
+                }
+            };
+        } catch (Exception e) {
+            return bean -> U.invokeMethod(bean, method.getName());
+        }
+    }
+}
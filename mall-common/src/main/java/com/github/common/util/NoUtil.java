@@ -1,64 +1,71 @@
 package com.github.common.util;
 
+import com.github.common.id.OrderNo;
+import com.github.common.id.SegmentId;
+import com.github.common.id.SnowflakeId;
+
 import java.lang.management.ManagementFactory;
 import java.net.NetworkInterface;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Enumeration;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * <p>https://github.com/mongodb/mongo-java-driver/blob/master/bson/src/main/org/bson/types/ObjectId.java</p>
+ * <pre>
+ * 单号和 id 的生成, 具体的实现见 {@link SnowflakeId}、{@link OrderNo}、{@link SegmentId}.
  *
- * <p>由以下几个部分组成:</p>
- * <li>生成序列号的行为. 如 D 表示订单, X 表示提现, T 表示退款 等</li>
- * <li>时间规则的 hashcode 值</li>
- * <li>自增值. 这个值基于当前进程是同步的. 基于 concurrent 下的 atomic 类实现, 避免 synchronized 锁</li>
- * <li>机器码 + 进程号合并后的 hashcode 值</li>
- * &nbsp;&nbsp;&nbsp;&nbsp;机器码. 当前机器的 mac 地址. 在多台不同的机器时, 此规则可以区分<br/>
- * &nbsp;&nbsp;&nbsp;&nbsp;进程号. 此 jvm 进程号. 在一台机器的多个不同进程时, 此规则可以区分
+ * 机器号(0 ~ 1023)在每个实例上要不一样, 用 -Did.worker=xx 指定或者启动时调用 setWorkerId,
+ * 没有指定时用 机器码 + 进程号 的 hashcode 取模并输出警告, 多个实例时很容易相同(生成重复的 id), 只用于开发环境.
+ * online 为 true 时没有指定 id.worker 会启动失败, 见 GlobalConfig
  *
- * <table border="1">
- *     <caption>ObjectID layout</caption>
- *     <tr>
- *         <td>1</td>
- *         <td>2</td>
- *         <td>3</td>
- *         <td>4</td>
- *     </tr>
- *     <tr>
- *         <td>behavior</td>
- *         <td>time.hashCode.sub</td>
- *         <td>inc</td>
- *         <td>(machine + pid).hashCode.sub</td>
- *     </tr>
- * </table>
+ * 机器码和进程号的取法来自 https://github.com/mongodb/mongo-java-driver/blob/master/bson/src/main/org/bson/types/ObjectId.java
+ * </pre>
  */
 public final class NoUtil {
 
     private static final Logger LOGGER = Logger.getLogger(NoUtil.class.getName());
 
-    /** 机器码 加 进程号 会导致生成的序列号很长, 基于这两个值做一些截取 */
-    private static final String MP;
-    /** 截取长度 */
-    private static final int HORIZONTAL_LEN = 4;
-    /** 最大长度 */
-    private static final int MAX_LEN = 15;
-    static {
-        // 机器码 --> 本机 mac 地址的 hashcode 值
-        int machineIdentifier = createMachineIdentifier();
-        // 进程号 --> 当前运行的 jvm 进程号的 hashcode 值
-        int processIdentifier = createProcessIdentifier();
+    private static volatile SnowflakeId SNOWFLAKE = new SnowflakeId(defaultWorkerId());
+    /** 订单号: D + yyMMddHHmmss + 10 位数字 */
+    private static volatile OrderNo ORDER = new OrderNo("D", SNOWFLAKE);
+    /** 是否调用过 setWorkerId */
+    private static boolean WORKER_SET;
 
-        String mp = Integer.toString(Math.abs((machineIdentifier + "" + processIdentifier).hashCode()));
-        MP = (mp.length() > HORIZONTAL_LEN) ? mp.substring(mp.length() - HORIZONTAL_LEN, mp.length()) : mp;
+    private static int defaultWorkerId() {
+        String worker = System.getProperty("id.worker");
+        if (worker != null && !worker.trim().isEmpty()) {
+            return Integer.parseInt(worker.trim());
+        }
+        // 机器码 --> 本机 mac 地址的 hashcode 值, 进程号 --> 当前运行的 jvm 进程号的 hashcode 值
+        String mp = createMachineIdentifier() + "" + createProcessIdentifier();
+        int workerId = Math.floorMod(mp.hashCode(), SnowflakeId.MAX_WORKER + 1);
+        LOGGER.warning(String.format("id.worker not set, use %s from machine and pid, " +
+                "multiple instances may get the same worker and generate duplicate id", workerId));
+        return workerId;
+    }
+
+    /**
+     * 设置当前实例的机器号(0 ~ 1023), 只能设置一次.
+     *
+     * 换掉生成器会丢掉上次用的时间和序号, 同一毫秒内再生成就会重复, 所以机器号相同时(如刷新配置后再次调用)保留原来的生成器,
+     * 设置过之后再换成别的机器号则抛出 IllegalStateException
+     */
+    public static synchronized void setWorkerId(int workerId) {
+        if (SNOWFLAKE.getWorkerId() == workerId) {
+            WORKER_SET = true;
+            return;
+        }
+        if (WORKER_SET) {
+            throw new IllegalStateException(String.format("workerId has been set to %s, can't change to %s",
+                    SNOWFLAKE.getWorkerId(), workerId));
+        }
+        SnowflakeId snowflake = new SnowflakeId(workerId);
+        ORDER = new OrderNo("D", snowflake);
+        SNOWFLAKE = snowflake;
+        WORKER_SET = true;
     }
 
     private static int createMachineIdentifier() {
@@ -109,55 +116,13 @@ public final class NoUtil {
         return processId;
     }
 
-    private static String unitCode() {
-        String unit = Integer.toString(Math.abs(new SimpleDateFormat("HHyyssMMmmdd").format(new Date()).hashCode()));
-        return unit.substring(unit.length() - HORIZONTAL_LEN, unit.length());
-    }
-
-    /** 生成序列号的类型 */
-    private enum Category {
-        /** 订单: 标识, 初始值, 步长, 最大值(只要保证之内, 从初始化值加步长不会超时最大值就不会有重复) */
-        Order("D", 16, 3, 10000000);
-
-        String behavior;
-        int init, step, max;
-        AtomicLong counter;
-        Lock lock;
-        Category(String behavior, int init, int step, int max) {
-            this.behavior = behavior;
-            this.init = init;
-            this.step = step;
-            this.max = max - step;
-
-            counter = new AtomicLong(init);
-            lock = new ReentrantLock();
-        }
-        public String no() {
-            long increment = counter.addAndGet(step);
-            if (increment >= max) {
-                lock.lock();
-                try {
-                    if (increment >= max) {
-                        increment = counter.getAndSet(init);
-                    }
-                } finally {
-                    lock.unlock();
-                }
-            }
-            String no = unitCode() + increment + MP;
-            if (no.length() < MAX_LEN) {
-                StringBuilder sbd = new StringBuilder();
-                for (int i = 0; i < MAX_LEN - no.length(); i++) {
-                    sbd.append("0");
-                }
-                no = unitCode() + sbd.toString() + increment + MP;
-            }
-            return behavior + no;
-        }
+    /** 生成 64 位的 id */
+    public static long nextId() {
+        return SNOWFLAKE.nextId();
     }
 
     /** 生成订单号 */
     public static String getOrderNo() {
-        return Category.Order.no();
+        return ORDER.next();
     }
 }
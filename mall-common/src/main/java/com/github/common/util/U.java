@@ -5,7 +5,6 @@ import com.github.common.encrypt.Encrypt;
 import com.github.common.exception.*;
 import com.github.common.json.JsonUtil;
 
-import java.beans.PropertyDescriptor;
 import java.io.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
@@ -908,9 +907,18 @@ public final class U {
         if (data instanceof Map) {
             value = ((Map) data).get(field);
         } else {
-            try {
-                value = new PropertyDescriptor(field, data.getClass()).getReadMethod().invoke(data);
-            } catch (Exception e) {
+            // get 方法在每个类第一次使用时编译好并缓存, 导出时每个单元格都会调用到这里
+            BeanAccessor accessor = BeanAccessor.of(data.getClass());
+            if (accessor.hasProperty(field)) {
+                try {
+                    value = accessor.get(data, field);
+                } catch (Exception e) {
+                    if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                        LogUtil.ROOT_LOG.error("call({}) property({}) exception", data.getClass().getName(), field, e);
+                    }
+                    value = null;
+                }
+            } else {
                 value = invokeMethod(data, "get" + field.substring(0, 1).toUpperCase() + field.substring(1));
             }
         }
@@ -919,7 +927,9 @@ public final class U {
             return EMPTY;
         } else if (value.getClass().isEnum()) {
             // 如果是枚举, 则调用其 getValue 方法, getValue 没有值则使用枚举的 name
-            return toStr(defaultIfNull(invokeMethod(value, "getValue"), value));
+            BeanAccessor accessor = BeanAccessor.of(value.getClass());
+            Object enumValue = accessor.hasProperty("value") ? accessor.get(value, "value") : invokeMethod(value, "getValue");
+            return toStr(defaultIfNull(enumValue, value));
         } else if (value instanceof Date) {
             // 如果是日期, 则格式化
             return toStr(DateUtil.formatDateTime((Date) value));
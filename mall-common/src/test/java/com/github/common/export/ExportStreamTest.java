@@ -0,0 +1,168 @@
+package com.github.common.export;
+
+import com.alibaba.excel.EasyExcel;
+import com.github.common.export.csv.ExportCsv;
+import com.github.common.export.easy.ExportEasyExcel;
+import com.github.common.export.poi.ExportExcel;
+import com.github.common.util.A;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class ExportStreamTest {
+
+    /** 子进程的最大堆. csv 的输出是它的两倍多, 全量放进内存是放不下的; xlsx 只看小堆下能不能正常写完 */
+    private static final int HEAP_MB = 32;
+    private static final int CSV_ROWS = 1_200_000;
+    private static final int XLSX_ROWS = 10_000;
+    private static final LinkedHashMap<String, String> TITLE_MAP = A.linkedMaps("id", "编号", "name", "名称", "price", "价格", "remark", "备注");
+
+    /** 在 -Xmx32m 的子进程中导出, 输出的内容比堆大, 全量放进内存的话一定会 OOM */
+    @Test
+    public void exportUnderSmallHeap() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Xmx" + HEAP_MB + "m", "-cp", System.getProperty("java.class.path"),
+                ExportStreamTest.class.getName()).inheritIO().start();
+        Assertions.assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+        Assertions.assertEquals(0, process.exitValue());
+    }
+
+    @Test
+    public void pageIterator() {
+        Iterator<Integer> iterator = new PageIterator<>(page -> page > 3 ? Collections.emptyList() : Arrays.asList(page * 10 + 1, page * 10 + 2));
+        List<Integer> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        Assertions.assertEquals(Arrays.asList(11, 12, 21, 22, 31, 32), list);
+    }
+
+    @Test
+    public void csvSameAsContent() throws Exception {
+        List<Row> dataList = new ArrayList<>();
+        rows(100).forEachRemaining(dataList::add);
+        dataList.add(new Row(101, "换行\n和空格 ", 0, null));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ExportCsv.write(TITLE_MAP, dataList.iterator(), output);
+        Assertions.assertEquals(ExportCsv.getContent(TITLE_MAP, dataList), output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void easyExcelStream() {
+        // 默认走 easy excel, 传 xls 也写成 xlsx
+        File dir = new File(System.getProperty("java.io.tmpdir"), "export-stream-test");
+        File file = FileExport.saveStream("xls", "easy", TITLE_MAP, rows(1000), false, dir.getPath());
+        try {
+            Assertions.assertTrue(file.getName().endsWith(".xlsx"), file.getName());
+            List<Map<Integer, String>> list = EasyExcel.read(file).sheet().doReadSync();
+            Assertions.assertEquals(1000, list.size());
+            Assertions.assertEquals("1000", list.get(999).get(0));
+            Assertions.assertEquals("商品, \"1000\"", list.get(999).get(1));
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LinkedHashMap<String, String> titleMap = TITLE_MAP;
+
+        CountOutputStream csv = new CountOutputStream();
+        long start = System.currentTimeMillis();
+        ExportCsv.write(titleMap, rows(CSV_ROWS), csv);
+        System.out.printf("csv  %s rows: %s bytes, %sms, used heap %sMB%n",
+                CSV_ROWS, csv.count, System.currentTimeMillis() - start, usedMb());
+        // 写出的内容要比整个堆还大, 否则证明不了是边查边写的
+        if (csv.count < 2L * Runtime.getRuntime().maxMemory()) {
+            throw new IllegalStateException(String.format("csv 只有 %s bytes, 不到堆(%s)的两倍", csv.count, Runtime.getRuntime().maxMemory()));
+        }
+
+        CountOutputStream xlsx = new CountOutputStream();
+        start = System.currentTimeMillis();
+        ExportExcel.write("sheet", titleMap, rows(XLSX_ROWS), xlsx);
+        System.out.printf("xlsx %s rows: %s bytes, %sms, used heap %sMB%n",
+                XLSX_ROWS, xlsx.count, System.currentTimeMillis() - start, usedMb());
+
+        CountOutputStream easy = new CountOutputStream();
+        start = System.currentTimeMillis();
+        ExportEasyExcel.write("sheet", titleMap, rows(XLSX_ROWS), easy);
+        System.out.printf("easy %s rows: %s bytes, %sms, used heap %sMB%n",
+                XLSX_ROWS, easy.count, System.currentTimeMillis() - start, usedMb());
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "export-stream-test");
+        File file = FileExport.saveStream("csv", "stream", titleMap, rows(XLSX_ROWS), false, dir.getPath());
+        System.out.printf("file %s: %s bytes%n", file.getName(), file.length());
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static long usedMb() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+    }
+
+    /** 按需生成数据, 不在内存中保留 */
+    private static Iterator<Row> rows(int count) {
+        return new Iterator<Row>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Row next() {
+                index++;
+                return new Row(index, "商品, \"" + index + "\"", index * 1.5, "第 " + index + " 行的备注");
+            }
+        };
+    }
+
+    public static class Row {
+        private final long id;
+        private final String name;
+        private final double price;
+        private final String remark;
+
+        public Row(long id, String name, double price, String remark) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.remark = remark;
+        }
+        public long getId() {
+            return id;
+        }
+        public String getName() {
+            return name;
+        }
+        public double getPrice() {
+            return price;
+        }
+        public String getRemark() {
+            return remark;
+        }
+    }
+
+    private static class CountOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.common.id;
+
+import com.github.common.util.NoUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdTest {
+
+    private static final int WORKER = 4;
+    private static final int THREAD_PER_WORKER = 2;
+    private static final int LOOP = 250_000;
+
+    /** 多个机器号(模拟多个实例), 每个机器号多个线程同时生成, 所有的 id 都不能重复 */
+    @Test
+    public void snowflakeAcrossWorkers() throws Exception {
+        List<SnowflakeId> workers = new ArrayList<>();
+        for (int i = 0; i < WORKER; i++) {
+            workers.add(new SnowflakeId(i * 100 + 1));
+        }
+        long[][] result = new long[WORKER * THREAD_PER_WORKER][];
+        long ms = run(index -> {
+            SnowflakeId snowflake = workers.get(index / THREAD_PER_WORKER);
+            long[] ids = new long[LOOP];
+            for (int i = 0; i < LOOP; i++) {
+                ids[i] = snowflake.nextId();
+            }
+            result[index] = ids;
+        });
+
+        long[] all = new long[WORKER * THREAD_PER_WORKER * LOOP];
+        for (int i = 0; i < result.length; i++) {
+            long[] ids = result[i];
+            // 同一个线程拿到的 id 是递增的, 机器号就是自己的
+            for (int j = 0; j < ids.length; j++) {
+                Assertions.assertEquals(workers.get(i / THREAD_PER_WORKER).getWorkerId(), SnowflakeId.workerId(ids[j]));
+                if (j > 0) {
+                    Assertions.assertTrue(ids[j] > ids[j - 1]);
+                }
+            }
+            System.arraycopy(ids, 0, all, i * LOOP, LOOP);
+        }
+        assertUnique(all);
+        System.out.printf("snowflake: %s ids in %sms, %s ids/s%n", all.length, ms, all.length * 1000L / Math.max(ms, 1));
+    }
+
+    @Test
+    public void clockBackwards() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeId snowflake = new SnowflakeId(7, 1000, 5000, clock::get);
+        long[] ids = new long[30_000];
+        for (int i = 0; i < ids.length; i++) {
+            // 中间回拨 500 毫秒, 之后又慢慢走回来
+            if (i == 10_000) {
+                clock.addAndGet(-500);
+            } else if (i % 100 == 0) {
+                clock.incrementAndGet();
+            }
+            ids[i] = snowflake.nextId();
+            if (i > 0) {
+                Assertions.assertTrue(ids[i] > ids[i - 1]);
+            }
+        }
+        assertUnique(ids);
+        Assertions.assertTrue(snowflake.backwardCount() > 0);
+
+        // 回拨太多则抛出异常
+        clock.addAndGet(-10_000);
+        Assertions.assertThrows(IllegalStateException.class, snowflake::nextId);
+    }
+
+    @Test
+    public void orderNoAcrossWorkers() throws Exception {
+        List<OrderNo> workers = new ArrayList<>();
+        for (int i = 0; i < WORKER; i++) {
+            workers.add(new OrderNo("D", new SnowflakeId(SnowflakeId.MAX_WORKER - i)));
+        }
+        int loop = LOOP / 2;
+        String[][] result = new String[WORKER * THREAD_PER_WORKER][];
+        long ms = run(index -> {
+            OrderNo orderNo = workers.get(index / THREAD_PER_WORKER);
+            String[] nos = new String[loop];
+            for (int i = 0; i < loop; i++) {
+                nos[i] = orderNo.next();
+            }
+            result[index] = nos;
+        });
+
+        Set<String> set = new HashSet<>(WORKER * THREAD_PER_WORKER * loop * 2);
+        for (String[] nos : result) {
+            for (String no : nos) {
+                Assertions.assertEquals(23, no.length(), no);
+                Assertions.assertTrue(no.matches("D\\d{22}"), no);
+                Assertions.assertTrue(set.add(no), no);
+            }
+        }
+        System.out.printf("order no : %s in %sms, %s/s, %s%n", set.size(), ms, set.size() * 1000L / Math.max(ms, 1), result[0][0]);
+        Assertions.assertTrue(NoUtil.getOrderNo().startsWith("D"));
+    }
+
+    /** 多个实例共用一个数据库的号段, 编号不重复, 除了实例最后没用完的号段以外都是连续的 */
+    @Test
+    public void segmentAcrossWorkers() throws Exception {
+        AtomicLong db = new AtomicLong();
+        AtomicLong dbCount = new AtomicLong();
+        int step = 10_000;
+        SegmentId.Allocator allocator = (bizTag, s) -> {
+            dbCount.incrementAndGet();
+            return db.addAndGet(s);
+        };
+        List<SegmentId> workers = new ArrayList<>();
+        for (int i = 0; i < WORKER; i++) {
+            workers.add(new SegmentId("member", step, allocator));
+        }
+        long[][] result = new long[WORKER * THREAD_PER_WORKER][];
+        long ms = run(index -> {
+            SegmentId segment = workers.get(index / THREAD_PER_WORKER);
+            long[] ids = new long[LOOP];
+            for (int i = 0; i < LOOP; i++) {
+                ids[i] = segment.nextId();
+            }
+            result[index] = ids;
+        });
+
+        long[] all = new long[WORKER * THREAD_PER_WORKER * LOOP];
+        for (int i = 0; i < result.length; i++) {
+            System.arraycopy(result[i], 0, all, i * LOOP, LOOP);
+        }
+        long[] sorted = assertUnique(all);
+        Assertions.assertEquals(1, sorted[0]);
+        // 每个实例最多有当前和预取的两段没用完
+        Assertions.assertTrue(sorted[sorted.length - 1] <= sorted.length + 2L * WORKER * step);
+        Assertions.assertEquals(db.get() / step, dbCount.get());
+        System.out.printf("segment  : %s ids in %sms, %s ids/s, db: %s%n", all.length, ms, all.length * 1000L / Math.max(ms, 1), dbCount.get());
+    }
+
+    private static long[] assertUnique(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            Assertions.assertNotEquals(sorted[i - 1], sorted[i]);
+        }
+        return sorted;
+    }
+
+    private interface Task {
+        void run(int index) throws Exception;
+    }
+    private static long run(Task task) throws Exception {
+        int threads = WORKER * THREAD_PER_WORKER;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run(index);
+                return null;
+            }));
+        }
+        long begin = System.currentTimeMillis();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return System.currentTimeMillis() - begin;
+    }
+}
@@ -0,0 +1,210 @@
+package com.github.common.json;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.common.Money;
+import com.github.common.enums.Gender;
+import com.github.common.util.A;
+import lombok.Data;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Supplier;
+
+public class JsonConvertTest {
+
+    @Data
+    public static class Item {
+        private Long id;
+        private String name;
+        private Money price;
+        private Gender gender;
+        private Date createTime;
+        private BigDecimal rate;
+        private float ratio;
+        private short level;
+        private byte[] data;
+        private BigInteger big;
+        @JsonProperty("alias")
+        private String nick;
+        private Map<String, List<Item>> children;
+    }
+
+    @Data
+    public static class Wrap<T> {
+        private T data;
+        private List<Map<String, T>> list;
+    }
+
+    @Data
+    public static class ItemView {
+        private Integer id;
+        private String name;
+        private String price;
+        private Map<String, Object> gender;
+        private Long createTime;
+        private Double rate;
+        private Double ratio;
+        private Integer level;
+        private String data;
+        private BigDecimal big;
+        private String alias;
+        private Map<String, List<ItemView>> children;
+    }
+
+    @AfterEach
+    public void after() {
+        JsonUtil.setConvertWithBuffer(false);
+    }
+
+    private static Item item(long id, int depth) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("name-" + id);
+        item.setPrice(new Money("12.30"));
+        item.setGender(Gender.values()[(int) (id % 3)]);
+        item.setCreateTime(new Date(1600000000000L + id));
+        item.setRate(new BigDecimal("0.10"));
+        item.setRatio(0.1F);
+        item.setLevel((short) id);
+        item.setData(new byte[] { 1, 2, (byte) id });
+        item.setBig(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TEN));
+        item.setNick("nick-" + id);
+        if (depth > 0) {
+            item.setChildren(A.linkedMaps("a", Arrays.asList(item(id * 10 + 1, depth - 1), item(id * 10 + 2, depth - 1))));
+        }
+        return item;
+    }
+
+    /** 用字符串和 TokenBuffer 两种方式各转换一次, 结果序列化之后要完全一样(包括数值的类型) */
+    private static <T> void same(Supplier<T> convert) {
+        JsonUtil.setConvertWithBuffer(false);
+        T expected = convert.get();
+        JsonUtil.setConvertWithBuffer(true);
+        T actual = convert.get();
+        Assertions.assertEquals(describe(expected), describe(actual));
+    }
+    private static String describe(Object obj) {
+        if (obj == null) {
+            return "null";
+        } else if (obj instanceof Map) {
+            StringBuilder sbd = new StringBuilder("{");
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet()) {
+                sbd.append(describe(entry.getKey())).append("=").append(describe(entry.getValue())).append(",");
+            }
+            return sbd.append("}").toString();
+        } else if (obj instanceof Collection) {
+            StringBuilder sbd = new StringBuilder("[");
+            for (Object o : (Collection<?>) obj) {
+                sbd.append(describe(o)).append(",");
+            }
+            return sbd.append("]").toString();
+        } else if (obj instanceof byte[]) {
+            return Arrays.toString((byte[]) obj);
+        } else if (obj.getClass().getName().startsWith("java.")) {
+            return obj.getClass().getSimpleName() + ":" + obj;
+        } else {
+            return obj.getClass().getSimpleName() + ":" + JsonUtil.toJson(obj);
+        }
+    }
+
+    @Test
+    public void convert() {
+        Item item = item(1, 2);
+        same(() -> JsonUtil.convert(item, Item.class));
+        same(() -> JsonUtil.convert(item, ItemView.class));
+        same(() -> JsonUtil.convert(item, Map.class));
+        same(() -> JsonUtil.convertIgnoreAnnotation(item, Item.class));
+        same(() -> JsonUtil.convert(item, Item.class, true, false));
+        same(() -> JsonUtil.convert(item, Item.class, false, true));
+        same(() -> JsonUtil.convert(JsonUtil.toJson(item), Item.class));
+
+        Item copy = JsonUtil.convert(item, Item.class);
+        Assertions.assertNotSame(item, copy);
+        Assertions.assertEquals(item.getPrice().getCent(), copy.getPrice().getCent());
+        Assertions.assertEquals(item.getGender(), copy.getGender());
+        Assertions.assertEquals(item.getCreateTime(), copy.getCreateTime());
+        Assertions.assertEquals(0.1F, copy.getRatio());
+        Assertions.assertEquals(2, copy.getChildren().get("a").size());
+    }
+
+    @Test
+    public void convertGeneric() {
+        Wrap<Item> wrap = new Wrap<>();
+        wrap.setData(item(2, 1));
+        wrap.setList(Arrays.asList(A.linkedMaps("x", item(3, 1)), A.linkedMaps("y", item(4, 0))));
+        same(() -> JsonUtil.convertType(wrap, new TypeReference<Wrap<Item>>() {}));
+        same(() -> JsonUtil.convertType(wrap, new TypeReference<Wrap<ItemView>>() {}));
+        same(() -> JsonUtil.convertType(wrap, new TypeReference<Map<String, Object>>() {}));
+        same(() -> JsonUtil.convertType(wrap, new TypeReference<Wrap<Map<String, Object>>>() {}));
+
+        Wrap<Item> copy = JsonUtil.convertType(wrap, new TypeReference<Wrap<Item>>() {});
+        Assertions.assertEquals(Item.class, copy.getList().get(0).get("x").getClass());
+    }
+
+    @Test
+    public void convertListAndMap() {
+        List<Item> list = Arrays.asList(item(5, 1), item(6, 0));
+        same(() -> JsonUtil.convertList(list, Item.class));
+        same(() -> JsonUtil.convertList(list, ItemView.class));
+        same(() -> JsonUtil.convertList(list, Map.class));
+        same(() -> JsonUtil.convertListIgnoreAnnotation(list, Item.class));
+
+        Map<Object, Object> map = A.linkedMaps(1, item(7, 1), "b", item(8, 0));
+        same(() -> JsonUtil.convertMap(map, String.class, Item.class));
+        same(() -> JsonUtil.convertMap(map, String.class, ItemView.class));
+        same(() -> JsonUtil.convertMap(map, String.class, Object.class));
+        same(() -> JsonUtil.convertMapIgnoreAnnotation(map, String.class, Item.class));
+
+        Map<String, Object> numbers = A.linkedMaps("s", (short) 1, "l", 2L, "f", 0.1F, "d", 0.2D,
+                "bd", new BigDecimal("1.50"), "bi", BigInteger.ONE, "big", BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE));
+        same(() -> JsonUtil.convertMap(numbers, String.class, Object.class));
+        same(() -> JsonUtil.convert(numbers, Map.class));
+    }
+
+    @Test
+    public void nullAndFailure() {
+        for (boolean buffer : new boolean[] { false, true }) {
+            JsonUtil.setConvertWithBuffer(buffer);
+            Assertions.assertNull(JsonUtil.convert(null, Item.class));
+            Assertions.assertNull(JsonUtil.convertType(null, new TypeReference<Wrap<Item>>() {}));
+            Assertions.assertEquals(Collections.emptyList(), JsonUtil.convertList(null, Item.class));
+            Assertions.assertEquals(Collections.emptyMap(), JsonUtil.convertMap(null, String.class, Item.class));
+
+            // 类型不匹配时失败
+            Assertions.assertNull(JsonUtil.convert(A.maps("id", "abc"), Item.class));
+            Assertions.assertNull(JsonUtil.convertType(A.maps("id", "abc"), new TypeReference<Wrap<Item>>() {}));
+            Assertions.assertNull(JsonUtil.convert(Arrays.asList(1, 2), Item.class));
+            Assertions.assertEquals(Collections.emptyList(), JsonUtil.convertList(Arrays.asList(A.maps("id", "abc")), Item.class));
+            Assertions.assertEquals(Collections.emptyMap(), JsonUtil.convertMap(A.maps("a", A.maps("id", "abc")), String.class, Item.class));
+            // 目标类没有的属性会失败(转换用的 ObjectMapper 没有关掉 FAIL_ON_UNKNOWN_PROPERTIES)
+            Assertions.assertNull(JsonUtil.convert(A.maps("unknown", 1), Item.class));
+        }
+    }
+
+    /** 转换的耗时对比(完整的 jmh 对比在 mall-bench 中) */
+    @Test
+    public void compare() {
+        List<Item> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(item(i, 1));
+        }
+        for (int round = 0; round < 3; round++) {
+            long string = run(list, false);
+            long buffer = run(list, true);
+            System.out.printf("convert 2000 x 20 items, string: %sms, buffer: %sms%n", string, buffer);
+        }
+    }
+    private static long run(List<Item> list, boolean buffer) {
+        JsonUtil.setConvertWithBuffer(buffer);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 2000; i++) {
+            Assertions.assertEquals(list.size(), JsonUtil.convertList(list, ItemView.class).size());
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
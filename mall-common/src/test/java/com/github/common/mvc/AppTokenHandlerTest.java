@@ -0,0 +1,96 @@
+package com.github.common.mvc;
+
+import com.github.common.encrypt.Encrypt;
+import com.github.common.util.A;
+import com.github.common.util.U;
+import lombok.Data;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class AppTokenHandlerTest {
+
+    @Data
+    public static class Session {
+        private Long id;
+        private String name;
+    }
+
+    private static long hit() {
+        return U.toLong(AppTokenHandler.stats().get("hit"));
+    }
+
+    @Test
+    public void cache() {
+        Session session = new Session();
+        session.setId(123L);
+        session.setName("abc");
+        String token = AppTokenHandler.generateToken(session);
+
+        Session first = AppTokenHandler.getSessionInfoWithToken(token, Session.class);
+        Assertions.assertEquals(session, first);
+        long hit = hit();
+        // 第二次直接用缓存的对象, 不再验证和转换
+        Assertions.assertSame(first, AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        Assertions.assertEquals(hit + 1, hit());
+
+        AppTokenHandler.revokeToken(token);
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        Assertions.assertEquals(hit + 1, hit());
+        System.out.println(AppTokenHandler.stats());
+    }
+
+    @Test
+    public void forged() {
+        Session session = new Session();
+        session.setId(456L);
+        String token = AppTokenHandler.generateToken(session);
+        Assertions.assertNotNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+
+        long hit = hit();
+        for (int i = 0; i < token.length(); i += 7) {
+            // token 是十六进制的, 解码时不区分大小写, 换成另一个数字才是真的改了内容
+            char c = token.charAt(i);
+            String forged = token.substring(0, i) + (c == '0' ? '1' : '0') + token.substring(i + 1);
+            Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(forged, Session.class), forged);
+            // 多次请求也不会因为缓存而通过
+            Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(forged, Session.class), forged);
+        }
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(token + "A", Session.class));
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken("abc", Session.class));
+        Assertions.assertEquals(hit, hit());
+    }
+
+    @Test
+    public void revokeLongExpire() {
+        Session session = new Session();
+        session.setId(1L);
+        // 过期时间比默认的 7 天长, 退出的记录也要保留到 token 过期
+        String token = AppTokenHandler.generateToken(session, 30);
+        AppTokenHandler.revokeToken(token);
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+
+        // 本来就无效的 token 不用记录
+        long revoked = U.toLong(AppTokenHandler.stats().get("revoked"));
+        AppTokenHandler.revokeToken("abc");
+        Assertions.assertEquals(revoked, U.toLong(AppTokenHandler.stats().get("revoked")));
+    }
+
+    @Test
+    public void expired() throws Exception {
+        Map<String, Object> claims = A.maps("id", 789L, "name", "expire");
+        String token = Encrypt.jwtEncode(claims, 2L, TimeUnit.SECONDS);
+        long expireTime = U.toLong(claims.get("exp"));
+
+        Assertions.assertNotNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        Assertions.assertNotNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        long hit = hit();
+
+        Thread.sleep(Math.max(0, expireTime - System.currentTimeMillis()) + 100L);
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        Assertions.assertNull(AppTokenHandler.getSessionInfoWithToken(token, Session.class));
+        Assertions.assertEquals(hit, hit());
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.common.mvc;
+
+import com.github.common.Const;
+import com.github.common.annotation.NeedLogin;
+import com.github.common.annotation.NotNeedLogin;
+import com.github.common.annotation.NotNeedPermission;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Arrays;
+
+public class HandlerMetadataTest {
+
+    @NeedLogin
+    public static class UserController {
+        public void info() {}
+
+        @NeedLogin(false)
+        @NotNeedPermission
+        public void list() {}
+    }
+
+    @NotNeedLogin
+    public static class OpenController {
+        public void info() {}
+    }
+
+    private static HandlerMethod handler(Object bean, String method) throws Exception {
+        return new HandlerMethod(bean, bean.getClass().getMethod(method));
+    }
+
+    @Test
+    public void metadata() throws Exception {
+        HandlerMethod info = handler(new UserController(), "info");
+        HandlerMethod list = handler(new UserController(), "list");
+        HandlerMetadata.register(Arrays.asList(info, list));
+
+        HandlerMetadata metadata = HandlerMetadata.of(info);
+        Assertions.assertTrue(metadata.isNeedLogin());
+        Assertions.assertFalse(metadata.isNotNeedPermission());
+        // 每次请求的 HandlerMethod 都是新的, 用的还是启动时解析好的
+        Assertions.assertSame(metadata, HandlerMetadata.of(handler(new UserController(), "info")));
+
+        // 方法上的注解优先
+        HandlerMetadata listMetadata = HandlerMetadata.of(list);
+        Assertions.assertFalse(listMetadata.isNeedLogin());
+        Assertions.assertTrue(listMetadata.isNotNeedPermission());
+
+        HandlerMetadata open = HandlerMetadata.of(handler(new OpenController(), "info"));
+        Assertions.assertTrue(open.isNotNeedLogin());
+        Assertions.assertFalse(open.isNeedLogin());
+    }
+
+    @Test
+    public void requestVersion() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(Const.VERSION, "1.0.2");
+        Assertions.assertEquals(AppVersion.V102, ApiVersionCondition.requestVersion(request));
+        Assertions.assertNotNull(new ApiVersionCondition(AppVersion.V101).getMatchingCondition(request));
+        Assertions.assertNull(new ApiVersionCondition(AppVersion.V103).getMatchingCondition(request));
+
+        MockHttpServletRequest param = new MockHttpServletRequest();
+        param.setParameter(Const.VERSION, "v104");
+        Assertions.assertEquals(AppVersion.V104, ApiVersionCondition.requestVersion(param));
+        Assertions.assertNull(ApiVersionCondition.requestVersion(new MockHttpServletRequest()));
+
+        Assertions.assertEquals(AppVersion.V100, AppVersion.from("100000"));
+        Assertions.assertNull(AppVersion.from("abc"));
+    }
+}
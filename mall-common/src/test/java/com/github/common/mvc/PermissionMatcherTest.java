@@ -0,0 +1,43 @@
+package com.github.common.mvc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PermissionMatcherTest {
+
+    @Test
+    public void matches() {
+        PermissionMatcher matcher = new PermissionMatcher()
+                .add("/user/info", "GET")
+                .add("/user/*", "post,put")
+                .add("/order/{id}/item/*", "*")
+                .add("/product/*/sku", "get")
+                .add("/empty", "")
+                .add("", "*");
+
+        Assertions.assertTrue(matcher.matches("/user/info", "GET"));
+        Assertions.assertFalse(matcher.matches("/user/info", "DELETE"));
+        Assertions.assertFalse(matcher.matches("/user/info/", "GET"));
+        // 末尾的 * 跟 startsWith("/user/") 一样
+        Assertions.assertTrue(matcher.matches("/user/info", "POST"));
+        Assertions.assertTrue(matcher.matches("/user/a/b/c", "PUT"));
+        Assertions.assertTrue(matcher.matches("/user/", "PUT"));
+        Assertions.assertFalse(matcher.matches("/user", "PUT"));
+        Assertions.assertFalse(matcher.matches("/users/info", "PUT"));
+
+        Assertions.assertTrue(matcher.matches("/order/123/item/1", "DELETE"));
+        Assertions.assertTrue(matcher.matches("/order/abc/item/1/2", "PATCH"));
+        Assertions.assertFalse(matcher.matches("/order/123/item", "GET"));
+        Assertions.assertFalse(matcher.matches("/order/1/2/item/1", "GET"));
+
+        Assertions.assertTrue(matcher.matches("/product/123/sku", "GET"));
+        Assertions.assertFalse(matcher.matches("/product/123/sku", "POST"));
+        Assertions.assertFalse(matcher.matches("/product/sku", "GET"));
+
+        Assertions.assertFalse(matcher.matches("/empty", "GET"));
+        Assertions.assertFalse(matcher.matches("/", "GET"));
+        Assertions.assertFalse(matcher.matches(null, "GET"));
+        Assertions.assertTrue(matcher.matches("/user/info"));
+        Assertions.assertFalse(matcher.matches("/empty"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.common.page;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.common.sql.CountPaginationInterceptor;
+import lombok.Data;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.*;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CountPageTest {
+
+    private static final int ROWS = 1005;
+
+    private static Connection keepAlive;
+    private static SqlSessionFactory factory;
+    private static CountPaginationInterceptor pagination;
+    private static final AtomicInteger COUNT_SQL = new AtomicInteger();
+
+    @Data
+    public static class Row {
+        private Long id;
+        private String name;
+    }
+
+    public interface RowMapper {
+        @Select("SELECT id, name FROM t_row WHERE id > #{minId} ORDER BY id")
+        List<Row> page(@Param("page") Page<Row> page, @Param("minId") long minId);
+    }
+
+    /** 记下执行了多少次 count 语句 */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+    public static class CountSqlCounter implements Interceptor {
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            String sql = ((StatementHandler) invocation.getTarget()).getBoundSql().getSql();
+            if (sql.toUpperCase().contains("COUNT(")) {
+                COUNT_SQL.incrementAndGet();
+            }
+            return invocation.proceed();
+        }
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:count;MODE=MySQL;QUERY_CACHE_SIZE=0");
+        keepAlive = dataSource.getConnection();
+        try (java.sql.Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE t_row(id BIGINT PRIMARY KEY, name VARCHAR(32))");
+            statement.execute("INSERT INTO t_row SELECT X, CONCAT('name-', X) FROM SYSTEM_RANGE(1, 1000)");
+        }
+
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        pagination = new CountPaginationInterceptor(DbType.H2, 1, 100);
+        interceptor.addInnerInterceptor(pagination);
+        configuration.addInterceptor(interceptor);
+        configuration.addInterceptor(new CountSqlCounter());
+        configuration.addMapper(RowMapper.class);
+        factory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @AfterAll
+    public static void close() throws Exception {
+        keepAlive.close();
+    }
+
+    private static PageReturn<Row> query(int page, int limit, CountMode mode) {
+        PageParam param = new PageParam(page, limit);
+        param.setCount(mode);
+        try (SqlSession session = factory.openSession(true)) {
+            Page<Row> pageInfo = Pages.param(param);
+            pageInfo.setRecords(session.getMapper(RowMapper.class).page(pageInfo, 0));
+            return Pages.returnPage(pageInfo);
+        }
+    }
+
+    @Test
+    public void modes() throws Exception {
+        COUNT_SQL.set(0);
+        PageReturn<Row> exact = query(3, 10, CountMode.EXACT);
+        Assertions.assertEquals(1, COUNT_SQL.get());
+        Assertions.assertEquals(1000, exact.getTotal());
+        Assertions.assertEquals(10, exact.getList().size());
+        Assertions.assertEquals(21L, exact.getList().get(0).getId());
+        Assertions.assertEquals(CountMode.EXACT, exact.getCountMode());
+        Assertions.assertTrue(exact.getHasNext());
+
+        // 不查总条数, 多查一条来判断有没有下一页
+        COUNT_SQL.set(0);
+        PageReturn<Row> noCount = query(3, 10, CountMode.NO_COUNT);
+        Assertions.assertEquals(0, COUNT_SQL.get());
+        Assertions.assertEquals(exact.getList(), noCount.getList());
+        Assertions.assertTrue(noCount.getHasNext());
+        Assertions.assertFalse(query(100, 10, CountMode.NO_COUNT).getHasNext());
+        Assertions.assertTrue(query(99, 10, CountMode.NO_COUNT).getHasNext());
+        Assertions.assertTrue(query(101, 10, CountMode.NO_COUNT).getList().isEmpty());
+
+        // 第一次查总条数, 之后用缓存, 数据变了也不再查, 过期之后再查
+        COUNT_SQL.set(0);
+        PageReturn<Row> estimated = query(3, 10, CountMode.ESTIMATED);
+        Assertions.assertEquals(1000, estimated.getTotal());
+        Assertions.assertEquals(exact.getList(), estimated.getList());
+        try (java.sql.Statement statement = keepAlive.createStatement()) {
+            statement.execute("INSERT INTO t_row SELECT X, CONCAT('name-', X) FROM SYSTEM_RANGE(1001, " + ROWS + ")");
+        }
+        PageReturn<Row> cached = query(101, 10, CountMode.ESTIMATED);
+        Assertions.assertEquals(1000, cached.getTotal());
+        // 缓存的总数不准时依然会去查数据
+        Assertions.assertEquals(ROWS - 1000, cached.getList().size());
+        Assertions.assertFalse(cached.getHasNext());
+        Assertions.assertEquals(1, COUNT_SQL.get());
+
+        Thread.sleep(1100);
+        Assertions.assertEquals(ROWS, query(1, 10, CountMode.ESTIMATED).getTotal());
+        Assertions.assertEquals(2, COUNT_SQL.get());
+        System.out.println(pagination.stats());
+    }
+
+    @Test
+    public void defaultMode() {
+        PageParam param = new PageParam(1, 10);
+        Assertions.assertEquals(CountMode.EXACT, param.countMode());
+        param.setWasMobile(true);
+        Assertions.assertEquals(CountMode.NO_COUNT, param.countMode());
+        param.setCount(CountMode.ESTIMATED);
+        Assertions.assertEquals(CountMode.ESTIMATED, param.countMode());
+    }
+}
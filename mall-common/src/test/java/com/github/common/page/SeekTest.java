@@ -0,0 +1,139 @@
+package com.github.common.page;
+
+import com.github.common.exception.ParamException;
+import com.github.common.sql.SeekInterceptor;
+import lombok.Data;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/** 游标分页跟 LIMIT offset 的结果一致. 深分页时的耗时对比见 mall-bench 的 SeekBench */
+public class SeekTest {
+
+    private static final int ROWS = 10_000;
+
+    private static Connection keepAlive;
+    private static SqlSessionFactory factory;
+
+    @Data
+    public static class Row {
+        private Long id;
+        private Long userId;
+        private BigDecimal amount;
+        private Date createTime;
+    }
+
+    public interface OrderMapper {
+        String COLUMNS = "SELECT id, user_id, amount, create_time FROM t_order";
+
+        @Select(COLUMNS + " WHERE user_id < #{maxUser}")
+        List<Row> seek(@Param("maxUser") long maxUser, @Param("seek") Seek<Row> seek);
+
+        @Select(COLUMNS + " WHERE user_id < #{maxUser} ORDER BY create_time DESC, id DESC LIMIT #{limit} OFFSET #{offset}")
+        List<Row> offsetByTime(@Param("maxUser") long maxUser, @Param("limit") int limit, @Param("offset") long offset);
+
+        @Select(COLUMNS + " WHERE user_id < #{maxUser} ORDER BY user_id ASC, id DESC")
+        List<Row> allByUser(@Param("maxUser") long maxUser);
+    }
+
+    @BeforeAll
+    public static void init() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // 关掉 h2 的查询缓存, 每次都真正去查
+        dataSource.setURL("jdbc:h2:mem:seek;MODE=MySQL;QUERY_CACHE_SIZE=0");
+        keepAlive = dataSource.getConnection();
+        try (java.sql.Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE t_order(id BIGINT PRIMARY KEY, user_id BIGINT NOT NULL, "
+                    + "amount DECIMAL(12,2) NOT NULL, create_time TIMESTAMP NOT NULL)");
+            // 每秒 3 条, 时间有重复, 需要 id 来保证顺序唯一
+            statement.execute("INSERT INTO t_order SELECT X, MOD(X, 100), X / 100.0, "
+                    + "DATEADD('SECOND', X / 3, TIMESTAMP '2023-01-01 00:00:00') FROM SYSTEM_RANGE(1, " + ROWS + ")");
+            statement.execute("CREATE INDEX idx_time_id ON t_order(create_time, id)");
+            statement.execute("CREATE INDEX idx_user_id ON t_order(user_id, id)");
+        }
+
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.addInterceptor(new SeekInterceptor());
+        configuration.addMapper(OrderMapper.class);
+        factory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @AfterAll
+    public static void close() throws Exception {
+        keepAlive.close();
+    }
+
+    private static Seek<Row> byTime() {
+        return Seek.byDesc("create_time", Row::getCreateTime).desc("id", Row::getId);
+    }
+
+    @Test
+    public void sameAsOffset() {
+        try (SqlSession session = factory.openSession()) {
+            OrderMapper mapper = session.getMapper(OrderMapper.class);
+            int limit = 20;
+            String cursor = null;
+            for (int page = 0; page < 30; page++) {
+                Seek<Row> seek = byTime().limit(limit).cursor(cursor);
+                PageReturn<Row> pageReturn = Pages.returnSeek(seek, mapper.seek(10, seek));
+                List<Row> expected = mapper.offsetByTime(10, limit, (long) page * limit);
+                Assertions.assertEquals(expected, pageReturn.getList());
+
+                cursor = pageReturn.getCursor();
+                Assertions.assertNotNull(cursor);
+            }
+        }
+    }
+
+    @Test
+    public void mixedDirection() {
+        try (SqlSession session = factory.openSession()) {
+            OrderMapper mapper = session.getMapper(OrderMapper.class);
+            List<Row> all = new ArrayList<>();
+            String cursor = null;
+            do {
+                Seek<Row> seek = Seek.byAsc("user_id", Row::getUserId).desc("id", Row::getId).limit(50).cursor(cursor);
+                PageReturn<Row> pageReturn = Pages.returnSeek(seek, mapper.seek(3, seek));
+                all.addAll(pageReturn.getList());
+                cursor = pageReturn.getCursor();
+            } while (cursor != null);
+
+            // 一页一页拿完跟一次拿出来的一样, 不重复也不遗漏
+            Assertions.assertEquals(mapper.allByUser(3), all);
+        }
+    }
+
+    @Test
+    public void wrongCursor() {
+        Row row = new Row();
+        row.setId(1L);
+        row.setUserId(1L);
+        row.setCreateTime(new Date());
+        String cursor = byTime().nextCursor(row);
+
+        Assertions.assertNotNull(byTime().cursor(cursor).getAfter());
+        // 换了排序的游标不能用
+        Assertions.assertThrows(ParamException.class, () -> Seek.byAsc("user_id", Row::getUserId).asc("id", Row::getId).cursor(cursor));
+        Assertions.assertThrows(ParamException.class, () -> byTime().cursor("abc"));
+        Assertions.assertThrows(ParamException.class, () -> byTime().cursor(cursor.substring(2)));
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.common.util;
+
+import com.github.common.date.DateUtil;
+import com.github.common.enums.Gender;
+import com.github.common.export.poi.ExportColumn;
+import com.github.common.export.poi.ExportColumnHandler;
+import lombok.Data;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.*;
+
+public class BeanAccessorTest {
+
+    private static final int ROWS = 10_000;
+
+    @Data
+    public static class Row {
+        @ExportColumn("编号")
+        private Long c01;
+        @ExportColumn("名称")
+        private String c02;
+        private Integer c03;
+        private int c04;
+        private long c05;
+        private double c06;
+        private boolean c07;
+        private Boolean c08;
+        private BigDecimal c09;
+        private Date c10;
+        private Gender c11;
+        private String c12;
+        private String c13;
+        private String c14;
+        private String c15;
+        private Integer c16;
+        private Integer c17;
+        private Integer c18;
+        private Long c19;
+        private Long c20;
+        private Date c21;
+        private Date c22;
+        private Gender c23;
+        private BigDecimal c24;
+        private BigDecimal c25;
+        private String c26;
+        private String c27;
+        private String c28;
+        private short c29;
+        private char c30;
+    }
+
+    private static Row row(int i) {
+        Row row = new Row();
+        row.setC01((long) i);
+        row.setC02("name-" + i);
+        row.setC03(i % 7 == 0 ? null : i);
+        row.setC04(i);
+        row.setC05(i * 31L);
+        row.setC06(i / 3D);
+        row.setC07(i % 2 == 0);
+        row.setC08(i % 3 == 0 ? null : Boolean.TRUE);
+        row.setC09(new BigDecimal(i).movePointLeft(2));
+        row.setC10(new Date(1600000000000L + i * 1000L));
+        row.setC11(Gender.values()[i % 3]);
+        for (int j = 12; j <= 28; j++) {
+            fill(row, j, i);
+        }
+        row.setC29((short) i);
+        row.setC30((char) ('a' + i % 26));
+        return row;
+    }
+
+    /** 原来的实现: 每个单元格 new 一个 PropertyDescriptor 再反射调用 */
+    @SuppressWarnings("rawtypes")
+    private static String reflectFieldMethod(Object data, String field) {
+        Object value;
+        if (data instanceof Map) {
+            value = ((Map) data).get(field);
+        } else {
+            try {
+                value = new PropertyDescriptor(field, data.getClass()).getReadMethod().invoke(data);
+            } catch (Exception e) {
+                value = U.invokeMethod(data, "get" + field.substring(0, 1).toUpperCase() + field.substring(1));
+            }
+        }
+        if (U.isNull(value)) {
+            return U.EMPTY;
+        } else if (value.getClass().isEnum()) {
+            return U.toStr(U.defaultIfNull(U.invokeMethod(value, "getValue"), value));
+        } else if (value instanceof Date) {
+            return U.toStr(DateUtil.formatDateTime((Date) value));
+        } else {
+            return U.toStr(value);
+        }
+    }
+
+    @Test
+    public void sameAsReflection() {
+        Set<String> columns = ExportColumnHandler.collectTitle(Row.class).keySet();
+        Assertions.assertEquals(30, columns.size());
+        Assertions.assertEquals(columns, BeanAccessor.of(Row.class).properties());
+        for (int i = 0; i < 1000; i++) {
+            Row row = row(i);
+            for (String column : columns) {
+                Assertions.assertEquals(reflectFieldMethod(row, column), U.getFieldMethod(row, column), column);
+            }
+        }
+        Assertions.assertEquals("", U.getFieldMethod(row(1), "notExists"));
+        Assertions.assertEquals("1", U.getFieldMethod(A.maps("c01", 1), "c01"));
+        Assertions.assertNotNull(BeanAccessor.of(Row.class).field("c30"));
+    }
+
+    @Test
+    public void titleCached() {
+        LinkedHashMap<String, String> title = ExportColumnHandler.collectTitle(Row.class);
+        Assertions.assertEquals("编号", title.get("c01"));
+        Assertions.assertEquals("c03", title.get("c03"));
+        // 调用方改了返回的标题不影响缓存
+        title.put("c01", "changed");
+        Assertions.assertEquals("编号", ExportColumnHandler.collectTitle(Row.class).get("c01"));
+    }
+
+    /** 30 列的对象逐个单元格取值, 跟原来的实现对比(完整的 jmh 对比在 mall-bench 中) */
+    @Test
+    public void compare() {
+        List<String> columns = new ArrayList<>(ExportColumnHandler.collectTitle(Row.class).keySet());
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(row(i));
+        }
+        for (int round = 0; round < 3; round++) {
+            long reflect = run(rows, columns, true);
+            long accessor = run(rows, columns, false);
+            System.out.printf("30 columns x %s rows, reflect: %sms, accessor: %sms%n", rows.size(), reflect, accessor);
+        }
+    }
+
+    private static long run(List<Row> rows, List<String> columns, boolean reflect) {
+        long start = System.currentTimeMillis();
+        long length = 0;
+        for (Row row : rows) {
+            for (String column : columns) {
+                length += (reflect ? reflectFieldMethod(row, column) : U.getFieldMethod(row, column)).length();
+            }
+        }
+        Assertions.assertTrue(length > 0);
+        return System.currentTimeMillis() - start;
+    }
+
+    private static void fill(Row row, int column, int i) {
+        Object value;
+        switch (column) {
+            case 16: case 17: case 18: value = i + column; break;
+            case 19: case 20: value = (long) i * column; break;
+            case 21: case 22: value = new Date(1600000000000L - i * 1000L); break;
+            case 23: value = Gender.values()[(i + 1) % 3]; break;
+            case 24: case 25: value = new BigDecimal(i * column).movePointLeft(3); break;
+            default: value = (i % 5 == 0) ? null : ("v" + column + "-" + i); break;
+        }
+        try {
+            Field field = U.getField(row, String.format("c%02d", column));
+            field.setAccessible(true);
+            field.set(row, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -2,9 +2,18 @@ package com.github.common.util;
 
 import com.github.common.date.DateFormatType;
 import com.github.common.date.DateUtil;
+import org.joda.time.format.DateTimeFormat;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 public class DateTest {
 
@@ -29,4 +38,57 @@ public class DateTest {
 
         System.out.println(DateUtil.getDayStart(DateUtil.parse("2019-01-03 01:02:02")));
     }
+
+    /** 原来的解析方式: 按 DateFormatType 一个一个试 */
+    private static Date tryEach(String source) {
+        for (DateFormatType type : DateFormatType.values()) {
+            try {
+                if (type.isCst()) {
+                    return new SimpleDateFormat(type.getValue(), Locale.ENGLISH).parse(source);
+                }
+                return DateTimeFormat.forPattern(type.getValue()).parseDateTime(source).toDate();
+            } catch (ParseException | IllegalArgumentException ignore) {
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void parse() {
+        Date date = new Date(1697603445123L);
+        for (DateFormatType type : DateFormatType.values()) {
+            String source = DateUtil.format(date, type);
+            Assertions.assertEquals(tryEach(source), DateUtil.parse(source), type + " : " + source);
+        }
+
+        List<String> sources = Arrays.asList(
+                "2023-1-5", "2023-10-18 1:2:3", "2023-10-18 12:30:45.1", "2023-10-18 12:30:45.123456",
+                "2023-10-18t12:30:45z", "2023-10-18T12:30:45", "01/02/2023 10:00", "10/18/2023 12:30:45",
+                "2023/02/29", "2024/02/29", "201012101010", "231018", "202310", "991231", "12:30", "23:59:60",
+                "2023年10月18日 8点", "2023年10月18日 08点30分", "2023-13-01", "2023-10-32", "2023-10-18 24:00",
+                "abc", "", "2023", "2023-10-18 12:30:45:123", "2023-10-18 AM", new Date(1697603445000L).toString()
+        );
+        for (String source : sources) {
+            Assertions.assertEquals(tryEach(source), DateUtil.parse(source), source);
+        }
+        Assertions.assertNull(DateUtil.parse(null));
+        Assertions.assertEquals(DateUtil.parse("2023-10-18"), DateUtil.parse(" 2023-10-18 "));
+    }
+
+    @Test
+    public void localDateTime() {
+        LocalDateTime time = LocalDateTime.of(2023, 10, 18, 12, 30, 45, 123_000_000);
+        Assertions.assertEquals(time, DateUtil.parseLocalDateTime("2023-10-18 12:30:45.123"));
+        Assertions.assertEquals(LocalDate.of(2023, 10, 18), DateUtil.parseLocalDate("20231018"));
+        Assertions.assertEquals(time, DateUtil.toLocalDateTime(DateUtil.toDate(time)));
+        Assertions.assertNull(DateUtil.parseLocalDateTime("2023-02-30"));
+
+        for (DateFormatType type : DateFormatType.values()) {
+            // CST 用 java.time 格式化时跟 new Date() 的打印一样是英文的, joda 会用当前语言
+            if (!type.isCst()) {
+                Assertions.assertEquals(DateUtil.format(DateUtil.toDate(time), type), DateUtil.format(time, type), type.name());
+            }
+        }
+        Assertions.assertEquals("2023-10-18", DateUtil.format(LocalDate.of(2023, 10, 18), DateFormatType.YYYY_MM_DD));
+    }
 }
@@ -2,13 +2,12 @@ package com.github.common.util;
 
 import com.github.common.date.DateFormatType;
 import com.github.common.date.DateUtil;
+import com.github.common.id.SnowflakeId;
 import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
 
 public class NoTest {
@@ -46,4 +45,19 @@ public class NoTest {
             System.out.println(s);
         }
     }
+
+    @Test
+    public void setWorkerIdOnce() {
+        // 用当前的机器号, 不影响其他测试
+        int workerId = SnowflakeId.workerId(NoUtil.nextId());
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            Assertions.assertTrue(set.add(NoUtil.nextId()));
+            // 同一个机器号重复设置时保留原来的生成器, 同一毫秒内也不会重复
+            NoUtil.setWorkerId(workerId);
+        }
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> NoUtil.setWorkerId((workerId + 1) % (SnowflakeId.MAX_WORKER + 1)));
+        Assertions.assertEquals(workerId, SnowflakeId.workerId(NoUtil.nextId()));
+    }
 }
@@ -0,0 +1,214 @@
+package com.github.global.config;
+
+import com.github.common.exception.ServiceException;
+import com.github.common.util.A;
+import com.github.common.util.AsyncUtil;
+import com.github.common.util.U;
+import feign.Feign;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * feign 调用的异步版本, 在一个有界的线程池上执行, 带上调用方的请求和日志上下文(跟踪号、token 等请求头依然会放进 feign 请求).
+ *
+ * 异步接口跟同步的 XxxClient 方法名和参数一样, 返回 CompletableFuture, 如 UserAsyncClient, 用下面的方式生成
+ *   &#064;Bean
+ *   public UserAsyncClient userAsyncClient(FeignAsync feignAsync, UserClient userClient) {
+ *       return feignAsync.create(UserAsyncClient.class, userClient);
+ *   }
+ *
+ * 多个互不依赖的调用并行执行:
+ *   CompletableFuture&lt;PageReturn&lt;?&gt;&gt; users = userAsyncClient.demo(...);
+ *   CompletableFuture&lt;PageReturn&lt;?&gt;&gt; orders = orderAsyncClient.demo(...);
+ *   FeignAsync.await(3000, users, orders);
+ *   users.join() ...
+ *
+ * 超过 feign.async.timeoutMs 毫秒的调用以 TimeoutException 结束并取消, 开启 feign.resilience.enabled 时截止时间也会带到连接和读取的超时上
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass({ FeignClient.class, Feign.class })
+public class FeignAsync {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public FeignAsync(@Value("${feign.async.maxPoolSize:0}") int maxPoolSize,
+                      @Value("${feign.async.queueCapacity:1000}") int queueCapacity,
+                      @Value("${feign.async.timeoutMs:10000}") long timeoutMs) {
+        // 线程大多数时间在等待 io, 默认是 cpu 核心数的 8 倍
+        int max = (maxPoolSize > 0) ? maxPoolSize : (U.PROCESSORS << 3);
+        AtomicInteger count = new AtomicInteger();
+        // 有界队列只有在满了之后才会创建核心数以外的线程, 所以核心数跟最大数一样, 空闲的线程超时回收
+        this.executor = new ThreadPoolExecutor(max, max, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "feign-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeoutMs = timeoutMs;
+    }
+
+    /** 生成异步接口的实现, 每个方法调用 client 上同名同参数的方法 */
+    @SuppressWarnings("unchecked")
+    public <T> T create(Class<T> asyncType, Object client) {
+        Map<Method, Method> methods = new HashMap<>();
+        for (Method method : asyncType.getMethods()) {
+            if (method.isDefault()) {
+                continue;
+            }
+            if (!CompletableFuture.class.isAssignableFrom(method.getReturnType())) {
+                throw new IllegalStateException(asyncType.getSimpleName() + "#" + method.getName() + " must return CompletableFuture");
+            }
+            try {
+                methods.put(method, client.getClass().getMethod(method.getName(), method.getParameterTypes()));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(asyncType.getSimpleName() + "#" + method.getName() + " has no sync method", e);
+            }
+        }
+        return (T) Proxy.newProxyInstance(asyncType.getClassLoader(), new Class<?>[] { asyncType }, (proxy, method, args) -> {
+            Method sync = methods.get(method);
+            if (U.isNotNull(sync)) {
+                return supply(() -> {
+                    try {
+                        return sync.invoke(client, args);
+                    } catch (InvocationTargetException e) {
+                        Throwable cause = e.getCause();
+                        throw (cause instanceof Exception) ? (Exception) cause : new ExecutionException(cause);
+                    }
+                });
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: return asyncType.getSimpleName() + "(" + client + ")";
+            }
+        });
+    }
+
+    /** 在线程池上执行, 默认的超时时间 */
+    public <T> CompletableFuture<T> supply(Callable<T> call) {
+        return supply(call, timeoutMs);
+    }
+
+    /** 在线程池上执行, 超时或者调用方取消时中断执行的线程, 线程池满时返回以 RejectedExecutionException 结束的 future */
+    public <T> CompletableFuture<T> supply(Callable<T> call, long timeoutMs) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Future<?> task;
+        try {
+            task = executor.submit(AsyncUtil.wrapRunContext(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                if (timeoutMs > 0) {
+                    FeignResilience.DEADLINE.set(deadline);
+                }
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    FeignResilience.DEADLINE.remove();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (timeoutMs > 0) {
+            future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        future.whenComplete((value, e) -> {
+            if (U.isNotNull(e) && !task.isDone()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 等待所有的 future 完成, 最多等 timeoutMs 毫秒. 有一个出错时马上返回, 超时或出错时取消还没有完成的.
+     * 出错时抛出原来的 RuntimeException, 超时或其他异常包装成 ServiceException
+     */
+    public static void await(long timeoutMs, CompletableFuture<?>... futures) {
+        if (A.isEmpty(futures)) {
+            return;
+        }
+        CompletableFuture<Object> failFast = new CompletableFuture<>();
+        for (CompletableFuture<?> future : futures) {
+            future.whenComplete((value, e) -> {
+                if (U.isNotNull(e)) {
+                    failFast.completeExceptionally(e);
+                }
+            });
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(futures), failFast).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(futures);
+            throw new ServiceException("调用超时(" + timeoutMs + "ms)", e);
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new ServiceException("调用被中断", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServiceException("调用异常: " + cause.getMessage(), cause);
+        }
+    }
+
+    /** 没有完成或出错时返回默认值, 用在可以降级的数据上 */
+    public static <T> T getOrDefault(CompletableFuture<T> future, T defaultValue) {
+        return (future.isDone() && !future.isCompletedExceptionally()) ? future.join() : defaultValue;
+    }
+
+    private static void cancel(CompletableFuture<?>... futures) {
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && U.isNotNull(cause.getCause())) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /** 线程池的使用情况 */
+    public Map<String, Object> stats() {
+        return A.linkedMaps(
+                "active", executor.getActiveCount(),
+                "pool", executor.getPoolSize(),
+                "queue", executor.getQueue().size(),
+                "completed", executor.getCompletedTaskCount()
+        );
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+}
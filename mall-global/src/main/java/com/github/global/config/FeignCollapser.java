@@ -0,0 +1,262 @@
+package com.github.global.config;
+
+import com.github.common.annotation.Collapse;
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import feign.Feign;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 合并 FeignClient 上标了 {@link Collapse} 的方法的调用(feign.collapse.enabled 默认是 true):
+ *   第一个调用进来的线程等待 windowMs 毫秒(或者 key 的个数到了 maxSize), 之后在自己的线程上用收集到的 key 发起批量调用,
+ *   其他线程等待结果. 同一批中相同的 key 只查一次. 批量调用出错时各个线程用原来的方法查自己的 key.
+ * 不用另外的线程池, 批量调用带的是第一个线程的请求头和日志上下文, 所以只用在跟当前用户无关的数据上
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass({ FeignClient.class, Feign.class })
+@ConditionalOnProperty(value = "feign.collapse.enabled", havingValue = "true", matchIfMissing = true)
+public class FeignCollapser implements BeanPostProcessor {
+
+    private final long windowMs;
+    private final int maxSize;
+    /** 方法 ==> 合并器, 统计用 */
+    private final Map<String, Collapser> collapsers = new ConcurrentHashMap<>();
+
+    public FeignCollapser(Environment environment) {
+        this.windowMs = environment.getProperty("feign.collapse.windowMs", Long.class, 2L);
+        this.maxSize = environment.getProperty("feign.collapse.maxSize", Integer.class, 100);
+    }
+
+    /** FeignClientFactoryBean 生成的代理也会经过这里, 有 @Collapse 的方法时再包一层 */
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!Proxy.isProxyClass(bean.getClass())) {
+            return bean;
+        }
+        for (Class<?> type : bean.getClass().getInterfaces()) {
+            if (AnnotatedElementUtils.hasAnnotation(type, FeignClient.class)) {
+                Map<Method, Collapser> methods = collapsers(type, bean);
+                if (!methods.isEmpty()) {
+                    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new Handler(bean, methods));
+                }
+            }
+        }
+        return bean;
+    }
+
+    /** 每个合并的方法的情况 */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Collapser> entry : collapsers.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats;
+    }
+
+    private Map<Method, Collapser> collapsers(Class<?> type, Object target) {
+        Map<Method, Collapser> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            Collapse collapse = method.getAnnotation(Collapse.class);
+            if (U.isNull(collapse)) {
+                continue;
+            }
+            String name = type.getSimpleName() + "#" + method.getName();
+            if (method.getParameterCount() != 1) {
+                throw new IllegalStateException(name + " with @Collapse must have only one parameter");
+            }
+            Method batch = null;
+            for (Method m : type.getMethods()) {
+                if (m.getName().equals(collapse.batch()) && m.getParameterCount() == 1
+                        && Collection.class.isAssignableFrom(m.getParameterTypes()[0])
+                        && Map.class.isAssignableFrom(m.getReturnType())) {
+                    batch = m;
+                    break;
+                }
+            }
+            if (U.isNull(batch)) {
+                throw new IllegalStateException(String.format("%s with @Collapse need method %s(Collection) return Map",
+                        name, collapse.batch()));
+            }
+            long window = (collapse.windowMs() >= 0) ? collapse.windowMs() : windowMs;
+            int max = (collapse.maxSize() > 0) ? collapse.maxSize() : maxSize;
+            Collapser collapser = new Collapser(target, method, batch, window, max);
+            methods.put(method, collapser);
+            collapsers.put(name, collapser);
+        }
+        return methods;
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Object target;
+        private final Map<Method, Collapser> collapsers;
+
+        private Handler(Object target, Map<Method, Collapser> collapsers) {
+            this.target = target;
+            this.collapsers = collapsers;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Collapser collapser = collapsers.get(method);
+            if (U.isNotNull(collapser) && U.isNotNull(args[0])) {
+                return collapser.get(args[0]);
+            }
+            if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            return invokeTarget(target, method, args);
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object... args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** 批量调用失败, 由各个调用方自己单独调用 */
+    private static final class BatchFailed extends RuntimeException {
+        private BatchFailed(Throwable cause) {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    private static final class Batch {
+        private final Map<Object, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+
+    static final class Collapser {
+        private final Object target;
+        private final Method single;
+        private final Method batch;
+        private final long windowMs;
+        private final int maxSize;
+
+        /** 还在收集 key 的批次 */
+        private Batch open;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder keys = new LongAdder();
+        private final LongAdder batchFailed = new LongAdder();
+
+        Collapser(Object target, Method single, Method batch, long windowMs, int maxSize) {
+            this.target = target;
+            this.single = single;
+            this.batch = batch;
+            this.windowMs = windowMs;
+            this.maxSize = maxSize;
+        }
+
+        Object get(Object key) throws Throwable {
+            calls.increment();
+            Batch current;
+            CompletableFuture<Object> future;
+            boolean leader = false;
+            synchronized (this) {
+                if (U.isNull(open)) {
+                    open = new Batch();
+                    leader = true;
+                }
+                current = open;
+                future = current.futures.computeIfAbsent(key, k -> new CompletableFuture<>());
+                if (current.futures.size() >= maxSize) {
+                    open = null;
+                    current.full.countDown();
+                }
+            }
+            if (leader) {
+                try {
+                    current.full.await(windowMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (this) {
+                    if (open == current) {
+                        open = null;
+                    }
+                }
+                execute(current);
+            }
+
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof BatchFailed) {
+                    return invokeTarget(target, single, key);
+                }
+                throw e.getCause();
+            }
+        }
+
+        /** 到这里批次已经不会再有 key 加进来了 */
+        private void execute(Batch current) {
+            Collection<Object> keyList = Set.class.isAssignableFrom(batch.getParameterTypes()[0])
+                    ? new LinkedHashSet<>(current.futures.keySet()) : new ArrayList<>(current.futures.keySet());
+            batches.increment();
+            keys.add(keyList.size());
+            Map<?, ?> result;
+            try {
+                result = (Map<?, ?>) invokeTarget(target, batch, keyList);
+            } catch (Throwable e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("feign collapse {}({}) exception, call one by one", batch.getName(), keyList.size(), e);
+                }
+                fail(current, e);
+                return;
+            }
+            // 熔断降级等返回 null 时也一个一个查
+            if (U.isNull(result)) {
+                fail(current, new NullPointerException(batch.getName() + " return null"));
+                return;
+            }
+            for (Map.Entry<Object, CompletableFuture<Object>> entry : current.futures.entrySet()) {
+                entry.getValue().complete(result.get(entry.getKey()));
+            }
+        }
+
+        private void fail(Batch current, Throwable e) {
+            batchFailed.increment();
+            BatchFailed failed = new BatchFailed(e);
+            for (CompletableFuture<Object> future : current.futures.values()) {
+                future.completeExceptionally(failed);
+            }
+        }
+
+        Map<String, Object> stats() {
+            long batchCount = batches.sum();
+            return A.linkedMaps(
+                    "windowMs", windowMs,
+                    "maxSize", maxSize,
+                    "calls", calls.sum(),
+                    "batches", batchCount,
+                    "avgKeys", (batchCount == 0) ? 0 : (keys.sum() / batchCount),
+                    "batchFailed", batchFailed.sum()
+            );
+        }
+    }
+}
@@ -21,6 +21,7 @@ import feign.codec.Decoder;
 import feign.optionals.OptionalDecoder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -70,6 +71,28 @@ public class FeignConfig {
     );
 
     private final GlobalLogHandler logHandler;
+    private final FeignTransport feignTransport;
+    private final FeignHttpCache feignHttpCache;
+
+    /** 日志模式: full(默认, 请求和响应各打印一条, 响应体整个读进内存)、stream(见 {@link FeignStreamLogger}) */
+    @Value("${feign.log.mode:full}")
+    private String logMode;
+
+    /** stream 模式下请求体和响应体最多打印的字节数 */
+    @Value("${feign.log.maxBytes:2048}")
+    private int logMaxBytes;
+
+    /** stream 模式下默认的抽样率(0 ~ 1) */
+    @Value("${feign.log.sampleRate:1}")
+    private double logSampleRate;
+
+    /** stream 模式下服务名 -> 这个服务的抽样率 */
+    @Value("#{${feign.log.sampleRates:{:}}}")
+    private Map<String, Double> logSampleRates;
+
+    /** stream 模式下大于 0 时只打印耗时不小于这个毫秒数的调用 */
+    @Value("${feign.log.slowMs:0}")
+    private long logSlowMs;
 
     /** 处理请求头: 把请求信息放到 Feign 的请求上下文中去(feign 默认会放 Content-Length : xxx 和 Content-Type : application/json 到请求头里去) */
     @Bean
@@ -146,23 +169,29 @@ public class FeignConfig {
     @ConditionalOnProperty("spring.cloud.loadbalancer.ribbon.enabled")
     @SuppressWarnings({ "JavadocReference", "SpringJavaInjectionPointsAutowiringInspection" })
     public Client ribbonClient(CachingSpringLoadBalancerFactory cachingFactory, SpringClientFactory clientFactory) {
-        return new LoadBalancerFeignClient(new SelfClient(), cachingFactory, clientFactory);
+        return new LoadBalancerFeignClient(feignHttpCache.wrap(new SelfClient(feignTransport.client())), cachingFactory, clientFactory);
     }
 
     /**
      * 使用 feign 调用如果用的是 name 而不是 url 时, 日志只能输出在注册中心中用到的服务名, 负载均衡后将可以获取到具体的 ip:port.
-     * 注意: 负载均衡, 如果用的是 ribbon 则用上面的配置, 如果用的是 loadbalancer 则用下面的配置
+     * 注意: 负载均衡, 如果用的是 ribbon 则用上面的配置, 如果用的是 loadbalancer 则用下面的配置.
+     * 真正发请求的是 {@link FeignTransport} 中配置的连接, 外面是 {@link FeignHttpCache}, 命中缓存时不会发请求也不会输出这条日志
      */
-    public static class SelfClient extends Client.Default {
+    public static class SelfClient implements Client {
+        private final Client delegate;
+
         public SelfClient() {
-            super(null, null);
+            this(new Client.Default(null, null));
+        }
+        public SelfClient(Client delegate) {
+            this.delegate = delegate;
         }
         @Override
         public Response execute(Request request, Request.Options options) throws IOException {
             if (LogUtil.ROOT_LOG.isInfoEnabled()) {
                 LogUtil.ROOT_LOG.info("feignClient method({}) real-url({})", request.httpMethod().name(), request.url());
             }
-            return super.execute(request, options);
+            return delegate.execute(request, options);
         }
     }
 
@@ -175,18 +204,22 @@ public class FeignConfig {
     @SuppressWarnings("JavadocReference")
     @ConditionalOnBean(BlockingLoadBalancerClient.class)
     public Client loadbalancerClient(BlockingLoadBalancerClient loadBalancerClient) {
-        return new FeignBlockingLoadBalancerClient(new SelfClient(), loadBalancerClient);
+        return new FeignBlockingLoadBalancerClient(feignHttpCache.wrap(new SelfClient(feignTransport.client())), loadBalancerClient);
     }
 
     /**
      * 处理日志打印: 需要配置 feign.client.config.default.loggerLevel 的值才能进入下面的日志打印,
      * 这个值默认是 NONE, 只要不是 NONE 就行(可以设置为 BASIC、HEADERS、FULL),
-     * 默认的日志会输出很多条, 见 {@link Logger}, 当前处理是只在请求前打印一条, 有响应时打印一条, io 异常时打印一条
+     * 默认的日志会输出很多条, 见 {@link Logger}, 当前处理是只在请求前打印一条, 有响应时打印一条, io 异常时打印一条.
+     * feign.log.mode 是 stream 时用 {@link FeignStreamLogger}: 不缓存响应体, 可以按服务抽样和只打印慢调用
      *
      * @see org.springframework.cloud.openfeign.DefaultFeignLoggerFactory
      */
     @Bean
     public Logger handleLog() {
+        if ("stream".equalsIgnoreCase(U.toStr(logMode).trim())) {
+            return new FeignStreamLogger(logHandler, logMaxBytes, logSampleRate, logSampleRates, logSlowMs);
+        }
         return new Logger() {
             @Override
             protected void log(String configKey, String format, Object... args) {}
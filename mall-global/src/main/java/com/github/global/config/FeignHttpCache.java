@@ -0,0 +1,278 @@
+package com.github.global.config;
+
+import com.github.common.annotation.HttpCache;
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import feign.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 调用方的 http 响应缓存, 只处理标了 {@link HttpCache} 的 GET 方法, 其他的请求直接发出去.
+ * 包在负载均衡的里面, 缓存的 key 用的是服务名的 url(http://user/xxx), 跟调用到哪个实例无关.
+ *
+ * 缓存的总字节数不超过 feign.cache.maxBytes, 单个响应体大于 feign.cache.maxEntryBytes 的不缓存
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass({ FeignClient.class, Feign.class })
+public class FeignHttpCache {
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    /** 缓存的响应头, 其他的(Date、Content-Length 等)不存 */
+    private static final Set<String> KEEP_HEADERS = new HashSet<>(Arrays.asList(
+            "content-type", "content-encoding", "content-language", "etag", "cache-control", "last-modified"
+    ));
+
+    private final Cache<String, Entry> cache;
+    private final int maxEntryBytes;
+    /** 所有方法都放进缓存 key 的请求头(小写) */
+    private final List<String> keyHeaders;
+    /** 方法 ==> 方法上的注解 */
+    private final Map<Method, Optional<HttpCache>> annotations = new ConcurrentHashMap<>();
+
+    private final LongAdder hit = new LongAdder();
+    private final LongAdder miss = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    public FeignHttpCache(@Value("${feign.cache.maxBytes:33554432}") long maxBytes,
+                          @Value("${feign.cache.maxEntryBytes:1048576}") int maxEntryBytes,
+                          @Value("${feign.cache.headers:accept-language}") String headers) {
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> key.length() + entry.body.length).build();
+        this.maxEntryBytes = maxEntryBytes;
+        List<String> list = new ArrayList<>();
+        for (String header : U.toStr(headers).split(",")) {
+            if (U.isNotBlank(header)) {
+                list.add(header.trim().toLowerCase());
+            }
+        }
+        this.keyHeaders = Collections.unmodifiableList(list);
+    }
+
+    /** 在真正发请求的 client 外面加上缓存 */
+    public Client wrap(Client delegate) {
+        return (request, options) -> execute(delegate, request, options);
+    }
+
+    /** 缓存的使用情况 */
+    public Map<String, Object> stats() {
+        return A.linkedMaps(
+                "size", cache.size(),
+                "hit", hit.sum(),
+                "miss", miss.sum(),
+                "revalidated", revalidated.sum(),
+                "uncacheable", uncacheable.sum(),
+                "savedBytes", savedBytes.sum()
+        );
+    }
+
+    private Response execute(Client delegate, Request request, Request.Options options) throws IOException {
+        HttpCache httpCache = (request.httpMethod() == Request.HttpMethod.GET) ? annotation(request) : null;
+        if (U.isNull(httpCache)) {
+            return delegate.execute(request, options);
+        }
+
+        String key = key(request, httpCache);
+        Entry entry = cache.getIfPresent(key);
+        if (U.isNotNull(entry)) {
+            if (entry.expireTime > System.currentTimeMillis()) {
+                hit.increment();
+                savedBytes.add(entry.body.length);
+                return entry.toResponse(request);
+            }
+            if (U.isNotBlank(entry.etag)) {
+                Map<String, Collection<String>> headers = new LinkedHashMap<>(request.headers());
+                headers.put(IF_NONE_MATCH, Collections.singletonList(entry.etag));
+                Request conditional = Request.create(request.httpMethod(), request.url(), headers,
+                        request.body(), request.charset(), request.requestTemplate());
+                Response response = delegate.execute(conditional, options);
+                if (response.status() == 304) {
+                    closeQuietly(response);
+                    revalidated.increment();
+                    savedBytes.add(entry.body.length);
+                    Directive directive = Directive.parse(response.headers());
+                    entry.expireTime = directive.expireTime(httpCache);
+                    return entry.toResponse(request);
+                }
+                return store(key, httpCache, request, response);
+            }
+        }
+        miss.increment();
+        return store(key, httpCache, request, delegate.execute(request, options));
+    }
+
+    /** 可以缓存时读出响应体存起来, 太大的响应体读到上限时拼上没读的部分原样返回 */
+    private Response store(String key, HttpCache httpCache, Request request, Response response) throws IOException {
+        Directive directive = Directive.parse(response.headers());
+        Response.Body body = response.body();
+        if (response.status() < 200 || response.status() >= 300 || directive.noStore || U.isNull(body)
+                || (U.isNotNull(body.length()) && body.length() > maxEntryBytes)) {
+            cache.invalidate(key);
+            uncacheable.increment();
+            return response;
+        }
+
+        InputStream input = body.asInputStream();
+        byte[] bytes = ByteStreams.toByteArray(ByteStreams.limit(input, maxEntryBytes + 1L));
+        if (bytes.length > maxEntryBytes) {
+            cache.invalidate(key);
+            uncacheable.increment();
+            return response.toBuilder().body(new SequenceInputStream(new ByteArrayInputStream(bytes), input), null).build();
+        }
+        closeQuietly(response);
+
+        Entry entry = new Entry(response.status(), response.reason(), keepHeaders(response.headers()), bytes,
+                directive.etag, directive.expireTime(httpCache));
+        cache.put(key, entry);
+        return entry.toResponse(request);
+    }
+
+    private HttpCache annotation(Request request) {
+        RequestTemplate template = request.requestTemplate();
+        if (U.isNull(template) || U.isNull(template.methodMetadata()) || U.isNull(template.methodMetadata().method())) {
+            return null;
+        }
+        Method method = template.methodMetadata().method();
+        return annotations.computeIfAbsent(method, m -> Optional.ofNullable(m.getAnnotation(HttpCache.class))).orElse(null);
+    }
+
+    /** 服务名的 url 加上需要区分的请求头, 没有 feign 的上下文时用实际的 url */
+    private String key(Request request, HttpCache httpCache) {
+        StringBuilder sbd = new StringBuilder();
+        RequestTemplate template = request.requestTemplate();
+        String url = template.url();
+        if (!url.startsWith("http") && U.isNotNull(template.feignTarget())) {
+            sbd.append(template.feignTarget().url());
+        }
+        sbd.append(url);
+        appendHeaders(sbd, request.headers(), keyHeaders);
+        if (httpCache.headers().length > 0) {
+            List<String> extra = new ArrayList<>();
+            for (String header : httpCache.headers()) {
+                extra.add(header.toLowerCase());
+            }
+            appendHeaders(sbd, request.headers(), extra);
+        }
+        return sbd.toString();
+    }
+
+    private static void appendHeaders(StringBuilder sbd, Map<String, Collection<String>> headers, List<String> names) {
+        if (names.isEmpty() || A.isEmpty(headers)) {
+            return;
+        }
+        for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+            if (names.contains(entry.getKey().toLowerCase())) {
+                sbd.append("|").append(entry.getKey().toLowerCase()).append("=").append(A.toStr(entry.getValue()));
+            }
+        }
+    }
+
+    private static Map<String, Collection<String>> keepHeaders(Map<String, Collection<String>> headers) {
+        Map<String, Collection<String>> keep = new LinkedHashMap<>();
+        if (A.isNotEmpty(headers)) {
+            for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+                if (KEEP_HEADERS.contains(entry.getKey().toLowerCase())) {
+                    keep.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+                }
+            }
+        }
+        return Collections.unmodifiableMap(keep);
+    }
+
+    private static void closeQuietly(Response response) {
+        try {
+            response.close();
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isDebugEnabled()) {
+                LogUtil.ROOT_LOG.debug("close feign response exception", e);
+            }
+        }
+    }
+
+    /** 响应头中跟缓存有关的值 */
+    private static final class Directive {
+        private boolean noStore;
+        private boolean noCache;
+        /** 小于 0 表示响应头中没有 */
+        private long maxAge = -1;
+        private String etag;
+
+        private static Directive parse(Map<String, Collection<String>> headers) {
+            Directive directive = new Directive();
+            if (A.isEmpty(headers)) {
+                return directive;
+            }
+            for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+                String name = entry.getKey().toLowerCase();
+                if ("etag".equals(name)) {
+                    directive.etag = A.first(entry.getValue());
+                } else if ("cache-control".equals(name)) {
+                    for (String value : entry.getValue()) {
+                        for (String part : value.split(",")) {
+                            String item = part.trim().toLowerCase();
+                            if ("no-store".equals(item) || "private".equals(item)) {
+                                directive.noStore = true;
+                            } else if ("no-cache".equals(item)) {
+                                directive.noCache = true;
+                            } else if (item.startsWith("max-age=")) {
+                                directive.maxAge = Math.max(U.toLong(item.substring("max-age=".length()).replace("\"", "")), 0);
+                            }
+                        }
+                    }
+                }
+            }
+            return directive;
+        }
+
+        private long expireTime(HttpCache httpCache) {
+            if (noCache) {
+                return 0;
+            }
+            long seconds = (maxAge >= 0) ? maxAge : httpCache.maxAgeSeconds();
+            return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+        }
+    }
+
+    private static final class Entry {
+        private final int status;
+        private final String reason;
+        private final Map<String, Collection<String>> headers;
+        private final byte[] body;
+        private final String etag;
+        private volatile long expireTime;
+
+        private Entry(int status, String reason, Map<String, Collection<String>> headers, byte[] body,
+                      String etag, long expireTime) {
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.expireTime = expireTime;
+        }
+
+        private Response toResponse(Request request) {
+            return Response.builder().status(status).reason(reason).headers(headers).request(request).body(body).build();
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.github.global.config;
+
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import feign.*;
+import feign.hystrix.FallbackFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 替代 hystrix 的 feign 调用保护(feign.resilience.enabled = true), 全部在调用方的线程上执行, 不用切线程也不用复制上下文:
+ *   信号量隔离: 每个服务(@FeignClient 的 value)最多同时发起 maxConcurrent 个调用, 超出的等 maxWaitMs 毫秒后拒绝
+ *   熔断      : 最近 windowSize 次调用中(至少 minimumCalls 次)失败的比例达到 failureRate% 时打开,
+ *              openMs 毫秒后放 halfOpenCalls 个调用进去试探, 都成功就关闭, 有一个失败就再打开
+ *   超时      : 整个调用(含重试)最多 timeoutMs 毫秒, 每次请求的连接和读取超时不超过剩下的时间
+ * 某个服务单独的配置放在 serviceXxx 中(如 feign.resilience.serviceMaxConcurrent = {user: 100}).
+ *
+ * 被拒绝、熔断和出错(4xx 除外, 但依然会走降级)时跟 hystrix 一样调用 @FeignClient 上的 fallbackFactory(或 fallback),
+ * 原来的 XxxClient 和 XxxClientFallback 不需要改动. 没有配置降级时抛出原来的异常
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass({ FeignClient.class, Feign.class })
+@ConditionalOnProperty("feign.resilience.enabled")
+public class FeignResilience {
+
+    /** 当前线程上调用的截止时间(System.nanoTime), 外面(如 {@link FeignAsync})设置了更早的截止时间时以外面的为准 */
+    static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    @Value("${feign.resilience.maxConcurrent:50}")
+    private int maxConcurrent;
+
+    @Value("#{${feign.resilience.serviceMaxConcurrent:{:}}}")
+    private Map<String, Integer> serviceMaxConcurrent;
+
+    /** 信号量用完时等待的毫秒数, 0 表示直接拒绝 */
+    @Value("${feign.resilience.maxWaitMs:0}")
+    private long maxWaitMs;
+
+    @Value("${feign.resilience.timeoutMs:5000}")
+    private long timeoutMs;
+
+    @Value("#{${feign.resilience.serviceTimeoutMs:{:}}}")
+    private Map<String, Long> serviceTimeoutMs;
+
+    @Value("${feign.resilience.windowSize:20}")
+    private int windowSize;
+
+    @Value("${feign.resilience.minimumCalls:10}")
+    private int minimumCalls;
+
+    @Value("${feign.resilience.failureRate:50}")
+    private int failureRate;
+
+    @Value("${feign.resilience.openMs:5000}")
+    private long openMs;
+
+    @Value("${feign.resilience.halfOpenCalls:3}")
+    private int halfOpenCalls;
+
+    private final ApplicationContext context;
+    /** 服务名 ==> 这个服务的隔离、熔断和统计 */
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    public FeignResilience(ApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * 替换 hystrix 的 builder, 每个 @FeignClient 一个.
+     * 不是 HystrixFeign.Builder 时 HystrixTargeter 会直接生成代理, 所以降级在下面的 InvocationHandler 中处理
+     *
+     * @see org.springframework.cloud.openfeign.FeignClientsConfiguration
+     */
+    @Bean
+    @Scope("prototype")
+    public Feign.Builder feignBuilder() {
+        return new Builder(this);
+    }
+
+    /** 每个服务的调用情况 */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Guard> entry : guards.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats;
+    }
+
+    Guard guard(String service) {
+        return guards.computeIfAbsent(service, name -> {
+            Integer max = A.isEmpty(serviceMaxConcurrent) ? null : serviceMaxConcurrent.get(name);
+            Long timeout = A.isEmpty(serviceTimeoutMs) ? null : serviceTimeoutMs.get(name);
+            return new Guard(U.isNull(max) ? maxConcurrent : max, maxWaitMs, U.isNull(timeout) ? timeoutMs : timeout,
+                    new CircuitBreaker(windowSize, minimumCalls, failureRate, openMs, halfOpenCalls));
+        });
+    }
+
+    /** 设置了调用的截止时间后, 每次请求的超时时间都不超过剩下的时间 */
+    private static class Builder extends Feign.Builder {
+        private Builder(FeignResilience resilience) {
+            super.invocationHandlerFactory(new HandlerFactory(resilience));
+        }
+
+        @Override
+        public Feign.Builder client(Client client) {
+            return super.client(new DeadlineClient(client));
+        }
+    }
+
+    private static class DeadlineClient implements Client {
+        private final Client delegate;
+
+        private DeadlineClient(Client delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            Long deadline = DEADLINE.get();
+            if (U.isNull(deadline)) {
+                return delegate.execute(request, options);
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("feign call timeout");
+            }
+            long connect = Math.min(options.connectTimeoutMillis(), remaining);
+            long read = Math.min(options.readTimeoutMillis(), remaining);
+            return delegate.execute(request, new Request.Options(connect, TimeUnit.MILLISECONDS,
+                    read, TimeUnit.MILLISECONDS, options.isFollowRedirects()));
+        }
+    }
+
+    private static class HandlerFactory implements InvocationHandlerFactory {
+        private final FeignResilience resilience;
+
+        private HandlerFactory(FeignResilience resilience) {
+            this.resilience = resilience;
+        }
+
+        @Override
+        public InvocationHandler create(Target target, Map<Method, MethodHandler> dispatch) {
+            FeignClient client = AnnotatedElementUtils.findMergedAnnotation(target.type(), FeignClient.class);
+            String name = U.isNull(client) ? U.EMPTY : (U.isNotBlank(client.name()) ? client.name() : client.value());
+            if (U.isBlank(name)) {
+                name = target.name();
+            }
+            return new Handler(target, dispatch, resilience.guard(name), new Fallback(resilience.context, client));
+        }
+    }
+
+    /** 跟 ReflectiveFeign.FeignInvocationHandler 一样分发, 外面加上隔离、熔断、超时和降级 */
+    private static class Handler implements InvocationHandler {
+        private final Target<?> target;
+        private final Map<Method, InvocationHandlerFactory.MethodHandler> dispatch;
+        private final Guard guard;
+        private final Fallback fallback;
+
+        private Handler(Target<?> target, Map<Method, InvocationHandlerFactory.MethodHandler> dispatch,
+                        Guard guard, Fallback fallback) {
+            this.target = target;
+            this.dispatch = dispatch;
+            this.guard = guard;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName) && method.getParameterCount() == 1) {
+                Object other = (A.isNotEmpty(args) && U.isNotNull(args[0])) ? args[0] : null;
+                if (U.isNull(other) || !Proxy.isProxyClass(other.getClass())) {
+                    return false;
+                }
+                InvocationHandler handler = Proxy.getInvocationHandler(other);
+                return handler instanceof Handler && target.equals(((Handler) handler).target);
+            } else if ("hashCode".equals(methodName) && method.getParameterCount() == 0) {
+                return target.hashCode();
+            } else if ("toString".equals(methodName) && method.getParameterCount() == 0) {
+                return target.toString();
+            }
+
+            InvocationHandlerFactory.MethodHandler handler = dispatch.get(method);
+            if (method.isDefault()) {
+                return handler.invoke(args);
+            }
+
+            Throwable rejected = guard.acquire();
+            if (U.isNotNull(rejected)) {
+                return fallback.invoke(method, args, rejected);
+            }
+            Long previous = DEADLINE.get();
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(guard.timeoutMs);
+            DEADLINE.set(U.isNotNull(previous) && previous - deadline < 0 ? previous : deadline);
+            try {
+                Object result = handler.invoke(args);
+                guard.success(System.nanoTime() - start);
+                return result;
+            } catch (Throwable e) {
+                guard.failure(e, System.nanoTime() - start);
+                return fallback.invoke(method, args, e);
+            } finally {
+                if (U.isNull(previous)) {
+                    DEADLINE.remove();
+                } else {
+                    DEADLINE.set(previous);
+                }
+                guard.release();
+            }
+        }
+    }
+
+    /** @FeignClient 上的 fallbackFactory 或 fallback, 第一次用到时才从 spring 中获取 */
+    private static class Fallback {
+        private final ApplicationContext context;
+        private final FeignClient client;
+        private volatile FallbackFactory<?> factory;
+
+        private Fallback(ApplicationContext context, FeignClient client) {
+            this.context = context;
+            this.client = client;
+        }
+
+        private Object invoke(Method method, Object[] args, Throwable cause) throws Throwable {
+            FallbackFactory<?> fallbackFactory = factory();
+            if (U.isNull(fallbackFactory)) {
+                throw cause;
+            }
+            try {
+                return method.invoke(fallbackFactory.create(cause), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private FallbackFactory<?> factory() {
+            if (U.isNull(factory) && U.isNotNull(client)) {
+                if (client.fallbackFactory() != void.class) {
+                    factory = (FallbackFactory<?>) context.getBean(client.fallbackFactory());
+                } else if (client.fallback() != void.class) {
+                    Object instance = context.getBean(client.fallback());
+                    factory = cause -> instance;
+                }
+            }
+            return factory;
+        }
+    }
+
+    /** 一个服务的信号量、熔断器和统计 */
+    static class Guard {
+        private final Semaphore semaphore;
+        private final int maxConcurrent;
+        private final long maxWaitMs;
+        private final long timeoutMs;
+        private final CircuitBreaker breaker;
+
+        private final LongAdder success = new LongAdder();
+        private final LongAdder failure = new LongAdder();
+        private final LongAdder timeout = new LongAdder();
+        private final LongAdder bulkheadRejected = new LongAdder();
+        private final LongAdder circuitRejected = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        Guard(int maxConcurrent, long maxWaitMs, long timeoutMs, CircuitBreaker breaker) {
+            this.semaphore = new Semaphore(maxConcurrent);
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaitMs = maxWaitMs;
+            this.timeoutMs = timeoutMs;
+            this.breaker = breaker;
+        }
+
+        /** 可以调用时返回 null, 否则返回拒绝的原因 */
+        Throwable acquire() {
+            if (!breaker.tryAcquire()) {
+                circuitRejected.increment();
+                return new RejectedExecutionException("circuit open");
+            }
+            boolean acquired;
+            try {
+                acquired = (maxWaitMs > 0) ? semaphore.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS) : semaphore.tryAcquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                // 熔断器放进来的调用没有发出去, 不算成功也不算失败
+                breaker.cancel();
+                bulkheadRejected.increment();
+                return new RejectedExecutionException("bulkhead full(" + maxConcurrent + ")");
+            }
+            return null;
+        }
+
+        void release() {
+            semaphore.release();
+        }
+
+        void success(long nanos) {
+            totalNanos.add(nanos);
+            success.increment();
+            breaker.onResult(false);
+        }
+
+        void failure(Throwable e, long nanos) {
+            totalNanos.add(nanos);
+            // 4xx 是调用方的问题, 服务本身是好的, 不计入熔断
+            if (e instanceof FeignException && ((FeignException) e).status() >= 400 && ((FeignException) e).status() < 500) {
+                success.increment();
+                breaker.onResult(false);
+                return;
+            }
+            if (isTimeout(e)) {
+                timeout.increment();
+            }
+            failure.increment();
+            breaker.onResult(true);
+            if (LogUtil.ROOT_LOG.isDebugEnabled()) {
+                LogUtil.ROOT_LOG.debug("feign call failure", e);
+            }
+        }
+
+        private static boolean isTimeout(Throwable e) {
+            for (Throwable t = e; U.isNotNull(t); t = (t.getCause() == t) ? null : t.getCause()) {
+                if (t instanceof SocketTimeoutException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Map<String, Object> stats() {
+            long calls = success.sum() + failure.sum();
+            return A.linkedMaps(
+                    "state", breaker.state(),
+                    "active", maxConcurrent - semaphore.availablePermits(),
+                    "success", success.sum(),
+                    "failure", failure.sum(),
+                    "timeout", timeout.sum(),
+                    "bulkheadRejected", bulkheadRejected.sum(),
+                    "circuitRejected", circuitRejected.sum(),
+                    "avgUs", (calls == 0) ? 0 : (totalNanos.sum() / calls / 1000)
+            );
+        }
+    }
+
+    /** 按次数的滑动窗口熔断器, 状态变化不频繁, 直接用锁 */
+    static class CircuitBreaker {
+        enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final boolean[] window;
+        private final int minimumCalls;
+        private final int failureRate;
+        private final long openMs;
+        private final int halfOpenCalls;
+
+        private State state = State.CLOSED;
+        private int index;
+        private int count;
+        private int failures;
+        private long openUntil;
+        /** 半开时还能放进去的调用数 */
+        private int halfOpenPermits;
+        /** 半开时已经成功的调用数 */
+        private int halfOpenSuccess;
+
+        CircuitBreaker(int windowSize, int minimumCalls, int failureRate, long openMs, int halfOpenCalls) {
+            this.window = new boolean[Math.max(windowSize, 1)];
+            this.minimumCalls = Math.max(Math.min(minimumCalls, window.length), 1);
+            this.failureRate = failureRate;
+            this.openMs = openMs;
+            this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccess = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits <= 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+
+        /** tryAcquire 之后没有真正调用 */
+        synchronized void cancel() {
+            if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+                halfOpenPermits++;
+            }
+        }
+
+        synchronized void onResult(boolean failure) {
+            if (state == State.HALF_OPEN) {
+                if (failure) {
+                    open();
+                } else if (++halfOpenSuccess >= halfOpenCalls) {
+                    state = State.CLOSED;
+                    reset();
+                }
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+            if (count == window.length) {
+                if (window[index]) {
+                    failures--;
+                }
+            } else {
+                count++;
+            }
+            window[index] = failure;
+            if (failure) {
+                failures++;
+            }
+            index = (index + 1) % window.length;
+            if (count >= minimumCalls && failures * 100 >= failureRate * count) {
+                open();
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMs;
+            reset();
+        }
+
+        private void reset() {
+            index = 0;
+            count = 0;
+            failures = 0;
+        }
+    }
+}
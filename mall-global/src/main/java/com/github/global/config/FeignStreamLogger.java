@@ -0,0 +1,339 @@
+package com.github.global.config;
+
+import com.github.common.util.A;
+import com.github.common.util.DesensitizationUtil;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import feign.Logger;
+import feign.Request;
+import feign.Response;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * feign 日志的 stream 模式(feign.log.mode = stream), 跟 {@link FeignConfig#handleLog()} 的默认模式相比:
+ *   1. 响应体不再整个读进内存: 解码器从连接上读取时顺便复制前 maxBytes 个字节用来打印, 后面的只计数
+ *   2. 请求和响应合成一条日志, 在响应体读完(或关闭)时输出
+ *   3. 按服务抽样(feign.log.sampleRates = {user: 0.1}, 没有配置的服务用 feign.log.sampleRate)
+ *   4. 配置了 feign.log.slowMs 时只打印超过这个毫秒数的调用
+ * 状态码不是 2xx 和 io 异常的调用不受抽样和 slowMs 的限制, 都会打印
+ * </pre>
+ */
+public class FeignStreamLogger extends Logger {
+
+    private final GlobalLogHandler logHandler;
+    /** 请求体和响应体最多打印的字节数, 小于等于 0 时不打印 */
+    private final int maxBytes;
+    /** 默认的抽样率, 0 ~ 1 */
+    private final double sampleRate;
+    /** 服务名 ==> 抽样率 */
+    private final Map<String, Double> sampleRates;
+    /** 大于 0 时只打印耗时不小于这个值的调用 */
+    private final long slowMs;
+
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder fastSkipped = new LongAdder();
+    private final LongAdder bodyBytes = new LongAdder();
+
+    public FeignStreamLogger(GlobalLogHandler logHandler, int maxBytes, double sampleRate,
+                             Map<String, Double> sampleRates, long slowMs) {
+        this.logHandler = logHandler;
+        this.maxBytes = maxBytes;
+        this.sampleRate = sampleRate;
+        this.sampleRates = A.isEmpty(sampleRates) ? Collections.emptyMap() : sampleRates;
+        this.slowMs = slowMs;
+    }
+
+    @Override
+    protected void log(String configKey, String format, Object... args) {}
+
+    /** 请求跟响应一起打印, 这里不用处理 */
+    @Override
+    protected void logRequest(String configKey, Level logLevel, Request request) {}
+
+    @Override
+    protected void logRetry(String configKey, Level logLevel) {
+        if (LogUtil.ROOT_LOG.isInfoEnabled()) {
+            LogUtil.ROOT_LOG.info("feignClient --> {}-> retrying...", methodTag(configKey));
+        }
+    }
+
+    @Override
+    protected Response logAndRebufferResponse(String configKey, Level level, Response res, long useTime) {
+        if (!LogUtil.ROOT_LOG.isInfoEnabled()) {
+            return res;
+        }
+        int status = res.status();
+        if (status >= 200 && status < 300) {
+            if (slowMs > 0 && useTime < slowMs) {
+                fastSkipped.increment();
+                return res;
+            }
+            if (!sampled(res.request())) {
+                sampledOut.increment();
+                return res;
+            }
+        }
+
+        StringBuilder sbd = new StringBuilder();
+        appendRequest(sbd, res.request());
+        sbd.append(" response:[time(").append(useTime).append(" ms), status(").append(status).append(")");
+        String reason = res.reason();
+        if (U.isNotBlank(reason)) {
+            sbd.append(", reason(").append(reason).append(")");
+        }
+        collectHeader(sbd, res.headers());
+
+        Response.Body body = res.body();
+        if (U.isNull(body)) {
+            print(configKey, sbd);
+            return res;
+        }
+        int limit = isText(res.headers()) ? Math.max(maxBytes, 0) : 0;
+        return res.toBuilder().body(new TeeBody(body, limit, tee -> {
+            bodyBytes.add(tee.total);
+            if (tee.captured > 0) {
+                String data = new String(tee.prefix, 0, tee.captured, StandardCharsets.UTF_8);
+                sbd.append(", return(").append(logHandler.toJson(data)).append(")");
+            }
+            if (tee.total > tee.captured) {
+                sbd.append(", bytes(").append(tee.total).append(tee.eof ? "" : "+").append(")");
+            }
+            print(configKey, sbd);
+        })).build();
+    }
+
+    @Override
+    protected IOException logIOException(String configKey, Level level, IOException e, long useTime) {
+        if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+            String clazzName = e.getClass().getSimpleName();
+            String msg = String.format("exception:[time(%sms) %s: %s]", useTime, clazzName, e.getMessage());
+            LogUtil.ROOT_LOG.error("feignClient <--> {}<-> {}", methodTag(configKey), msg, e);
+        }
+        return e;
+    }
+
+    /** 打印的情况 */
+    public Map<String, Object> stats() {
+        return A.linkedMaps(
+                "logged", logged.sum(),
+                "sampledOut", sampledOut.sum(),
+                "fastSkipped", fastSkipped.sum(),
+                "bodyBytes", bodyBytes.sum()
+        );
+    }
+
+    private boolean sampled(Request request) {
+        double rate = sampleRate;
+        if (!sampleRates.isEmpty() && U.isNotNull(request)) {
+            Double serviceRate = sampleRates.get(FeignTransport.serviceName(request));
+            if (U.isNotNull(serviceRate)) {
+                rate = serviceRate;
+            }
+        }
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private void print(String configKey, StringBuilder sbd) {
+        logged.increment();
+        sbd.append("]");
+        LogUtil.ROOT_LOG.info("feignClient <-> {}<-> {}", methodTag(configKey), sbd);
+    }
+
+    private void appendRequest(StringBuilder sbd, Request request) {
+        sbd.append("request:[");
+        if (U.isNull(request)) {
+            sbd.append("]");
+            return;
+        }
+        sbd.append(request.httpMethod().name()).append(" ").append(request.url());
+        collectHeader(sbd, request.headers());
+
+        byte[] body = request.body();
+        if (body != null && body.length > 0) {
+            String data;
+            if (request.isBinary()) {
+                data = "Binary data";
+            } else {
+                Charset charset = U.isNull(request.charset()) ? StandardCharsets.UTF_8 : request.charset();
+                data = new String(body, 0, Math.min(body.length, Math.max(maxBytes, 0)), charset);
+                if (body.length > maxBytes) {
+                    data += "...";
+                }
+            }
+            sbd.append(" body(").append(logHandler.toJson(data)).append(")");
+        }
+        sbd.append("]");
+    }
+
+    private static void collectHeader(StringBuilder sbd, Map<String, Collection<String>> headers) {
+        if (A.isNotEmpty(headers)) {
+            sbd.append(" header(");
+            for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+                sbd.append("<");
+                sbd.append(entry.getKey()).append(" : ").append(DesensitizationUtil.desKey(entry.getKey(), A.toStr(entry.getValue())));
+                sbd.append(">");
+            }
+            sbd.append(")");
+        }
+    }
+
+    /** 没有 Content-Type 时当成文本, 图片、文件之类的只计数不复制 */
+    private static boolean isText(Map<String, Collection<String>> headers) {
+        if (A.isEmpty(headers)) {
+            return true;
+        }
+        for (Map.Entry<String, Collection<String>> entry : headers.entrySet()) {
+            if ("Content-Type".equalsIgnoreCase(entry.getKey())) {
+                String type = U.toStr(A.first(entry.getValue())).toLowerCase();
+                return type.isEmpty() || type.contains("json") || type.contains("text")
+                        || type.contains("xml") || type.contains("form");
+            }
+        }
+        return true;
+    }
+
+    private interface Finisher {
+        void finish(TeeBody body);
+    }
+
+    /** 包装响应体: 读取时复制前 limit 个字节, 读完或关闭时回调一次 */
+    private static final class TeeBody implements Response.Body {
+        private final Response.Body delegate;
+        private final Finisher finisher;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private final byte[] prefix;
+        private int captured;
+        private long total;
+        private boolean eof;
+
+        private TeeBody(Response.Body delegate, int limit, Finisher finisher) {
+            this.delegate = delegate;
+            this.prefix = new byte[limit];
+            this.finisher = finisher;
+        }
+
+        @Override
+        public Integer length() {
+            return delegate.length();
+        }
+        @Override
+        public boolean isRepeatable() {
+            return delegate.isRepeatable();
+        }
+        @Override
+        public InputStream asInputStream() throws IOException {
+            return new TeeInputStream(delegate.asInputStream());
+        }
+        @Override
+        public Reader asReader(Charset charset) throws IOException {
+            return new InputStreamReader(asInputStream(), charset);
+        }
+        @Override
+        public void close() throws IOException {
+            try {
+                delegate.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                try {
+                    finisher.finish(this);
+                } catch (Exception e) {
+                    if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                        LogUtil.ROOT_LOG.error("feignClient log response exception", e);
+                    }
+                }
+            }
+        }
+
+        private void copy(int b) {
+            if (!finished.get()) {
+                if (captured < prefix.length) {
+                    prefix[captured++] = (byte) b;
+                }
+                total++;
+            }
+        }
+        private void copy(byte[] b, int off, int len) {
+            if (len > 0 && !finished.get()) {
+                int n = Math.min(len, prefix.length - captured);
+                if (n > 0) {
+                    System.arraycopy(b, off, prefix, captured, n);
+                    captured += n;
+                }
+                total += len;
+            }
+        }
+
+        private final class TeeInputStream extends FilterInputStream {
+            private TeeInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b < 0) {
+                    end();
+                } else {
+                    copy(b);
+                }
+                return b;
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n < 0) {
+                    end();
+                } else {
+                    copy(b, off, n);
+                }
+                return n;
+            }
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                if (skipped > 0 && !finished.get()) {
+                    total += skipped;
+                }
+                return skipped;
+            }
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    finish();
+                }
+            }
+
+            private void end() {
+                eof = true;
+                finish();
+            }
+        }
+    }
+}
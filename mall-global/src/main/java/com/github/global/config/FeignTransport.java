@@ -0,0 +1,435 @@
+package com.github.global.config;
+
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.httpclient.ApacheHttpClient;
+import okhttp3.*;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <pre>
+ * feign 调用的底层连接(feign.transport.type), 负载均衡、请求头和日志的处理依然在 {@link FeignConfig} 中:
+ *   httpclient(默认): apache httpclient 的连接池, 总连接数 maxConnections, 每个服务实例(ip:port)的连接数 maxConnectionsPerRoute,
+ *                    某个服务的实例需要单独的连接数时在 serviceMaxConnections 中配置(如 feign.transport.serviceMaxConnections = {user: 100}),
+ *                    需要 feign-httpclient 包, 没有时退回到 jdk
+ *   okhttp          : okhttp 的连接池, 同时进行的请求总数不超过 maxConnections, 每个服务实例不超过 maxConnectionsPerRoute
+ *                    (serviceMaxConnections 同样有效), 超出时等待, 等待超过连接超时时间则抛出异常.
+ *                    打开 feign.transport.h2c 后用 http/2 的明文方式(不经过升级, 直接发 h2c 的请求,
+ *                    被调用的服务要能处理, 如 tomcat 上设置 server.http2.enabled = true), 同一个实例上的请求复用一个连接.
+ *                    需要自行引入 okhttp 包
+ *   jdk             : 原来的 HttpURLConnection, 没有连接池的控制
+ *
+ * 响应体都是流式返回的, 由 feign 的解码器直接从连接上读取
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass({ FeignClient.class, Feign.class })
+public class FeignTransport {
+
+    @Value("${feign.transport.type:httpclient}")
+    private String type;
+
+    /** 连接池的总连接数 */
+    @Value("${feign.transport.maxConnections:200}")
+    private int maxConnections;
+
+    /** 每个服务实例(ip:port)的最大连接数 */
+    @Value("${feign.transport.maxConnectionsPerRoute:50}")
+    private int maxConnectionsPerRoute;
+
+    /** 服务名 -> 这个服务每个实例的最大连接数 */
+    @Value("#{${feign.transport.serviceMaxConnections:{:}}}")
+    private Map<String, Integer> serviceMaxConnections;
+
+    /** 空闲连接保持的毫秒数, 服务端的响应头 Keep-Alive: timeout=n 更短时以服务端的为准 */
+    @Value("${feign.transport.keepAliveMs:60000}")
+    private long keepAliveMs;
+
+    /** 只对 httpclient 有效, 连接从建立开始的最长使用毫秒数, 到了之后关闭重连, 小于等于 0 表示不限制 */
+    @Value("${feign.transport.connectionTtlMs:-1}")
+    private long connectionTtlMs;
+
+    /** 只对 okhttp 有效, 用 http/2 的明文方式(h2c) */
+    @Value("${feign.transport.h2c:false}")
+    private boolean h2c;
+
+    private volatile Transport transport;
+
+    /** 真正发起请求的 client, 由 FeignConfig 包在负载均衡里面 */
+    public Client client() {
+        if (transport == null) {
+            synchronized (this) {
+                if (transport == null) {
+                    transport = create();
+                }
+            }
+        }
+        return transport;
+    }
+
+    private Transport create() {
+        String name = U.toStr(type).trim().toLowerCase();
+        if ("okhttp".equals(name)) {
+            return new OkHttpTransport(maxConnections, maxConnectionsPerRoute, keepAliveMs, h2c, serviceMaxConnections);
+        }
+        if (!"jdk".equals(name)) {
+            if (ClassUtils.isPresent("feign.httpclient.ApacheHttpClient", FeignTransport.class.getClassLoader())) {
+                return new HttpClientTransport(maxConnections, maxConnectionsPerRoute, keepAliveMs, connectionTtlMs, serviceMaxConnections);
+            }
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("feign.transport.type({}) need feign-httpclient, use HttpURLConnection", name);
+            }
+        }
+        return new JdkTransport();
+    }
+
+    /** 连接池的使用情况 */
+    public Map<String, Object> stats() {
+        return U.isNull(transport) ? A.linkedMaps("type", U.toStr(type)) : transport.stats();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (U.isNotNull(transport)) {
+            transport.close();
+        }
+    }
+
+    /** 调用的服务名, 没有时返回空字符串 */
+    static String serviceName(Request request) {
+        RequestTemplate template = request.requestTemplate();
+        if (U.isNotNull(template) && U.isNotNull(template.feignTarget())) {
+            return U.toStr(template.feignTarget().name());
+        }
+        return U.EMPTY;
+    }
+
+    /** 具体的实现在各自的类里面, 没有引入的包只有在用到时才会加载 */
+    private interface Transport extends Client {
+        Map<String, Object> stats();
+        void close();
+    }
+
+    private static class JdkTransport extends Client.Default implements Transport {
+        private JdkTransport() {
+            super(null, null);
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            return A.linkedMaps("type", "jdk");
+        }
+        @Override
+        public void close() {}
+    }
+
+    /** 服务的实例第一次被调用时, 如果这个服务单独配置了连接数, 设置到实例对应的路由上 */
+    private static class HttpClientTransport implements Transport {
+        private final PoolingHttpClientConnectionManager pool;
+        private final CloseableHttpClient httpClient;
+        private final Client delegate;
+        private final Map<String, Integer> serviceMax;
+        private final Set<String> configuredRoutes = ConcurrentHashMap.newKeySet();
+
+        private HttpClientTransport(int maxTotal, int maxPerRoute, long keepAliveMs, long ttlMs, Map<String, Integer> serviceMax) {
+            // 空闲连接由 keepAliveMs 回收, ttl 限制的是连接从建立开始的总时长, 跟空闲无关
+            pool = new PoolingHttpClientConnectionManager(ttlMs, TimeUnit.MILLISECONDS);
+            pool.setMaxTotal(maxTotal);
+            pool.setDefaultMaxPerRoute(maxPerRoute);
+            // 空闲超过 2 秒的连接在使用前检查一下是否还能用, 服务端先关掉的连接不会拿来发请求
+            pool.setValidateAfterInactivity(2000);
+            // 服务端的空闲超时比 keepAliveMs 短时(如 tomcat 默认 20 秒)连接会被服务端先关掉, 用响应头里的值
+            ConnectionKeepAliveStrategy keepAlive = (response, context) -> {
+                long server = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return (server > 0) ? Math.min(server, keepAliveMs) : keepAliveMs;
+            };
+            httpClient = HttpClients.custom().setConnectionManager(pool)
+                    .setKeepAliveStrategy(keepAlive)
+                    .evictExpiredConnections().evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+                    .disableRedirectHandling().disableAutomaticRetries().disableCookieManagement()
+                    .build();
+            delegate = new ApacheHttpClient(httpClient);
+            this.serviceMax = A.isEmpty(serviceMax) ? Collections.emptyMap() : serviceMax;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            if (!serviceMax.isEmpty()) {
+                Integer max = serviceMax.get(serviceName(request));
+                if (U.isNotNull(max) && max > 0) {
+                    URL url = new URL(request.url());
+                    boolean secure = "https".equalsIgnoreCase(url.getProtocol());
+                    int port = url.getPort() > 0 ? url.getPort() : (secure ? 443 : 80);
+                    HttpHost host = new HttpHost(url.getHost(), port, url.getProtocol());
+                    if (configuredRoutes.add(host.toURI())) {
+                        pool.setMaxPerRoute(new HttpRoute(host, null, secure), max);
+                    }
+                }
+            }
+            return delegate.execute(request, options);
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            PoolStats stats = pool.getTotalStats();
+            return A.linkedMaps(
+                    "type", "httpclient",
+                    "leased", stats.getLeased(),
+                    "available", stats.getAvailable(),
+                    "pending", stats.getPending(),
+                    "max", stats.getMax(),
+                    "routes", pool.getRoutes().size()
+            );
+        }
+
+        @Override
+        public void close() {
+            try {
+                httpClient.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * okhttp 的 feign client, 超时跟 client 上的不一样时派生一个共用连接池的 client.
+     *
+     * okhttp 的 ConnectionPool 只管空闲连接的数量, Dispatcher 的 maxRequests/maxRequestsPerHost 也只对异步调用生效,
+     * feign 用的是同步调用, 所以总数和每个实例的并发数另外用信号量控制, 响应体关闭时归还
+     */
+    private static class OkHttpTransport implements Transport {
+        private final OkHttpClient okHttpClient;
+        private final Map<String, OkHttpClient> optionClients = new ConcurrentHashMap<>();
+
+        private final int maxRequests;
+        private final int maxPerHost;
+        private final Map<String, Integer> serviceMax;
+        private final Semaphore totalPermits;
+        /** ip:port -> 这个实例的并发数 */
+        private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+        private OkHttpTransport(int maxRequests, int maxPerHost, long keepAliveMs, boolean h2c, Map<String, Integer> serviceMax) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxPerHost);
+            OkHttpClient.Builder builder = new OkHttpClient.Builder().dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(maxRequests, keepAliveMs, TimeUnit.MILLISECONDS))
+                    .followRedirects(false).retryOnConnectionFailure(false);
+            if (h2c) {
+                builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+            }
+            okHttpClient = builder.build();
+
+            this.maxRequests = maxRequests;
+            this.maxPerHost = maxPerHost;
+            this.serviceMax = A.isEmpty(serviceMax) ? Collections.emptyMap() : serviceMax;
+            this.totalPermits = new Semaphore(maxRequests, true);
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            URL url = new URL(request.url());
+            String host = url.getHost() + ":" + (url.getPort() > 0 ? url.getPort() : url.getDefaultPort());
+            Semaphore hostPermit = hostPermits.computeIfAbsent(host, k -> {
+                Integer max = serviceMax.get(serviceName(request));
+                return new Semaphore((U.isNotNull(max) && max > 0) ? max : maxPerHost, true);
+            });
+            long waitMs = options.connectTimeoutMillis();
+            acquire(totalPermits, waitMs, "total");
+            try {
+                acquire(hostPermit, waitMs, host);
+            } catch (IOException e) {
+                totalPermits.release();
+                throw e;
+            }
+            Runnable release = new Runnable() {
+                private final AtomicBoolean released = new AtomicBoolean();
+                @Override
+                public void run() {
+                    if (released.compareAndSet(false, true)) {
+                        hostPermit.release();
+                        totalPermits.release();
+                    }
+                }
+            };
+            try {
+                Response response = doExecute(request, options);
+                if (U.isNull(response.body())) {
+                    release.run();
+                    return response;
+                }
+                return response.toBuilder().body(toBody(response.body(), release)).build();
+            } catch (IOException | RuntimeException e) {
+                release.run();
+                throw e;
+            }
+        }
+
+        private static void acquire(Semaphore semaphore, long waitMs, String name) throws IOException {
+            try {
+                if (!semaphore.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                    throw new IOException(String.format("okhttp requests(%s) exceed limit, wait %sms", name, waitMs));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("wait okhttp requests(" + name + ") interrupted");
+            }
+        }
+
+        private Response doExecute(Request request, Request.Options options) throws IOException {
+            String key = options.connectTimeoutMillis() + "/" + options.readTimeoutMillis() + "/" + options.isFollowRedirects();
+            OkHttpClient client = optionClients.computeIfAbsent(key, k -> okHttpClient.newBuilder()
+                    .connectTimeout(options.connectTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(options.readTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .followRedirects(options.isFollowRedirects())
+                    .build());
+
+            okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(request.url());
+            String contentType = null;
+            for (Map.Entry<String, Collection<String>> entry : request.headers().entrySet()) {
+                String name = entry.getKey();
+                // 长度由 okhttp 根据请求体设置
+                if ("Content-Length".equalsIgnoreCase(name)) {
+                    continue;
+                }
+                if ("Content-Type".equalsIgnoreCase(name)) {
+                    contentType = A.first(entry.getValue());
+                }
+                for (String value : entry.getValue()) {
+                    builder.addHeader(name, value);
+                }
+            }
+            String method = request.httpMethod().name();
+            byte[] body = request.body();
+            RequestBody requestBody = null;
+            if (U.isNotNull(body)) {
+                requestBody = RequestBody.create(U.isBlank(contentType) ? null : MediaType.parse(contentType), body);
+            } else if ("POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method)) {
+                requestBody = RequestBody.create(null, new byte[0]);
+            }
+            builder.method(method, requestBody);
+
+            okhttp3.Response response = client.newCall(builder.build()).execute();
+            Map<String, Collection<String>> headers = new LinkedHashMap<>();
+            for (String name : response.headers().names()) {
+                headers.put(name, response.headers(name));
+            }
+            return Response.builder()
+                    .status(response.code())
+                    .reason(response.message())
+                    .request(request)
+                    .headers(headers)
+                    .body(toBody(response.body()))
+                    .build();
+        }
+
+        /** 响应体关闭时归还并发数 */
+        private static Response.Body toBody(Response.Body body, Runnable release) {
+            return new Response.Body() {
+                @Override
+                public Integer length() {
+                    return body.length();
+                }
+                @Override
+                public boolean isRepeatable() {
+                    return body.isRepeatable();
+                }
+                @Override
+                public InputStream asInputStream() throws IOException {
+                    return body.asInputStream();
+                }
+                @Override
+                public Reader asReader(Charset charset) throws IOException {
+                    return body.asReader(charset);
+                }
+                @Override
+                public void close() throws IOException {
+                    try {
+                        body.close();
+                    } finally {
+                        release.run();
+                    }
+                }
+            };
+        }
+
+        private static Response.Body toBody(ResponseBody body) {
+            if (U.isNull(body)) {
+                return null;
+            }
+            long length = body.contentLength();
+            return new Response.Body() {
+                @Override
+                public Integer length() {
+                    return (length >= 0 && length <= Integer.MAX_VALUE) ? (int) length : null;
+                }
+                @Override
+                public boolean isRepeatable() {
+                    return false;
+                }
+                @Override
+                public InputStream asInputStream() {
+                    return body.byteStream();
+                }
+                @Override
+                public Reader asReader(Charset charset) {
+                    return new InputStreamReader(body.byteStream(), charset);
+                }
+                @Override
+                public void close() {
+                    body.close();
+                }
+            };
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            ConnectionPool pool = okHttpClient.connectionPool();
+            int total = pool.connectionCount();
+            int idle = pool.idleConnectionCount();
+            return A.linkedMaps(
+                    "type", "okhttp",
+                    "protocols", okHttpClient.protocols().toString(),
+                    "active", total - idle,
+                    "idle", idle,
+                    "requests", maxRequests - totalPermits.availablePermits(),
+                    "maxRequests", maxRequests,
+                    "hosts", hostPermits.size()
+            );
+        }
+
+        @Override
+        public void close() {
+            okHttpClient.dispatcher().executorService().shutdown();
+            okHttpClient.connectionPool().evictAll();
+        }
+    }
+}
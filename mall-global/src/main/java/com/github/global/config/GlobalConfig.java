@@ -1,14 +1,36 @@
 package com.github.global.config;
 
 import com.github.common.util.ApplicationContexts;
+import com.github.common.util.NoUtil;
+import com.github.common.util.U;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PostConstruct;
+
 @Configuration
 public class GlobalConfig {
 
+    @Value("${online:false}")
+    private boolean online;
+
+    /** 机器号(0 ~ 1023), 每个实例要不一样, 可以用 -Did.worker=xx 或配置文件指定 */
+    @Value("${id.worker:}")
+    private String idWorker;
+
     @Bean
     public ApplicationContexts setupApplicationContext() {
         return new ApplicationContexts();
     }
+
+    /** 线上没有指定机器号时启动失败, 用 机器码 + 进程号 取模的话多个实例很容易相同, 生成重复的 id */
+    @PostConstruct
+    public void setupWorkerId() {
+        if (U.isNotBlank(idWorker)) {
+            NoUtil.setWorkerId(Integer.parseInt(idWorker.trim()));
+        } else if (online) {
+            throw new IllegalStateException("online need id.worker(0 ~ 1023, different on each instance)");
+        }
+    }
 }
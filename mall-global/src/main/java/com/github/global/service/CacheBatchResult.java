@@ -0,0 +1,39 @@
+package com.github.global.service;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** 批量操作 redis 的返回: 成功的键值、失败的键及原因、与 redis 的往返次数 */
+@Getter
+public class CacheBatchResult<T> {
+
+    /** 成功的键值, 顺序跟传入的键一致 */
+    private final Map<String, T> data = new LinkedHashMap<>();
+
+    /** 失败的键及失败原因 */
+    private final Map<String, String> failMap = new LinkedHashMap<>();
+
+    /** 与 redis 的往返次数(每个批次一次) */
+    private int roundTrip;
+
+    void success(String key, T value) {
+        data.put(key, value);
+    }
+    void fail(String key, String msg) {
+        failMap.put(key, msg);
+    }
+    void incrRoundTrip() {
+        roundTrip++;
+    }
+
+    /** 所有的键都操作成功则返回 true */
+    public boolean wasAllSuccess() {
+        return failMap.isEmpty();
+    }
+
+    public T get(String key) {
+        return data.get(key);
+    }
+}
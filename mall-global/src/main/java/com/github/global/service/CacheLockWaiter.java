@@ -0,0 +1,276 @@
+package com.github.global.service;
+
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * 分布式锁的等待队列, 用来替代 sleep 轮询.
+ *
+ * 释放锁时会往 redis 的频道发布锁的键, 每个实例收到后只唤醒本实例中等待这个锁最久的一个线程.
+ * 没有收到通知(比如持有锁的实例挂了, 锁是过期释放的)时, 等待的线程会在锁的剩余时间到了之后自己再去尝试
+ */
+@Configuration
+@ConditionalOnClass({ RedisTemplate.class, StringRedisTemplate.class })
+public class CacheLockWaiter {
+
+    /** 等待时间的分布(毫秒), 最后一个区间是大于等于最后一个值 */
+    private static final long[] HISTOGRAM_MS = new long[] { 1, 5, 10, 50, 100, 500, 1000 };
+
+    /** 订阅生效之前每次探测的间隔毫秒数 */
+    private static final long SUBSCRIBE_PROBE_MS = 50;
+
+    /** 释放锁时发布通知的频道 */
+    @Value("${cache.lock.channel:cache-lock-release}")
+    private String channel;
+
+    /** 第一次等待时最多等订阅生效的毫秒数 */
+    @Value("${cache.lock.subscribeWaitMs:3000}")
+    private long subscribeWaitMs;
+
+    private final RedisConnectionFactory connectionFactory;
+    /** 第一次有线程等待锁时才订阅频道, 不使用等待模式的应用不会多占一个连接 */
+    private volatile RedisMessageListenerContainer container;
+
+    private final ConcurrentMap<String, Deque<Waiter>> waiterMap = new ConcurrentHashMap<>();
+    private final LongAdder[] histogram = new LongAdder[HISTOGRAM_MS.length + 1];
+
+    public CacheLockWaiter(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 获取锁, 获取不到就排队等待释放的通知
+     *
+     * @param key 锁
+     * @param waitNanos 最多等待的纳秒数
+     * @param fair true 表示公平模式: 本实例中按排队的先后尝试, 新来的线程直接排到后面, 不插队
+     * @param tryAcquire 尝试获取锁, 获取成功返回 0, 否则返回锁的剩余毫秒数
+     * @return 在等待时间内获取到了锁则返回 true
+     */
+    boolean acquire(String key, long waitNanos, boolean fair, LongSupplier tryAcquire) {
+        long start = System.nanoTime();
+        if (waitNanos <= 0) {
+            boolean acquired = tryAcquire.getAsLong() == 0;
+            if (acquired) {
+                record(start);
+            }
+            return acquired;
+        }
+
+        subscribeIfNeed();
+        long deadline = start + waitNanos;
+        Waiter waiter = new Waiter(Thread.currentThread());
+        // 先入队再尝试, 尝试失败之后锁才被释放的话, 通知一定能找到这个线程
+        enqueue(key, waiter, false);
+        boolean acquired = false;
+        try {
+            while (true) {
+                long ttl;
+                boolean signaled = waiter.signaled;
+                if (!fair || signaled || waiter == firstWaiter(key)) {
+                    ttl = tryAcquire.getAsLong();
+                    if (ttl == 0) {
+                        acquired = true;
+                        record(start);
+                        return true;
+                    }
+                    if (signaled) {
+                        // 被唤醒了但是锁又被别人拿走了(非公平模式下被插队), 重新排到最前面
+                        waiter.signaled = false;
+                        enqueue(key, waiter, true);
+                    }
+                } else {
+                    // 公平模式下, 没有收到通知又不是排在第一个的线程继续等, 直到被通知或者排到第一个
+                    ttl = Long.MAX_VALUE;
+                }
+
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    return false;
+                }
+                // 最多等到锁过期, 这样即使没收到通知也能继续
+                LockSupport.parkNanos(this, Math.min(remain, TimeUnit.MILLISECONDS.toNanos(ttl)));
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+            }
+        } finally {
+            dequeue(key, waiter);
+            if (!acquired) {
+                if (waiter.signaled) {
+                    // 收到了通知却放弃了, 把通知传给下一个
+                    signal(key);
+                } else {
+                    // 让新排到第一个的线程去接着按锁的剩余时间尝试
+                    Waiter first = firstWaiter(key);
+                    if (first != null) {
+                        LockSupport.unpark(first.thread);
+                    }
+                }
+            }
+        }
+    }
+
+    /** 等待时间的分布, 键是区间(比如 "<5ms"), 值是次数 */
+    public Map<String, Long> waitHistogram() {
+        Map<String, Long> returnMap = A.linkedMaps();
+        for (int i = 0; i < HISTOGRAM_MS.length; i++) {
+            returnMap.put("<" + HISTOGRAM_MS[i] + "ms", histogram[i].sum());
+        }
+        returnMap.put(">=" + HISTOGRAM_MS[HISTOGRAM_MS.length - 1] + "ms", histogram[HISTOGRAM_MS.length].sum());
+        return returnMap;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        RedisMessageListenerContainer current = container;
+        if (current != null) {
+            try {
+                current.destroy();
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                    LogUtil.ROOT_LOG.warn("stop lock release listener exception", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 第一次等待前订阅频道, 并等到订阅真正生效之后才返回. 容器的订阅是异步的, 生效之前发布的释放通知会丢失,
+     * 等待的线程就只能等到锁过期才会再去尝试. 这里不断往频道发探测消息, 自己收到了说明订阅已经生效
+     */
+    private void subscribeIfNeed() {
+        if (container == null) {
+            synchronized (this) {
+                if (container == null) {
+                    String probe = "subscribe-probe:" + UUID.randomUUID();
+                    CountDownLatch subscribed = new CountDownLatch(1);
+                    RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+                    listenerContainer.setConnectionFactory(connectionFactory);
+                    listenerContainer.addMessageListener((message, pattern) -> {
+                        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+                        if (probe.equals(key)) {
+                            subscribed.countDown();
+                        } else {
+                            signal(key);
+                        }
+                    }, new ChannelTopic(channel));
+                    listenerContainer.afterPropertiesSet();
+                    listenerContainer.start();
+                    awaitSubscribed(probe, subscribed);
+                    container = listenerContainer;
+                }
+            }
+        }
+    }
+
+    private void awaitSubscribed(String probe, CountDownLatch subscribed) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        byte[] probeBytes = probe.getBytes(StandardCharsets.UTF_8);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(subscribeWaitMs);
+        try {
+            while (System.nanoTime() < deadline) {
+                try (RedisConnection connection = connectionFactory.getConnection()) {
+                    connection.publish(channelBytes, probeBytes);
+                }
+                if (subscribed.await(SUBSCRIBE_PROBE_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("publish lock release probe exception", e);
+            }
+            return;
+        }
+        if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+            LogUtil.ROOT_LOG.warn("lock release channel({}) not subscribed in {}ms, waiters fall back to lock ttl", channel, subscribeWaitMs);
+        }
+    }
+
+    /** 收到锁释放的通知, 唤醒等待最久的一个线程 */
+    void signal(String key) {
+        Deque<Waiter> waiters = waiterMap.get(key);
+        if (waiters != null) {
+            Waiter waiter = waiters.pollFirst();
+            if (waiter != null) {
+                waiter.signaled = true;
+                LockSupport.unpark(waiter.thread);
+            }
+        }
+    }
+
+    private Waiter firstWaiter(String key) {
+        Deque<Waiter> waiters = waiterMap.get(key);
+        return waiters == null ? null : waiters.peekFirst();
+    }
+    private void enqueue(String key, Waiter waiter, boolean first) {
+        waiterMap.compute(key, (k, waiters) -> {
+            Deque<Waiter> deque = (waiters == null) ? new ConcurrentLinkedDeque<>() : waiters;
+            if (first) {
+                deque.offerFirst(waiter);
+            } else {
+                deque.offerLast(waiter);
+            }
+            return deque;
+        });
+    }
+    private void dequeue(String key, Waiter waiter) {
+        waiterMap.computeIfPresent(key, (k, waiters) -> {
+            waiters.remove(waiter);
+            return waiters.isEmpty() ? null : waiters;
+        });
+    }
+
+    private void record(long startNanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        for (int i = 0; i < HISTOGRAM_MS.length; i++) {
+            if (ms < HISTOGRAM_MS[i]) {
+                histogram[i].increment();
+                return;
+            }
+        }
+        histogram[HISTOGRAM_MS.length].increment();
+    }
+
+    private static class Waiter {
+        private final Thread thread;
+        private volatile boolean signaled;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.global.service;
+
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * lua 脚本注册中心. 脚本只在注册时构建一次(sha1 也只算一次), 启动时用 SCRIPT LOAD 预先加载到 redis.
+ *
+ * 运行时使用 EVALSHA 只发送 sha1, redis 返回 NOSCRIPT(比如 redis 重启过) 时会自动用 EVAL 发送脚本内容再运行一次.
+ * 其他地方需要原子操作时, 用 {@link #register} 注册自己的脚本, 再用 {@link #execute} 运行
+ *
+ * @see org.springframework.data.redis.core.script.DefaultScriptExecutor
+ */
+@Configuration
+@ConditionalOnClass({ RedisTemplate.class, StringRedisTemplate.class })
+public class CacheScriptRegistry {
+
+    /** 获取锁: KEYS[1] 锁, ARGV[1] 值, ARGV[2] 锁的毫秒数. 获取到了返回 1, 否则返回 0 */
+    public static final String LOCK = "lock";
+    private static final String LOCK_SCRIPT =
+            "if redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2], 'NX') then return 1; else return 0; end";
+
+    /**
+     * 获取锁: KEYS[1] 锁, ARGV[1] 值, ARGV[2] 锁的毫秒数. 获取到了返回 0, 否则返回锁的剩余毫秒数(至少是 1)
+     */
+    public static final String LOCK_TTL = "lockTtl";
+    private static final String LOCK_TTL_SCRIPT =
+            "if redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2], 'NX') then return 0; end; " +
+            "local ttl = redis.call('pttl', KEYS[1]); " +
+            "if ttl > 0 then return ttl; else return 1; end";
+
+    /**
+     * 释放锁: KEYS[1] 锁, ARGV[1] 值, ARGV[2] 释放后发布通知的频道.
+     * 值跟之前存进去的一样才删除并往频道发布锁的键, 删除了返回 1, 否则返回 0
+     */
+    public static final String UNLOCK = "unlock";
+    private static final String UNLOCK_SCRIPT =
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0; end; " +
+            "local del = redis.call('del', KEYS[1]); " +
+            "redis.call('publish', ARGV[2], KEYS[1]); " +
+            "return del";
+
+    /** 比较并设置(保留原来的过期时间): KEYS[1] 键, ARGV[1] 期望的值, ARGV[2] 新值. 设置成功返回 1, 否则返回 0 */
+    public static final String COMPARE_AND_SET = "compareAndSet";
+    private static final String COMPARE_AND_SET_SCRIPT =
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0; end; " +
+            "local ttl = redis.call('pttl', KEYS[1]); " +
+            "if ttl > 0 then redis.call('set', KEYS[1], ARGV[2], 'PX', ttl); else redis.call('set', KEYS[1], ARGV[2]); end; " +
+            "return 1";
+
+    /**
+     * 固定窗口限流: KEYS[1] 键, ARGV[1] 窗口内允许的次数, ARGV[2] 窗口的毫秒数. 未超出返回 1, 超出返回 0
+     */
+    public static final String RATE_LIMIT = "rateLimit";
+    private static final String RATE_LIMIT_SCRIPT =
+            "local count = redis.call('incr', KEYS[1]); " +
+            "if count == 1 then redis.call('pexpire', KEYS[1], ARGV[2]); end; " +
+            "if count > tonumber(ARGV[1]) then return 0; else return 1; end";
+
+    /**
+     * 有上限的累加: KEYS[1] 键, ARGV[1] 累加的值, ARGV[2] 上限, ARGV[3] 键不存在时(首次累加)设置的过期毫秒数(小于等于 0 则不设置).
+     * 累加后超出上限则不累加并返回 -1, 否则返回累加后的值. 已经存在的键(值是 0 也一样)不会改变过期时间
+     */
+    public static final String INCR_WITH_CEILING = "incrWithCeiling";
+    private static final String INCR_WITH_CEILING_SCRIPT =
+            "local exists = redis.call('exists', KEYS[1]); " +
+            "local current = tonumber(redis.call('get', KEYS[1]) or '0'); " +
+            "if current + tonumber(ARGV[1]) > tonumber(ARGV[2]) then return -1; end; " +
+            "local value = redis.call('incrby', KEYS[1], ARGV[1]); " +
+            "if exists == 0 and tonumber(ARGV[3]) > 0 then redis.call('pexpire', KEYS[1], ARGV[3]); end; " +
+            "return value";
+
+
+    private final Map<String, RedisScript<?>> scriptMap = new ConcurrentHashMap<>();
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public CacheScriptRegistry(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+
+        register(LOCK, LOCK_SCRIPT, Long.class);
+        register(LOCK_TTL, LOCK_TTL_SCRIPT, Long.class);
+        register(UNLOCK, UNLOCK_SCRIPT, Long.class);
+        register(COMPARE_AND_SET, COMPARE_AND_SET_SCRIPT, Long.class);
+        register(RATE_LIMIT, RATE_LIMIT_SCRIPT, Long.class);
+        register(INCR_WITH_CEILING, INCR_WITH_CEILING_SCRIPT, Long.class);
+    }
+
+    /** 启动时把已经注册的脚本都加载到 redis, 失败也不影响使用(运行时 NOSCRIPT 会用 EVAL 重发) */
+    @PostConstruct
+    public void loadAll() {
+        for (Map.Entry<String, RedisScript<?>> entry : scriptMap.entrySet()) {
+            load(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 注册脚本, 同名的会覆盖. 脚本中的键都要放在 KEYS 里面, 值放在 ARGV 里面, 否则在集群下会路由到错误的节点
+     *
+     * @param name 脚本名
+     * @param script lua 脚本
+     * @param resultType 返回类型, 只能是 Long、Boolean、List、String 或 null
+     */
+    public <T> void register(String name, String script, Class<T> resultType) {
+        if (U.isBlank(name) || U.isBlank(script)) {
+            throw new IllegalArgumentException("script name and content can't be empty");
+        }
+        scriptMap.put(name, new DefaultRedisScript<>(script, resultType));
+    }
+
+    /** 注册脚本并马上加载到 redis */
+    public <T> void registerAndLoad(String name, String script, Class<T> resultType) {
+        register(name, script, resultType);
+        load(name, scriptMap.get(name));
+    }
+
+    /** 运行脚本, 参数都会转换成字符串 */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, List<String> keys, Object... args) {
+        RedisScript<T> script = (RedisScript<T>) scriptMap.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("no script(" + name + ") registered");
+        }
+        Object[] argArray = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            argArray[i] = U.toStr(args[i]);
+        }
+        return stringRedisTemplate.execute(script, keys, argArray);
+    }
+
+    private void load(String name, RedisScript<?> script) {
+        try {
+            byte[] bytes = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(bytes));
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("load redis script({}) exception", name, e);
+            }
+        }
+    }
+}
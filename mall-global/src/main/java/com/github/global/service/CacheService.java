@@ -1,30 +1,43 @@
 package com.github.global.service;
 
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
 import com.github.common.util.U;
+import com.google.common.collect.Lists;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.core.script.RedisScript;
 
-import java.util.Arrays;
-import java.util.Date;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Configuration
 @ConditionalOnClass({ RedisTemplate.class, StringRedisTemplate.class })
 public class CacheService {
 
+    /** 批量操作时每个批次(一次往返)最多包含的键数量 */
+    @Value("${cache.batchSize:500}")
+    private int batchSize;
+
     /** @see org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration */
     private final StringRedisTemplate stringRedisTemplate;
     private final RedisTemplate<Object, Object> redisTemplate;
+    private final CacheScriptRegistry scriptRegistry;
+    private final CacheLockWaiter lockWaiter;
 
-    public CacheService(StringRedisTemplate stringRedisTemplate, RedisTemplate<Object, Object> redisTemplate) {
+    public CacheService(StringRedisTemplate stringRedisTemplate, RedisTemplate<Object, Object> redisTemplate,
+                        CacheScriptRegistry scriptRegistry, CacheLockWaiter lockWaiter) {
         this.stringRedisTemplate = stringRedisTemplate;
         this.redisTemplate = redisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.lockWaiter = lockWaiter;
     }
 
     /** 往 redis 中放值 */
@@ -104,11 +117,10 @@ public class CacheService {
         int retry = (retryTime <= 0 || retryTime > 10) ? 1 : retryTime;
         long sleep = (sleepTime <= 0 || sleepTime > 1000) ? 10L : sleepTime;
 
-        String script = "if redis.call('set', KEYS[1], KEYS[2], 'PX', KEYS[3], 'NX') then return 1; else return 0; end";
-        RedisScript<Long> redisScript = new DefaultRedisScript<>(script, Long.class);
-        List<String> keys = Arrays.asList(key, value, String.valueOf(unit.toMillis(time)));
+        List<String> keys = Collections.singletonList(key);
+        long lockMs = unit.toMillis(time);
         for (int i = 0; i < retry; i++) {
-            Long flag = stringRedisTemplate.execute(redisScript, keys);
+            Long flag = scriptRegistry.execute(CacheScriptRegistry.LOCK, keys, value, lockMs);
             if (flag != null && flag == 1L) {
                 return true;
             } else {
@@ -139,10 +151,77 @@ public class CacheService {
      */
     public void unlock(String key, String value) {
         // 释放锁的时候先去缓存中取, 如果值跟之前存进去的一样才进行删除操作, 避免当前线程执行太长, 超时后其他线程又设置了值在处理
-        String script = "if redis.call('get', KEYS[1]) == KEYS[2] then return redis.call('del', KEYS[1]); else return 0; end";
-        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>(script, Long.class);
-        List<String> keys = Arrays.asList(key, value);
-        stringRedisTemplate.execute(redisScript, keys);
+        // 释放成功后会往频道发布通知, 唤醒 tryLockWait 中等待的线程
+        scriptRegistry.execute(CacheScriptRegistry.UNLOCK, Collections.singletonList(key), value, lockWaiter.getChannel());
+    }
+
+    /**
+     * <pre>
+     * 用 redis 获取分布式锁, 没有获取到时排队等待锁释放的通知(而不是 sleep 轮询), 在等待时间内获取到则返回 true
+     *
+     * String key = "xxx", value = uuid(); // value 用 uuid 确保每个线程都不一样
+     * if (tryLockWait(key, value, 10, TimeUnit.SECONDS, 3, TimeUnit.SECONDS, false)) {
+     *   try {
+     *     // 获取到锁之后的业务处理
+     *   } finally {
+     *     // 解锁时 key 和 value 都需要, 解锁后会唤醒一个等待的线程
+     *     unlock(key, value);
+     *   }
+     * } else {
+     *   LOG.info("3 秒内没有获得锁");
+     * }
+     * </pre>
+     *
+     * @param key 键
+     * @param value 值
+     * @param time 锁的超时时间
+     * @param unit 锁的超时时间单位
+     * @param waitTime 最多等待的时间, 小于等于 0 时只尝试一次
+     * @param waitUnit 等待时间单位
+     * @param fair true 表示公平模式: 本实例中按等待的先后获取锁, 新来的线程不插队
+     * @return 返回 true 则表示获取到了锁
+     */
+    public boolean tryLockWait(String key, String value, long time, TimeUnit unit, long waitTime, TimeUnit waitUnit, boolean fair) {
+        List<String> keys = Collections.singletonList(key);
+        long lockMs = unit.toMillis(time);
+        return lockWaiter.acquire(key, waitUnit.toNanos(waitTime), fair, () -> {
+            Long ttl = scriptRegistry.execute(CacheScriptRegistry.LOCK_TTL, keys, value, lockMs);
+            return ttl == null ? 1L : ttl;
+        });
+    }
+
+    /** tryLockWait 等待时间的分布, 键是区间(比如 "<5ms"), 值是次数 */
+    public Map<String, Long> lockWaitHistogram() {
+        return lockWaiter.waitHistogram();
+    }
+
+    /** 值跟期望的一样时才设置成新值(保留原来的过期时间), 设置成功则返回 true */
+    public boolean compareAndSet(String key, String expect, String update) {
+        Long flag = scriptRegistry.execute(CacheScriptRegistry.COMPARE_AND_SET, Collections.singletonList(key), expect, update);
+        return flag != null && flag == 1L;
+    }
+
+    /**
+     * 固定窗口限流, 在窗口时间内的调用次数没有超出 limit 则返回 true
+     * <pre>
+     *
+     * if (rateLimit("sms:" + phone, 5, 1, TimeUnit.MINUTES)) {
+     *   // 1 分钟内的前 5 次
+     * } else {
+     *   throw new ForbiddenException("操作太频繁了");
+     * }
+     * </pre>
+     */
+    public boolean rateLimit(String key, long limit, long time, TimeUnit unit) {
+        Long flag = scriptRegistry.execute(CacheScriptRegistry.RATE_LIMIT, Collections.singletonList(key), limit, unit.toMillis(time));
+        return flag != null && flag == 1L;
+    }
+
+    /** 有上限的累加(键不存在时设置过期时间, time 小于等于 0 则不设置), 累加后会超出上限则不累加并返回 -1, 否则返回累加后的值 */
+    public long incrWithCeiling(String key, long incr, long ceiling, long time, TimeUnit unit) {
+        Long value = scriptRegistry.execute(CacheScriptRegistry.INCR_WITH_CEILING,
+                Collections.singletonList(key), incr, ceiling, unit.toMillis(time));
+        return value == null ? -1L : value;
     }
 
     /** 从 redis 中取值 */
@@ -208,4 +287,111 @@ public class CacheService {
     public void hashRemove(String key, String hashKey) {
         stringRedisTemplate.opsForHash().delete(key, hashKey);
     }
+
+
+    // 批量操作: 每个批次的命令放进一个 pipeline 发给 redis, 一个批次只有一次网络往返
+
+    /** 批量取值, 每个批次对应一次往返. 不存在的键返回的值是 null */
+    public CacheBatchResult<String> mget(Collection<String> keys) {
+        return pipeline(keys, (ops, key) -> ops.opsForValue().get(key), obj -> obj == null ? null : obj.toString());
+    }
+    /** 批量放值 */
+    public CacheBatchResult<Boolean> mset(Map<String, String> keyValueMap) {
+        return mset(keyValueMap, 0, TimeUnit.MILLISECONDS);
+    }
+    /** 批量放值, 并设定超时时间(小于等于 0 时不设置超时) */
+    public CacheBatchResult<Boolean> mset(Map<String, String> keyValueMap, long time, TimeUnit unit) {
+        if (A.isEmpty(keyValueMap)) {
+            return new CacheBatchResult<>();
+        }
+        return pipeline(keyValueMap.keySet(), (ops, key) -> {
+            if (time > 0) {
+                ops.opsForValue().set(key, keyValueMap.get(key), time, unit);
+            } else {
+                ops.opsForValue().set(key, keyValueMap.get(key));
+            }
+        }, obj -> Boolean.TRUE);
+    }
+    /** 批量删值, 返回的值表示键在删除前是否存在 */
+    public CacheBatchResult<Boolean> mdelete(Collection<String> keys) {
+        return pipeline(keys, RedisOperations::delete, obj -> U.toLong(obj) > 0);
+    }
+    /** 批量获取 hash */
+    @SuppressWarnings("unchecked")
+    public CacheBatchResult<Map<String, String>> hgetAllBatch(Collection<String> keys) {
+        return pipeline(keys, (ops, key) -> ops.opsForHash().entries(key), obj -> {
+            Map<String, String> returnMap = new LinkedHashMap<>();
+            if (obj instanceof Map) {
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) obj).entrySet()) {
+                    returnMap.put(deserialize(entry.getKey()), deserialize(entry.getValue()));
+                }
+            }
+            return returnMap;
+        });
+    }
+    /** 批量累加, 参数是 键 和 累加的值, 返回累加后的值 */
+    public CacheBatchResult<Long> incrBatch(Map<String, Long> keyIncrMap) {
+        if (A.isEmpty(keyIncrMap)) {
+            return new CacheBatchResult<>();
+        }
+        return pipeline(keyIncrMap.keySet(), (ops, key) -> {
+            Long incr = keyIncrMap.get(key);
+            ops.opsForValue().increment(key, incr == null ? 1L : incr);
+        }, U::toLong);
+    }
+
+    private <T> CacheBatchResult<T> pipeline(Collection<String> keys,
+                                             BiConsumer<RedisOperations<String, String>, String> command,
+                                             Function<Object, T> convert) {
+        CacheBatchResult<T> result = new CacheBatchResult<>();
+        if (A.isEmpty(keys)) {
+            return result;
+        }
+
+        List<String> keyList = new ArrayList<>(new LinkedHashSet<>(keys));
+        for (List<String> batchKeys : Lists.partition(keyList, Math.max(1, batchSize))) {
+            result.incrRoundTrip();
+            List<Object> values;
+            try {
+                values = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @SuppressWarnings({"unchecked", "NullableProblems"})
+                    @Override
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        for (String key : batchKeys) {
+                            command.accept((RedisOperations<String, String>) operations, key);
+                        }
+                        return null;
+                    }
+                });
+            } catch (RedisPipelineException e) {
+                // 部分命令失败时, 结果中失败的那一项是异常, 成功的项是未反序列化的原始值
+                values = e.getPipelineResult();
+            } catch (Exception e) {
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("redis pipeline({}) exception", batchKeys.size(), e);
+                }
+                for (String key : batchKeys) {
+                    result.fail(key, e.getMessage());
+                }
+                continue;
+            }
+
+            for (int i = 0; i < batchKeys.size(); i++) {
+                String key = batchKeys.get(i);
+                Object value = (values != null && i < values.size()) ? values.get(i) : null;
+                if (value instanceof Throwable) {
+                    result.fail(key, ((Throwable) value).getMessage());
+                } else {
+                    result.success(key, convert.apply(value instanceof byte[] ? deserialize(value) : value));
+                }
+            }
+        }
+        return result;
+    }
+    private String deserialize(Object obj) {
+        if (obj instanceof byte[]) {
+            return stringRedisTemplate.getStringSerializer().deserialize((byte[]) obj);
+        }
+        return obj == null ? null : obj.toString();
+    }
 }
@@ -0,0 +1,212 @@
+package com.github.global.service;
+
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 放在 redis 前面的进程内一级缓存(按数量和过期时间淘汰), 每条的存活时间不超过键在 redis 中剩余的存活时间.
+ *
+ * 只有匹配上前缀的键才会走本地缓存, 写操作时删除本地的值并通过 redis 的 pub/sub 通知其他实例删除.
+ * 频繁变动的键不要配置进前缀, 本地缓存适用于 配置开关、类目树 这一类读多写少的数据
+ */
+class NearCache {
+
+    private final List<String> prefixList;
+    private final RTopic topic;
+
+    private final long expireMs;
+    /** 键 => 值 */
+    private final Cache<String, Entry> valueCache;
+    /** hash 键 => (field => 值) */
+    private final Cache<String, ConcurrentMap<String, Entry>> hashCache;
+
+    /** 每次失效时加一, 从 redis 加载的过程中如果发生过失效, 加载回来的值不放进本地缓存, 避免放入旧值 */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidateCount = new LongAdder();
+
+    NearCache(RedissonClient redisson, String channel, String prefixes, long maxSize, long expireMs) {
+        this.prefixList = new ArrayList<>();
+        for (String prefix : prefixes.split(",")) {
+            if (U.isNotBlank(prefix)) {
+                prefixList.add(prefix.trim());
+            }
+        }
+
+        this.expireMs = expireMs;
+        RemovalListener<String, Object> listener = notification -> {
+            if (notification.wasEvicted()) {
+                evictionCount.increment();
+            }
+        };
+        this.valueCache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMs, TimeUnit.MILLISECONDS).removalListener(listener).build();
+        this.hashCache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(expireMs, TimeUnit.MILLISECONDS).removalListener(listener).build();
+
+        this.topic = redisson.getTopic(channel, StringCodec.INSTANCE);
+        topic.addListener(String.class, (ch, key) -> invalidateLocal(key));
+        topic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String ch) {
+                // (重新)订阅之前的失效通知可能已经丢了, 清空本地缓存
+                invalidateAllLocal();
+            }
+            @Override
+            public void onUnsubscribe(String ch) {
+                invalidateAllLocal();
+            }
+        });
+    }
+
+    /** 键匹配上了前缀则返回 true */
+    boolean match(String key) {
+        if (U.isNotNull(key) && A.isNotEmpty(prefixList)) {
+            for (String prefix : prefixList) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 先从本地取, 没有时用 loader 从 redis 加载, 并用 ttlLoader 获取键在 redis 中剩余的存活毫秒数(PTTL),
+     * 本地缓存的存活时间取 cache.near.expireMs 和剩余存活时间中较小的那个
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, Supplier<T> loader, LongSupplier ttlLoader) {
+        Entry entry = valueCache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.alive()) {
+                hitCount.increment();
+                return (T) entry.value;
+            }
+            valueCache.asMap().remove(key, entry);
+        }
+
+        missCount.increment();
+        long current = version.get();
+        T load = loader.get();
+        long expireAt = expireAt(ttlLoader, load != null);
+        if (current == version.get() && expireAt > 0) {
+            valueCache.put(key, new Entry(load, expireAt));
+        }
+        return load;
+    }
+
+    /** 同 {@link #get(String, Supplier, LongSupplier)}, 存活时间用的是 hash 这个键的 */
+    @SuppressWarnings("unchecked")
+    <T> T hashGet(String key, String hashKey, Supplier<T> loader, LongSupplier ttlLoader) {
+        ConcurrentMap<String, Entry> fieldMap = hashCache.getIfPresent(key);
+        if (fieldMap != null) {
+            Entry entry = fieldMap.get(hashKey);
+            if (entry != null) {
+                if (entry.alive()) {
+                    hitCount.increment();
+                    return (T) entry.value;
+                }
+                fieldMap.remove(hashKey, entry);
+            }
+        }
+
+        missCount.increment();
+        long current = version.get();
+        T load = loader.get();
+        long expireAt = expireAt(ttlLoader, load != null);
+        if (current == version.get() && expireAt > 0) {
+            hashCache.asMap().computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(hashKey, new Entry(load, expireAt));
+        }
+        return load;
+    }
+
+    /** 本地缓存的过期时间, 返回 0 表示不放进本地缓存 */
+    private long expireAt(LongSupplier ttlLoader, boolean hasValue) {
+        long now = System.currentTimeMillis();
+        long ttl;
+        try {
+            ttl = ttlLoader.getAsLong();
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("load near cache ttl exception", e);
+            }
+            return 0;
+        }
+        // -1 表示没有设置过期, 用 cache.near.expireMs. -2 表示键不存在, 取到了值说明在取值之后刚好过期了, 不放进本地缓存
+        if (ttl == 0 || (ttl == -2 && hasValue)) {
+            return 0;
+        }
+        return now + ((ttl > 0) ? Math.min(ttl, expireMs) : expireMs);
+    }
+
+    /** 删除本地的值并通知其他实例 */
+    void invalidate(String key) {
+        invalidateLocal(key);
+        try {
+            topic.publishAsync(key);
+        } catch (Exception e) {
+            if (LogUtil.ROOT_LOG.isWarnEnabled()) {
+                LogUtil.ROOT_LOG.warn("publish near cache invalidate({}) exception", key, e);
+            }
+        }
+    }
+
+    private void invalidateLocal(String key) {
+        version.incrementAndGet();
+        invalidateCount.increment();
+        valueCache.invalidate(key);
+        hashCache.invalidate(key);
+    }
+
+    private void invalidateAllLocal() {
+        version.incrementAndGet();
+        valueCache.invalidateAll();
+        hashCache.invalidateAll();
+    }
+
+    /** 命中、未命中、淘汰、失效 的次数及当前的条数 */
+    Map<String, Long> stats() {
+        return A.linkedMaps(
+                "hit", hitCount.sum(),
+                "miss", missCount.sum(),
+                "eviction", evictionCount.sum(),
+                "invalidate", invalidateCount.sum(),
+                "size", valueCache.size() + hashCache.size()
+        );
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean alive() {
+            return expireAt > System.currentTimeMillis();
+        }
+    }
+}
@@ -1,20 +1,24 @@
 package com.github.global.service;
 
 import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import com.google.common.collect.Lists;
 import lombok.RequiredArgsConstructor;
-import org.redisson.api.RMap;
-import org.redisson.api.RedissonClient;
+import org.redisson.api.*;
 import org.redisson.client.codec.Codec;
 import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PostConstruct;
 import java.time.Duration;
-import java.util.Collection;
-import java.util.Date;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 @SuppressWarnings("unchecked")
@@ -27,22 +31,75 @@ public class RedissonService {
 
     private static final Codec USE_CODEC = StringCodec.INSTANCE;
 
+    /** 批量操作时每个批次(一次往返)最多包含的键数量 */
+    @Value("${cache.batchSize:500}")
+    private int batchSize;
+
+    /** 走本地缓存的键前缀, 多个用英文逗号隔开, 为空时不使用本地缓存. 频繁变动的键不要配置在这里 */
+    @Value("${cache.near.prefix:}")
+    private String nearPrefix;
+
+    /** 本地缓存的最大条数 */
+    @Value("${cache.near.maxSize:10000}")
+    private long nearMaxSize;
+
+    /** 本地缓存写入后的过期毫秒数, 键在 redis 中剩余的存活时间更短时用剩余的存活时间 */
+    @Value("${cache.near.expireMs:60000}")
+    private long nearExpireMs;
+
+    /** 本地缓存失效通知使用的 pub/sub 频道 */
+    @Value("${cache.near.channel:near-cache-invalidate}")
+    private String nearChannel;
+
     /** @see org.redisson.spring.starter.RedissonAutoConfiguration */
     private final RedissonClient redisson;
 
+    private NearCache nearCache;
+
+    @PostConstruct
+    public void initNearCache() {
+        if (U.isNotBlank(nearPrefix)) {
+            nearCache = new NearCache(redisson, nearChannel, nearPrefix, nearMaxSize, nearExpireMs);
+        }
+    }
+
+    /** 本地缓存的 命中、未命中、淘汰、失效 次数及当前条数, 没有使用本地缓存时返回空 */
+    public Map<String, Long> nearCacheStats() {
+        return nearCache == null ? Collections.emptyMap() : nearCache.stats();
+    }
+
+    private boolean useNear(String key) {
+        return nearCache != null && nearCache.match(key);
+    }
+    private void invalidateNear(String key) {
+        if (useNear(key)) {
+            nearCache.invalidate(key);
+        }
+    }
+    private void invalidateNear(Collection<String> keys) {
+        if (nearCache != null && A.isNotEmpty(keys)) {
+            for (String key : keys) {
+                invalidateNear(key);
+            }
+        }
+    }
+
 
     /** 从 redis 中删值, 对应命令: DEL key */
     public void delete(String key) {
         redisson.getBucket(key, USE_CODEC).delete();
+        invalidateNear(key);
     }
     /** 从 redis 中删值, value 非 string 时尽量用这个. 对应命令: UNLINK key */
     public void unlink(String key) {
         redisson.getBucket(key, USE_CODEC).unlink();
+        invalidateNear(key);
     }
 
     /** 往 redis 中放值, 对应命令: SET key value */
     public <T> void set(String key, T value) {
         redisson.getBucket(key, USE_CODEC).set(value);
+        invalidateNear(key);
     }
     /** 往 redis 放值, 并设定在什么时间超时, 对应命令: SET key value px ms */
     public <T> void set(String key, T value, Date expireTime) {
@@ -56,11 +113,13 @@ public class RedissonService {
     /** 往 redis 放值, 并设定超时时间, 对应命令: SET key value PX ms */
     public <T> void set(String key, T value, long time, TimeUnit unit) {
         redisson.getBucket(key, USE_CODEC).set(value, time, unit);
+        invalidateNear(key);
     }
 
     /** 设置超时时间, 对应命令: PEXPIRE key ms */
     public void expire(String key, long time, TimeUnit unit) {
         redisson.getBucket(key, USE_CODEC).expire(Duration.of(time, unit.toChronoUnit()));
+        invalidateNear(key);
     }
 
     /** 获取键的存活时间, 单位: 毫秒, 对应命令: PTTL key */
@@ -70,24 +129,36 @@ public class RedissonService {
 
     /** 自增, 对应命令: INCR key */
     public long incr(String key) {
-        return redisson.getAtomicLong(key).incrementAndGet();
+        long value = redisson.getAtomicLong(key).incrementAndGet();
+        invalidateNear(key);
+        return value;
     }
     /** 自增, 对应命令: INCRBY key increment */
     public long incr(String key, int incr) {
-        return redisson.getAtomicLong(key).addAndGet(incr);
+        long value = redisson.getAtomicLong(key).addAndGet(incr);
+        invalidateNear(key);
+        return value;
     }
 
     /** 自减, 对应命令: DECR key */
     public long decr(String key) {
-        return redisson.getAtomicLong(key).decrementAndGet();
+        long value = redisson.getAtomicLong(key).decrementAndGet();
+        invalidateNear(key);
+        return value;
     }
     /** 自减, 对应命令: INCRBY key -increment, redisson 没有用 DECRBY key decrement */
     public long decr(String key, int decr) {
-        return redisson.getAtomicLong(key).addAndGet(-decr);
+        long value = redisson.getAtomicLong(key).addAndGet(-decr);
+        invalidateNear(key);
+        return value;
     }
 
-    /** 从 redis 中取值, 对应命令: GET key */
+    /** 从 redis 中取值(键匹配上本地缓存的前缀时先从本地缓存取), 对应命令: GET key */
     public <T> T get(String key) {
+        if (useNear(key)) {
+            return nearCache.get(key, () -> (T) redisson.getBucket(key, USE_CODEC).get(),
+                    () -> redisson.getBucket(key, USE_CODEC).remainTimeToLive());
+        }
         return (T) redisson.getBucket(key, USE_CODEC).get();
     }
 
@@ -322,14 +393,17 @@ public class RedissonService {
     /** 写 hash, 对应命令: HMSET key field value [field value ...] */
     public <T> void hashPutAll(String key, Map<String, T> hashMap) {
         redisson.getMap(key, USE_CODEC).putAll(hashMap);
+        invalidateNear(key);
     }
     /** 写 hash, 对应命令: HSET key field value */
     public <T> void hashPut(String key, String hashKey, T hashValue) {
         redisson.getMap(key, USE_CODEC).put(hashKey, hashValue);
+        invalidateNear(key);
     }
     /** 写 hash, 只有 hash 中没有这个 key 才能写成功, 有了就不写, 对应命令: HSETNX key field value */
     public <T> void hashPutIfAbsent(String key, String hashKey, T hashValue) {
         redisson.getMap(key, USE_CODEC).putIfAbsent(hashKey, hashValue);
+        invalidateNear(key);
     }
     /** 获取 hash 的长度, 对应命令: HLEN key */
     public int hashSize(String key) {
@@ -340,8 +414,12 @@ public class RedissonService {
         RMap<String, T> map = redisson.getMap(key, USE_CODEC);
         return map.readAllMap();
     }
-    /** 获取 hash 中指定 key 的值, 对应命令: HGET key field */
+    /** 获取 hash 中指定 key 的值(键匹配上本地缓存的前缀时先从本地缓存取), 对应命令: HGET key field */
     public <T> T hashGet(String key, String hashKey) {
+        if (useNear(key)) {
+            return nearCache.hashGet(key, hashKey, () -> (T) redisson.getMap(key, USE_CODEC).get(hashKey),
+                    () -> redisson.getMap(key, USE_CODEC).remainTimeToLive());
+        }
         return (T) redisson.getMap(key, USE_CODEC).get(hashKey);
     }
     /** 自增 hash 中指定的 key 的值, 对应命令: HINCRBY key field 1 */
@@ -351,9 +429,104 @@ public class RedissonService {
     /** 累加 hash 中指定的 key 的值, 对应命令: HINCRBY key field increment */
     public void hashIncr(String key, String hashKey, int incr) {
         redisson.getMap(key, USE_CODEC).addAndGet(hashKey, incr);
+        invalidateNear(key);
     }
     /** 从 hash 中移除指定的 key, 对应命令: HDEL key field */
     public void hashRemove(String key, String hashKey) {
         redisson.getMap(key, USE_CODEC).fastRemove(hashKey);
+        invalidateNear(key);
+    }
+
+
+    // 批量操作: 每个批次的命令放进一个 RBatch 发给 redis, 一个批次只有一次网络往返
+
+    /** 批量取值, 不存在的键返回的值是 null, 对应命令: GET key (pipeline) */
+    public <T> CacheBatchResult<T> mget(Collection<String> keys) {
+        return batch(keys, (batch, key) -> batch.<T>getBucket(key, USE_CODEC).getAsync());
+    }
+    /** 批量放值, 对应命令: SET key value (pipeline) */
+    public <T> CacheBatchResult<Boolean> mset(Map<String, T> keyValueMap) {
+        return mset(keyValueMap, 0, TimeUnit.MILLISECONDS);
+    }
+    /** 批量放值, 并设定超时时间(小于等于 0 时不设置超时), 对应命令: SET key value PX ms (pipeline) */
+    public <T> CacheBatchResult<Boolean> mset(Map<String, T> keyValueMap, long time, TimeUnit unit) {
+        if (A.isEmpty(keyValueMap)) {
+            return new CacheBatchResult<>();
+        }
+        CacheBatchResult<Boolean> result = batch(keyValueMap.keySet(), (batch, key) -> {
+            RBucketAsync<T> bucket = batch.getBucket(key, USE_CODEC);
+            T value = keyValueMap.get(key);
+            RFuture<Void> future = (time > 0) ? bucket.setAsync(value, time, unit) : bucket.setAsync(value);
+            return future.thenApply(v -> Boolean.TRUE);
+        });
+        invalidateNear(keyValueMap.keySet());
+        return result;
+    }
+    /** 批量删值, 返回的值表示键在删除前是否存在, 对应命令: DEL key (pipeline) */
+    public CacheBatchResult<Boolean> mdelete(Collection<String> keys) {
+        CacheBatchResult<Boolean> result = batch(keys, (batch, key) -> batch.getBucket(key, USE_CODEC).deleteAsync());
+        invalidateNear(keys);
+        return result;
+    }
+    /** 批量获取 hash, 对应命令: HGETALL key (pipeline) */
+    public <T> CacheBatchResult<Map<String, T>> hgetAllBatch(Collection<String> keys) {
+        return batch(keys, (batch, key) -> batch.<String, T>getMap(key, USE_CODEC).readAllMapAsync());
+    }
+    /** 批量累加, 参数是 键 和 累加的值, 返回累加后的值, 对应命令: INCRBY key increment (pipeline) */
+    public CacheBatchResult<Long> incrBatch(Map<String, Long> keyIncrMap) {
+        if (A.isEmpty(keyIncrMap)) {
+            return new CacheBatchResult<>();
+        }
+        CacheBatchResult<Long> result = batch(keyIncrMap.keySet(), (batch, key) -> {
+            Long incr = keyIncrMap.get(key);
+            return batch.getAtomicLong(key).addAndGetAsync(incr == null ? 1L : incr);
+        });
+        invalidateNear(keyIncrMap.keySet());
+        return result;
+    }
+
+    private <T> CacheBatchResult<T> batch(Collection<String> keys,
+                                          BiFunction<RBatch, String, CompletionStage<T>> command) {
+        CacheBatchResult<T> result = new CacheBatchResult<>();
+        if (A.isEmpty(keys)) {
+            return result;
+        }
+
+        List<String> keyList = new ArrayList<>(new LinkedHashSet<>(keys));
+        for (List<String> batchKeys : Lists.partition(keyList, Math.max(1, batchSize))) {
+            result.incrRoundTrip();
+            RBatch batch = redisson.createBatch(BatchOptions.defaults());
+            Map<String, CompletableFuture<T>> futureMap = new LinkedHashMap<>();
+            for (String key : batchKeys) {
+                futureMap.put(key, command.apply(batch, key).toCompletableFuture());
+            }
+            String batchError = null;
+            try {
+                batch.execute();
+            } catch (Exception e) {
+                // 单个命令失败时 execute 也会抛出异常, 成功的命令依然可以从各自的 future 中拿到结果
+                if (LogUtil.ROOT_LOG.isErrorEnabled()) {
+                    LogUtil.ROOT_LOG.error("redis batch({}) exception", batchKeys.size(), e);
+                }
+                batchError = e.getMessage();
+            }
+
+            for (Map.Entry<String, CompletableFuture<T>> entry : futureMap.entrySet()) {
+                String key = entry.getKey();
+                CompletableFuture<T> future = entry.getValue();
+                if (future.isDone() && !future.isCompletedExceptionally()) {
+                    result.success(key, future.getNow(null));
+                } else {
+                    String msg = batchError;
+                    try {
+                        future.getNow(null);
+                    } catch (Exception e) {
+                        msg = (e.getCause() != null) ? e.getCause().getMessage() : e.getMessage();
+                    }
+                    result.fail(key, msg);
+                }
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,175 @@
+package com.github.global.config;
+
+import com.github.common.Const;
+import com.github.common.exception.ServiceException;
+import com.github.common.util.LogUtil;
+import feign.Client;
+import feign.Feign;
+import feign.FeignException;
+import feign.Param;
+import feign.RequestLine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** 本地服务的每个接口都延迟一段时间, 比较依次调用和并行调用的耗时 */
+public class FeignAsyncTest {
+
+    private static final long DELAY = 300;
+
+    private static ConfigurableApplicationContext server;
+    private static String url;
+
+    @RestController
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class })
+    public static class ServerApp {
+        @GetMapping("/data")
+        public String data(@RequestParam("name") String name, @RequestParam("ms") long ms,
+                           @RequestHeader(value = Const.TRACE, required = false) String trace) throws Exception {
+            Thread.sleep(ms);
+            if ("fail".equals(name)) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return name + "," + trace;
+        }
+    }
+
+    public interface DataClient {
+        @RequestLine("GET /data?name={name}&ms={ms}")
+        String data(@Param("name") String name, @Param("ms") long ms);
+    }
+
+    public interface DataAsyncClient {
+        CompletableFuture<String> data(String name, long ms);
+    }
+
+    @BeforeAll
+    public static void start() {
+        server = new SpringApplicationBuilder(ServerApp.class).web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "spring.main.banner-mode=off",
+                        "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn").run();
+        url = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    private static DataClient syncClient() {
+        return Feign.builder().client(new Client.Default(null, null))
+                .requestInterceptor(new FeignConfig(null, null, null).handleHeader()).target(DataClient.class, url);
+    }
+
+    @Test
+    public void fanOut() {
+        FeignAsync feignAsync = new FeignAsync(4, 10, 5000);
+        DataClient sync = syncClient();
+        DataAsyncClient async = feignAsync.create(DataAsyncClient.class, sync);
+        sync.data("warm", 0);
+
+        LogUtil.bindBasicInfo("trace-fan-out");
+        try {
+            long start = System.currentTimeMillis();
+            String user = sync.data("user", DELAY);
+            String product = sync.data("product", DELAY);
+            String order = sync.data("order", DELAY);
+            long serial = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            CompletableFuture<String> userFuture = async.data("user", DELAY);
+            CompletableFuture<String> productFuture = async.data("product", DELAY);
+            CompletableFuture<String> orderFuture = async.data("order", DELAY);
+            FeignAsync.await(3000, userFuture, productFuture, orderFuture);
+            long parallel = System.currentTimeMillis() - start;
+
+            // 线程池中的调用依然带着跟踪号
+            Assertions.assertEquals(user, userFuture.join());
+            Assertions.assertEquals(product, productFuture.join());
+            Assertions.assertEquals(order, orderFuture.join());
+            Assertions.assertEquals("user,trace-fan-out", userFuture.join());
+
+            System.out.printf("serial: %s ms, parallel: %s ms, %s%n", serial, parallel, feignAsync.stats());
+            Assertions.assertTrue(serial >= DELAY * 3);
+            Assertions.assertTrue(parallel < DELAY * 2, String.valueOf(parallel));
+        } finally {
+            LogUtil.unbind();
+            feignAsync.close();
+        }
+    }
+
+    @Test
+    public void useMaxThreads() throws Exception {
+        // 队列没满时也要用上所有的线程, 不然最多只有核心数的调用在并行
+        FeignAsync feignAsync = new FeignAsync(4, 100, 5000);
+        CountDownLatch running = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 4; i++) {
+                feignAsync.supply(() -> {
+                    running.countDown();
+                    return release.await(5, TimeUnit.SECONDS);
+                });
+            }
+            Assertions.assertTrue(running.await(3, TimeUnit.SECONDS));
+            Assertions.assertEquals(4, feignAsync.stats().get("pool"));
+            Assertions.assertEquals(0, feignAsync.stats().get("queue"));
+        } finally {
+            release.countDown();
+            feignAsync.close();
+        }
+    }
+
+    @Test
+    public void timeoutAndFailFast() throws Exception {
+        FeignAsync feignAsync = new FeignAsync(4, 10, 200);
+        DataAsyncClient async = feignAsync.create(DataAsyncClient.class, syncClient());
+        try {
+            // 超过 feign.async.timeoutMs 的调用以 TimeoutException 结束
+            CompletableFuture<String> slow = async.data("slow", 2000);
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, slow::get);
+            Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+
+            // 一个出错时马上返回, 不用等慢的那个, 慢的被取消
+            CompletableFuture<String> fail = feignAsync.supply(() -> syncClient().data("fail", 0), 5000);
+            CompletableFuture<String> other = feignAsync.supply(() -> syncClient().data("other", 2000), 5000);
+            long start = System.currentTimeMillis();
+            Assertions.assertThrows(FeignException.class, () -> FeignAsync.await(3000, fail, other));
+            Assertions.assertTrue(System.currentTimeMillis() - start < 1500);
+            Assertions.assertTrue(other.isCancelled());
+            Assertions.assertEquals("default", FeignAsync.getOrDefault(other, "default"));
+
+            // 整体超时
+            CompletableFuture<String> late = feignAsync.supply(() -> syncClient().data("late", 2000), 5000);
+            Assertions.assertThrows(ServiceException.class, () -> FeignAsync.await(100, late));
+            Assertions.assertTrue(late.isCancelled());
+        } finally {
+            feignAsync.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.global.config;
+
+import com.github.common.annotation.Collapse;
+import com.github.common.util.U;
+import feign.Client;
+import feign.Feign;
+import feign.Param;
+import feign.RequestLine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.cloud.openfeign.support.SpringDecoder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 本地起一个服务, 记录单个查询和批量查询的请求数 */
+public class FeignCollapserTest {
+
+    private static final AtomicInteger SINGLE_COUNT = new AtomicInteger();
+    private static final AtomicInteger BATCH_COUNT = new AtomicInteger();
+    private static final List<Integer> BATCH_SIZES = new CopyOnWriteArrayList<>();
+    /** 这个 id 查不出来, 批量里有它时整个批量都报错 */
+    private static final long BAD_ID = 13;
+
+    private static ConfigurableApplicationContext server;
+    private static String url;
+
+    @RestController
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            JacksonAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class })
+    public static class ServerApp {
+        @GetMapping("/user/info")
+        public String info(@RequestParam("id") long id) {
+            SINGLE_COUNT.incrementAndGet();
+            if (id == BAD_ID) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return "user-" + id;
+        }
+
+        @GetMapping("/user/list-by-ids")
+        public Map<Long, String> listByIds(@RequestParam("ids") List<Long> ids) {
+            BATCH_COUNT.incrementAndGet();
+            BATCH_SIZES.add(ids.size());
+            if (ids.contains(BAD_ID)) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            Map<Long, String> map = new HashMap<>();
+            for (Long id : ids) {
+                // 大于 1000 的 id 不存在
+                if (id < 1000) {
+                    map.put(id, "user-" + id);
+                }
+            }
+            return map;
+        }
+    }
+
+    @FeignClient("user")
+    public interface UserClient {
+        @Collapse(batch = "listByIds", windowMs = 20, maxSize = 10)
+        @RequestLine("GET /user/info?id={id}")
+        String info(@Param("id") Long id);
+
+        @RequestLine("GET /user/list-by-ids?ids={ids}")
+        Map<Long, String> listByIds(@Param("ids") List<Long> ids);
+    }
+
+    @BeforeAll
+    public static void start() {
+        server = new SpringApplicationBuilder(ServerApp.class).web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "spring.main.banner-mode=off",
+                        "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn").run();
+        url = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    @BeforeEach
+    public void reset() {
+        SINGLE_COUNT.set(0);
+        BATCH_COUNT.set(0);
+        BATCH_SIZES.clear();
+    }
+
+    private static FeignCollapser collapser() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Collections.emptyMap()));
+        return new FeignCollapser(environment);
+    }
+
+    private static UserClient client(FeignCollapser collapser) {
+        HttpMessageConverters converters = new HttpMessageConverters(new MappingJackson2HttpMessageConverter());
+        UserClient client = Feign.builder().client(new Client.Default(null, null))
+                .decoder(new SpringDecoder(() -> converters)).target(UserClient.class, url);
+        return (UserClient) collapser.postProcessAfterInitialization(client, "userClient");
+    }
+
+    private static List<Future<String>> concurrent(UserClient client, List<Long> ids) {
+        ExecutorService pool = Executors.newFixedThreadPool(ids.size());
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (Long id : ids) {
+            futures.add(pool.submit(() -> {
+                latch.await();
+                return client.info(id);
+            }));
+        }
+        latch.countDown();
+        pool.shutdown();
+        return futures;
+    }
+
+    @Test
+    public void collapse() throws Exception {
+        FeignCollapser collapser = collapser();
+        UserClient client = client(collapser);
+        // 40 个线程查 20 个不同的 id, 每个 id 两次
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 40; i++) {
+            ids.add(i % 20 + 100);
+        }
+        List<Future<String>> futures = concurrent(client, ids);
+        for (int i = 0; i < ids.size(); i++) {
+            Assertions.assertEquals("user-" + ids.get(i), futures.get(i).get(1, TimeUnit.MINUTES));
+        }
+        Assertions.assertEquals(0, SINGLE_COUNT.get());
+        // 每批最多 10 个 key, 相同的 key 只查一次
+        Assertions.assertTrue(BATCH_COUNT.get() >= 2 && BATCH_COUNT.get() < ids.size(), BATCH_SIZES.toString());
+        for (Integer size : BATCH_SIZES) {
+            Assertions.assertTrue(size <= 10, BATCH_SIZES.toString());
+        }
+        // 单个调用等待 windowMs 后自己一批
+        Assertions.assertEquals("user-1", client.info(1L));
+        Assertions.assertNull(client.info(1001L));
+        Assertions.assertEquals(0, SINGLE_COUNT.get());
+        System.out.println(BATCH_SIZES + " : " + collapser.stats());
+    }
+
+    @Test
+    public void isolate() throws Exception {
+        UserClient client = client(collapser());
+        List<Long> ids = Arrays.asList(1L, 2L, BAD_ID, 4L, 5L);
+        List<Future<String>> futures = concurrent(client, ids);
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            if (id == BAD_ID) {
+                ExecutionException e = Assertions.assertThrows(ExecutionException.class, futures.get(i)::get);
+                Assertions.assertTrue(e.getCause() instanceof feign.FeignException, String.valueOf(e.getCause()));
+            } else {
+                // 批量出错后各自单独查, 不受 BAD_ID 的影响
+                Assertions.assertEquals("user-" + id, futures.get(i).get(1, TimeUnit.MINUTES));
+            }
+        }
+        Assertions.assertTrue(BATCH_COUNT.get() >= 1);
+        Assertions.assertTrue(SINGLE_COUNT.get() >= 1);
+        Assertions.assertEquals(U.toStr(client), U.toStr(client));
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.global.config;
+
+import com.github.common.annotation.HttpCache;
+import feign.Client;
+import feign.Feign;
+import feign.Headers;
+import feign.Param;
+import feign.RequestLine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 本地服务返回 ETag 和 Cache-Control, 记录每个接口收到的请求数和 304 的次数 */
+public class FeignHttpCacheTest {
+
+    private static final Map<String, AtomicInteger> COUNTS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NOT_MODIFIED = new AtomicInteger();
+
+    private static ConfigurableApplicationContext server;
+    private static String url;
+
+    @RestController
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class })
+    public static class ServerApp {
+        @GetMapping("/category")
+        public ResponseEntity<String> category(@RequestParam("cache") String cache,
+                                               @RequestHeader(value = "If-None-Match", required = false) String etag,
+                                               @RequestHeader(value = "Accept-Language", required = false) String lang) {
+            COUNTS.computeIfAbsent(cache, k -> new AtomicInteger()).incrementAndGet();
+            String tag = "\"v1-" + lang + "\"";
+            if (tag.equals(etag)) {
+                NOT_MODIFIED.incrementAndGet();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tag).header("Cache-Control", cache).build();
+            }
+            return ResponseEntity.ok().eTag(tag).header("Cache-Control", cache).body("category-" + lang);
+        }
+    }
+
+    public interface CategoryClient {
+        @HttpCache
+        @RequestLine("GET /category?cache={cache}")
+        @Headers("Accept-Language: {lang}")
+        String cached(@Param("cache") String cache, @Param("lang") String lang);
+
+        @RequestLine("GET /category?cache={cache}")
+        @Headers("Accept-Language: {lang}")
+        String plain(@Param("cache") String cache, @Param("lang") String lang);
+    }
+
+    @BeforeAll
+    public static void start() {
+        server = new SpringApplicationBuilder(ServerApp.class).web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "spring.main.banner-mode=off",
+                        "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn").run();
+        url = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    private static int count(String cache) {
+        AtomicInteger count = COUNTS.get(cache);
+        return (count == null) ? 0 : count.get();
+    }
+
+    private static CategoryClient client(FeignHttpCache cache) {
+        return Feign.builder().client(cache.wrap(new Client.Default(null, null))).target(CategoryClient.class, url);
+    }
+
+    @Test
+    public void freshAndRevalidate() throws Exception {
+        FeignHttpCache cache = new FeignHttpCache(1024 * 1024, 1024, "accept-language");
+        CategoryClient client = client(cache);
+
+        String fresh = "max-age=60";
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("category-zh", client.cached(fresh, "zh"));
+        }
+        Assertions.assertEquals(1, count(fresh));
+
+        // 白名单中的请求头不同时是不同的缓存
+        Assertions.assertEquals("category-en", client.cached(fresh, "en"));
+        Assertions.assertEquals("category-en", client.cached(fresh, "en"));
+        Assertions.assertEquals(2, count(fresh));
+
+        // 没有注解的方法不走缓存
+        client.plain(fresh, "zh");
+        client.plain(fresh, "zh");
+        Assertions.assertEquals(4, count(fresh));
+
+        // 过期后带上 If-None-Match 去验证, 304 时返回缓存的响应体
+        String expired = "max-age=1";
+        Assertions.assertEquals("category-zh", client.cached(expired, "zh"));
+        Thread.sleep(1100);
+        int before = NOT_MODIFIED.get();
+        Assertions.assertEquals("category-zh", client.cached(expired, "zh"));
+        Assertions.assertEquals("category-zh", client.cached(expired, "zh"));
+        Assertions.assertEquals(2, count(expired));
+        Assertions.assertEquals(before + 1, NOT_MODIFIED.get());
+
+        Map<String, Object> stats = cache.stats();
+        System.out.println(stats);
+        Assertions.assertEquals(11L, stats.get("hit"));
+        Assertions.assertEquals(1L, stats.get("revalidated"));
+        Assertions.assertEquals(3L, stats.get("miss"));
+    }
+
+    @Test
+    public void cacheControl() {
+        FeignHttpCache cache = new FeignHttpCache(1024 * 1024, 1024, "accept-language");
+        CategoryClient client = client(cache);
+
+        // no-store 不缓存
+        String noStore = "no-store";
+        client.cached(noStore, "zh");
+        client.cached(noStore, "zh");
+        Assertions.assertEquals(2, count(noStore));
+
+        // no-cache 每次都去验证, 响应体只传一次
+        String noCache = "no-cache";
+        int before = NOT_MODIFIED.get();
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("category-zh", client.cached(noCache, "zh"));
+        }
+        Assertions.assertEquals(3, count(noCache));
+        Assertions.assertEquals(before + 2, NOT_MODIFIED.get());
+
+        // 响应体超过单个的上限时不缓存, 照样能拿到完整的响应体
+        FeignHttpCache small = new FeignHttpCache(1024 * 1024, 4, "accept-language");
+        String large = "max-age=30";
+        Assertions.assertEquals("category-zh", client(small).cached(large, "zh"));
+        Assertions.assertEquals("category-zh", client(small).cached(large, "zh"));
+        Assertions.assertEquals(2, count(large));
+        Assertions.assertEquals(2L, small.stats().get("uncacheable"));
+    }
+}
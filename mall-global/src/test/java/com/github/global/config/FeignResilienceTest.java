@@ -0,0 +1,249 @@
+package com.github.global.config;
+
+import com.github.common.util.LogUtil;
+import com.netflix.config.ConfigurationManager;
+import com.github.common.util.U;
+import feign.Client;
+import feign.Param;
+import feign.RequestLine;
+import feign.hystrix.FallbackFactory;
+import feign.hystrix.HystrixFeign;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 同一个服务分别用 hystrix 和 FeignResilience 调用, 比较耗时, 再验证隔离、熔断、超时和降级 */
+public class FeignResilienceTest {
+
+    private static final AtomicInteger FAIL_COUNT = new AtomicInteger();
+
+    private static ConfigurableApplicationContext server;
+    private static String url;
+
+    @RestController
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class })
+    public static class ServerApp {
+        @GetMapping("/echo")
+        public String echo(@RequestParam("n") int n, @RequestParam(value = "ms", defaultValue = "0") long ms) throws Exception {
+            if (ms > 0) {
+                Thread.sleep(ms);
+            }
+            return n + "," + LogUtil.getTraceId();
+        }
+
+        @GetMapping("/fail")
+        public String fail() {
+            FAIL_COUNT.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @FeignClient(value = "echo", fallbackFactory = EchoClientFallback.class)
+    public interface EchoClient {
+        @RequestLine("GET /echo?n={n}&ms={ms}")
+        String echo(@Param("n") int n, @Param("ms") long ms);
+
+        @RequestLine("GET /fail")
+        String fail();
+    }
+
+    @Component
+    public static class EchoClientFallback implements FallbackFactory<EchoClient> {
+        @Override
+        public EchoClient create(Throwable e) {
+            return new EchoClient() {
+                @Override
+                public String echo(int n, long ms) {
+                    return "fallback:" + e.getClass().getSimpleName();
+                }
+                @Override
+                public String fail() {
+                    return "fallback:" + e.getClass().getSimpleName();
+                }
+            };
+        }
+    }
+
+    @BeforeAll
+    public static void start() {
+        server = new SpringApplicationBuilder(ServerApp.class).web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "spring.main.banner-mode=off",
+                        "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn").run();
+        url = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    private static ConfigurableApplicationContext client(String... properties) {
+        List<String> list = new ArrayList<>(List.of("feign.resilience.enabled=true", "spring.main.banner-mode=off",
+                "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn"));
+        list.addAll(List.of(properties));
+        return new SpringApplicationBuilder(FeignResilience.class, EchoClientFallback.class)
+                .web(WebApplicationType.NONE).properties(list.toArray(new String[0])).run();
+    }
+
+    private static EchoClient resilienceClient(ConfigurableApplicationContext context) {
+        return context.getBean(FeignResilience.class).feignBuilder()
+                .client(new Client.Default(null, null)).target(EchoClient.class, url);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(ConfigurableApplicationContext context) {
+        return (Map<String, Object>) context.getBean(FeignResilience.class).stats().get("echo");
+    }
+
+    @Test
+    public void latency() throws Exception {
+        // 跟线上一样复制上下文, 线程池和超时放宽到不会拒绝
+        new FeignConfig.ContextFeignConcurrencyStrategy();
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.threadpool.default.coreSize", 16);
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.execution.isolation.thread.timeoutInMilliseconds", 10000);
+        EchoClient hystrix = HystrixFeign.builder().client(new Client.Default(null, null))
+                .target(EchoClient.class, url, new EchoClientFallback());
+        try (ConfigurableApplicationContext context = client()) {
+            EchoClient resilience = resilienceClient(context);
+            // 前一轮当作预热
+            for (int round = 0; round < 2; round++) {
+                bench("hystrix", hystrix);
+                bench("resilience", resilience);
+            }
+            System.out.println(stats(context));
+        }
+    }
+
+    private void bench(String type, EchoClient client) throws Exception {
+        int thread = 8, loop = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(thread);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < thread; t++) {
+            String trace = type + "-" + t;
+            futures.add(pool.submit(() -> {
+                LogUtil.bindBasicInfo(trace);
+                long[] nanos = new long[loop];
+                try {
+                    for (int i = 0; i < loop; i++) {
+                        long start = System.nanoTime();
+                        String[] values = client.echo(i, 0).split(",");
+                        nanos[i] = System.nanoTime() - start;
+                        Assertions.assertEquals(String.valueOf(i), values[0], type);
+                    }
+                } finally {
+                    LogUtil.unbind();
+                }
+                return nanos;
+            }));
+        }
+        List<Long> all = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            for (long nanos : future.get(2, TimeUnit.MINUTES)) {
+                all.add(nanos);
+            }
+        }
+        pool.shutdown();
+        all.sort(Long::compare);
+        System.out.printf("%-10s : p50 %5s us, p99 %6s us%n", type,
+                all.get(all.size() / 2) / 1000, all.get(all.size() * 99 / 100) / 1000);
+    }
+
+    @Test
+    public void circuit() {
+        try (ConfigurableApplicationContext context = client("feign.resilience.windowSize=10",
+                "feign.resilience.minimumCalls=5", "feign.resilience.openMs=60000")) {
+            EchoClient client = resilienceClient(context);
+            int before = FAIL_COUNT.get();
+            for (int i = 0; i < 20; i++) {
+                Assertions.assertTrue(client.fail().startsWith("fallback:"));
+            }
+            // 5 次失败后打开, 后面的请求不再发到服务上
+            Assertions.assertEquals(5, FAIL_COUNT.get() - before);
+            Map<String, Object> stats = stats(context);
+            Assertions.assertEquals("OPEN", String.valueOf(stats.get("state")));
+            Assertions.assertEquals(15, U.toLong(stats.get("circuitRejected")));
+            Assertions.assertEquals("fallback:RejectedExecutionException", client.echo(1, 0));
+        }
+    }
+
+    @Test
+    public void halfOpen() throws Exception {
+        try (ConfigurableApplicationContext context = client("feign.resilience.windowSize=4",
+                "feign.resilience.minimumCalls=2", "feign.resilience.openMs=200", "feign.resilience.halfOpenCalls=2")) {
+            EchoClient client = resilienceClient(context);
+            client.fail();
+            client.fail();
+            Assertions.assertEquals("OPEN", String.valueOf(stats(context).get("state")));
+
+            Thread.sleep(300);
+            Assertions.assertTrue(client.echo(1, 0).startsWith("1,"));
+            Assertions.assertEquals("HALF_OPEN", String.valueOf(stats(context).get("state")));
+            Assertions.assertTrue(client.echo(2, 0).startsWith("2,"));
+            Assertions.assertEquals("CLOSED", String.valueOf(stats(context).get("state")));
+        }
+    }
+
+    @Test
+    public void bulkhead() throws Exception {
+        try (ConfigurableApplicationContext context = client("feign.resilience.maxConcurrent=2")) {
+            EchoClient client = resilienceClient(context);
+            ExecutorService pool = Executors.newFixedThreadPool(5);
+            CountDownLatch latch = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                int n = i;
+                futures.add(pool.submit(() -> {
+                    latch.await();
+                    return client.echo(n, 500);
+                }));
+            }
+            latch.countDown();
+            int rejected = 0;
+            for (Future<String> future : futures) {
+                if (future.get(1, TimeUnit.MINUTES).startsWith("fallback:")) {
+                    rejected++;
+                }
+            }
+            pool.shutdown();
+            Assertions.assertEquals(3, rejected);
+            Assertions.assertEquals(3, U.toLong(stats(context).get("bulkheadRejected")));
+        }
+    }
+
+    @Test
+    public void timeout() {
+        try (ConfigurableApplicationContext context = client("feign.resilience.timeoutMs=200")) {
+            EchoClient client = resilienceClient(context);
+            long start = System.currentTimeMillis();
+            Assertions.assertTrue(client.echo(1, 2000).startsWith("fallback:"));
+            Assertions.assertTrue(System.currentTimeMillis() - start < 1500);
+            Assertions.assertEquals(1, U.toLong(stats(context).get("timeout")));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.global.config;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.common.util.A;
+import com.github.common.util.LogUtil;
+import com.github.common.util.U;
+import com.google.common.io.ByteStreams;
+import feign.Logger;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.Target;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+public class FeignStreamLoggerTest {
+
+    @BeforeAll
+    public static void level() {
+        ((ch.qos.logback.classic.Logger) LogUtil.ROOT_LOG).setLevel(Level.INFO);
+    }
+
+    private static Response response(String service, int status, byte[] body) {
+        RequestTemplate template = new RequestTemplate();
+        template.feignTarget(new Target.HardCodedTarget<>(Object.class, service, "http://" + service));
+        Request request = Request.create(Request.HttpMethod.GET, "http://" + service + "/info?id=1",
+                Collections.emptyMap(), (byte[]) null, StandardCharsets.UTF_8, template);
+        return Response.builder().status(status).request(request)
+                .headers(A.maps("Content-Type", Collections.singletonList("application/json")))
+                .body(new ByteArrayInputStream(body), body.length).build();
+    }
+
+    private static long stat(FeignStreamLogger logger, String key) {
+        return U.toLong(logger.stats().get(key));
+    }
+
+    @Test
+    public void tee() throws Exception {
+        FeignStreamLogger logger = new FeignStreamLogger(new GlobalLogHandler(new ObjectMapper()), 64, 1, null, 0);
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        Response res = logger.logAndRebufferResponse("UserClient#info()", Logger.Level.BASIC, response("user", 200, data), 5);
+        // 没有整个读进内存, 依然是流
+        Assertions.assertFalse(res.body().isRepeatable());
+        Assertions.assertEquals(0, stat(logger, "logged"));
+
+        try (InputStream input = res.body().asInputStream()) {
+            Assertions.assertArrayEquals(data, ByteStreams.toByteArray(input));
+        }
+        res.close();
+        // 读完时打印一次, 关闭时不再打印
+        Assertions.assertEquals(1, stat(logger, "logged"));
+        Assertions.assertEquals(data.length, stat(logger, "bodyBytes"));
+    }
+
+    @Test
+    public void sampleAndSlow() throws Exception {
+        Map<String, Double> rates = A.maps("user", 0D);
+        FeignStreamLogger logger = new FeignStreamLogger(new GlobalLogHandler(new ObjectMapper()), 64, 1, rates, 100);
+        byte[] data = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+        // 比 slowMs 快的不打印, 返回的还是原来的响应
+        Response fast = response("product", 200, data);
+        Assertions.assertSame(fast, logger.logAndRebufferResponse("ProductClient#info()", Logger.Level.BASIC, fast, 10));
+        Assertions.assertEquals(1, stat(logger, "fastSkipped"));
+
+        // 慢的按服务抽样: user 是 0, product 用默认的 1
+        Response user = response("user", 200, data);
+        Assertions.assertSame(user, logger.logAndRebufferResponse("UserClient#info()", Logger.Level.BASIC, user, 200));
+        Assertions.assertEquals(1, stat(logger, "sampledOut"));
+        logger.logAndRebufferResponse("ProductClient#info()", Logger.Level.BASIC, response("product", 200, data), 200).close();
+        Assertions.assertEquals(1, stat(logger, "logged"));
+
+        // 出错的不管快慢和抽样都打印, 没读响应体直接关闭时也会打印
+        logger.logAndRebufferResponse("UserClient#info()", Logger.Level.BASIC, response("user", 500, data), 1).close();
+        Assertions.assertEquals(2, stat(logger, "logged"));
+        System.out.println(logger.stats());
+    }
+}
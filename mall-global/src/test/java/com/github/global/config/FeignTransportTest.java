@@ -0,0 +1,175 @@
+package com.github.global.config;
+
+import com.github.common.Const;
+import com.github.common.util.LogUtil;
+import feign.Feign;
+import feign.Param;
+import feign.RequestLine;
+import feign.Target;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 一个 spring 应用提供服务, 另一个 spring 应用用不同的连接方式调用. 各方式的吞吐量对比见 mall-bench 的 FeignTransportBench */
+public class FeignTransportTest {
+
+    private static final String SERVICE = "echo";
+
+    private static ConfigurableApplicationContext server;
+    private static String url;
+
+    /** 服务端正在处理的请求数, 及最大值 */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+    private static final AtomicInteger MAX_ACTIVE = new AtomicInteger();
+
+    @RestController
+    @Configuration
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class })
+    public static class ServerApp {
+        @GetMapping("/echo")
+        public String echo(@RequestParam("n") int n, @RequestParam(value = "sleep", defaultValue = "0") long sleep,
+                           @RequestHeader(value = Const.TRACE, required = false) String trace,
+                           HttpServletRequest request) throws InterruptedException {
+            MAX_ACTIVE.accumulateAndGet(ACTIVE.incrementAndGet(), Math::max);
+            try {
+                if (sleep > 0) {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                }
+                return n + "," + trace + "," + request.getProtocol();
+            } finally {
+                ACTIVE.decrementAndGet();
+            }
+        }
+    }
+
+    public interface EchoClient {
+        @RequestLine("GET /echo?n={n}&sleep={sleep}")
+        String echo(@Param("n") int n, @Param("sleep") long sleep);
+    }
+
+    @BeforeAll
+    public static void start() {
+        // 不走 tls 的 http/2(h2c)
+        server = new SpringApplicationBuilder(ServerApp.class).web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "server.http2.enabled=true", "spring.main.banner-mode=off",
+                        "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn").run();
+        url = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) server).getWebServer().getPort();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    private static ConfigurableApplicationContext client(String type, String... properties) {
+        List<String> list = new ArrayList<>(List.of("feign.transport.type=" + type.replace("-h2c", ""),
+                "feign.transport.h2c=" + type.endsWith("-h2c"), "spring.main.banner-mode=off",
+                "spring.cloud.bootstrap.enabled=false", "logging.level.root=warn"));
+        list.addAll(List.of(properties));
+        return new SpringApplicationBuilder(FeignTransport.class).web(WebApplicationType.NONE)
+                .properties(list.toArray(new String[0])).run();
+    }
+
+    private static EchoClient echoClient(FeignTransport transport) {
+        FeignConfig config = new FeignConfig(null, transport, null);
+        return Feign.builder().client(new FeignConfig.SelfClient(transport.client()))
+                .requestInterceptor(config.handleHeader())
+                .target(new Target.HardCodedTarget<>(EchoClient.class, SERVICE, url));
+    }
+
+    @Test
+    public void selectAndReuse() {
+        for (String type : new String[] { "jdk", "httpclient", "okhttp", "okhttp-h2c" }) {
+            try (ConfigurableApplicationContext client = client(type)) {
+                FeignTransport transport = client.getBean(FeignTransport.class);
+                EchoClient echo = echoClient(transport);
+                LogUtil.bindBasicInfo(type);
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        String[] values = echo.echo(i, 0).split(",");
+                        Assertions.assertEquals(String.valueOf(i), values[0]);
+                        // 跟踪号依然放在请求头里
+                        Assertions.assertEquals(type, values[1]);
+                        Assertions.assertEquals(type.endsWith("-h2c") ? "HTTP/2.0" : "HTTP/1.1", values[2]);
+                    }
+                } finally {
+                    LogUtil.unbind();
+                }
+
+                // 依次调用时一直复用同一个连接, 用完都还回连接池
+                Map<String, Object> stats = transport.stats();
+                Assertions.assertEquals(type.replace("-h2c", ""), stats.get("type"), stats.toString());
+                if ("httpclient".equals(type)) {
+                    Assertions.assertEquals(0, stats.get("leased"), stats.toString());
+                    Assertions.assertEquals(1, stats.get("available"), stats.toString());
+                } else if (type.startsWith("okhttp")) {
+                    Assertions.assertEquals(0, stats.get("active"), stats.toString());
+                    Assertions.assertEquals(1, stats.get("idle"), stats.toString());
+                    Assertions.assertEquals(0, stats.get("requests"), stats.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void serviceMaxConnections() throws Exception {
+        // 单独给服务配置的连接数比 maxConnectionsPerRoute 小, 并发的请求不会超过它.
+        // okhttp 的同步调用不经过 Dispatcher, 并发数由 transport 自己控制, 响应体读完之后归还
+        for (String type : new String[] { "httpclient", "okhttp", "okhttp-h2c" }) {
+            try (ConfigurableApplicationContext client = client(type, "feign.transport.maxConnectionsPerRoute=8",
+                    "feign.transport.serviceMaxConnections={" + SERVICE + ": 2}")) {
+                FeignTransport transport = client.getBean(FeignTransport.class);
+                EchoClient echo = echoClient(transport);
+
+                MAX_ACTIVE.set(0);
+                ExecutorService pool = Executors.newFixedThreadPool(6);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 6; t++) {
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < 3; i++) {
+                            echo.echo(i, 30);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+                pool.shutdown();
+
+                Assertions.assertEquals(2, MAX_ACTIVE.get(), type);
+                Map<String, Object> stats = transport.stats();
+                if ("httpclient".equals(type)) {
+                    Assertions.assertEquals(0, stats.get("leased"), stats.toString());
+                    Assertions.assertEquals(2, stats.get("available"), stats.toString());
+                } else {
+                    Assertions.assertEquals(0, stats.get("requests"), stats.toString());
+                    Assertions.assertTrue((Integer) stats.get("idle") <= 2, stats.toString());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.global.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CacheLockWaiterTest {
+
+    private static final String KEY = "lock-test";
+    private static final int THREAD = 4;
+    private static final int LOOP = 25;
+
+    /** 用本地变量模拟 redis 中的锁, 释放时跟 redis 的 pub/sub 一样调用 signal */
+    private final AtomicReference<String> lock = new AtomicReference<>();
+    private final AtomicInteger holder = new AtomicInteger();
+    private final AtomicInteger maxHolder = new AtomicInteger();
+
+    private long tryAcquire(String value) {
+        return lock.compareAndSet(null, value) ? 0 : 10_000;
+    }
+
+    private void work(String value, Runnable release) {
+        maxHolder.accumulateAndGet(holder.incrementAndGet(), Math::max);
+        try {
+            TimeUnit.MILLISECONDS.sleep(1);
+        } catch (InterruptedException ignore) {
+        }
+        holder.decrementAndGet();
+        lock.compareAndSet(value, null);
+        release.run();
+    }
+
+    @Test
+    public void notifyVsSpin() throws Exception {
+        CacheLockWaiter waiter = new CacheLockWaiter(Mockito.mock(RedisConnectionFactory.class));
+        ReflectionTestUtils.setField(waiter, "container", Mockito.mock(RedisMessageListenerContainer.class));
+
+        for (boolean fair : new boolean[] { false, true }) {
+            long notifyMs = run(value -> {
+                Assertions.assertTrue(waiter.acquire(KEY, TimeUnit.SECONDS.toNanos(10), fair, () -> tryAcquire(value)));
+                work(value, () -> waiter.signal(KEY));
+            });
+            System.out.printf("notify(fair: %s) : %sms%n", fair, notifyMs);
+        }
+        Assertions.assertEquals(1, maxHolder.get());
+        System.out.println(waiter.waitHistogram());
+
+        long spinMs = run(value -> {
+            // 跟 CacheService#tryLock 一样, 没拿到就 sleep 之后再试
+            while (tryAcquire(value) != 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException ignore) {
+                }
+            }
+            work(value, () -> {});
+        });
+        System.out.printf("spin(sleep 10ms): %sms%n", spinMs);
+        Assertions.assertEquals(1, maxHolder.get());
+    }
+
+    @Test
+    public void wakeOneOnUnlock() throws Exception {
+        RedisServer server = RedisServer.newRedisServer().start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("127.0.0.1", server.getBindPort()),
+                LettuceClientConfiguration.builder()
+                        .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build()).build());
+        connectionFactory.afterPropertiesSet();
+        CacheLockWaiter waiter = new CacheLockWaiter(connectionFactory);
+        ReflectionTestUtils.setField(waiter, "channel", "lock-release-test");
+        ReflectionTestUtils.setField(waiter, "subscribeWaitMs", 3000L);
+
+        lock.set("holder");
+        List<String> acquired = new CopyOnWriteArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                String value = "waiter-" + i;
+                pool.submit(() -> {
+                    // 锁的剩余时间是 10 秒, 只有收到释放的通知才能在这之前拿到锁
+                    if (waiter.acquire(KEY, TimeUnit.SECONDS.toNanos(5), false, () -> tryAcquire(value))) {
+                        acquired.add(value);
+                    }
+                });
+            }
+            Map<?, ?> waiterMap = (Map<?, ?>) ReflectionTestUtils.getField(waiter, "waiterMap");
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((waiterMap.get(KEY) == null || ((Collection<?>) waiterMap.get(KEY)).size() < 2)
+                    && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assertions.assertEquals(2, ((Collection<?>) waiterMap.get(KEY)).size());
+
+            // 跟 unlock 脚本一样: 删除锁之后往频道发布锁的键, 只唤醒等待最久的一个
+            long start = System.currentTimeMillis();
+            release(connectionFactory, "holder");
+            while (acquired.isEmpty() && System.currentTimeMillis() - start < 2000) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            Assertions.assertEquals(1, acquired.size());
+            TimeUnit.MILLISECONDS.sleep(200);
+            Assertions.assertEquals(1, acquired.size());
+
+            release(connectionFactory, acquired.get(0));
+            while (acquired.size() < 2 && System.currentTimeMillis() - start < 3000) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            Assertions.assertEquals(2, acquired.size());
+            Assertions.assertTrue(System.currentTimeMillis() - start < 3000);
+        } finally {
+            pool.shutdownNow();
+            waiter.destroy();
+            connectionFactory.destroy();
+            server.stop();
+        }
+    }
+
+    private void release(RedisConnectionFactory connectionFactory, String value) {
+        lock.compareAndSet(value, null);
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.publish("lock-release-test".getBytes(StandardCharsets.UTF_8), KEY.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private long run(java.util.function.Consumer<String> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREAD);
+        long start = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREAD; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                for (int j = 0; j < LOOP; j++) {
+                    task.accept(index + "-" + j);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdownNow();
+        return System.currentTimeMillis() - start;
+    }
+}
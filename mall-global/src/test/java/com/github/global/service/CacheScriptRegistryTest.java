@@ -0,0 +1,143 @@
+package com.github.global.service;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.github.fppt.jedismock.operations.server.MockExecutor;
+import com.github.fppt.jedismock.server.ServiceOptions;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/** 在本地模拟的 redis(支持 lua)上运行注册的脚本, 并记录收到的命令 */
+@SuppressWarnings("unchecked")
+public class CacheScriptRegistryTest {
+
+    /** redis 收到的命令(小写) */
+    private static final List<String> COMMANDS = new CopyOnWriteArrayList<>();
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate stringRedisTemplate;
+    private static CacheScriptRegistry scriptRegistry;
+    private static CacheService cacheService;
+
+    @BeforeAll
+    public static void start() throws Exception {
+        server = RedisServer.newRedisServer().setOptions(ServiceOptions.withInterceptor((state, name, params) -> {
+            COMMANDS.add(name.toLowerCase());
+            return MockExecutor.proceed(state, name, params);
+        })).start();
+        // 模拟的 redis 只支持 RESP2
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build()).build();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("127.0.0.1", server.getBindPort()), clientConfig);
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+
+        scriptRegistry = new CacheScriptRegistry(stringRedisTemplate);
+        scriptRegistry.loadAll();
+        cacheService = new CacheService(stringRedisTemplate, Mockito.mock(RedisTemplate.class),
+                scriptRegistry, new CacheLockWaiter(Mockito.mock(RedisConnectionFactory.class)));
+    }
+
+    @AfterAll
+    public static void stop() throws Exception {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    public void before() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+        COMMANDS.clear();
+    }
+
+    private static long pttl(String key) {
+        return stringRedisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void noScriptReload() {
+        stringRedisTemplate.opsForValue().set("cas", "1");
+        Assertions.assertTrue(cacheService.compareAndSet("cas", "1", "2"));
+        // 启动时已经加载, 只发 sha1
+        Assertions.assertTrue(COMMANDS.contains("evalsha"));
+        Assertions.assertFalse(COMMANDS.contains("eval"));
+
+        // 模拟 redis 重启后脚本丢失: EVALSHA 返回 NOSCRIPT 后用 EVAL 重发脚本, 调用方无感知
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+        COMMANDS.clear();
+        Assertions.assertTrue(cacheService.compareAndSet("cas", "2", "3"));
+        Assertions.assertEquals(List.of("evalsha", "eval"), COMMANDS);
+        Assertions.assertEquals("3", stringRedisTemplate.opsForValue().get("cas"));
+    }
+
+    @Test
+    public void compareAndSet() {
+        stringRedisTemplate.opsForValue().set("cas", "1", 10, TimeUnit.SECONDS);
+        Assertions.assertFalse(cacheService.compareAndSet("cas", "0", "2"));
+        Assertions.assertEquals("1", stringRedisTemplate.opsForValue().get("cas"));
+
+        Assertions.assertTrue(cacheService.compareAndSet("cas", "1", "2"));
+        Assertions.assertEquals("2", stringRedisTemplate.opsForValue().get("cas"));
+        // 保留原来的过期时间
+        Assertions.assertTrue(pttl("cas") > 0);
+
+        Assertions.assertFalse(cacheService.compareAndSet("none", "1", "2"));
+        Assertions.assertNull(stringRedisTemplate.opsForValue().get("none"));
+    }
+
+    @Test
+    public void rateLimit() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(cacheService.rateLimit("limit", 3, 300, TimeUnit.MILLISECONDS));
+        }
+        Assertions.assertFalse(cacheService.rateLimit("limit", 3, 300, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(pttl("limit") > 0);
+
+        // 窗口过了之后重新计数
+        Thread.sleep(400);
+        Assertions.assertTrue(cacheService.rateLimit("limit", 3, 300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void incrWithCeiling() {
+        // 键不存在时设置过期时间
+        Assertions.assertEquals(5, cacheService.incrWithCeiling("ceil", 5, 10, 10, TimeUnit.SECONDS));
+        Assertions.assertTrue(pttl("ceil") > 0);
+        Assertions.assertEquals(10, cacheService.incrWithCeiling("ceil", 5, 10, 10, TimeUnit.SECONDS));
+        Assertions.assertEquals(-1, cacheService.incrWithCeiling("ceil", 1, 10, 10, TimeUnit.SECONDS));
+        Assertions.assertEquals("10", stringRedisTemplate.opsForValue().get("ceil"));
+
+        // 已经存在且值是 0 的键不改变过期时间: 没有过期的依然没有, 有过期的不会被重置
+        stringRedisTemplate.opsForValue().set("zero", "0");
+        Assertions.assertEquals(1, cacheService.incrWithCeiling("zero", 1, 10, 10, TimeUnit.SECONDS));
+        Assertions.assertEquals(-1, pttl("zero"));
+
+        stringRedisTemplate.opsForValue().set("zeroTtl", "0", 60, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, cacheService.incrWithCeiling("zeroTtl", 1, 10, 1, TimeUnit.SECONDS));
+        Assertions.assertTrue(pttl("zeroTtl") > 10000);
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.global.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("unchecked")
+public class CacheServiceTest {
+
+    /** 模拟的 redis 数据 */
+    private final Map<String, String> redisData = new HashMap<>();
+    /** 调用 pipeline 的次数, 也就是与 redis 的往返次数 */
+    private final AtomicInteger pipelineCount = new AtomicInteger();
+
+    private StringRedisTemplate stringRedisTemplate;
+    private CacheService cacheService;
+
+    @BeforeEach
+    public void before() {
+        redisData.clear();
+        pipelineCount.set(0);
+
+        stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+        Mockito.when(stringRedisTemplate.executePipelined(Mockito.any(SessionCallback.class))).thenAnswer(invocation -> {
+            pipelineCount.incrementAndGet();
+
+            // 在模拟的连接上运行命令, 收集这个 pipeline 里面的每一条 get 命令
+            RedisOperations<String, String> operations = Mockito.mock(RedisOperations.class);
+            ValueOperations<String, String> valueOperations = Mockito.mock(ValueOperations.class);
+            Mockito.when(operations.opsForValue()).thenReturn(valueOperations);
+            ((SessionCallback<Object>) invocation.getArgument(0)).execute(operations);
+
+            List<Object> returnList = new ArrayList<>();
+            for (Invocation call : Mockito.mockingDetails(valueOperations).getInvocations()) {
+                String key = call.getArgument(0);
+                if (key.startsWith("error")) {
+                    returnList.add(new RuntimeException("WRONGTYPE " + key));
+                } else {
+                    returnList.add(redisData.get(key));
+                }
+            }
+            boolean hasError = returnList.stream().anyMatch(obj -> obj instanceof Throwable);
+            if (hasError) {
+                throw new RedisPipelineException("pipeline error", returnList);
+            }
+            return returnList;
+        });
+
+        cacheService = new CacheService(stringRedisTemplate, Mockito.mock(RedisTemplate.class),
+                new CacheScriptRegistry(stringRedisTemplate), new CacheLockWaiter(Mockito.mock(RedisConnectionFactory.class)));
+        ReflectionTestUtils.setField(cacheService, "batchSize", 100);
+    }
+
+    @Test
+    public void mget() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            String key = "key-" + i;
+            keys.add(key);
+            if (i % 2 == 0) {
+                redisData.put(key, "value-" + i);
+            }
+        }
+
+        CacheBatchResult<String> result = cacheService.mget(keys);
+        // 250 个键, 每批 100 个, 只需要 3 次往返
+        Assertions.assertEquals(3, pipelineCount.get());
+        Assertions.assertEquals(3, result.getRoundTrip());
+        Assertions.assertTrue(result.wasAllSuccess());
+        Assertions.assertEquals(250, result.getData().size());
+        Assertions.assertEquals("value-0", result.get("key-0"));
+        Assertions.assertNull(result.get("key-1"));
+    }
+
+    @Test
+    public void mgetPartialFail() {
+        redisData.put("a", "1");
+        redisData.put("b", "2");
+
+        CacheBatchResult<String> result = cacheService.mget(Arrays.asList("a", "error-c", "b", "a"));
+        Assertions.assertEquals(1, pipelineCount.get());
+        Assertions.assertFalse(result.wasAllSuccess());
+        Assertions.assertEquals(Collections.singleton("error-c"), result.getFailMap().keySet());
+        Assertions.assertEquals("1", result.get("a"));
+        Assertions.assertEquals("2", result.get("b"));
+    }
+
+    @Test
+    public void empty() {
+        Assertions.assertTrue(cacheService.mget(Collections.emptyList()).getData().isEmpty());
+        Assertions.assertTrue(cacheService.mset(Collections.emptyMap()).getData().isEmpty());
+        Assertions.assertEquals(0, pipelineCount.get());
+    }
+}
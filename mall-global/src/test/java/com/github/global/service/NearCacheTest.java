@@ -0,0 +1,148 @@
+package com.github.global.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RBucket;
+import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("unchecked")
+public class NearCacheTest {
+
+    /** 模拟的 redis 数据 */
+    private final Map<String, Object> redisData = new HashMap<>();
+    /** 模拟的 redis 键的过期时间(毫秒时间戳) */
+    private final Map<String, Long> redisExpire = new HashMap<>();
+    /** 从 redis 取值的次数 */
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private RedissonService redissonService;
+
+    @BeforeEach
+    public void before() {
+        redisData.clear();
+        redisExpire.clear();
+        loadCount.set(0);
+
+        RedissonClient redisson = Mockito.mock(RedissonClient.class);
+        Mockito.when(redisson.getTopic(Mockito.anyString(), Mockito.any(Codec.class))).thenReturn(Mockito.mock(RTopic.class));
+        Mockito.when(redisson.getBucket(Mockito.anyString(), Mockito.any(Codec.class))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            RBucket<Object> bucket = Mockito.mock(RBucket.class);
+            Mockito.when(bucket.get()).thenAnswer(i -> {
+                loadCount.incrementAndGet();
+                return alive(key) ? redisData.get(key) : null;
+            });
+            Mockito.when(bucket.remainTimeToLive()).thenAnswer(i -> ttl(key));
+            Mockito.doAnswer(i -> redisData.put(key, i.getArgument(0))).when(bucket).set(Mockito.any());
+            Mockito.doAnswer(i -> {
+                redisData.put(key, i.getArgument(0));
+                redisExpire.put(key, System.currentTimeMillis() + ((TimeUnit) i.getArgument(2)).toMillis(i.getArgument(1)));
+                return null;
+            }).when(bucket).set(Mockito.any(), Mockito.anyLong(), Mockito.any(TimeUnit.class));
+            Mockito.when(bucket.expire(Mockito.any(Duration.class))).thenAnswer(i -> {
+                redisExpire.put(key, System.currentTimeMillis() + ((Duration) i.getArgument(0)).toMillis());
+                return true;
+            });
+            return bucket;
+        });
+        Mockito.when(redisson.getMap(Mockito.anyString(), Mockito.any(Codec.class))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            RMap<Object, Object> map = Mockito.mock(RMap.class);
+            Mockito.when(map.get(Mockito.any())).thenAnswer(i -> {
+                loadCount.incrementAndGet();
+                Map<Object, Object> hash = alive(key) ? (Map<Object, Object>) redisData.get(key) : null;
+                return (hash == null) ? null : hash.get(i.getArgument(0));
+            });
+            Mockito.when(map.remainTimeToLive()).thenAnswer(i -> ttl(key));
+            Mockito.when(map.put(Mockito.any(), Mockito.any())).thenAnswer(i -> ((Map<Object, Object>) redisData
+                    .computeIfAbsent(key, k -> new HashMap<>())).put(i.getArgument(0), i.getArgument(1)));
+            return map;
+        });
+
+        redissonService = new RedissonService(redisson);
+        ReflectionTestUtils.setField(redissonService, "nearPrefix", "near:");
+        ReflectionTestUtils.setField(redissonService, "nearMaxSize", 100L);
+        ReflectionTestUtils.setField(redissonService, "nearExpireMs", 60000L);
+        ReflectionTestUtils.setField(redissonService, "nearChannel", "near-test");
+        redissonService.initNearCache();
+    }
+
+    private boolean alive(String key) {
+        Long expire = redisExpire.get(key);
+        return expire == null || expire > System.currentTimeMillis();
+    }
+    private long ttl(String key) {
+        if (!redisData.containsKey(key) || !alive(key)) {
+            return -2;
+        }
+        Long expire = redisExpire.get(key);
+        return (expire == null) ? -1 : (expire - System.currentTimeMillis());
+    }
+
+    @Test
+    public void hit() {
+        redisData.put("near:a", "1");
+        redisData.put("other:a", "1");
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("1", redissonService.get("near:a"));
+            Assertions.assertEquals("1", redissonService.get("other:a"));
+        }
+        // 匹配上前缀的只从 redis 取一次, 没匹配上的每次都取
+        Assertions.assertEquals(6, loadCount.get());
+        Assertions.assertEquals(4L, redissonService.nearCacheStats().get("hit"));
+        Assertions.assertEquals(1L, redissonService.nearCacheStats().get("miss"));
+
+        redisData.put("near:h", new HashMap<>(Map.of("f", "v")));
+        Assertions.assertEquals("v", redissonService.hashGet("near:h", "f"));
+        Assertions.assertEquals("v", redissonService.hashGet("near:h", "f"));
+        Assertions.assertEquals(7, loadCount.get());
+    }
+
+    @Test
+    public void invalidateOnWrite() {
+        redisData.put("near:a", "1");
+        Assertions.assertEquals("1", redissonService.get("near:a"));
+        redissonService.set("near:a", "2");
+        Assertions.assertEquals("2", redissonService.get("near:a"));
+        Assertions.assertEquals(2, loadCount.get());
+
+        redisData.put("near:h", new HashMap<>(Map.of("f", "v")));
+        Assertions.assertEquals("v", redissonService.hashGet("near:h", "f"));
+        redissonService.hashPut("near:h", "f", "v2");
+        Assertions.assertEquals("v2", redissonService.hashGet("near:h", "f"));
+        Assertions.assertEquals(4, loadCount.get());
+    }
+
+    @Test
+    public void ttl() throws Exception {
+        // redis 中的存活时间比 cache.near.expireMs 短时, 本地缓存跟着 redis 一起过期
+        redissonService.set("near:short", "1", 200, TimeUnit.MILLISECONDS);
+        Assertions.assertEquals("1", redissonService.get("near:short"));
+        Assertions.assertEquals("1", redissonService.get("near:short"));
+        Assertions.assertEquals(1, loadCount.get());
+        Thread.sleep(250);
+        Assertions.assertNull(redissonService.get("near:short"));
+
+        // expire 之后本地缓存失效, 并使用新的存活时间
+        redissonService.set("near:b", "1");
+        Assertions.assertEquals("1", redissonService.get("near:b"));
+        redissonService.expire("near:b", 200, TimeUnit.MILLISECONDS);
+        int count = loadCount.get();
+        Assertions.assertEquals("1", redissonService.get("near:b"));
+        Assertions.assertEquals(count + 1, loadCount.get());
+        Thread.sleep(250);
+        Assertions.assertNull(redissonService.get("near:b"));
+    }
+}
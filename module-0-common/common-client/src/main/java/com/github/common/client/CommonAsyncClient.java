@@ -0,0 +1,14 @@
+package com.github.common.client;
+
+import com.github.common.page.PageReturn;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 公共相关的异步调用接口, 方法跟 {@link CommonClient} 一一对应, 由 mall-global 中的 FeignAsync 生成实现
+ */
+public interface CommonAsyncClient {
+
+    /** @see CommonClient#demo(String, Integer, Integer) */
+    CompletableFuture<PageReturn<?>> demo(String xx, Integer page, Integer limit);
+}
@@ -0,0 +1,27 @@
+package com.github.message.config;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.github.common.sql.CountPaginationInterceptor;
+import com.github.common.sql.SeekInterceptor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** mybatis-plus 的自动配置会把上下文中的 Interceptor 都装到 SqlSessionFactory 上 */
+@Configuration
+public class MybatisConfig {
+
+    /** 游标分页, mapper 的参数里有 Seek 时生效 */
+    @Bean
+    public SeekInterceptor seekInterceptor() {
+        return new SeekInterceptor();
+    }
+
+    /** 分页, 按 PageParam 的 count 决定是否查总条数、是否用缓存的总条数 */
+    @Bean
+    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new CountPaginationInterceptor(DbType.MYSQL));
+        return interceptor;
+    }
+}
@@ -1,13 +1,17 @@
 package com.github.message.config;
 
 import com.github.common.util.U;
+import com.github.message.constant.MqConst;
 import com.github.message.model.MqInfo;
 import com.google.common.collect.Maps;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -77,4 +81,54 @@ public class RabbitMqConfig {
         }
         return rabbitAdmin;
     }
+
+    /** 默认的监听容器工厂, 在 spring.rabbitmq.listener.simple 的基础上使用 MqInfo 中设置的 prefetch */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setContainerCustomizer(container -> customize(container, false));
+        return factory;
+    }
+
+    /**
+     * 批量消费的监听容器工厂: 一次从 channel 中取到 batchSize 条或者等到 batchWaitMs 毫秒后,
+     * 把这一批消息交给监听方法(参数是 List&lt;Message&gt;), 需要手动 ack
+     *
+     * @see com.github.message.handle.MqReceiverHandler#doConsumeBatch
+     */
+    @Bean(MqConst.BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setContainerCustomizer(container -> customize(container, true));
+        return factory;
+    }
+
+    private void customize(SimpleMessageListenerContainer container, boolean batch) {
+        for (String queueName : container.getQueueNames()) {
+            MqInfo mqInfo = MqInfo.fromQueue(queueName);
+            if (U.isNull(mqInfo)) {
+                continue;
+            }
+            if (mqInfo.getPrefetch() > 0) {
+                container.setPrefetchCount(mqInfo.getPrefetch());
+            }
+            if (batch) {
+                if (mqInfo.getBatchSize() > 0) {
+                    container.setBatchSize(mqInfo.getBatchSize());
+                }
+                if (mqInfo.getBatchWaitMs() > 0) {
+                    container.setReceiveTimeout(mqInfo.getBatchWaitMs());
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("监听队列({}) prefetch({}) batchSize({}) batchWaitMs({})", queueName,
+                        mqInfo.getPrefetch(), mqInfo.getBatchSize(), mqInfo.getBatchWaitMs());
+            }
+        }
+    }
 }
@@ -57,6 +57,9 @@ public class MqConst {
 
     public static final String APP_CODE = "in_bound";
 
+    /** 批量消费的监听容器工厂, 用在 @RabbitListener 的 containerFactory 上 */
+    public static final String BATCH_LISTENER_FACTORY = "batchRabbitListenerContainerFactory";
+
     public static final String EXCHANGE = "Company.Team.Project.Exchange";
 
 
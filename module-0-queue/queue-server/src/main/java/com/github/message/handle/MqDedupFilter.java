@@ -0,0 +1,214 @@
+package com.github.message.handle;
+
+import com.github.common.util.A;
+import com.github.common.util.U;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 消费幂等的本地过滤(mq.dedup.enable = true 时才开启), 在分布式锁和查询消费记录之前先判断消息 id 是否可能已经收到过:
+ *   1. 最近收到的消息 id 放在一个精确的 LRU 里, 同一实例上并发收到的重复消息由它挡住
+ *   2. 时间窗口内的消息 id 放在按时间轮转的布隆过滤器里, 每个桶负责一段时间, 过期的桶在轮到时清空复用
+ *
+ * 两者都没有的消息 id 一定没有在本实例的时间窗口内收到过, 直接消费(不加锁也不查记录);
+ * 可能收到过的才走原来的分布式检查, 检查后发现其实没有消费记录的就是一次误判
+ *
+ * 本地过滤看不到其他实例收到的消息, 只有在「发布端重复发送的消息落到不同实例」可以接受时(业务本身幂等)才开启,
+ * 被 broker 重新投递(redelivered)的消息不会经过这里, 一定走分布式检查
+ * </pre>
+ */
+@Configuration
+@ConditionalOnClass(RabbitListener.class)
+public class MqDedupFilter {
+
+    @Value("${mq.dedup.enable:false}")
+    private boolean enable;
+
+    /** 时间窗口的毫秒数, 窗口内收到过的消息 id 都能判断出来 */
+    @Value("${mq.dedup.windowMs:600000}")
+    private long windowMs;
+
+    /** 时间窗口分成的桶数, 越多则轮转时一次丢掉的越少 */
+    @Value("${mq.dedup.buckets:6}")
+    private int bucketCount;
+
+    /** 每个桶预计放入的消息数 */
+    @Value("${mq.dedup.expectedInsertions:100000}")
+    private int expectedInsertions;
+
+    /** 期望的误判率 */
+    @Value("${mq.dedup.fpp:0.01}")
+    private double fpp;
+
+    /** 精确记录的最近消息数 */
+    @Value("${mq.dedup.recentSize:10000}")
+    private int recentSize;
+
+    private long bucketMs;
+    private int bitSize;
+    private int hashCount;
+    private Bucket[] buckets;
+    private Cache<String, Boolean> recent;
+
+    private final LongAdder checkCount = new LongAdder();
+    private final LongAdder bypassCount = new LongAdder();
+    private final LongAdder possibleHitCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enable) {
+            return;
+        }
+        int count = Math.max(bucketCount, 2);
+        bucketMs = Math.max(windowMs / count, 1);
+        long bits = (long) (-Math.max(expectedInsertions, 1) * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        bitSize = (int) Math.max(Math.min(bits, Integer.MAX_VALUE - 63), 64);
+        hashCount = Math.max(1, (int) Math.round((double) bitSize / Math.max(expectedInsertions, 1) * Math.log(2)));
+        buckets = new Bucket[count];
+        for (int i = 0; i < count; i++) {
+            buckets[i] = new Bucket((bitSize + 63) / 64);
+        }
+        recent = CacheBuilder.newBuilder().maximumSize(recentSize).expireAfterWrite(windowMs, TimeUnit.MILLISECONDS).build();
+    }
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    /**
+     * 判断消息 id 是否是第一次收到, 同时记录下来
+     *
+     * @return true 表示本实例在时间窗口内一定没有收到过, 可以跳过分布式检查; 没有开启时总是返回 false
+     */
+    public boolean checkNew(String msgId) {
+        if (!enable || U.isEmpty(msgId)) {
+            return false;
+        }
+        checkCount.increment();
+        if (U.isNotNull(recent.asMap().putIfAbsent(msgId, Boolean.TRUE))) {
+            possibleHitCount.increment();
+            return false;
+        }
+
+        HashCode hash = Hashing.murmur3_128().hashString(msgId, StandardCharsets.UTF_8);
+        long hash1 = hash.asLong();
+        long hash2 = hashSecond(hash);
+        long period = System.currentTimeMillis() / bucketMs;
+
+        boolean seen = false;
+        for (int i = 0; i < buckets.length && !seen; i++) {
+            long bucketPeriod = period - i;
+            Bucket bucket = buckets[(int) Math.floorMod(bucketPeriod, (long) buckets.length)];
+            if (bucket.period.get() == bucketPeriod) {
+                seen = bucket.mightContain(hash1, hash2);
+            }
+        }
+        current(period).put(hash1, hash2);
+
+        if (seen) {
+            possibleHitCount.increment();
+            return false;
+        } else {
+            bypassCount.increment();
+            return true;
+        }
+    }
+
+    /** 可能收到过的消息在分布式检查后发现并没有消费记录, 是一次误判 */
+    public void falsePositive() {
+        if (enable) {
+            falsePositiveCount.increment();
+        }
+    }
+
+    /** 检查次数、跳过分布式检查的次数、可能收到过的次数、误判次数以及误判率(误判 / 实际是新消息的数量) */
+    public Map<String, Object> stats() {
+        long bypass = bypassCount.sum();
+        long falsePositive = falsePositiveCount.sum();
+        long fresh = bypass + falsePositive;
+        return A.linkedMaps(
+                "check", checkCount.sum(),
+                "bypass", bypass,
+                "possibleHit", possibleHitCount.sum(),
+                "falsePositive", falsePositive,
+                "falsePositiveRate", fresh == 0 ? 0D : (double) falsePositive / fresh
+        );
+    }
+
+    /** 128 位哈希的后 64 位, 跟前 64 位组合出 k 个位置(同 guava 的 BloomFilter) */
+    private long hashSecond(HashCode hash) {
+        byte[] bytes = hash.asBytes();
+        long value = 0;
+        for (int i = 15; i >= 8; i--) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /** 当前时间所在的桶, 轮到已经过期的桶时由抢到的线程清空 */
+    private Bucket current(long period) {
+        Bucket bucket = buckets[(int) Math.floorMod(period, (long) buckets.length)];
+        long old = bucket.period.get();
+        if (old < period && bucket.period.compareAndSet(old, period)) {
+            bucket.clear();
+        }
+        return bucket;
+    }
+
+    private class Bucket {
+        private final AtomicLong period = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray bits;
+
+        private Bucket(int length) {
+            this.bits = new AtomicLongArray(length);
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                int index = (int) ((combined & Long.MAX_VALUE) % bitSize);
+                if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        private void put(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashCount; i++) {
+                int index = (int) ((combined & Long.MAX_VALUE) % bitSize);
+                long mask = 1L << index;
+                int word = index >>> 6;
+                long value;
+                do {
+                    value = bits.get(word);
+                } while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask));
+                combined += hash2;
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.message.handle;
+
+import com.github.common.date.DateUtil;
+import com.github.common.json.JsonUtil;
+import com.github.common.util.U;
+import com.github.message.model.MqData;
+import com.github.message.model.MqInfo;
+import com.github.message.model.SelfCorrelationData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.postprocessor.GUnzipPostProcessor;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * <pre>
+ * 发到 mq 的消息格式, 由消息头 x-mq-format 区分:
+ *
+ * 1. json(默认): 整个 MqData 序列化成 json 作为消息体, 业务数据是 json 里面的一个字符串, 收发时都要多转义和解析一次
+ * 2. raw(mq.envelope.raw = true): MqData 的 msgId、traceId、sendTime、mqInfo 放在消息属性里,
+ *    消息体就是业务数据的字节, 超过 mq.envelope.compressThreshold 字节时用 gzip 压缩(content-encoding = gzip)
+ *
+ * 消费时两种格式都能解析, 上线时先发布消费端, 再打开发送端的 mq.envelope.raw
+ * </pre>
+ */
+@Slf4j
+@Configuration
+@ConditionalOnClass(RabbitTemplate.class)
+public class MqEnvelope {
+
+    static final String HEADER_FORMAT = "x-mq-format";
+    static final String HEADER_INFO = "x-mq-info";
+    /** 消息属性中的 timestamp 只到秒, 发送时间(毫秒)单独放一个头 */
+    static final String HEADER_SEND_TIME = "x-mq-send-time";
+    static final String FORMAT_RAW = "raw";
+
+    private static final GZipPostProcessor GZIP = new GZipPostProcessor(false);
+    private static final GUnzipPostProcessor GUNZIP = new GUnzipPostProcessor(true);
+
+    @Value("${mq.envelope.raw:false}")
+    private boolean raw;
+
+    /** 消息体超过这个字节数才压缩, 小于等于 0 则不压缩 */
+    @Value("${mq.envelope.compressThreshold:4096}")
+    private int compressThreshold;
+
+    /** 构建发到 mq 的消息 */
+    public Message encode(SelfCorrelationData correlationData) {
+        String msgId = correlationData.getId();
+        String traceId = correlationData.getTraceId();
+        Date sendTime = DateUtil.now();
+        if (!raw) {
+            MqData mqData = new MqData(msgId, traceId, sendTime, correlationData.getMqInfo(), correlationData.getJson());
+            String data = JsonUtil.toJson(mqData);
+            // 默认是持久化的 setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+            return MessageBuilder.withBody(data.getBytes(StandardCharsets.UTF_8))
+                    .setMessageId(msgId).setCorrelationId(traceId).build();
+        }
+
+        String json = correlationData.getJson();
+        byte[] body = U.isNull(json) ? new byte[0] : json.getBytes(StandardCharsets.UTF_8);
+        Message message = MessageBuilder.withBody(body)
+                .setMessageId(msgId).setCorrelationId(traceId)
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setHeader(HEADER_FORMAT, FORMAT_RAW)
+                .setHeader(HEADER_INFO, correlationData.getMqInfo().name())
+                .setHeader(HEADER_SEND_TIME, sendTime.getTime())
+                .build();
+        if (compressThreshold > 0 && body.length > compressThreshold) {
+            message = GZIP.postProcessMessage(message);
+        }
+        return message;
+    }
+
+    /** 从 mq 的消息中解析出 MqData, 两种格式都可以, 解析不了返回 null */
+    public static MqData decode(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        if (!FORMAT_RAW.equals(U.toStr(properties.getHeader(HEADER_FORMAT)))) {
+            return JsonUtil.toObjectNil(new String(message.getBody(), StandardCharsets.UTF_8), MqData.class);
+        }
+
+        try {
+            Message source = message;
+            String encoding = properties.getContentEncoding();
+            if (U.isNotBlank(encoding) && encoding.startsWith("gzip")) {
+                source = GUNZIP.postProcessMessage(message);
+            }
+            MqInfo mqInfo = MqInfo.valueOf(U.toStr(properties.getHeader(HEADER_INFO)));
+            long sendTime = U.toLong(properties.getHeader(HEADER_SEND_TIME));
+            String data = new String(source.getBody(), StandardCharsets.UTF_8);
+            return new MqData(properties.getMessageId(), properties.getCorrelationId(),
+                    sendTime > 0 ? new Date(sendTime) : null, mqInfo, data);
+        } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error("解析消息({})异常", properties.getMessageId(), e);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.github.message.handle;
+
+import com.github.common.util.A;
+import com.github.common.util.U;
+import com.github.message.constant.MqConst;
+import com.github.message.model.MqInfo;
+import com.github.message.model.MqSendEntity;
+import com.github.message.model.SelfCorrelationData;
+import com.github.message.service.MqSendService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 消息发送的 outbox 模式(mq.outbox.enable = true 时才开启), 生产者只把消息放进内存队列, 由单独的线程按批次处理:
+ *   1. 用 batchInsert 在一个事务里写入这一批的发送记录(状态为初始)
+ *   2. 逐条发布到 mq, 发布确认异步回来后, 由线程用 batchReplace 批量更新记录的状态
+ *      需要设置 spring.rabbitmq.publisher-confirm-type = correlated 和 spring.rabbitmq.template.mandatory = true
+ *   3. 启动时和之后每隔一段时间, 把超过这个时间还是初始状态的记录重新发布(进程挂掉时已经写了记录的消息由此恢复)
+ *
+ * 放进内存队列后还没写记录的消息在进程挂掉时会丢失, 不能丢的消息用同步的方式发送
+ * </pre>
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Configuration
+@ConditionalOnClass(RabbitTemplate.class)
+public class MqOutbox {
+
+    @Value("${mq.outbox.enable:false}")
+    private boolean enable;
+
+    /** 内存队列的最大长度, 满了之后调用方走同步发送 */
+    @Value("${mq.outbox.capacity:10000}")
+    private int capacity;
+
+    /** 每个批次最多的消息数 */
+    @Value("${mq.outbox.batchSize:200}")
+    private int batchSize;
+
+    /** 没有消息时, 等待下一条消息的最大毫秒数 */
+    @Value("${mq.outbox.flushMs:20}")
+    private long flushMs;
+
+    /** 初始状态超过这个毫秒数的记录会被重新发布, 也是扫描的间隔 */
+    @Value("${mq.outbox.recoverMs:60000}")
+    private long recoverMs;
+
+    @Value("${mq.providerRetryCount:3}")
+    private int providerRetryCount;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MqSendService mqSendService;
+    private final MqEnvelope mqEnvelope;
+
+    private BlockingQueue<SelfCorrelationData> pendingQueue;
+    /** 收到了发布确认, 等待批量更新状态的记录 */
+    private final Queue<MqSendEntity> confirmedQueue = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+    private Thread relayThread;
+
+    @PostConstruct
+    public void start() {
+        if (enable) {
+            pendingQueue = new LinkedBlockingQueue<>(capacity);
+            running = true;
+            relayThread = new Thread(this::relay, "mq-outbox-relay");
+            relayThread.setDaemon(true);
+            relayThread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (relayThread != null) {
+            running = false;
+            relayThread.interrupt();
+            try {
+                relayThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** 放进内存队列, 没有开启或者队列满了返回 false */
+    boolean append(SelfCorrelationData correlationData) {
+        return running && pendingQueue.offer(correlationData);
+    }
+
+    /** 内存队列中等待写入的消息数 */
+    public int pendingSize() {
+        return pendingQueue == null ? 0 : pendingQueue.size();
+    }
+
+    private void relay() {
+        long nextRecover = System.currentTimeMillis();
+        List<SelfCorrelationData> batch = new ArrayList<>(batchSize);
+        while (running || !pendingQueue.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    SelfCorrelationData first = pendingQueue.poll(flushMs, TimeUnit.MILLISECONDS);
+                    if (U.isNotNull(first)) {
+                        batch.add(first);
+                        pendingQueue.drainTo(batch, batchSize - 1);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    persistAndPublish(batch);
+                    batch.clear();
+                }
+                flushConfirmed();
+
+                long now = System.currentTimeMillis();
+                if (running && now >= nextRecover) {
+                    recover(now);
+                    nextRecover = now + recoverMs;
+                }
+            } catch (InterruptedException e) {
+                // 停止时继续把内存中剩下的消息处理完
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } catch (Exception e) {
+                // 写记录失败时这一批留到下次再处理, 等一下避免数据库不可用时空转
+                if (log.isErrorEnabled()) {
+                    log.error("outbox 处理消息({} 条)时异常", batch.size(), e);
+                }
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ignore) {
+                    if (!running) {
+                        break;
+                    }
+                }
+            }
+        }
+        flushConfirmed();
+    }
+
+    private void persistAndPublish(List<SelfCorrelationData> batch) {
+        Date now = new Date();
+        List<MqSendEntity> list = new ArrayList<>(batch.size());
+        for (SelfCorrelationData correlationData : batch) {
+            MqInfo mqInfo = correlationData.getMqInfo();
+            MqSendEntity model = new MqSendEntity();
+            // 用消息 id 做记录的 id, 发布确认时可以直接更新
+            model.setId(U.toLong(correlationData.getId()));
+            model.setExchange(mqInfo.getExchangeName());
+            model.setRoutingKey(mqInfo.getRoutingKey());
+            model.setMsgId(correlationData.getId());
+            model.setAppCode(MqConst.APP_CODE);
+            model.setBusinessType(mqInfo.name().toLowerCase());
+            model.setStatus(0);
+            model.setFailType(0);
+            model.setRetryCount(0);
+            model.setMsgJson(correlationData.getJson());
+            model.setRemark(String.format("消息(%s)开始发送", mqInfo.providerDesc()));
+            model.setCreateTime(now);
+            model.setUpdateTime(now);
+            list.add(model);
+        }
+        mqSendService.addBatch(list);
+
+        for (int i = 0; i < batch.size(); i++) {
+            publish(batch.get(i), list.get(i));
+        }
+    }
+
+    private void publish(SelfCorrelationData correlationData, MqSendEntity model) {
+        MqInfo mqInfo = correlationData.getMqInfo();
+        String desc = mqInfo.providerDesc();
+        correlationData.getFuture().addCallback(
+                confirm -> onConfirm(model, desc, confirm != null && confirm.isAck(),
+                        confirm == null ? null : confirm.getReason(), correlationData.getReturned()),
+                e -> onConfirm(model, desc, false, e.getMessage(), null)
+        );
+        try {
+            rabbitTemplate.convertAndSend(mqInfo.getExchangeName(), mqInfo.getRoutingKey(),
+                    mqEnvelope.encode(correlationData), correlationData);
+        } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error("连接 mq 失败({})", desc, e);
+            }
+            // 保持初始状态, 由恢复扫描重新发布
+            model.setRemark(String.format("连接 mq 失败(%s)", desc));
+            model.setUpdateTime(new Date());
+            confirmedQueue.offer(model);
+        }
+    }
+
+    private void onConfirm(MqSendEntity model, String desc, boolean ack, String cause, ReturnedMessage returned) {
+        if (U.isNotNull(returned)) {
+            model.setStatus(1);
+            model.setFailType(3);
+            model.setRemark(returned.getReplyText());
+        } else if (ack) {
+            model.setStatus(2);
+            model.setRemark(String.format("消息(%s)发送成功", desc));
+        } else if (model.getRetryCount() < providerRetryCount) {
+            // 保持初始状态, 由恢复扫描重新发布
+            model.setRemark(String.format("%s到 exchange 失败(%s)", desc, cause));
+        } else {
+            model.setStatus(1);
+            model.setFailType(2);
+            model.setRemark(String.format("%s发送失败且重试(%s)达到上限", desc, providerRetryCount));
+        }
+        model.setUpdateTime(new Date());
+        confirmedQueue.offer(model);
+    }
+
+    private void flushConfirmed() {
+        List<MqSendEntity> list = new ArrayList<>();
+        for (MqSendEntity model = confirmedQueue.poll(); U.isNotNull(model); model = confirmedQueue.poll()) {
+            list.add(model);
+            if (list.size() >= batchSize) {
+                replace(list);
+                list = new ArrayList<>();
+            }
+        }
+        replace(list);
+    }
+
+    private void replace(List<MqSendEntity> list) {
+        if (A.isNotEmpty(list)) {
+            try {
+                mqSendService.replaceBatch(list);
+            } catch (Exception e) {
+                // 状态没更新上的记录依然是初始状态, 会被恢复扫描重新发布, 消费端按消息 id 幂等
+                if (log.isErrorEnabled()) {
+                    log.error("outbox 更新发送记录({} 条)的状态时异常", list.size(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新发布一直没有收到发布确认的记录. 先把重试次数和更新时间写进数据库再发布:
+     * 确认一直不回来的记录, 下次扫描时重试次数会累加直到上限后标记为失败, 而且在 recoverMs 之内不会再被扫到,
+     * 不会每次扫描都是同一批记录而让后面的记录一直得不到处理
+     */
+    private void recover(long now) {
+        List<MqSendEntity> list;
+        try {
+            list = mqSendService.queryUnconfirmed(MqConst.APP_CODE, new Date(now - recoverMs), batchSize);
+        } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error("outbox 查询未确认的发送记录时异常", e);
+            }
+            return;
+        }
+        if (A.isEmpty(list)) {
+            return;
+        }
+
+        Date updateTime = new Date();
+        List<SelfCorrelationData> republishList = new ArrayList<>();
+        List<MqSendEntity> republishModels = new ArrayList<>();
+        for (MqSendEntity model : list) {
+            model.setUpdateTime(updateTime);
+            MqInfo mqInfo;
+            try {
+                mqInfo = MqInfo.valueOf(model.getBusinessType().toUpperCase());
+            } catch (Exception e) {
+                model.setStatus(1);
+                model.setFailType(2);
+                model.setRemark(String.format("未知的业务场景(%s), 无法重新发布", model.getBusinessType()));
+                continue;
+            }
+            String desc = mqInfo.providerDesc();
+            int retryCount = U.toInt(model.getRetryCount());
+            if (retryCount >= providerRetryCount) {
+                model.setStatus(1);
+                model.setFailType(2);
+                model.setRemark(String.format("%s发送失败且重试(%s)达到上限", desc, providerRetryCount));
+            } else {
+                model.setRetryCount(retryCount + 1);
+                model.setRemark(String.format("消息(%s)重新发布", desc));
+                republishList.add(new SelfCorrelationData(model.getMsgId(), U.EMPTY, mqInfo, model.getMsgJson()));
+                republishModels.add(model);
+            }
+        }
+        try {
+            mqSendService.replaceBatch(list);
+        } catch (Exception e) {
+            // 没写进去就不发布, 下次扫描时再处理
+            if (log.isErrorEnabled()) {
+                log.error("outbox 更新未确认记录({} 条)的重试次数时异常", list.size(), e);
+            }
+            return;
+        }
+
+        if (log.isInfoEnabled()) {
+            log.info("outbox 未确认的消息 {} 条, 重新发布 {} 条", list.size(), republishList.size());
+        }
+        for (int i = 0; i < republishList.size(); i++) {
+            publish(republishList.get(i), republishModels.get(i));
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.message.handle;
 
 import com.github.common.date.DateUtil;
-import com.github.common.json.JsonUtil;
+import com.github.common.util.A;
 import com.github.common.util.LogUtil;
 import com.github.common.util.U;
 import com.github.global.service.RedissonService;
@@ -19,6 +19,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -50,6 +55,11 @@ import java.util.function.Consumer;
  *             xxxService.xxx(req);
  *         }
  *     }
+ * 5. 批量消费 mq 消息(在 MqInfo 中设置 prefetch、batchSize、batchWaitMs)
+ *     &#064;RabbitListener(queues = MqConst.xxx, containerFactory = MqConst.BATCH_LISTENER_FACTORY)
+ *     public void onReceive(List&lt;Message&gt; messages, Channel channel) {
+ *         handler.doConsumeBatch(messages, channel, this::business);
+ *     }
  * </pre>
  */
 @RequiredArgsConstructor
@@ -63,6 +73,7 @@ public class MqReceiverHandler {
 
     private final RedissonService redisService;
     private final MqReceiveService mqReceiveService;
+    private final MqDedupFilter dedupFilter;
 
     /**
      * 消息处理, 需要设置 spring.rabbitmq.listener.simple.acknowledge-mode = manual 才可以手动处理 ack
@@ -73,7 +84,7 @@ public class MqReceiverHandler {
      *   已达到上限则 ack 并写记录(状态为失败)
      */
     public void doConsume(Message message, Channel channel, Consumer<String> consumer) {
-        MqData data = JsonUtil.toObjectNil(new String(message.getBody()), MqData.class);
+        MqData data = MqEnvelope.decode(message);
         // 发布如果是用的 MqSenderHandler 这里是一定会有值的
         if (U.isNull(data)) {
             return;
@@ -97,72 +108,261 @@ public class MqReceiverHandler {
 
     private void doDataConsume(MqData data, Message message, Channel channel, Consumer<String> consumer) {
         String msgId = message.getMessageProperties().getMessageId();
-        if (redisService.tryLock(msgId)) {
+        // 被 broker 重新投递的消息一定走分布式检查, 其他的先在本地过滤, 确认没有收到过的不加锁也不查消费记录
+        boolean checked = dedupFilter.isEnable() && !Boolean.TRUE.equals(message.getMessageProperties().isRedelivered());
+        if (checked && dedupFilter.checkNew(msgId)) {
+            consumeData(data, msgId, true, false, message, channel, consumer);
+        } else if (redisService.tryLock(msgId)) {
             try {
-                String json = data.getData();
-                if (U.isEmpty(json)) {
-                    return;
-                }
+                consumeData(data, msgId, false, checked, message, channel, consumer);
+            } finally {
+                redisService.unlock(msgId);
+            }
+        } else {
+            log.info("消息 id({})正在被处理", msgId);
+        }
+    }
 
-                MqInfo mqInfo = data.getMqInfo();
-                String desc = mqInfo.consumerDesc();
-                if (log.isDebugEnabled()) {
-                    log.debug("{}接收到消息({})", desc, json);
-                }
+    /**
+     * @param fresh true 表示本地过滤确认是新消息, 不需要查消费记录
+     * @param possibleHit true 表示本地过滤认为可能收到过, 查出来没有记录就是一次误判
+     */
+    private void consumeData(MqData data, String msgId, boolean fresh, boolean possibleHit,
+                             Message message, Channel channel, Consumer<String> consumer) {
+        String json = data.getData();
+        if (U.isEmpty(json)) {
+            return;
+        }
 
-                MqReceiveEntity model = mqReceiveService.queryByMsgAndAppCode(msgId, MqConst.APP_CODE);
-                if (U.isNull(model)) {
-                    model = new MqReceiveEntity();
-                    model.setQueue(mqInfo.getQueueName());
-                    model.setMsgId(data.getMsgId());
-                    model.setAppCode(MqConst.APP_CODE);
-                    model.setBusinessType(mqInfo.name().toLowerCase());
-                    model.setRetryCount(0);
-                    model.setMsgJson(json);
-
-                    // model.setStatus(CommonConst.ZERO);
-                    // model.setRemark(String.format("开始消费(%s)", desc));
-                    // mqReceiveService.add(model);
-                } else {
-                    model.setRetryCount(model.getRetryCount() + 1);
-                }
+        MqInfo mqInfo = data.getMqInfo();
+        String desc = mqInfo.consumerDesc();
+        if (log.isDebugEnabled()) {
+            log.debug("{}接收到消息({})", desc, json);
+        }
 
-                // 成功了就只写一次消费成功, 失败了也只写一次, 上面不写初始, 少操作一次 db
-                long deliveryTag = message.getMessageProperties().getDeliveryTag();
-                try {
-                    consumer.accept(json);
-                    if (log.isDebugEnabled()) {
-                        log.debug("{}消费成功", desc);
-                    }
-                    ack(channel, deliveryTag, String.format("%s消费成功, 发送 ack 时异常", desc));
+        MqReceiveEntity model = fresh ? null : mqReceiveService.queryByMsgAndAppCode(msgId, MqConst.APP_CODE);
+        if (U.isNull(model)) {
+            if (possibleHit) {
+                dedupFilter.falsePositive();
+            }
+            model = new MqReceiveEntity();
+            model.setQueue(mqInfo.getQueueName());
+            model.setMsgId(data.getMsgId());
+            model.setAppCode(MqConst.APP_CODE);
+            model.setBusinessType(mqInfo.name().toLowerCase());
+            model.setRetryCount(0);
+            model.setMsgJson(json);
+
+            // model.setStatus(CommonConst.ZERO);
+            // model.setRemark(String.format("开始消费(%s)", desc));
+            // mqReceiveService.add(model);
+        } else {
+            model.setRetryCount(model.getRetryCount() + 1);
+        }
 
-                    model.setStatus(2);
-                    model.setRemark(String.format("消费(%s)成功", desc));
-                    mqReceiveService.addOrUpdate(model);
+        // 成功了就只写一次消费成功, 失败了也只写一次, 上面不写初始, 少操作一次 db
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        try {
+            consumer.accept(json);
+            if (log.isDebugEnabled()) {
+                log.debug("{}消费成功", desc);
+            }
+            ack(channel, deliveryTag, String.format("%s消费成功, 发送 ack 时异常", desc));
+
+            model.setStatus(2);
+            model.setRemark(String.format("消费(%s)成功", desc));
+            mqReceiveService.addOrUpdate(model);
+        } catch (Exception e) {
+            String failMsg = e.getMessage();
+            if (log.isErrorEnabled()) {
+                log.error(String.format("%s消费失败", desc), e);
+            }
+            model.setStatus(1);
+            // 如果重试次数达到设定的值则发送 ack, 否则发送 nack
+            if (model.getRetryCount() > consumerRetryCount) {
+                ack(channel, deliveryTag, String.format("%s消费失败且重试(%s)达到上限, 发送 ack 时异常", desc, consumerRetryCount));
+                model.setRemark(String.format("消费(%s)失败(%s)且重试(%s)达到上限", desc, failMsg, consumerRetryCount));
+            } else {
+                nack(channel, deliveryTag, String.format("%s消费失败, 发送 nack 时异常", desc));
+                model.setRemark(String.format("消费(%s)失败(%s)", desc, failMsg));
+            }
+            mqReceiveService.addOrUpdate(model);
+        }
+    }
+
+    /**
+     * 批量消息处理, 监听需要使用 MqConst.BATCH_LISTENER_FACTORY 这个容器工厂
+     *
+     * 每条消息跟 doConsume 一样处理(成功 ack, 失败未达上限 nack, 失败已达上限 ack), 区别是:
+     *   消费记录一次查出来, 处理完之后用 batchReplace 一次写入
+     *   连续需要 ack 的消息只对最后一条发送 ack(multiple = true), 只有需要 nack 的消息才单独发送
+     *   消息 id 的锁被其他消费者占着的, 是同一条消息的重复投递, 跟这一批一起 ack 丢弃
+     */
+    public void doConsumeBatch(List<Message> messages, Channel channel, Consumer<String> consumer) {
+        if (A.isEmpty(messages)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<BatchItem> items = new ArrayList<>(messages.size());
+        List<String> lockList = new ArrayList<>();
+        try {
+            for (Message message : messages) {
+                BatchItem item = new BatchItem(message);
+                items.add(item);
+                // 解析不了的消息无法处理, 跟其他消息一起 ack
+                if (U.isNotNull(item.data) && U.isNotEmpty(item.data.getData())) {
+                    boolean checked = dedupFilter.isEnable() && !Boolean.TRUE.equals(item.message.getMessageProperties().isRedelivered());
+                    if (checked && dedupFilter.checkNew(item.msgId)) {
+                        item.fresh = true;
+                    } else if (redisService.tryLock(item.msgId)) {
+                        item.possibleHit = checked;
+                        lockList.add(item.msgId);
+                        item.locked = true;
+                    } else {
+                        // 同一个消息 id 的另一次投递正在被其他消费者处理, 那次投递由那边 ack 或 nack(那边挂了 broker 会重新投递那一条),
+                        // 这一条是重复的, 在 settle 中跟这一批一起 ack(multiple = true) 丢弃, 不再 nack 回队列避免反复投递
+                        if (log.isWarnEnabled()) {
+                            log.warn("消息 id({})正在被其他消费者处理, 丢弃这次重复的投递(deliveryTag: {})", item.msgId, item.deliveryTag);
+                        }
+                    }
+                }
+            }
+            consumeItems(items, lockList, consumer);
+            settle(channel, items);
+            saveRecord(items);
+        } finally {
+            for (String msgId : lockList) {
+                try {
+                    redisService.unlock(msgId);
                 } catch (Exception e) {
-                    String failMsg = e.getMessage();
                     if (log.isErrorEnabled()) {
-                        log.error(String.format("%s消费失败", desc), e);
-                    }
-                    model.setStatus(1);
-                    // 如果重试次数达到设定的值则发送 ack, 否则发送 nack
-                    if (model.getRetryCount() > consumerRetryCount) {
-                        ack(channel, deliveryTag, String.format("%s消费失败且重试(%s)达到上限, 发送 ack 时异常", desc, consumerRetryCount));
-                        model.setRemark(String.format("消费(%s)失败(%s)且重试(%s)达到上限", desc, failMsg, consumerRetryCount));
-                    } else {
-                        nack(channel, deliveryTag, String.format("%s消费失败, 发送 nack 时异常", desc));
-                        model.setRemark(String.format("消费(%s)失败(%s)", desc, failMsg));
+                        log.error("消息 id({})解锁时异常", msgId, e);
                     }
-                    mqReceiveService.addOrUpdate(model);
+                }
+            }
+            if (log.isInfoEnabled()) {
+                log.info("批量消费 mq({} 条) 结束, 耗时: ({})", messages.size(), DateUtil.toHuman(System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    private void consumeItems(List<BatchItem> items, List<String> msgIdList, Consumer<String> consumer) {
+        Map<String, MqReceiveEntity> recordMap = new HashMap<>();
+        // 本地过滤确认是新消息的不需要查
+        if (A.isNotEmpty(msgIdList)) {
+            for (MqReceiveEntity record : mqReceiveService.queryByMsgIdsAndAppCode(msgIdList, MqConst.APP_CODE)) {
+                recordMap.put(record.getMsgId(), record);
+            }
+        }
+        Date now = new Date();
+        for (BatchItem item : items) {
+            if (!item.locked && !item.fresh) {
+                continue;
+            }
+
+            MqInfo mqInfo = item.data.getMqInfo();
+            String desc = mqInfo.consumerDesc();
+            String json = item.data.getData();
+            MqReceiveEntity record = recordMap.get(item.msgId);
+
+            MqReceiveEntity model = new MqReceiveEntity();
+            model.setQueue(mqInfo.getQueueName());
+            model.setMsgId(item.msgId);
+            model.setAppCode(MqConst.APP_CODE);
+            model.setBusinessType(mqInfo.name().toLowerCase());
+            model.setMsgJson(json);
+            model.setUpdateTime(now);
+            if (U.isNull(record)) {
+                if (item.possibleHit) {
+                    dedupFilter.falsePositive();
+                }
+                model.setRetryCount(0);
+                model.setCreateTime(now);
+            } else {
+                model.setId(record.getId());
+                model.setRetryCount(U.toInt(record.getRetryCount()) + 1);
+                model.setCreateTime(U.isNull(record.getCreateTime()) ? now : record.getCreateTime());
+            }
+            item.model = model;
+
+            try {
+                LogUtil.bindBasicInfo(item.message.getMessageProperties().getCorrelationId());
+                if (log.isDebugEnabled()) {
+                    log.debug("{}接收到消息({})", desc, json);
+                }
+                consumer.accept(json);
+                if (log.isDebugEnabled()) {
+                    log.debug("{}消费成功", desc);
+                }
+                model.setStatus(2);
+                model.setRemark(String.format("消费(%s)成功", desc));
+            } catch (Exception e) {
+                String failMsg = e.getMessage();
+                if (log.isErrorEnabled()) {
+                    log.error(String.format("%s消费失败", desc), e);
+                }
+                model.setStatus(1);
+                // 如果重试次数达到设定的值则发送 ack, 否则发送 nack
+                if (model.getRetryCount() > consumerRetryCount) {
+                    model.setRemark(String.format("消费(%s)失败(%s)且重试(%s)达到上限", desc, failMsg, consumerRetryCount));
+                } else {
+                    item.requeue = true;
+                    model.setRemark(String.format("消费(%s)失败(%s)", desc, failMsg));
                 }
             } finally {
-                redisService.unlock(msgId);
+                LogUtil.unbind();
             }
-        } else {
-            log.info("消息 id({})正在被处理", msgId);
         }
     }
 
+    /** 消息按 deliveryTag 的顺序, 连续不需要 nack 的只在最后一条发送 ack(multiple = true) */
+    private void settle(Channel channel, List<BatchItem> items) {
+        long ackTag = -1;
+        for (BatchItem item : items) {
+            if (item.requeue) {
+                if (ackTag > 0) {
+                    ackMultiple(channel, ackTag);
+                    ackTag = -1;
+                }
+                nack(channel, item.deliveryTag, String.format("%s消费失败, 发送 nack 时异常", item.data.getMqInfo().consumerDesc()));
+            } else {
+                ackTag = item.deliveryTag;
+            }
+        }
+        if (ackTag > 0) {
+            ackMultiple(channel, ackTag);
+        }
+    }
+
+    /** 新记录(没有 id)跟已有记录分开写, batchReplace 的列以第一条记录为准 */
+    private void saveRecord(List<BatchItem> items) {
+        List<MqReceiveEntity> addList = new ArrayList<>();
+        List<MqReceiveEntity> replaceList = new ArrayList<>();
+        for (BatchItem item : items) {
+            if (U.isNotNull(item.model)) {
+                (U.isNull(item.model.getId()) ? addList : replaceList).add(item.model);
+            }
+        }
+        try {
+            mqReceiveService.replaceBatch(addList);
+            mqReceiveService.replaceBatch(replaceList);
+        } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error("批量写入消费记录({} 条)时异常", addList.size() + replaceList.size(), e);
+            }
+        }
+    }
+
+    private void ackMultiple(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, true);
+        } catch (Exception e) {
+            if (log.isErrorEnabled()) {
+                log.error("批量发送 ack(deliveryTag: {})时异常", deliveryTag, e);
+            }
+        }
+    }
     private void ack(Channel channel, long deliveryTag, String errorDesc) {
         try {
             channel.basicAck(deliveryTag, false);
@@ -181,4 +381,23 @@ public class MqReceiverHandler {
             }
         }
     }
+
+    private static class BatchItem {
+        private final Message message;
+        private final MqData data;
+        private final String msgId;
+        private final long deliveryTag;
+        private boolean locked;
+        private boolean fresh;
+        private boolean possibleHit;
+        private boolean requeue;
+        private MqReceiveEntity model;
+
+        private BatchItem(Message message) {
+            this.message = message;
+            this.data = MqEnvelope.decode(message);
+            this.msgId = message.getMessageProperties().getMessageId();
+            this.deliveryTag = message.getMessageProperties().getDeliveryTag();
+        }
+    }
 }
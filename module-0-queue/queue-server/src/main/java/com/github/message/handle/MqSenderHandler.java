@@ -1,13 +1,11 @@
 package com.github.message.handle;
 
 import com.baomidou.mybatisplus.core.toolkit.IdWorker;
-import com.github.common.date.DateUtil;
 import com.github.common.json.JsonUtil;
 import com.github.common.util.ApplicationContexts;
 import com.github.common.util.LogUtil;
 import com.github.common.util.U;
 import com.github.message.constant.MqConst;
-import com.github.message.model.MqData;
 import com.github.message.model.MqInfo;
 import com.github.message.model.MqSendEntity;
 import com.github.message.model.SelfCorrelationData;
@@ -15,15 +13,12 @@ import com.github.message.service.MqSendService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Configuration;
 
-import java.nio.charset.StandardCharsets;
-
 /**
  * <pre>
  * mq 发布订阅(无需再定义 Exchange、Queue、Binding 进 spring 上下文)
@@ -67,18 +62,24 @@ public class MqSenderHandler implements RabbitTemplate.ConfirmCallback, RabbitTe
 
     private final RabbitTemplate rabbitTemplate;
     private final MqSendService mqSendService;
+    private final MqOutbox mqOutbox;
+    private final MqEnvelope mqEnvelope;
 
     /**
      * 消息发送, 发送时只能确定「可以到达 exchange」和「未到达 queue」, 因此先将记录设置为成功,
      * 在「连接失败」、「到达 exchange 后失败重试达到上限」、「未到达 queue」时再将记录设置为失败
+     *
+     * 开启了 outbox 模式(mq.outbox.enable = true)时, 消息只放进内存队列就返回, 由 MqOutbox 批量写记录和发布, 队列满了才同步发送
      */
     public void doProvide(MqInfo mqInfo, String json) {
-        provide(new SelfCorrelationData(String.valueOf(IdWorker.getId()), LogUtil.getTraceId(), mqInfo, json));
+        SelfCorrelationData correlationData = new SelfCorrelationData(String.valueOf(IdWorker.getId()), LogUtil.getTraceId(), mqInfo, json);
+        if (!mqOutbox.append(correlationData)) {
+            provide(correlationData);
+        }
     }
 
     private void provide(SelfCorrelationData correlationData) {
         String msgId = correlationData.getId();
-        String traceId = correlationData.getTraceId();
         MqInfo mqInfo = correlationData.getMqInfo();
         String json = correlationData.getJson();
 
@@ -86,8 +87,6 @@ public class MqSenderHandler implements RabbitTemplate.ConfirmCallback, RabbitTe
         String routingKey = mqInfo.getRoutingKey();
         String desc = mqInfo.providerDesc();
 
-        MqData mqData = new MqData(msgId, traceId, DateUtil.now(), mqInfo, json);
-
         MqSendEntity model = mqSendService.queryByMsgAndAppCode(msgId, MqConst.APP_CODE);
         if (U.isNull(model)) {
             model = new MqSendEntity();
@@ -112,10 +111,7 @@ public class MqSenderHandler implements RabbitTemplate.ConfirmCallback, RabbitTe
             mqSendService.updateById(model);
         }
 
-        String data = JsonUtil.toJson(mqData);
-        // 默认是持久化的 setDeliveryMode(MessageDeliveryMode.PERSISTENT)
-        Message msg = MessageBuilder.withBody(data.getBytes(StandardCharsets.UTF_8))
-                .setMessageId(msgId).setCorrelationId(traceId).build();
+        Message msg = mqEnvelope.encode(correlationData);
         try {
             rabbitTemplate.convertAndSend(exchangeName, routingKey, msg, correlationData);
         } catch (Exception e) {
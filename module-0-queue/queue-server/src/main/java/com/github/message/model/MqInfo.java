@@ -39,6 +39,11 @@ import static com.github.message.constant.MqConst.*;
  *             xxxService.xxx(req);
  *         }
  *     }
+ * 5. 批量消费 mq 消息(在枚举中设置 prefetch、batchSize、batchWaitMs, 一批消息只发一次 ack 并只写一次 db)
+ *     &#064;RabbitListener(queues = MqConst.xxx, containerFactory = MqConst.BATCH_LISTENER_FACTORY)
+ *     public void onReceive(List&lt;Message&gt; messages, Channel channel) {
+ *         handler.doConsumeBatch(messages, channel, this::business);
+ *     }
  * </pre>
  */
 @Getter
@@ -66,6 +71,26 @@ public enum MqInfo {
     private final String queueName;
     private final Map<String, Object> args;
 
+    /** 消费者预取(未 ack)的消息数, 0 表示使用 spring.rabbitmq.listener.simple.prefetch 的值 */
+    private final int prefetch;
+    /** 批量消费(MqReceiverHandler#doConsumeBatch)时一批最多的消息数, 0 表示使用 spring.rabbitmq.listener.simple.batch-size 的值 */
+    private final int batchSize;
+    /** 批量消费时凑一批最多等待的毫秒数, 到了之后不满一批也会处理, 0 表示使用 spring.rabbitmq.listener.simple.receive-timeout 的值 */
+    private final long batchWaitMs;
+
+    MqInfo(String desc, String exchangeName, String routingKey, String queueName, Map<String, Object> args) {
+        this(desc, exchangeName, routingKey, queueName, args, 0, 0, 0);
+    }
+
+    public static MqInfo fromQueue(String queueName) {
+        for (MqInfo value : values()) {
+            if (value.queueName.equals(queueName)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
     public String providerDesc() {
         return String.format("%s(%s -- %s --> %s)", desc, exchangeName, routingKey, queueName);
     }
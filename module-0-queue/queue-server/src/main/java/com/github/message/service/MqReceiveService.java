@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -72,4 +73,16 @@ public class MqReceiveService {
                 .eq(MqReceiveEntity::getMsgId, msgId).eq(MqReceiveEntity::getAppCode, appCode).last("LIMIT 1");
         return mqReceiveDao.selectOne(mqSendQuery);
     }
+
+    /** 一次查出多个消息 id 的消费记录, 批量消费时使用 */
+    public List<MqReceiveEntity> queryByMsgIdsAndAppCode(Collection<String> msgIds, String appCode) {
+        if (msgIds == null || msgIds.size() == 0) {
+            return Collections.emptyList();
+        }
+        LambdaQueryWrapper<MqReceiveEntity> mqReceiveQuery = Wrappers.lambdaQuery(MqReceiveEntity.class);
+        mqReceiveQuery.select(MqReceiveEntity::getId, MqReceiveEntity::getMsgId,
+                        MqReceiveEntity::getRetryCount, MqReceiveEntity::getCreateTime)
+                .in(MqReceiveEntity::getMsgId, msgIds).eq(MqReceiveEntity::getAppCode, appCode);
+        return mqReceiveDao.selectList(mqReceiveQuery);
+    }
 }
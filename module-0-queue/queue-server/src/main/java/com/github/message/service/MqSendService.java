@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 @Slf4j
@@ -72,4 +73,13 @@ public class MqSendService {
                 .eq(MqSendEntity::getMsgId, msgId).eq(MqSendEntity::getAppCode, appCode).last("LIMIT 1");
         return mqSendDao.selectOne(mqSendQuery);
     }
+
+    /** 查询在指定时间之前写入且依然是初始状态(还没有收到发布确认)的发送记录 */
+    public List<MqSendEntity> queryUnconfirmed(String appCode, Date before, int limit) {
+        LambdaQueryWrapper<MqSendEntity> mqSendQuery = Wrappers.lambdaQuery(MqSendEntity.class);
+        mqSendQuery.eq(MqSendEntity::getAppCode, appCode).eq(MqSendEntity::getStatus, 0)
+                .eq(MqSendEntity::getFailType, 0).lt(MqSendEntity::getUpdateTime, before)
+                .orderByAsc(MqSendEntity::getId).last("LIMIT " + limit);
+        return mqSendDao.selectList(mqSendQuery);
+    }
 }
@@ -0,0 +1,54 @@
+package com.github.message.handle;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+public class MqDedupFilterTest {
+
+    private MqDedupFilter filter(int expectedInsertions, int recentSize) {
+        MqDedupFilter filter = new MqDedupFilter();
+        ReflectionTestUtils.setField(filter, "enable", true);
+        ReflectionTestUtils.setField(filter, "windowMs", 600000L);
+        ReflectionTestUtils.setField(filter, "bucketCount", 6);
+        ReflectionTestUtils.setField(filter, "expectedInsertions", expectedInsertions);
+        ReflectionTestUtils.setField(filter, "fpp", 0.01D);
+        ReflectionTestUtils.setField(filter, "recentSize", recentSize);
+        filter.init();
+        return filter;
+    }
+
+    @Test
+    public void checkNew() {
+        int count = 50000;
+        MqDedupFilter filter = filter(count, 1000);
+
+        int bypass = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.checkNew("msg-" + i)) {
+                bypass++;
+            } else {
+                // 没有重复的消息, 不是新的就是布隆过滤器的误判
+                filter.falsePositive();
+            }
+        }
+        // 收到过的消息一定不会被当成新消息(精确 LRU 之外的由布隆过滤器判断)
+        for (int i = 0; i < count; i++) {
+            Assertions.assertFalse(filter.checkNew("msg-" + i));
+        }
+
+        Map<String, Object> stats = filter.stats();
+        System.out.println(stats);
+        Assertions.assertEquals((long) bypass, stats.get("bypass"));
+        Assertions.assertTrue((double) stats.get("falsePositiveRate") < 0.02);
+    }
+
+    @Test
+    public void disable() {
+        MqDedupFilter filter = new MqDedupFilter();
+        Assertions.assertFalse(filter.checkNew("msg"));
+        Assertions.assertEquals(0L, filter.stats().get("check"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.message.handle;
+
+import com.github.common.json.JsonUtil;
+import com.github.common.util.A;
+import com.github.message.model.MqData;
+import com.github.message.model.MqInfo;
+import com.github.message.model.SelfCorrelationData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class MqEnvelopeTest {
+
+    private static final int LOOP = 5000;
+
+    private MqEnvelope envelope(boolean raw, int compressThreshold) {
+        MqEnvelope envelope = new MqEnvelope();
+        ReflectionTestUtils.setField(envelope, "raw", raw);
+        ReflectionTestUtils.setField(envelope, "compressThreshold", compressThreshold);
+        return envelope;
+    }
+
+    private String payload(int size) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(A.maps("id", 1000000L + i, "name", "商品\"" + i + "\"", "remark", "line1\nline2", "price", "12.5" + i));
+        }
+        return JsonUtil.toJson(list);
+    }
+
+    @Test
+    public void readBoth() {
+        String json = payload(100);
+        SelfCorrelationData correlationData = new SelfCorrelationData("123456", "trace-abc", MqInfo.EXAMPLE, json);
+        for (MqEnvelope envelope : new MqEnvelope[] { envelope(false, 0), envelope(true, 0), envelope(true, 256) }) {
+            MqData data = MqEnvelope.decode(envelope.encode(correlationData));
+            Assertions.assertNotNull(data);
+            Assertions.assertEquals("123456", data.getMsgId());
+            Assertions.assertEquals("trace-abc", data.getTraceId());
+            Assertions.assertEquals(MqInfo.EXAMPLE, data.getMqInfo());
+            Assertions.assertNotNull(data.getSendTime());
+            Assertions.assertEquals(json, data.getData());
+        }
+    }
+
+    /** 每种格式的消息体字节数和每条消息的编码 + 解码耗时 */
+    @Test
+    public void bench() {
+        for (int size : new int[] { 1, 10, 100 }) {
+            String json = payload(size);
+            SelfCorrelationData correlationData = new SelfCorrelationData("123456789012345678", "trace-abc", MqInfo.EXAMPLE, json);
+            String[] names = new String[] { "json", "raw", "raw+gzip" };
+            MqEnvelope[] envelopes = new MqEnvelope[] { envelope(false, 0), envelope(true, 0), envelope(true, 512) };
+            for (int i = 0; i < envelopes.length; i++) {
+                MqEnvelope envelope = envelopes[i];
+                int bytes = envelope.encode(correlationData).getBody().length;
+                for (int j = 0; j < LOOP / 10; j++) {
+                    MqEnvelope.decode(envelope.encode(correlationData));
+                }
+                long start = System.nanoTime();
+                for (int j = 0; j < LOOP; j++) {
+                    Message message = envelope.encode(correlationData);
+                    Assertions.assertNotNull(MqEnvelope.decode(message));
+                }
+                long ns = (System.nanoTime() - start) / LOOP;
+                System.out.printf("payload(%6s bytes) %-8s : body %6s bytes, encode + decode %7s ns/msg%n",
+                        json.length(), names[i], bytes, ns);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.message.handle;
+
+import com.github.message.model.MqInfo;
+import com.github.message.model.MqSendEntity;
+import com.github.message.model.SelfCorrelationData;
+import com.github.message.service.MqSendService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+public class MqOutboxTest {
+
+    private static final int RETRY = 3;
+    private static final long RECOVER_MS = 100;
+
+    /** broker 对发布的回应 */
+    private enum Confirm { ACK, NACK, NONE }
+
+    /** 模拟 db 中的 t_mq_send */
+    private final Map<Long, MqSendEntity> table = new ConcurrentHashMap<>();
+    private final AtomicInteger insertCount = new AtomicInteger();
+    /** 消息 id -> 发布的次数 */
+    private final Map<String, AtomicInteger> publishCount = new ConcurrentHashMap<>();
+    private volatile Confirm confirm;
+
+    private MqOutbox outbox;
+
+    @BeforeEach
+    public void before() {
+        table.clear();
+        insertCount.set(0);
+        publishCount.clear();
+        confirm = Confirm.ACK;
+
+        MqSendService mqSendService = Mockito.mock(MqSendService.class);
+        Mockito.when(mqSendService.addBatch(Mockito.anyList())).thenAnswer(invocation -> {
+            insertCount.incrementAndGet();
+            List<MqSendEntity> list = invocation.getArgument(0);
+            list.forEach(this::save);
+            return list.size();
+        });
+        Mockito.when(mqSendService.replaceBatch(Mockito.anyList())).thenAnswer(invocation -> {
+            List<MqSendEntity> list = invocation.getArgument(0);
+            list.forEach(this::save);
+            return list.size();
+        });
+        Mockito.when(mqSendService.queryUnconfirmed(Mockito.anyString(), Mockito.any(Date.class), Mockito.anyInt()))
+                .thenAnswer(invocation -> {
+                    Date before = invocation.getArgument(1);
+                    int limit = invocation.getArgument(2);
+                    return table.values().stream()
+                            .filter(m -> m.getStatus() == 0 && m.getFailType() == 0 && m.getUpdateTime().before(before))
+                            .sorted(Comparator.comparing(MqSendEntity::getId)).limit(limit)
+                            .map(this::copy).collect(Collectors.toList());
+                });
+
+        RabbitTemplate rabbitTemplate = Mockito.mock(RabbitTemplate.class);
+        Mockito.doAnswer(invocation -> {
+            CorrelationData correlationData = invocation.getArgument(3);
+            publishCount.computeIfAbsent(correlationData.getId(), k -> new AtomicInteger()).incrementAndGet();
+            if (confirm == Confirm.ACK) {
+                correlationData.getFuture().set(new CorrelationData.Confirm(true, null));
+            } else if (confirm == Confirm.NACK) {
+                correlationData.getFuture().set(new CorrelationData.Confirm(false, "nack"));
+            }
+            return null;
+        }).when(rabbitTemplate).convertAndSend(Mockito.anyString(), Mockito.anyString(), Mockito.any(Object.class),
+                Mockito.any(CorrelationData.class));
+
+        outbox = new MqOutbox(rabbitTemplate, mqSendService, new MqEnvelope());
+        ReflectionTestUtils.setField(outbox, "enable", true);
+        ReflectionTestUtils.setField(outbox, "capacity", 1000);
+        ReflectionTestUtils.setField(outbox, "batchSize", 50);
+        ReflectionTestUtils.setField(outbox, "flushMs", 5L);
+        ReflectionTestUtils.setField(outbox, "recoverMs", RECOVER_MS);
+        ReflectionTestUtils.setField(outbox, "providerRetryCount", RETRY);
+    }
+
+    @AfterEach
+    public void after() {
+        outbox.stop();
+    }
+
+    private void save(MqSendEntity model) {
+        table.put(model.getId(), copy(model));
+    }
+    private MqSendEntity copy(MqSendEntity model) {
+        MqSendEntity record = new MqSendEntity();
+        BeanUtils.copyProperties(model, record);
+        return record;
+    }
+
+    private void append(int count) {
+        for (int i = 1; i <= count; i++) {
+            String msgId = String.valueOf(i);
+            Assertions.assertTrue(outbox.append(new SelfCorrelationData(msgId, "", MqInfo.DEAD, "{\"id\":" + i + "}")));
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    private long countStatus(int status, int failType) {
+        return table.values().stream().filter(m -> m.getStatus() == status && m.getFailType() == failType).count();
+    }
+
+    @Test
+    public void relayAndConfirm() throws Exception {
+        outbox.start();
+        append(200);
+        await(() -> countStatus(2, 0) == 200);
+
+        // 一批写一次记录, 每条只发布一次
+        Assertions.assertTrue(insertCount.get() < 200, String.valueOf(insertCount.get()));
+        Assertions.assertTrue(publishCount.values().stream().allMatch(c -> c.get() == 1));
+        Assertions.assertEquals(0, outbox.pendingSize());
+    }
+
+    @Test
+    public void nackRetryToLimit() throws Exception {
+        confirm = Confirm.NACK;
+        outbox.start();
+        append(5);
+
+        // nack 之后保持初始状态, 由恢复扫描重新发布, 达到上限后标记为失败
+        await(() -> countStatus(1, 2) == 5);
+        for (MqSendEntity model : table.values()) {
+            Assertions.assertEquals(RETRY, model.getRetryCount());
+        }
+        Assertions.assertTrue(publishCount.values().stream().allMatch(c -> c.get() == RETRY + 1));
+    }
+
+    @Test
+    public void nackThenAck() throws Exception {
+        confirm = Confirm.NACK;
+        outbox.start();
+        append(5);
+        await(() -> publishCount.size() == 5 && table.size() == 5 && countStatus(0, 0) == 5);
+
+        confirm = Confirm.ACK;
+        await(() -> countStatus(2, 0) == 5);
+        for (MqSendEntity model : table.values()) {
+            Assertions.assertEquals(1, model.getRetryCount());
+        }
+    }
+
+    @Test
+    public void noConfirmRetryToLimit() throws Exception {
+        // 确认一直不回来, 每次重新发布前的重试次数都要写进 db, 而且一批不能一直占着扫描
+        confirm = Confirm.NONE;
+        ReflectionTestUtils.setField(outbox, "batchSize", 2);
+        outbox.start();
+        append(6);
+
+        await(() -> countStatus(1, 2) == 6);
+        for (MqSendEntity model : table.values()) {
+            Assertions.assertEquals(RETRY, model.getRetryCount());
+        }
+        Assertions.assertEquals(6, publishCount.size());
+        Assertions.assertTrue(publishCount.values().stream().allMatch(c -> c.get() == RETRY + 1));
+    }
+}
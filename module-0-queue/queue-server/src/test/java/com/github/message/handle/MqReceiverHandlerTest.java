@@ -0,0 +1,199 @@
+package com.github.message.handle;
+
+import com.github.global.service.RedissonService;
+import com.github.message.model.MqInfo;
+import com.github.message.model.MqReceiveEntity;
+import com.github.message.model.SelfCorrelationData;
+import com.github.message.service.MqReceiveService;
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.amqp.core.Message;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@SuppressWarnings("unchecked")
+public class MqReceiverHandlerTest {
+
+    private static final int COUNT = 500;
+    private static final int BATCH_SIZE = 50;
+
+    /** 模拟 broker: 待投递的消息, 已投递未确认的消息(deliveryTag -> 消息 id) */
+    private final Deque<String> brokerQueue = new ArrayDeque<>();
+    private final TreeMap<Long, String> unacked = new TreeMap<>();
+    private long nextTag;
+
+    /** 模拟 db 中的消费记录 */
+    private final Map<String, MqReceiveEntity> recordMap = new HashMap<>();
+    private final AtomicInteger dbCount = new AtomicInteger();
+    private final AtomicInteger ackCount = new AtomicInteger();
+    private final Set<String> consumed = new HashSet<>();
+
+    private final MqEnvelope envelope = new MqEnvelope();
+    private Channel channel;
+    private MqReceiverHandler handler;
+
+    @BeforeEach
+    public void before() throws Exception {
+        brokerQueue.clear();
+        unacked.clear();
+        nextTag = 1;
+        recordMap.clear();
+        dbCount.set(0);
+        ackCount.set(0);
+        consumed.clear();
+        for (int i = 0; i < COUNT; i++) {
+            brokerQueue.offer(String.valueOf(i));
+        }
+
+        channel = Mockito.mock(Channel.class);
+        Mockito.doAnswer(invocation -> {
+            ackCount.incrementAndGet();
+            long tag = invocation.getArgument(0);
+            if (invocation.<Boolean>getArgument(1)) {
+                unacked.headMap(tag, true).clear();
+            } else {
+                unacked.remove(tag);
+            }
+            return null;
+        }).when(channel).basicAck(Mockito.anyLong(), Mockito.anyBoolean());
+        Mockito.doAnswer(invocation -> {
+            ackCount.incrementAndGet();
+            String msgId = unacked.remove(invocation.<Long>getArgument(0));
+            if (invocation.<Boolean>getArgument(2)) {
+                brokerQueue.offer(msgId);
+            }
+            return null;
+        }).when(channel).basicNack(Mockito.anyLong(), Mockito.anyBoolean(), Mockito.anyBoolean());
+
+        RedissonService redisService = Mockito.mock(RedissonService.class);
+        Mockito.when(redisService.tryLock(Mockito.anyString())).thenReturn(true);
+
+        // 每次访问 db 算 1 毫秒
+        MqReceiveService mqReceiveService = Mockito.mock(MqReceiveService.class);
+        Mockito.when(mqReceiveService.queryByMsgAndAppCode(Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            db();
+            return copy(recordMap.get(invocation.<String>getArgument(0)));
+        });
+        Mockito.when(mqReceiveService.queryByMsgIdsAndAppCode(Mockito.anyCollection(), Mockito.anyString())).thenAnswer(invocation -> {
+            db();
+            List<MqReceiveEntity> returnList = new ArrayList<>();
+            for (String msgId : invocation.<Collection<String>>getArgument(0)) {
+                MqReceiveEntity record = copy(recordMap.get(msgId));
+                if (record != null) {
+                    returnList.add(record);
+                }
+            }
+            return returnList;
+        });
+        Mockito.when(mqReceiveService.addOrUpdate(Mockito.any())).thenAnswer(invocation -> {
+            db();
+            save(invocation.getArgument(0));
+            return 1;
+        });
+        Mockito.when(mqReceiveService.replaceBatch(Mockito.anyList())).thenAnswer(invocation -> {
+            List<MqReceiveEntity> list = invocation.getArgument(0);
+            if (list.isEmpty()) {
+                return 0;
+            }
+            db();
+            list.forEach(this::save);
+            return list.size();
+        });
+
+        handler = new MqReceiverHandler(redisService, mqReceiveService, new MqDedupFilter());
+        ReflectionTestUtils.setField(handler, "consumerRetryCount", 5);
+    }
+
+    private void db() throws InterruptedException {
+        dbCount.incrementAndGet();
+        TimeUnit.MILLISECONDS.sleep(1);
+    }
+    private void save(MqReceiveEntity model) {
+        if (model.getId() == null) {
+            model.setId((long) (recordMap.size() + 1));
+        }
+        recordMap.put(model.getMsgId(), copy(model));
+    }
+    private MqReceiveEntity copy(MqReceiveEntity model) {
+        if (model == null) {
+            return null;
+        }
+        MqReceiveEntity record = new MqReceiveEntity();
+        record.setId(model.getId());
+        record.setMsgId(model.getMsgId());
+        record.setRetryCount(model.getRetryCount());
+        record.setStatus(model.getStatus());
+        record.setCreateTime(model.getCreateTime());
+        return record;
+    }
+
+    /** 模拟 broker 投递一批消息 */
+    private List<Message> deliver(int size) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < size && !brokerQueue.isEmpty(); i++) {
+            String msgId = brokerQueue.poll();
+            Message message = envelope.encode(new SelfCorrelationData(msgId, "trace", MqInfo.EXAMPLE, "{\"id\":" + msgId + "}"));
+            long tag = nextTag++;
+            message.getMessageProperties().setDeliveryTag(tag);
+            unacked.put(tag, msgId);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /** 每 10 条消息中有 1 条第一次消费失败 */
+    private void business(String json) {
+        String msgId = json.replaceAll("\\D", "");
+        if (Integer.parseInt(msgId) % 10 == 3 && consumed.add("fail-" + msgId)) {
+            throw new RuntimeException("fail " + msgId);
+        }
+        consumed.add(msgId);
+    }
+
+    @Test
+    public void single() {
+        Consumer<String> business = this::business;
+        long start = System.currentTimeMillis();
+        while (!brokerQueue.isEmpty()) {
+            for (Message message : deliver(1)) {
+                handler.doConsume(message, channel, business);
+            }
+        }
+        long ms = System.currentTimeMillis() - start;
+        check();
+        System.out.printf("single: %s msg/s, ack/nack: %s, db: %s%n", COUNT * 1000L / Math.max(ms, 1), ackCount.get(), dbCount.get());
+    }
+
+    @Test
+    public void batch() {
+        Consumer<String> business = this::business;
+        long start = System.currentTimeMillis();
+        while (!brokerQueue.isEmpty()) {
+            handler.doConsumeBatch(deliver(BATCH_SIZE), channel, business);
+        }
+        long ms = System.currentTimeMillis() - start;
+        check();
+        // 每批 1 次查询 + 新记录 1 次写入(有重试记录的批次再多 1 次), 失败的消息单独 nack, 其余的每段只 ack 一次
+        Assertions.assertTrue(dbCount.get() < COUNT / 5);
+        Assertions.assertTrue(ackCount.get() < COUNT / 2);
+        System.out.printf("batch : %s msg/s, ack/nack: %s, db: %s%n", COUNT * 1000L / Math.max(ms, 1), ackCount.get(), dbCount.get());
+    }
+
+    private void check() {
+        Assertions.assertTrue(unacked.isEmpty(), "all deliveries settled");
+        Assertions.assertEquals(COUNT + COUNT / 10, consumed.size());
+        Assertions.assertEquals(COUNT, recordMap.size());
+        for (MqReceiveEntity record : recordMap.values()) {
+            Assertions.assertEquals(2, record.getStatus());
+            int expectRetry = Integer.parseInt(record.getMsgId()) % 10 == 3 ? 1 : 0;
+            Assertions.assertEquals(expectRetry, record.getRetryCount());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.search.client;
+
+import com.github.common.page.PageReturn;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 搜索相关的异步调用接口, 方法跟 {@link SearchClient} 一一对应, 由 mall-global 中的 FeignAsync 生成实现
+ */
+public interface SearchAsyncClient {
+
+    /** @see SearchClient#demo(String, Integer, Integer) */
+    CompletableFuture<PageReturn<?>> demo(String xx, Integer page, Integer limit);
+}
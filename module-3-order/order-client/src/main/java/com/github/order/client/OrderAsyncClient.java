@@ -0,0 +1,14 @@
+package com.github.order.client;
+
+import com.github.common.page.PageReturn;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 订单相关的异步调用接口, 方法跟 {@link OrderClient} 一一对应, 由 mall-global 中的 FeignAsync 生成实现
+ */
+public interface OrderAsyncClient {
+
+    /** @see OrderClient#demo(String, Integer, Integer) */
+    CompletableFuture<PageReturn<?>> demo(String xx, Integer page, Integer limit);
+}
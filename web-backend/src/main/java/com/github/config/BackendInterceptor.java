@@ -1,18 +1,16 @@
 package com.github.config;
 
 import com.github.common.Const;
-import com.github.common.annotation.NeedLogin;
+import com.github.common.mvc.HandlerMetadata;
 import com.github.common.util.LogUtil;
 import com.github.common.util.RequestUtil;
 import com.github.util.BackendSessionUtil;
-import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.lang.annotation.Annotation;
 
 public class BackendInterceptor implements HandlerInterceptor {
 
@@ -61,15 +59,9 @@ public class BackendInterceptor implements HandlerInterceptor {
             return;
         }
 
-        NeedLogin needLogin = getAnnotation((HandlerMethod) handler, NeedLogin.class);
         // 标注了 @NeedLogin 且 flag 为 true(默认就是 true)则表示当前请求需要登录
-        if (needLogin != null && needLogin.value()) {
+        if (HandlerMetadata.of((HandlerMethod) handler).isNeedLogin()) {
             BackendSessionUtil.checkLogin();
         }
     }
-    private <T extends Annotation> T getAnnotation(HandlerMethod handlerMethod, Class<T> clazz) {
-        // 先找方法上的注解, 没有再找类上的注解
-        T annotation = handlerMethod.getMethodAnnotation(clazz);
-        return annotation == null ? AnnotationUtils.findAnnotation(handlerMethod.getBeanType(), clazz) : annotation;
-    }
 }
@@ -80,8 +80,9 @@ public class BackendSessionUtil {
         }
     }
 
-    /** 退出登录时调用. 清空 session */
+    /** 退出登录时调用. 清空 session, 请求中的 token 也不再有效 */
     public static void signOut() {
+        AppTokenHandler.revokeToken();
         RequestUtil.getSession().invalidate();
     }
 }
@@ -0,0 +1,45 @@
+package com.github.config;
+
+import com.github.common.client.CommonAsyncClient;
+import com.github.common.client.CommonClient;
+import com.github.global.config.FeignAsync;
+import com.github.order.client.OrderAsyncClient;
+import com.github.order.client.OrderClient;
+import com.github.product.client.ProductAsyncClient;
+import com.github.product.client.ProductClient;
+import com.github.search.client.SearchAsyncClient;
+import com.github.search.client.SearchClient;
+import com.github.user.client.UserAsyncClient;
+import com.github.user.client.UserClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** feign 调用的异步版本, 多个互不依赖的调用用 FeignAsync.await 并行执行 */
+@Configuration
+public class ManagerAsyncClientConfig {
+
+    @Bean
+    public UserAsyncClient userAsyncClient(FeignAsync feignAsync, UserClient userClient) {
+        return feignAsync.create(UserAsyncClient.class, userClient);
+    }
+
+    @Bean
+    public ProductAsyncClient productAsyncClient(FeignAsync feignAsync, ProductClient productClient) {
+        return feignAsync.create(ProductAsyncClient.class, productClient);
+    }
+
+    @Bean
+    public OrderAsyncClient orderAsyncClient(FeignAsync feignAsync, OrderClient orderClient) {
+        return feignAsync.create(OrderAsyncClient.class, orderClient);
+    }
+
+    @Bean
+    public SearchAsyncClient searchAsyncClient(FeignAsync feignAsync, SearchClient searchClient) {
+        return feignAsync.create(SearchAsyncClient.class, searchClient);
+    }
+
+    @Bean
+    public CommonAsyncClient commonAsyncClient(FeignAsync feignAsync, CommonClient commonClient) {
+        return feignAsync.create(CommonAsyncClient.class, commonClient);
+    }
+}
@@ -1,8 +1,10 @@
 package com.github.util;
 
 import com.github.common.json.JsonUtil;
+import com.github.common.mvc.PermissionMatcher;
 import com.github.common.util.A;
 import com.github.common.util.U;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -40,6 +42,11 @@ class ManagerSessionModel implements Serializable {
 
     // ========== 存放在 session 中的数据 ==========
 
+    /** 由权限列表编译而来, 第一次验证权限时生成, 同一个 session 只编译一次 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile PermissionMatcher permissionMatcher;
+
     private ManagerSessionModel(Long id, String userName) {
         this.id = id;
         this.userName = userName;
@@ -79,25 +86,21 @@ class ManagerSessionModel implements Serializable {
     }
 
     private boolean wasPermission(String url, String method) {
-        if (A.isNotEmpty(permissionList)) {
-            for (Permission permission : permissionList) {
-                String permissionUrl = permission.getUrl();
-                String permissionMethod = permission.getMethod();
-
-                // 如果配置的 url 是 /user/*, 传进来的是 /user/info 也可以通过, 通配 或 全字
-                boolean matchUrl = permissionUrl.endsWith("/*") && url.startsWith(permissionUrl.replace("*", ""));
-                boolean urlCheck = matchUrl || url.equals(permissionUrl);
-
-                // 如果配置的 method 是 *, 传进来的是 GET 也可以通过, 通配 或 全字
-                boolean methodCheck = (("*").equals(permissionMethod) || permissionMethod.contains(method));
-
-                // url 和 method 都通过才表示有访问权限
-                if (urlCheck && methodCheck) {
-                    return true;
+        // 如果配置的 url 是 /user/*, 传进来的是 /user/info 也可以通过; 如果配置的 method 是 *, 传进来的是 GET 也可以通过
+        return permissionMatcher().matches(url, method);
+    }
+    private PermissionMatcher permissionMatcher() {
+        PermissionMatcher matcher = permissionMatcher;
+        if (U.isNull(matcher)) {
+            matcher = new PermissionMatcher();
+            if (A.isNotEmpty(permissionList)) {
+                for (Permission permission : permissionList) {
+                    matcher.add(permission.getUrl(), permission.getMethod());
                 }
             }
+            permissionMatcher = matcher;
         }
-        return false;
+        return matcher;
     }
     boolean notPermission(String url, String method) {
         return !wasPermission(url, method);